@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.connector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.apache.catalina.startup.BenchmarkTomcat;
+
+/**
+ * Benchmarks {@link CoyoteAdapter#postParseRequest} which decodes and
+ * normalizes the request URI, maps the request and parses the session ID.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CoyoteAdapterBenchmark {
+
+    @Param({BenchmarkTomcat.CONTEXT_PATH + BenchmarkTomcat.SERVLET_PATH + "/hello",
+            BenchmarkTomcat.CONTEXT_PATH + BenchmarkTomcat.SERVLET_PATH + "/./a/../hello%20world;jsessionid=0123456789ABCDEF"})
+    public String uri;
+
+    private BenchmarkTomcat tomcat;
+    private CoyoteAdapter adapter;
+    private byte[] uriBytes;
+    private byte[] hostBytes;
+    private org.apache.coyote.Request req;
+    private org.apache.coyote.Response res;
+    private Request request;
+    private Response response;
+
+
+    @Setup
+    public void setup() throws Exception {
+        tomcat = new BenchmarkTomcat();
+        tomcat.start();
+        Connector connector = tomcat.getTomcat().getConnector();
+        adapter = (CoyoteAdapter) connector.getProtocolHandler().getAdapter();
+
+        uriBytes = uri.getBytes(StandardCharsets.ISO_8859_1);
+        hostBytes = "localhost".getBytes(StandardCharsets.ISO_8859_1);
+
+        // Mirrors the set up in CoyoteAdapter.service()
+        req = new org.apache.coyote.Request();
+        res = new org.apache.coyote.Response();
+        req.setResponse(res);
+        request = connector.createRequest();
+        request.setCoyoteRequest(req);
+        response = connector.createResponse();
+        response.setCoyoteResponse(res);
+        request.setResponse(response);
+        response.setRequest(request);
+        req.getParameters().setQueryStringCharset(connector.getURICharset());
+    }
+
+
+    @TearDown
+    public void tearDown() throws Exception {
+        tomcat.stop();
+    }
+
+
+    @Benchmark
+    public boolean postParseRequest() throws Exception {
+        req.method().setString("GET");
+        req.requestURI().setBytes(uriBytes, 0, uriBytes.length);
+        req.serverName().setBytes(hostBytes, 0, hostBytes.length);
+        req.protocol().setString("HTTP/1.1");
+        boolean result = adapter.postParseRequest(req, request, res, response);
+        request.recycle();
+        response.recycle();
+        req.recycle();
+        res.recycle();
+        return result;
+    }
+}
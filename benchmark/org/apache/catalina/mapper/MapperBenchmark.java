@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.mapper;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Host;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.core.StandardHost;
+import org.apache.catalina.core.StandardWrapper;
+import org.apache.tomcat.util.buf.MessageBytes;
+
+/**
+ * Benchmarks {@link Mapper#map(MessageBytes, MessageBytes, String, MappingData)}
+ * for exact, prefix, extension and default servlet mappings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MapperBenchmark {
+
+    private static final int HOST_COUNT = 20;
+    private static final int CONTEXT_COUNT = 20;
+
+    @Param({"/app10/exact", "/app10/prefix/a/b/c", "/app10/dir/page.jsp", "/app10/static/img/logo.png"})
+    public String uri;
+
+    private final Mapper mapper = new Mapper();
+    private final MappingData mappingData = new MappingData();
+    private final MessageBytes hostMB = MessageBytes.newInstance();
+    private final MessageBytes uriMB = MessageBytes.newInstance();
+
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < HOST_COUNT; i++) {
+            String hostName = "host" + i + ".example.org";
+            Host host = new StandardHost();
+            host.setName(hostName);
+            mapper.addHost(hostName, new String[0], host);
+            for (int j = 0; j < CONTEXT_COUNT; j++) {
+                String path = "/app" + j;
+                Context context = new StandardContext();
+                context.setName(path);
+                mapper.addContextVersion(hostName, host, path, "0", context, new String[] { "index.html" }, null,
+                        Arrays.asList(new WrapperMappingInfo("/exact", createWrapper("exact"), false, false),
+                                new WrapperMappingInfo("/prefix/*", createWrapper("prefix"), false, false),
+                                new WrapperMappingInfo("*.jsp", createWrapper("jsp"), true, false),
+                                new WrapperMappingInfo("/", createWrapper("default"), false, false)));
+            }
+        }
+        mapper.setDefaultHostName("host0.example.org");
+
+        hostMB.setString("host" + (HOST_COUNT / 2) + ".example.org");
+        uriMB.setString(uri);
+        // The Mapper works on chars
+        uriMB.toChars();
+        uriMB.getCharChunk().setLimit(-1);
+    }
+
+
+    private static Wrapper createWrapper(String name) {
+        Wrapper wrapper = new StandardWrapper();
+        wrapper.setName(name);
+        return wrapper;
+    }
+
+
+    @Benchmark
+    public MappingData map() throws Exception {
+        mappingData.recycle();
+        mapper.map(hostMB, uriMB, null, mappingData);
+        return mappingData;
+    }
+}
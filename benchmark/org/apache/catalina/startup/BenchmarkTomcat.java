@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.startup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+
+/**
+ * Starts an embedded Tomcat instance, listening on an ephemeral port, for use
+ * by the benchmarks.
+ */
+public class BenchmarkTomcat {
+
+    public static final String CONTEXT_PATH = "/examples";
+    public static final String SERVLET_PATH = "/servlets/servlet";
+
+    private final File baseDir;
+    private final Tomcat tomcat;
+
+
+    public BenchmarkTomcat() throws IOException {
+        baseDir = Files.createTempDirectory("tomcat-benchmark").toFile();
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.getAbsolutePath());
+        tomcat.setPort(0);
+        // Create the default connector
+        tomcat.getConnector();
+
+        Context ctx = tomcat.addContext(CONTEXT_PATH, null);
+        Tomcat.addServlet(ctx, "hello", new HelloServlet());
+        ctx.addServletMappingDecoded(SERVLET_PATH + "/*", "hello");
+    }
+
+
+    public Tomcat getTomcat() {
+        return tomcat;
+    }
+
+
+    public void start() throws LifecycleException {
+        tomcat.start();
+    }
+
+
+    public int getPort() {
+        return tomcat.getConnector().getLocalPort();
+    }
+
+
+    public void stop() throws LifecycleException {
+        try {
+            tomcat.stop();
+            tomcat.destroy();
+        } finally {
+            ExpandWar.delete(baseDir, false);
+        }
+    }
+
+
+    public static class HelloServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final byte[] BODY = "Hello World".getBytes(StandardCharsets.ISO_8859_1);
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("text/plain");
+            resp.setContentLength(BODY.length);
+            resp.getOutputStream().write(BODY);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.startup;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks a complete HTTP/1.1 request and response over a keep-alive
+ * loopback connection to an embedded Tomcat instance. Each benchmark thread
+ * uses its own connection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LoopbackRequestBenchmark {
+
+    private static final byte[] REQUEST = ("GET " + BenchmarkTomcat.CONTEXT_PATH + BenchmarkTomcat.SERVLET_PATH +
+            "/hello?name=value HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:102.0) Gecko/20100101 Firefox/102.0\r\n" +
+            "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n" +
+            "Accept-Encoding: gzip, deflate, br\r\n" +
+            "Cookie: theme=dark; lang=en\r\n" +
+            "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+
+
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        private BenchmarkTomcat tomcat;
+
+        @Setup
+        public void start() throws Exception {
+            tomcat = new BenchmarkTomcat();
+            tomcat.start();
+        }
+
+        @TearDown
+        public void stop() throws Exception {
+            tomcat.stop();
+        }
+    }
+
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        private Socket socket;
+        private OutputStream os;
+        private InputStream is;
+
+        @Setup
+        public void connect(Server server) throws IOException {
+            socket = new Socket("localhost", server.tomcat.getPort());
+            socket.setTcpNoDelay(true);
+            os = socket.getOutputStream();
+            is = new BufferedInputStream(socket.getInputStream());
+        }
+
+        @TearDown
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        /*
+         * Reads a response that has a content-length header and returns the
+         * status code.
+         */
+        int readResponse() throws IOException {
+            int status = -1;
+            int contentLength = 0;
+            StringBuilder line = new StringBuilder();
+            while (true) {
+                readLine(line);
+                if (line.length() == 0) {
+                    break;
+                }
+                if (status == -1) {
+                    status = Integer.parseInt(line.substring(9, 12));
+                } else if (line.length() > 15 && line.substring(0, 15).equalsIgnoreCase("content-length:")) {
+                    contentLength = Integer.parseInt(line.substring(15).trim());
+                }
+            }
+            long remaining = contentLength;
+            while (remaining > 0) {
+                long skipped = is.skip(remaining);
+                if (skipped <= 0) {
+                    if (is.read() == -1) {
+                        throw new EOFException();
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+            return status;
+        }
+
+        private void readLine(StringBuilder line) throws IOException {
+            line.setLength(0);
+            int c;
+            while ((c = is.read()) != '\n') {
+                if (c == -1) {
+                    throw new EOFException();
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+        }
+    }
+
+
+    @Benchmark
+    public int request(Client client) throws IOException {
+        client.os.write(REQUEST);
+        client.os.flush();
+        return client.readResponse();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.valves;
+
+import java.io.CharArrayWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.startup.BenchmarkTomcat;
+
+/**
+ * Benchmarks the formatting of an access log entry by
+ * {@link AbstractAccessLogValve#log(Request, Response, long)}. The formatted
+ * entry is discarded so the cost of writing it is excluded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AccessLogValveBenchmark {
+
+    @Param({"common", "combined", "%h %t \"%r\" %s %b %D %{X-Request-Id}i %{Content-Type}o"})
+    public String pattern;
+
+    private BenchmarkTomcat tomcat;
+    private DiscardingAccessLogValve valve;
+    private Request request;
+    private Response response;
+
+
+    @Setup
+    public void setup() throws Exception {
+        tomcat = new BenchmarkTomcat();
+        valve = new DiscardingAccessLogValve();
+        valve.setPattern(pattern);
+        tomcat.getTomcat().getHost().getPipeline().addValve(valve);
+        tomcat.start();
+        Connector connector = tomcat.getTomcat().getConnector();
+
+        org.apache.coyote.Request req = new org.apache.coyote.Request();
+        org.apache.coyote.Response res = new org.apache.coyote.Response();
+        req.setResponse(res);
+        request = connector.createRequest();
+        request.setCoyoteRequest(req);
+        response = connector.createResponse();
+        response.setCoyoteResponse(res);
+        request.setResponse(response);
+        response.setRequest(request);
+
+        setBytes(req.method(), "GET");
+        setBytes(req.requestURI(), BenchmarkTomcat.CONTEXT_PATH + BenchmarkTomcat.SERVLET_PATH + "/hello");
+        setBytes(req.queryString(), "a=1&b=2");
+        setBytes(req.protocol(), "HTTP/1.1");
+        setBytes(req.getMimeHeaders().addValue("Host"), "localhost");
+        setBytes(req.getMimeHeaders().addValue("User-Agent"),
+                "Mozilla/5.0 (X11; Linux x86_64; rv:102.0) Gecko/20100101 Firefox/102.0");
+        setBytes(req.getMimeHeaders().addValue("Referer"), "http://localhost/index.html");
+        setBytes(req.getMimeHeaders().addValue("X-Request-Id"), "0123456789abcdef");
+        req.setStartTimeNanos(System.nanoTime());
+        res.setStatus(200);
+        res.setContentType("text/plain");
+        res.getMimeHeaders().setValue("Content-Type").setString("text/plain");
+    }
+
+
+    private static void setBytes(org.apache.tomcat.util.buf.MessageBytes mb, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        mb.setBytes(bytes, 0, bytes.length);
+    }
+
+
+    @TearDown
+    public void tearDown() throws Exception {
+        tomcat.stop();
+    }
+
+
+    @Benchmark
+    public int log() {
+        valve.log(request, response, 1234567);
+        return valve.length;
+    }
+
+
+    private static class DiscardingAccessLogValve extends AbstractAccessLogValve {
+
+        private int length;
+
+        @Override
+        protected void log(CharArrayWriter message) {
+            length = message.size();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.apache.tomcat.util.http.MimeHeaders;
+
+/**
+ * Benchmarks HPACK encoding of typical response headers and decoding of
+ * typical request headers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HpackBenchmark {
+
+    private final MimeHeaders responseHeaders = new MimeHeaders();
+    private final ByteBuffer encodeBuffer = ByteBuffer.allocate(16 * 1024);
+    private HpackEncoder encoder;
+
+    private ByteBuffer requestHeaderBlock;
+    private HpackDecoder decoder;
+    private BlackholeEmitter emitter;
+
+
+    @Setup
+    public void setup(Blackhole blackhole) throws Exception {
+        responseHeaders.addValue(":status").setString("200");
+        responseHeaders.addValue("content-type").setString("text/html;charset=UTF-8");
+        responseHeaders.addValue("content-length").setString("4096");
+        responseHeaders.addValue("date").setString("Tue, 21 Jun 2022 10:15:30 GMT");
+        responseHeaders.addValue("cache-control").setString("private, max-age=0");
+        responseHeaders.addValue("set-cookie").setString("JSESSIONID=0123456789ABCDEF; Path=/; HttpOnly");
+        encoder = new HpackEncoder();
+
+        MimeHeaders requestHeaders = new MimeHeaders();
+        requestHeaders.addValue(":method").setString("GET");
+        requestHeaders.addValue(":scheme").setString("https");
+        requestHeaders.addValue(":authority").setString("www.example.org");
+        requestHeaders.addValue(":path").setString("/examples/servlets/servlet/HelloWorldExample");
+        requestHeaders.addValue("user-agent").setString(
+                "Mozilla/5.0 (X11; Linux x86_64; rv:102.0) Gecko/20100101 Firefox/102.0");
+        requestHeaders.addValue("accept").setString("text/html,application/xhtml+xml,application/xml;q=0.9");
+        requestHeaders.addValue("accept-language").setString("en-GB,en;q=0.5");
+        requestHeaders.addValue("accept-encoding").setString("gzip, deflate, br");
+        requestHeaders.addValue("cookie").setString("JSESSIONID=0123456789ABCDEF0123456789ABCDEF");
+        ByteBuffer block = ByteBuffer.allocate(16 * 1024);
+        new HpackEncoder().encode(requestHeaders, block);
+        block.flip();
+        requestHeaderBlock = block;
+
+        decoder = new HpackDecoder();
+        emitter = new BlackholeEmitter(blackhole);
+        decoder.setHeaderEmitter(emitter);
+    }
+
+
+    @Benchmark
+    public ByteBuffer encode() {
+        encodeBuffer.clear();
+        encoder.encode(responseHeaders, encodeBuffer);
+        return encodeBuffer;
+    }
+
+
+    @Benchmark
+    public void decode() throws Exception {
+        // The block was created by a new encoder so it does not reference the
+        // decoder's dynamic table and may be decoded repeatedly
+        decoder.decode(requestHeaderBlock.duplicate());
+    }
+
+
+    private static class BlackholeEmitter implements HpackDecoder.HeaderEmitter {
+
+        private final Blackhole blackhole;
+
+        BlackholeEmitter(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void emitHeader(String name, String value) {
+            blackhole.consume(name);
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void setHeaderException(StreamException streamException) {
+            // NO-OP
+        }
+
+        @Override
+        public void validateHeaders() throws StreamException {
+            // NO-OP
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the event queues used by the pollers. Several producer threads
+ * offer events to a queue that is drained by a single consumer thread.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueueBenchmark {
+
+    private static final Object VALUE = new Object();
+
+    @Param({"synchronized", "singleConsumer"})
+    public String type;
+
+    private SynchronizedQueue<Object> synchronizedQueue;
+    private SingleConsumerQueue<Object> singleConsumerQueue;
+
+
+    @Setup
+    public void setup() {
+        if ("singleConsumer".equals(type)) {
+            singleConsumerQueue = new SingleConsumerQueue<>();
+        } else {
+            synchronizedQueue = new SynchronizedQueue<>();
+        }
+    }
+
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(3)
+    public boolean offer() {
+        if (singleConsumerQueue != null) {
+            return singleConsumerQueue.offer(VALUE);
+        } else {
+            return synchronizedQueue.offer(VALUE);
+        }
+    }
+
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(1)
+    public Object poll() {
+        if (singleConsumerQueue != null) {
+            return singleConsumerQueue.poll();
+        } else {
+            return synchronizedQueue.poll();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Compares the object caches used by the endpoints under contention. Use the
+ * -t option to vary the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(Threads.MAX)
+public class StackBenchmark {
+
+    private static final Object VALUE = new Object();
+
+    @Param({"synchronized", "striped"})
+    public String type;
+
+    private SynchronizedStack<Object> synchronizedStack;
+    private StripedStack<Object> stripedStack;
+
+
+    @Setup
+    public void setup() {
+        if ("striped".equals(type)) {
+            stripedStack = new StripedStack<>(128, 500);
+        } else {
+            synchronizedStack = new SynchronizedStack<>(128, 500);
+        }
+    }
+
+
+    @Benchmark
+    public Object pushPop() {
+        if (stripedStack != null) {
+            stripedStack.push(VALUE);
+            return stripedStack.pop();
+        } else {
+            synchronizedStack.push(VALUE);
+            return synchronizedStack.pop();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.apache.tomcat.util.buf.MessageBytes;
+
+/**
+ * Benchmarks decoding of query strings and form bodies by {@link Parameters}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParametersBenchmark {
+
+    @Param({"a=1&b=2&c=3",
+            "firstname=Tom&lastname=Cat&email=tom.cat%40example.org&comment=Hello%2C+World%21+%E2%82%AC&page=2&sort=asc"})
+    public String query;
+
+    private final Parameters parameters = new Parameters();
+    private final MessageBytes queryMB = MessageBytes.newInstance();
+    private byte[] body;
+
+
+    @Setup
+    public void setup() {
+        body = query.getBytes(StandardCharsets.ISO_8859_1);
+        queryMB.setBytes(body, 0, body.length);
+        parameters.setQuery(queryMB);
+        parameters.setCharset(StandardCharsets.UTF_8);
+        parameters.setQueryStringCharset(StandardCharsets.UTF_8);
+    }
+
+
+    @Benchmark
+    public String decodeQueryString() {
+        parameters.recycle();
+        parameters.setQuery(queryMB);
+        parameters.setQueryStringCharset(StandardCharsets.UTF_8);
+        parameters.handleQueryParameters();
+        return parameters.getParameter("a");
+    }
+
+
+    @Benchmark
+    public String decodeBody() {
+        parameters.recycle();
+        parameters.setCharset(StandardCharsets.UTF_8);
+        parameters.processParameters(body, 0, body.length);
+        return parameters.getParameter("a");
+    }
+}
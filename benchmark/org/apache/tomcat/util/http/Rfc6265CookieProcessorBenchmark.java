@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.http.Cookie;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks parsing and generation of cookie headers by
+ * {@link Rfc6265CookieProcessor}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class Rfc6265CookieProcessorBenchmark {
+
+    private static final String COOKIE_HEADER =
+            "JSESSIONID=0123456789ABCDEF0123456789ABCDEF; theme=dark; lang=en-GB; " +
+            "_ga=GA1.2.1234567890.1234567890; consent=\"yes\"; last-visit=1655812345";
+
+    private final Rfc6265CookieProcessor cookieProcessor = new Rfc6265CookieProcessor();
+    private final MimeHeaders headers = new MimeHeaders();
+    private final ServerCookies serverCookies = new ServerCookies(8);
+    private Cookie cookie;
+
+
+    @Setup
+    public void setup() {
+        byte[] value = COOKIE_HEADER.getBytes(StandardCharsets.ISO_8859_1);
+        headers.addValue("Cookie").setBytes(value, 0, value.length);
+
+        cookie = new Cookie("JSESSIONID", "0123456789ABCDEF0123456789ABCDEF");
+        cookie.setPath("/examples");
+        cookie.setHttpOnly(true);
+        cookie.setSecure(true);
+        cookie.setMaxAge(3600);
+    }
+
+
+    @Benchmark
+    public ServerCookies parseCookieHeader() {
+        serverCookies.recycle();
+        cookieProcessor.parseCookieHeader(headers, serverCookies);
+        return serverCookies;
+    }
+
+
+    @Benchmark
+    public String generateHeader() {
+        return cookieProcessor.generateHeader(cookie, null);
+    }
+}
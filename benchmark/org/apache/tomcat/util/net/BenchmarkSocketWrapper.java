@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A socket wrapper for use in benchmarks that reads from a fixed, in memory,
+ * input and discards all output. This is a minimal implementation that does not
+ * support asynchronous IO.
+ */
+public class BenchmarkSocketWrapper extends SocketWrapperBase<NioChannel> {
+
+    private ByteBuffer input = ByteBuffer.allocate(0);
+
+
+    public BenchmarkSocketWrapper() {
+        super(null, new NioEndpoint());
+        socketBufferHandler = new SocketBufferHandler(8192, 8192, false);
+    }
+
+
+    /**
+     * Set the data that will be returned by subsequent reads.
+     *
+     * @param data The data to return
+     */
+    public void setInput(byte[] data) {
+        input = ByteBuffer.wrap(data);
+    }
+
+
+    @Override
+    public int read(boolean block, byte[] b, int off, int len) throws IOException {
+        if (!input.hasRemaining()) {
+            throw new EOFException();
+        }
+        int n = Math.min(len, input.remaining());
+        input.get(b, off, n);
+        return n;
+    }
+
+
+    @Override
+    public int read(boolean block, ByteBuffer to) throws IOException {
+        if (!input.hasRemaining()) {
+            throw new EOFException();
+        }
+        int n = Math.min(to.remaining(), input.remaining());
+        int limit = input.limit();
+        input.limit(input.position() + n);
+        to.put(input);
+        input.limit(limit);
+        return n;
+    }
+
+
+    @Override
+    public boolean isReadyForRead() throws IOException {
+        return input.hasRemaining();
+    }
+
+
+    @Override
+    public void setAppReadBufHandler(ApplicationBufferHandler handler) {
+        // NO-OP
+    }
+
+
+    @Override
+    protected void populateRemoteHost() {
+        remoteHost = "localhost";
+    }
+
+
+    @Override
+    protected void populateRemoteAddr() {
+        remoteAddr = "127.0.0.1";
+    }
+
+
+    @Override
+    protected void populateRemotePort() {
+        remotePort = 0;
+    }
+
+
+    @Override
+    protected void populateLocalName() {
+        localName = "localhost";
+    }
+
+
+    @Override
+    protected void populateLocalAddr() {
+        localAddr = "127.0.0.1";
+    }
+
+
+    @Override
+    protected void populateLocalPort() {
+        localPort = 0;
+    }
+
+
+    @Override
+    protected void doClose() {
+        // NO-OP
+    }
+
+
+    @Override
+    protected boolean flushNonBlocking() throws IOException {
+        return false;
+    }
+
+
+    @Override
+    protected void doWrite(boolean block, ByteBuffer from) throws IOException {
+        // Discard the output
+        from.position(from.limit());
+    }
+
+
+    @Override
+    public void registerReadInterest() {
+        // NO-OP
+    }
+
+
+    @Override
+    public void registerWriteInterest() {
+        // NO-OP
+    }
+
+
+    @Override
+    public SendfileDataBase createSendfileData(String filename, long pos, long length) {
+        return null;
+    }
+
+
+    @Override
+    public SendfileState processSendfile(SendfileDataBase sendfileData) {
+        return SendfileState.DONE;
+    }
+
+
+    @Override
+    public void doClientAuth(SSLSupport sslSupport) throws IOException {
+        // NO-OP
+    }
+
+
+    @Override
+    public SSLSupport getSslSupport() {
+        return null;
+    }
+
+
+    @Override
+    protected <A> OperationState<A> newOperationState(boolean read, ByteBuffer[] buffers, int offset, int length,
+            BlockingMode block, long timeout, TimeUnit unit, A attachment, CompletionCheck check,
+            CompletionHandler<Long,? super A> handler, Semaphore semaphore,
+            VectoredIOCompletionHandler<A> completion) {
+        throw new UnsupportedOperationException();
+    }
+}
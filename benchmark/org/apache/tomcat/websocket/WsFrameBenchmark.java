@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.websocket;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerEndpointConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+
+/**
+ * Benchmarks the processing of masked (client to server) WebSocket frames by
+ * {@link WsFrameBase}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WsFrameBenchmark {
+
+    @Param({"text", "binary"})
+    public String type;
+
+    @Param({"64", "4096"})
+    public int size;
+
+    private ByteBuffer frame;
+    private BenchmarkWsFrame wsFrame;
+
+
+    @Setup
+    public void setup(final Blackhole blackhole) throws Exception {
+        ServerEndpointConfig sec = ServerEndpointConfig.Builder.create(BenchmarkEndpoint.class, "/")
+                .configurator(new ServerEndpointConfig.Configurator() {
+                    @Override
+                    public <T> T getEndpointInstance(Class<T> clazz) {
+                        return clazz.cast(new BenchmarkEndpoint());
+                    }
+                }).build();
+        WsSession wsSession = new WsSession(new BenchmarkRemoteEndpoint(), new WsWebSocketContainer(),
+                new URI("ws://localhost/"), null, null, null, null, Collections.emptyList(), null,
+                Collections.emptyMap(), false, sec);
+
+        boolean text = "text".equals(type);
+        if (text) {
+            wsSession.addMessageHandler(String.class, (MessageHandler.Whole<String>) blackhole::consume);
+        } else {
+            wsSession.addMessageHandler(ByteBuffer.class, (MessageHandler.Whole<ByteBuffer>) blackhole::consume);
+        }
+        wsFrame = new BenchmarkWsFrame(wsSession);
+        frame = createFrame(text, size);
+    }
+
+
+    @Benchmark
+    public void processFrame() throws IOException {
+        wsFrame.process(frame.duplicate());
+    }
+
+
+    private static ByteBuffer createFrame(boolean text, int size) {
+        ByteBuffer result = ByteBuffer.allocate(size + 8);
+        // FIN and op code
+        result.put((byte) (text ? 0x81 : 0x82));
+        // Masked and payload length
+        if (size < 126) {
+            result.put((byte) (0x80 | size));
+        } else {
+            result.put((byte) (0x80 | 126));
+            result.putShort((short) size);
+        }
+        byte[] mask = new byte[] { 0x12, 0x34, 0x56, 0x78 };
+        result.put(mask);
+        for (int i = 0; i < size; i++) {
+            result.put((byte) (('a' + (i % 26)) ^ mask[i % 4]));
+        }
+        result.flip();
+        return result;
+    }
+
+
+    public static class BenchmarkEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            // NO-OP
+        }
+    }
+
+
+    private static class BenchmarkRemoteEndpoint extends WsRemoteEndpointImplBase {
+
+        @Override
+        protected void doWrite(SendHandler handler, long blockingWriteTimeoutExpiry, ByteBuffer... data) {
+            for (ByteBuffer buffer : data) {
+                buffer.position(buffer.limit());
+            }
+            handler.onResult(new SendResult());
+        }
+
+        @Override
+        protected boolean isMasked() {
+            return false;
+        }
+
+        @Override
+        protected void doClose() {
+            // NO-OP
+        }
+    }
+
+
+    private static class BenchmarkWsFrame extends WsFrameBase {
+
+        private final Log log = LogFactory.getLog(BenchmarkWsFrame.class);
+
+        BenchmarkWsFrame(WsSession wsSession) {
+            super(wsSession, null);
+        }
+
+        void process(ByteBuffer data) throws IOException {
+            // Mirrors the way WsFrameServer adds data read from the socket
+            inputBuffer.mark();
+            inputBuffer.position(inputBuffer.limit()).limit(inputBuffer.capacity());
+            inputBuffer.put(data);
+            inputBuffer.limit(inputBuffer.position()).reset();
+            processInputBuffer();
+        }
+
+        @Override
+        protected boolean isMasked() {
+            return true;
+        }
+
+        @Override
+        protected Log getLog() {
+            return log;
+        }
+
+        @Override
+        protected void resumeProcessing() {
+            // NO-OP
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Provides the streams used to serialize sessions when they are persisted by a
+ * {@link Store}, saved and restored across restarts, or replicated across a
+ * cluster. Sessions write their state to, and read it from, these streams via
+ * {@link java.io.ObjectOutput#writeObject(Object)},
+ * {@link java.io.ObjectInput#readObject()} and the primitive data methods.
+ * <p>
+ * Implementations must be thread safe.
+ */
+public interface SessionSerializer {
+
+    /**
+     * Create a stream to which session data may be written.
+     *
+     * @param os The stream to which the serialized data should be written
+     *
+     * @return The stream to use to write session data
+     *
+     * @throws IOException If the stream cannot be created
+     */
+    public ObjectOutputStream getObjectOutputStream(OutputStream os) throws IOException;
+
+    /**
+     * Create a stream from which session data may be read.
+     *
+     * @param is                The stream from which the serialized data
+     *                          should be read
+     * @param javaStreamFactory Creates the streams used to read any data
+     *                          written using Java serialization, configured
+     *                          with the class loader(s) and class name filter
+     *                          appropriate for the session
+     *
+     * @return The stream to use to read session data
+     *
+     * @throws IOException If the stream cannot be created
+     */
+    public ObjectInputStream getObjectInputStream(InputStream is,
+            ObjectInputStreamFactory javaStreamFactory) throws IOException;
+
+
+    /**
+     * Creates the {@link ObjectInputStream} used to read data written using
+     * Java serialization.
+     */
+    @FunctionalInterface
+    public interface ObjectInputStreamFactory {
+
+        /**
+         * Create a stream that reads data written using Java serialization.
+         *
+         * @param is The stream from which the serialized data should be read
+         *
+         * @return The stream to use to read the data
+         *
+         * @throws IOException If the stream cannot be created
+         */
+        public ObjectInputStream create(InputStream is) throws IOException;
+    }
+}
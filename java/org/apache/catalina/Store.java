@@ -131,4 +131,36 @@ public interface Store {
     public void save(Session session) throws IOException;
 
 
+    /**
+     * Save the specified Sessions into this Store.  Any previously saved
+     * information for the associated session identifiers is replaced. The
+     * default implementation saves each session in turn. Stores that are able
+     * to write a group of sessions more efficiently than one at a time should
+     * override this method.
+     *
+     * @param sessions Sessions to be saved
+     *
+     * @exception IOException if an input/output error occurs saving one or
+     *            more of the Sessions. All the Sessions will have been
+     *            attempted before the exception is thrown.
+     */
+    public default void saveAll(Session[] sessions) throws IOException {
+        IOException ioe = null;
+        for (Session session : sessions) {
+            try {
+                save(session);
+            } catch (IOException e) {
+                if (ioe == null) {
+                    ioe = e;
+                } else {
+                    ioe.addSuppressed(e);
+                }
+            }
+        }
+        if (ioe != null) {
+            throw ioe;
+        }
+    }
+
+
 }
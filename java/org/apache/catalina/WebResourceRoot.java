@@ -371,6 +371,32 @@ public interface WebResourceRoot extends Lifecycle {
      */
     int getCacheObjectMaxSize();
 
+    /**
+     * Controls whether the content of cached resources is stored outside of
+     * the Java heap.
+     * <p>
+     * The default implementation is a NO-OP. Sub-classes that support storing
+     * cached content outside of the Java heap should provide an appropriate
+     * implementation.
+     *
+     * @param cacheContentOffHeap   {@code true} to store cached content in
+     *                              direct buffers
+     */
+    default void setCacheContentOffHeap(boolean cacheContentOffHeap) {
+        // NO-OP
+    }
+
+    /**
+     * Is the content of cached resources stored outside of the Java heap?
+     * <p>
+     * The default implementation returns {@code false}.
+     *
+     * @return {@code true} if cached content is stored in direct buffers
+     */
+    default boolean isCacheContentOffHeap() {
+        return false;
+    }
+
     /**
      * Controls whether the track locked files feature is enabled. If enabled,
      * all calls to methods that return objects that lock a file and need to be
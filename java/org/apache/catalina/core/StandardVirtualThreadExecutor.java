@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.catalina.Executor;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.util.LifecycleMBeanBase;
+import org.apache.tomcat.util.res.StringManager;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+
+/**
+ * An executor that uses a new virtual thread for each task.
+ */
+public class StandardVirtualThreadExecutor extends LifecycleMBeanBase implements Executor {
+
+    private static final StringManager sm = StringManager.getManager(StandardVirtualThreadExecutor.class);
+
+    private String name;
+    private String namePrefix = "tomcat-virt-";
+    private long terminationTimeoutMillis = 5000;
+
+    private volatile VirtualThreadExecutor executor;
+
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+
+    public void setNamePrefix(String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+
+    /**
+     * @return the time, in milliseconds, that {@link #stop()} will wait for
+     *         running tasks to complete
+     */
+    public long getTerminationTimeoutMillis() {
+        return terminationTimeoutMillis;
+    }
+
+
+    public void setTerminationTimeoutMillis(long terminationTimeoutMillis) {
+        this.terminationTimeoutMillis = terminationTimeoutMillis;
+    }
+
+
+    /**
+     * @return the number of tasks currently being executed
+     */
+    public int getActiveCount() {
+        VirtualThreadExecutor executor = this.executor;
+        return (executor != null) ? executor.getActiveCount() : 0;
+    }
+
+
+    @Override
+    public void execute(Runnable command) {
+        VirtualThreadExecutor executor = this.executor;
+        if (executor == null) {
+            throw new IllegalStateException(sm.getString("standardThreadExecutor.notStarted"));
+        }
+        executor.execute(command);
+    }
+
+
+    @Override
+    protected void startInternal() throws LifecycleException {
+        try {
+            executor = new VirtualThreadExecutor(getNamePrefix());
+        } catch (UnsupportedOperationException e) {
+            throw new LifecycleException(sm.getString("standardVirtualThreadExecutor.noVirtualThreads"), e);
+        }
+        setState(LifecycleState.STARTING);
+    }
+
+
+    @Override
+    protected void stopInternal() throws LifecycleException {
+        setState(LifecycleState.STOPPING);
+        VirtualThreadExecutor executor = this.executor;
+        this.executor = null;
+        if (executor != null) {
+            executor.shutdown();
+            if (terminationTimeoutMillis > 0) {
+                try {
+                    executor.awaitTermination(terminationTimeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+
+    @Override
+    protected String getDomainInternal() {
+        // No way to navigate to Engine. Needs to have domain set.
+        return null;
+    }
+
+
+    @Override
+    protected String getObjectNameKeyProperties() {
+        return "type=Executor,name=" + getName();
+    }
+}
@@ -25,6 +25,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.management.ListenerNotFoundException;
@@ -243,6 +245,12 @@ public class StandardWrapper extends ContainerBase
     private final ReentrantReadWriteLock referencesLock =
             new ReentrantReadWriteLock();
 
+    /**
+     * Guards loading, initialisation and unloading of the servlet instance.
+     * A Lock so waiting for initialisation does not pin virtual threads.
+     */
+    protected final Lock instanceLock = new ReentrantLock();
+
 
     // ------------------------------------------------------------- Properties
 
@@ -674,7 +682,8 @@ public class StandardWrapper extends ContainerBase
 
         // Load and initialize our instance if necessary
         if (instance == null || !instanceInitialized) {
-            synchronized (this) {
+            instanceLock.lock();
+            try {
                 if (instance == null) {
                     try {
                         if (log.isDebugEnabled()) {
@@ -695,6 +704,8 @@ public class StandardWrapper extends ContainerBase
                 if (!instanceInitialized) {
                     initServlet(instance);
                 }
+            } finally {
+                instanceLock.unlock();
             }
         }
 
@@ -843,31 +854,36 @@ public class StandardWrapper extends ContainerBase
      * @exception ServletException if some other loading problem occurs
      */
     @Override
-    public synchronized void load() throws ServletException {
-        instance = loadServlet();
+    public void load() throws ServletException {
+        instanceLock.lock();
+        try {
+            instance = loadServlet();
 
-        if (!instanceInitialized) {
-            initServlet(instance);
-        }
+            if (!instanceInitialized) {
+                initServlet(instance);
+            }
 
-        if (isJspServlet) {
-            StringBuilder oname = new StringBuilder(getDomain());
+            if (isJspServlet) {
+                StringBuilder oname = new StringBuilder(getDomain());
 
-            oname.append(":type=JspMonitor");
+                oname.append(":type=JspMonitor");
 
-            oname.append(getWebModuleKeyProperties());
+                oname.append(getWebModuleKeyProperties());
 
-            oname.append(",name=");
-            oname.append(getName());
+                oname.append(",name=");
+                oname.append(getName());
 
-            oname.append(getJ2EEKeyProperties());
+                oname.append(getJ2EEKeyProperties());
 
-            try {
-                jspMonitorON = new ObjectName(oname.toString());
-                Registry.getRegistry(null, null).registerComponent(instance, jspMonitorON, null);
-            } catch (Exception ex) {
-                log.warn(sm.getString("standardWrapper.jspMonitorError", instance));
+                try {
+                    jspMonitorON = new ObjectName(oname.toString());
+                    Registry.getRegistry(null, null).registerComponent(instance, jspMonitorON, null);
+                } catch (Exception ex) {
+                    log.warn(sm.getString("standardWrapper.jspMonitorError", instance));
+                }
             }
+        } finally {
+            instanceLock.unlock();
         }
     }
 
@@ -881,135 +897,142 @@ public class StandardWrapper extends ContainerBase
      * @return the loaded Servlet instance
      * @throws ServletException for a Servlet load error
      */
-    public synchronized Servlet loadServlet() throws ServletException {
-
-        // Nothing to do if we already have an instance or an instance pool
-        if (instance != null) {
-            return instance;
-        }
-
-        PrintStream out = System.out;
-        if (swallowOutput) {
-            SystemLogHandler.startCapture();
-        }
-
-        Servlet servlet;
+    public Servlet loadServlet() throws ServletException {
+        instanceLock.lock();
         try {
-            long t1=System.currentTimeMillis();
-            // Complain if no servlet class has been specified
-            if (servletClass == null) {
-                unavailable(null);
-                throw new ServletException
-                    (sm.getString("standardWrapper.notClass", getName()));
+            // Nothing to do if we already have an instance or an instance pool
+            if (instance != null) {
+                return instance;
+            }
+
+            PrintStream out = System.out;
+            if (swallowOutput) {
+                SystemLogHandler.startCapture();
             }
 
-            InstanceManager instanceManager = ((StandardContext)getParent()).getInstanceManager();
+            Servlet servlet;
             try {
-                servlet = (Servlet) instanceManager.newInstance(servletClass);
-            } catch (ClassCastException e) {
-                unavailable(null);
-                // Restore the context ClassLoader
-                throw new ServletException
-                    (sm.getString("standardWrapper.notServlet", servletClass), e);
-            } catch (Throwable e) {
-                e = ExceptionUtils.unwrapInvocationTargetException(e);
-                ExceptionUtils.handleThrowable(e);
-                unavailable(null);
-
-                // Added extra log statement for Bugzilla 36630:
-                // https://bz.apache.org/bugzilla/show_bug.cgi?id=36630
-                if(log.isDebugEnabled()) {
-                    log.debug(sm.getString("standardWrapper.instantiate", servletClass), e);
+                long t1=System.currentTimeMillis();
+                // Complain if no servlet class has been specified
+                if (servletClass == null) {
+                    unavailable(null);
+                    throw new ServletException
+                        (sm.getString("standardWrapper.notClass", getName()));
                 }
 
-                // Restore the context ClassLoader
-                throw new ServletException
-                    (sm.getString("standardWrapper.instantiate", servletClass), e);
-            }
+                InstanceManager instanceManager = ((StandardContext)getParent()).getInstanceManager();
+                try {
+                    servlet = (Servlet) instanceManager.newInstance(servletClass);
+                } catch (ClassCastException e) {
+                    unavailable(null);
+                    // Restore the context ClassLoader
+                    throw new ServletException
+                        (sm.getString("standardWrapper.notServlet", servletClass), e);
+                } catch (Throwable e) {
+                    e = ExceptionUtils.unwrapInvocationTargetException(e);
+                    ExceptionUtils.handleThrowable(e);
+                    unavailable(null);
+
+                    // Added extra log statement for Bugzilla 36630:
+                    // https://bz.apache.org/bugzilla/show_bug.cgi?id=36630
+                    if(log.isDebugEnabled()) {
+                        log.debug(sm.getString("standardWrapper.instantiate", servletClass), e);
+                    }
 
-            if (multipartConfigElement == null) {
-                MultipartConfig annotation =
-                        servlet.getClass().getAnnotation(MultipartConfig.class);
-                if (annotation != null) {
-                    multipartConfigElement =
-                            new MultipartConfigElement(annotation);
+                    // Restore the context ClassLoader
+                    throw new ServletException
+                        (sm.getString("standardWrapper.instantiate", servletClass), e);
                 }
-            }
 
-            // Special handling for ContainerServlet instances
-            // Note: The InstanceManager checks if the application is permitted
-            //       to load ContainerServlets
-            if (servlet instanceof ContainerServlet) {
-                ((ContainerServlet) servlet).setWrapper(this);
-            }
+                if (multipartConfigElement == null) {
+                    MultipartConfig annotation =
+                            servlet.getClass().getAnnotation(MultipartConfig.class);
+                    if (annotation != null) {
+                        multipartConfigElement =
+                                new MultipartConfigElement(annotation);
+                    }
+                }
 
-            classLoadTime=(int) (System.currentTimeMillis() -t1);
+                // Special handling for ContainerServlet instances
+                // Note: The InstanceManager checks if the application is permitted
+                //       to load ContainerServlets
+                if (servlet instanceof ContainerServlet) {
+                    ((ContainerServlet) servlet).setWrapper(this);
+                }
 
-            initServlet(servlet);
+                classLoadTime=(int) (System.currentTimeMillis() -t1);
 
-            fireContainerEvent("load", this);
+                initServlet(servlet);
 
-            loadTime=System.currentTimeMillis() -t1;
-        } finally {
-            if (swallowOutput) {
-                String log = SystemLogHandler.stopCapture();
-                if (log != null && log.length() > 0) {
-                    if (getServletContext() != null) {
-                        getServletContext().log(log);
-                    } else {
-                        out.println(log);
+                fireContainerEvent("load", this);
+
+                loadTime=System.currentTimeMillis() -t1;
+            } finally {
+                if (swallowOutput) {
+                    String log = SystemLogHandler.stopCapture();
+                    if (log != null && log.length() > 0) {
+                        if (getServletContext() != null) {
+                            getServletContext().log(log);
+                        } else {
+                            out.println(log);
+                        }
                     }
                 }
             }
+            return servlet;
+        } finally {
+            instanceLock.unlock();
         }
-        return servlet;
-
     }
 
 
-    private synchronized void initServlet(Servlet servlet)
+    private void initServlet(Servlet servlet)
             throws ServletException {
-
-        if (instanceInitialized) {
-            return;
-        }
-
-        // Call the initialization method of this servlet
+        instanceLock.lock();
         try {
-            if( Globals.IS_SECURITY_ENABLED) {
-                boolean success = false;
-                try {
-                    Object[] args = new Object[] { facade };
-                    SecurityUtil.doAsPrivilege("init",
-                                               servlet,
-                                               classType,
-                                               args);
-                    success = true;
-                } finally {
-                    if (!success) {
-                        // destroy() will not be called, thus clear the reference now
-                        SecurityUtil.remove(servlet);
+            if (instanceInitialized) {
+                return;
+            }
+
+            // Call the initialization method of this servlet
+            try {
+                if( Globals.IS_SECURITY_ENABLED) {
+                    boolean success = false;
+                    try {
+                        Object[] args = new Object[] { facade };
+                        SecurityUtil.doAsPrivilege("init",
+                                                   servlet,
+                                                   classType,
+                                                   args);
+                        success = true;
+                    } finally {
+                        if (!success) {
+                            // destroy() will not be called, thus clear the reference now
+                            SecurityUtil.remove(servlet);
+                        }
                     }
+                } else {
+                    servlet.init(facade);
                 }
-            } else {
-                servlet.init(facade);
-            }
 
-            instanceInitialized = true;
-        } catch (UnavailableException f) {
-            unavailable(f);
-            throw f;
-        } catch (ServletException f) {
-            // If the servlet wanted to be unavailable it would have
-            // said so, so do not call unavailable(null).
-            throw f;
-        } catch (Throwable f) {
-            ExceptionUtils.handleThrowable(f);
-            getServletContext().log(sm.getString("standardWrapper.initException", getName()), f);
-            // If the servlet wanted to be unavailable it would have
-            // said so, so do not call unavailable(null).
-            throw new ServletException
-                (sm.getString("standardWrapper.initException", getName()), f);
+                instanceInitialized = true;
+            } catch (UnavailableException f) {
+                unavailable(f);
+                throw f;
+            } catch (ServletException f) {
+                // If the servlet wanted to be unavailable it would have
+                // said so, so do not call unavailable(null).
+                throw f;
+            } catch (Throwable f) {
+                ExceptionUtils.handleThrowable(f);
+                getServletContext().log(sm.getString("standardWrapper.initException", getName()), f);
+                // If the servlet wanted to be unavailable it would have
+                // said so, so do not call unavailable(null).
+                throw new ServletException
+                    (sm.getString("standardWrapper.initException", getName()), f);
+            }
+        } finally {
+            instanceLock.unlock();
         }
     }
 
@@ -1110,94 +1133,98 @@ public class StandardWrapper extends ContainerBase
      *  destroy() method
      */
     @Override
-    public synchronized void unload() throws ServletException {
-
-        // Nothing to do if we have never loaded the instance
-        if (instance == null) {
-            return;
-        }
-        unloading = true;
-
-        // Loaf a while if the current instance is allocated
-        if (countAllocated.get() > 0) {
-            int nRetries = 0;
-            long delay = unloadDelay / 20;
-            while ((nRetries < 21) && (countAllocated.get() > 0)) {
-                if ((nRetries % 10) == 0) {
-                    log.info(sm.getString("standardWrapper.waiting",
-                                          countAllocated.toString(),
-                                          getName()));
-                }
-                try {
-                    Thread.sleep(delay);
-                } catch (InterruptedException e) {
-                    // Ignore
+    public void unload() throws ServletException {
+        instanceLock.lock();
+        try {
+            // Nothing to do if we have never loaded the instance
+            if (instance == null) {
+                return;
+            }
+            unloading = true;
+
+            // Loaf a while if the current instance is allocated
+            if (countAllocated.get() > 0) {
+                int nRetries = 0;
+                long delay = unloadDelay / 20;
+                while ((nRetries < 21) && (countAllocated.get() > 0)) {
+                    if ((nRetries % 10) == 0) {
+                        log.info(sm.getString("standardWrapper.waiting",
+                                              countAllocated.toString(),
+                                              getName()));
+                    }
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        // Ignore
+                    }
+                    nRetries++;
                 }
-                nRetries++;
             }
-        }
 
-        if (instanceInitialized) {
-            PrintStream out = System.out;
-            if (swallowOutput) {
-                SystemLogHandler.startCapture();
-            }
+            if (instanceInitialized) {
+                PrintStream out = System.out;
+                if (swallowOutput) {
+                    SystemLogHandler.startCapture();
+                }
 
-            // Call the servlet destroy() method
-            try {
-                if( Globals.IS_SECURITY_ENABLED) {
-                    try {
-                        SecurityUtil.doAsPrivilege("destroy", instance);
-                    } finally {
-                        SecurityUtil.remove(instance);
+                // Call the servlet destroy() method
+                try {
+                    if( Globals.IS_SECURITY_ENABLED) {
+                        try {
+                            SecurityUtil.doAsPrivilege("destroy", instance);
+                        } finally {
+                            SecurityUtil.remove(instance);
+                        }
+                    } else {
+                        instance.destroy();
                     }
-                } else {
-                    instance.destroy();
-                }
 
-            } catch (Throwable t) {
-                t = ExceptionUtils.unwrapInvocationTargetException(t);
-                ExceptionUtils.handleThrowable(t);
-                fireContainerEvent("unload", this);
-                unloading = false;
-                throw new ServletException
-                    (sm.getString("standardWrapper.destroyException", getName()),
-                     t);
-            } finally {
-                // Annotation processing
-                if (!((Context) getParent()).getIgnoreAnnotations()) {
-                    try {
-                        ((Context)getParent()).getInstanceManager().destroyInstance(instance);
-                    } catch (Throwable t) {
-                        ExceptionUtils.handleThrowable(t);
-                        log.error(sm.getString("standardWrapper.destroyInstance", getName()), t);
+                } catch (Throwable t) {
+                    t = ExceptionUtils.unwrapInvocationTargetException(t);
+                    ExceptionUtils.handleThrowable(t);
+                    fireContainerEvent("unload", this);
+                    unloading = false;
+                    throw new ServletException
+                        (sm.getString("standardWrapper.destroyException", getName()),
+                         t);
+                } finally {
+                    // Annotation processing
+                    if (!((Context) getParent()).getIgnoreAnnotations()) {
+                        try {
+                            ((Context)getParent()).getInstanceManager().destroyInstance(instance);
+                        } catch (Throwable t) {
+                            ExceptionUtils.handleThrowable(t);
+                            log.error(sm.getString("standardWrapper.destroyInstance", getName()), t);
+                        }
                     }
-                }
-                // Write captured output
-                if (swallowOutput) {
-                    String log = SystemLogHandler.stopCapture();
-                    if (log != null && log.length() > 0) {
-                        if (getServletContext() != null) {
-                            getServletContext().log(log);
-                        } else {
-                            out.println(log);
+                    // Write captured output
+                    if (swallowOutput) {
+                        String log = SystemLogHandler.stopCapture();
+                        if (log != null && log.length() > 0) {
+                            if (getServletContext() != null) {
+                                getServletContext().log(log);
+                            } else {
+                                out.println(log);
+                            }
                         }
                     }
+                    instance = null;
+                    instanceInitialized = false;
                 }
-                instance = null;
-                instanceInitialized = false;
             }
-        }
 
-        // Deregister the destroyed instance
-        instance = null;
+            // Deregister the destroyed instance
+            instance = null;
 
-        if (isJspServlet && jspMonitorON != null ) {
-            Registry.getRegistry(null, null).unregisterComponent(jspMonitorON);
-        }
+            if (isJspServlet && jspMonitorON != null ) {
+                Registry.getRegistry(null, null).unregisterComponent(jspMonitorON);
+            }
 
-        unloading = false;
-        fireContainerEvent("unload", this);
+            unloading = false;
+            fireContainerEvent("unload", this);
+        } finally {
+            instanceLock.unlock();
+        }
     }
 
 
@@ -18,6 +18,7 @@ package org.apache.catalina.ha;
 
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
 
 import org.apache.catalina.Manager;
 import org.apache.catalina.tribes.io.ReplicationStream;
@@ -90,6 +91,22 @@ public interface ClusterManager extends Manager {
 
    public ReplicationStream getReplicationStream(byte[] data, int offset, int length) throws IOException;
 
+   /**
+    * Open a stream to read replicated session data, using the correct
+    * ClassLoader (Container) and the format in which the session data was
+    * serialized.
+    *
+    * @param data The data
+    * @param offset The offset in the data at which the session data starts
+    * @param length The length of the session data
+    * @return The object input stream
+    * @throws IOException An error occurred
+    */
+   public default ObjectInputStream getSessionInputStream(byte[] data, int offset, int length)
+           throws IOException {
+       return getReplicationStream(data, offset, length);
+   }
+
    public boolean isNotifyListenersOnReplication();
 
    public ClusterManager cloneFromTemplate();
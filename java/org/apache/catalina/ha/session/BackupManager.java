@@ -122,6 +122,32 @@ public class BackupManager extends ClusterManagerBase
     }
 
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Indexed expiration is not supported as backup copies of sessions are
+     * added to the replicated map by the cluster rather than via
+     * {@link #add(Session)} so this always returns {@code false}.
+     */
+    @Override
+    public boolean getIndexedExpiration() {
+        return false;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Indexed expiration is not supported so this setting is ignored.
+     */
+    @Override
+    public void setIndexedExpiration(boolean indexedExpiration) {
+        if (indexedExpiration) {
+            log.warn(sm.getString("backupManager.indexedExpiration"));
+        }
+    }
+
+
     @Override
     public String getName() {
         return this.name;
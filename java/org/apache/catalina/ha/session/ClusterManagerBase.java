@@ -18,6 +18,7 @@ package org.apache.catalina.ha.session;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 
 import org.apache.catalina.Cluster;
 import org.apache.catalina.Context;
@@ -128,6 +129,15 @@ public abstract class ClusterManagerBase extends ManagerBase implements ClusterM
         return new ReplicationStream(fis, getClassLoaders());
     }
 
+    @Override
+    public ObjectInputStream getSessionInputStream(byte[] data, int offset, int length)
+            throws IOException {
+        ByteArrayInputStream fis = new ByteArrayInputStream(data, offset, length);
+        ClassLoader[] classLoaders = getClassLoaders();
+        return getSessionSerializer().getObjectInputStream(fis,
+                is -> new ReplicationStream(is, classLoaders));
+    }
+
 
     //  ---------------------------------------------------- persistence handler
 
@@ -171,6 +181,8 @@ public abstract class ClusterManagerBase extends ManagerBase implements ClusterM
             }
         }
         copy.setRecordAllActions(isRecordAllActions());
+        copy.setSessionSerializer(getSessionSerializer());
+        copy.setIndexedExpiration(getIndexedExpiration());
     }
 
     /**
@@ -560,7 +560,7 @@ public class DeltaManager extends ClusterManagerBase{
 
         // Open an input stream to the specified pathname, if any
         // Load the previously unloaded active sessions
-        try (ObjectInputStream ois = getReplicationStream(data)) {
+        try (ObjectInputStream ois = getSessionInputStream(data, 0, data.length)) {
             Integer count = (Integer) ois.readObject();
             int n = count.intValue();
             for (int i = 0; i < n; i++) {
@@ -619,7 +619,8 @@ public class DeltaManager extends ClusterManagerBase{
 
         // Open an output stream to the specified pathname, if any
         ByteArrayOutputStream fos = new ByteArrayOutputStream();
-        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(fos))) {
+        try (ObjectOutputStream oos =
+                getSessionSerializer().getObjectOutputStream(new BufferedOutputStream(fos))) {
             oos.writeObject(Integer.valueOf(currentSessions.length));
             for (Session currentSession : currentSessions) {
                 ((DeltaSession) currentSession).writeObjectData(oos);
@@ -32,7 +32,9 @@ import java.security.Principal;
 import java.util.LinkedList;
 
 import org.apache.catalina.SessionListener;
+import org.apache.catalina.SessionSerializer;
 import org.apache.catalina.realm.GenericPrincipal;
+import org.apache.catalina.session.JavaSessionSerializer;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.res.StringManager;
@@ -336,8 +338,20 @@ public class DeltaRequest implements Externalizable {
      * @throws IOException IO error serializing
      */
     protected byte[] serialize() throws IOException {
+        return serialize(new JavaSessionSerializer());
+    }
+
+    /**
+     * serialize DeltaRequest using the given serializer
+     * @see DeltaRequest#writeExternal(java.io.ObjectOutput)
+     *
+     * @param serializer The serializer to use to create the output stream
+     * @return serialized delta request
+     * @throws IOException IO error serializing
+     */
+    protected byte[] serialize(SessionSerializer serializer) throws IOException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        ObjectOutputStream oos = serializer.getObjectOutputStream(bos);
         writeExternal(oos);
         oos.flush();
         oos.close();
@@ -42,7 +42,6 @@ import org.apache.catalina.ha.ClusterMessage;
 import org.apache.catalina.ha.ClusterSession;
 import org.apache.catalina.session.ManagerBase;
 import org.apache.catalina.session.StandardSession;
-import org.apache.catalina.tribes.io.ReplicationStream;
 import org.apache.catalina.tribes.tipis.ReplicatedMapEntry;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
@@ -166,7 +165,12 @@ public class DeltaSession extends StandardSession implements Externalizable,Clus
 
         DeltaRequest oldDeltaRequest = replaceDeltaRequest(newDeltaRequest);
 
-        byte[] result = oldDeltaRequest.serialize();
+        byte[] result;
+        if (manager instanceof ManagerBase) {
+            result = oldDeltaRequest.serialize(((ManagerBase) manager).getSessionSerializer());
+        } else {
+            result = oldDeltaRequest.serialize();
+        }
 
         if (deltaRequestPool != null) {
             // Only need to reset the old request if it is going to be pooled.
@@ -198,7 +202,7 @@ public class DeltaSession extends StandardSession implements Externalizable,Clus
     @Override
     public void applyDiff(byte[] diff, int offset, int length) throws IOException, ClassNotFoundException {
         lockInternal();
-        try (ObjectInputStream stream = ((ClusterManager) getManager()).getReplicationStream(diff, offset, length)) {
+        try (ObjectInputStream stream = ((ClusterManager) getManager()).getSessionInputStream(diff, offset, length)) {
             ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
             try {
                 ClassLoader[] loaders = getClassLoaders();
@@ -705,9 +709,10 @@ public class DeltaSession extends StandardSession implements Externalizable,Clus
                 newDeltaRequest = createRequest(null, ((ClusterManagerBase) manager).isRecordAllActions());
             }
 
-            ReplicationStream ois = ((ClusterManagerBase) manager).getReplicationStream(delta);
-            newDeltaRequest.readExternal(ois);
-            ois.close();
+            try (ObjectInputStream ois =
+                    ((ClusterManagerBase) manager).getSessionInputStream(delta, 0, delta.length)) {
+                newDeltaRequest.readExternal(ois);
+            }
 
             DeltaRequest oldDeltaRequest = null;
             lockInternal();
@@ -166,7 +166,9 @@ public final class SecurityClassLoad {
         loader.loadClass(basePackage + "util.buf.HexUtils");
         loader.loadClass(basePackage + "util.buf.StringCache");
         loader.loadClass(basePackage + "util.buf.StringCache$ByteEntry");
+        loader.loadClass(basePackage + "util.buf.StringCache$Cache");
         loader.loadClass(basePackage + "util.buf.StringCache$CharEntry");
+        loader.loadClass(basePackage + "util.buf.StringCache$Entry");
         loader.loadClass(basePackage + "util.buf.UriUtil");
         // collections
         loader.loadClass(basePackage + "util.collections.CaseInsensitiveKeyMap");
@@ -174,6 +176,7 @@ public final class SecurityClassLoad {
         loader.loadClass(basePackage + "util.collections.CaseInsensitiveKeyMap$EntryIterator");
         loader.loadClass(basePackage + "util.collections.CaseInsensitiveKeyMap$EntrySet");
         loader.loadClass(basePackage + "util.collections.CaseInsensitiveKeyMap$Key");
+        loader.loadClass(basePackage + "util.collections.FrequencySketch");
         // http
         loader.loadClass(basePackage + "util.http.CookieProcessor");
         loader.loadClass(basePackage + "util.http.NamesEnumerator");
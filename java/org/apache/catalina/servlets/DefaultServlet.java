@@ -33,6 +33,7 @@ import java.io.Serializable;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.security.AccessController;
@@ -71,6 +72,7 @@ import org.apache.catalina.Context;
 import org.apache.catalina.Globals;
 import org.apache.catalina.WebResource;
 import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.connector.CoyoteOutputStream;
 import org.apache.catalina.connector.RequestFacade;
 import org.apache.catalina.connector.ResponseFacade;
 import org.apache.catalina.util.IOTools;
@@ -1148,9 +1150,9 @@ public class DefaultServlet extends HttpServlet {
                                 // getContent() on other resource
                                 // implementations as that could trigger loading
                                 // the contents of a very large file into memory
-                                byte[] resourceBody = null;
+                                ByteBuffer resourceBody = null;
                                 if (resource instanceof CachedResource) {
-                                    resourceBody = resource.getContent();
+                                    resourceBody = ((CachedResource) resource).getContentBuffer();
                                 }
                                 if (resourceBody == null) {
                                     // Resource content not directly available,
@@ -1158,7 +1160,7 @@ public class DefaultServlet extends HttpServlet {
                                     renderResult = resource.getInputStream();
                                 } else {
                                     // Use the resource content directly
-                                    ostream.write(resourceBody);
+                                    write(resourceBody, ostream);
                                 }
                             }
                         }
@@ -2378,6 +2380,32 @@ public class DefaultServlet extends HttpServlet {
     }
 
 
+    /**
+     * Write the contents of the specified buffer to the specified output
+     * stream. If the output stream is Tomcat's own implementation the buffer
+     * is written directly, avoiding a copy to a byte array.
+     *
+     * @param content   The content to write
+     * @param ostream   The output stream to write to
+     *
+     * @exception IOException if an input/output error occurs
+     */
+    protected void write(ByteBuffer content, ServletOutputStream ostream) throws IOException {
+        if (ostream instanceof CoyoteOutputStream) {
+            ((CoyoteOutputStream) ostream).write(content);
+        } else if (content.hasArray()) {
+            ostream.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+        } else {
+            byte[] buffer = new byte[Math.min(content.remaining(), input)];
+            while (content.hasRemaining()) {
+                int len = Math.min(content.remaining(), buffer.length);
+                content.get(buffer, 0, len);
+                ostream.write(buffer, 0, len);
+            }
+        }
+    }
+
+
     /**
      * Copy the contents of the specified input stream to the specified
      * output stream, and ensure that both streams are closed before returning
@@ -0,0 +1,409 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.io.WriteAbortedException;
+import java.util.Date;
+
+import org.apache.catalina.SessionSerializer.ObjectInputStreamFactory;
+
+/**
+ * Reads the format written by {@link CompactObjectOutputStream}. Extends
+ * {@link ObjectInputStream} so it can be passed to the existing session
+ * de-serialization methods but replaces the entire implementation.
+ */
+class CompactObjectInputStream extends ObjectInputStream {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final InputStream is;
+    private final ObjectInputStreamFactory javaStreamFactory;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+
+
+    /*
+     * The header is expected to have been read and validated by the caller.
+     */
+    CompactObjectInputStream(InputStream is, ObjectInputStreamFactory javaStreamFactory)
+            throws IOException {
+        super();
+        this.is = is;
+        this.javaStreamFactory = javaStreamFactory;
+    }
+
+
+    @Override
+    protected Object readObjectOverride() throws IOException, ClassNotFoundException {
+        int tag = readUnsignedByte();
+        switch (tag) {
+            case CompactSessionSerializer.TAG_NULL:
+                return null;
+            case CompactSessionSerializer.TAG_STRING:
+                return readString();
+            case CompactSessionSerializer.TAG_INTEGER:
+                return Integer.valueOf((int) readVarLong());
+            case CompactSessionSerializer.TAG_LONG:
+                return Long.valueOf(readVarLong());
+            case CompactSessionSerializer.TAG_TRUE:
+                return Boolean.TRUE;
+            case CompactSessionSerializer.TAG_FALSE:
+                return Boolean.FALSE;
+            case CompactSessionSerializer.TAG_SHORT:
+                return Short.valueOf(readShort());
+            case CompactSessionSerializer.TAG_BYTE:
+                return Byte.valueOf(readByte());
+            case CompactSessionSerializer.TAG_CHARACTER:
+                return Character.valueOf(readChar());
+            case CompactSessionSerializer.TAG_FLOAT:
+                return Float.valueOf(readFloat());
+            case CompactSessionSerializer.TAG_DOUBLE:
+                return Double.valueOf(readDouble());
+            case CompactSessionSerializer.TAG_BYTE_ARRAY: {
+                byte[] bytes = new byte[readLength()];
+                readFully(bytes);
+                return bytes;
+            }
+            case CompactSessionSerializer.TAG_DATE:
+                return new Date(readLong());
+            case CompactSessionSerializer.TAG_SERIALIZED: {
+                byte[] bytes = new byte[readLength()];
+                readFully(bytes);
+                try (ObjectInputStream ois = javaStreamFactory.create(new ByteArrayInputStream(bytes))) {
+                    return ois.readObject();
+                }
+            }
+            case CompactSessionSerializer.TAG_ABORTED: {
+                boolean notSerializable = readBoolean();
+                String msg = readString();
+                Exception cause;
+                if (notSerializable) {
+                    cause = new NotSerializableException(msg);
+                } else {
+                    cause = new IOException(msg);
+                }
+                throw new WriteAbortedException(msg, cause);
+            }
+            default:
+                throw new StreamCorruptedException(CompactSessionSerializer.sm.getString(
+                        "compactSessionSerializer.invalidTag", Integer.toString(tag)));
+        }
+    }
+
+
+    @Override
+    public Object readUnshared() throws IOException, ClassNotFoundException {
+        return readObject();
+    }
+
+
+    @Override
+    public void defaultReadObject() throws IOException, ClassNotFoundException {
+        throw new UnsupportedOperationException(CompactSessionSerializer.sm.getString(
+                "compactSessionSerializer.notSupported", "defaultReadObject"));
+    }
+
+
+    @Override
+    public GetField readFields() throws IOException, ClassNotFoundException {
+        throw new UnsupportedOperationException(CompactSessionSerializer.sm.getString(
+                "compactSessionSerializer.notSupported", "readFields"));
+    }
+
+
+    // --------------------------------------------------------- DataInput methods
+
+    @Override
+    public int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos++] & 0xFF;
+    }
+
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos == limit) {
+            if (len >= buf.length) {
+                // Skip the buffer for large reads
+                return is.read(b, off, len);
+            }
+            if (!fill()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+
+    @Override
+    public int available() throws IOException {
+        return limit - pos + is.available();
+    }
+
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        int buffered = limit - pos;
+        if (n <= buffered) {
+            pos += (int) n;
+            return n;
+        }
+        pos = limit;
+        return buffered + is.skip(n - buffered);
+    }
+
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = read(b, off, len);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            off += n;
+            len -= n;
+        }
+    }
+
+
+    @Override
+    public int skipBytes(int len) throws IOException {
+        int skipped = 0;
+        while (skipped < len) {
+            if (pos == limit && !fill()) {
+                break;
+            }
+            int n = Math.min(len - skipped, limit - pos);
+            pos += n;
+            skipped += n;
+        }
+        return skipped;
+    }
+
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readUnsignedByte() != 0;
+    }
+
+
+    @Override
+    public byte readByte() throws IOException {
+        return (byte) readUnsignedByte();
+    }
+
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        int b = read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+
+    @Override
+    public short readShort() throws IOException {
+        return (short) readUnsignedShort();
+    }
+
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        require(2);
+        return ((buf[pos++] & 0xFF) << 8) | (buf[pos++] & 0xFF);
+    }
+
+
+    @Override
+    public char readChar() throws IOException {
+        return (char) readUnsignedShort();
+    }
+
+
+    @Override
+    public int readInt() throws IOException {
+        require(4);
+        return ((buf[pos++] & 0xFF) << 24) | ((buf[pos++] & 0xFF) << 16) |
+                ((buf[pos++] & 0xFF) << 8) | (buf[pos++] & 0xFF);
+    }
+
+
+    @Override
+    public long readLong() throws IOException {
+        return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+
+    @Override
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+
+    @Override
+    @Deprecated
+    public String readLine() throws IOException {
+        throw new UnsupportedOperationException(CompactSessionSerializer.sm.getString(
+                "compactSessionSerializer.notSupported", "readLine"));
+    }
+
+
+    @Override
+    public String readUTF() throws IOException {
+        return readString();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        is.close();
+    }
+
+
+    // --------------------------------------------------------- Private methods
+
+    private String readString() throws IOException {
+        int len = readLength();
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i++) {
+            int b = readUnsignedByte();
+            if (b < 0x80) {
+                chars[i] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[i] = (char) (((b & 0x1F) << 6) | readContinuation());
+            } else if ((b & 0xF0) == 0xE0) {
+                int c = (b & 0x0F) << 12;
+                c |= readContinuation() << 6;
+                c |= readContinuation();
+                chars[i] = (char) c;
+            } else {
+                throw new StreamCorruptedException(
+                        CompactSessionSerializer.sm.getString("compactSessionSerializer.invalidString"));
+            }
+        }
+        return new String(chars);
+    }
+
+
+    private int readContinuation() throws IOException {
+        int b = readUnsignedByte();
+        if ((b & 0xC0) != 0x80) {
+            throw new StreamCorruptedException(
+                    CompactSessionSerializer.sm.getString("compactSessionSerializer.invalidString"));
+        }
+        return b & 0x3F;
+    }
+
+
+    private int readLength() throws IOException {
+        long len = readVarLong();
+        if (len < 0 || len > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException(CompactSessionSerializer.sm.getString(
+                    "compactSessionSerializer.invalidLength", Long.toString(len)));
+        }
+        return (int) len;
+    }
+
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 63) {
+                throw new StreamCorruptedException(CompactSessionSerializer.sm.getString(
+                        "compactSessionSerializer.invalidLength", "?"));
+            }
+            b = readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+
+    /*
+     * Ensure at least len bytes are available in the buffer. len must not be
+     * greater than the buffer size.
+     */
+    private void require(int len) throws IOException {
+        if (limit - pos >= len) {
+            return;
+        }
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        while (limit < len) {
+            int n = is.read(buf, limit, buf.length - limit);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            limit += n;
+        }
+    }
+
+
+    private boolean fill() throws IOException {
+        int n;
+        do {
+            n = is.read(buf, 0, buf.length);
+        } while (n == 0);
+        if (n < 0) {
+            pos = 0;
+            limit = 0;
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Date;
+
+/**
+ * Writes the format read by {@link CompactObjectInputStream}. Extends
+ * {@link ObjectOutputStream} so it can be passed to the existing session
+ * serialization methods but replaces the entire implementation.
+ */
+class CompactObjectOutputStream extends ObjectOutputStream {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final OutputStream os;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int count = 0;
+
+    // Created on first use
+    private SerializationBuffer serializationBuffer;
+
+
+    CompactObjectOutputStream(OutputStream os) throws IOException {
+        super();
+        this.os = os;
+        write(CompactSessionSerializer.HEADER);
+    }
+
+
+    @Override
+    protected void writeObjectOverride(Object obj) throws IOException {
+        if (obj == null) {
+            writeByte(CompactSessionSerializer.TAG_NULL);
+            return;
+        }
+        Class<?> clazz = obj.getClass();
+        if (clazz == String.class) {
+            writeByte(CompactSessionSerializer.TAG_STRING);
+            writeString((String) obj);
+        } else if (clazz == Integer.class) {
+            writeByte(CompactSessionSerializer.TAG_INTEGER);
+            writeVarLong(((Integer) obj).intValue());
+        } else if (clazz == Long.class) {
+            writeByte(CompactSessionSerializer.TAG_LONG);
+            writeVarLong(((Long) obj).longValue());
+        } else if (clazz == Boolean.class) {
+            if (((Boolean) obj).booleanValue()) {
+                writeByte(CompactSessionSerializer.TAG_TRUE);
+            } else {
+                writeByte(CompactSessionSerializer.TAG_FALSE);
+            }
+        } else if (clazz == Short.class) {
+            writeByte(CompactSessionSerializer.TAG_SHORT);
+            writeShort(((Short) obj).shortValue());
+        } else if (clazz == Byte.class) {
+            writeByte(CompactSessionSerializer.TAG_BYTE);
+            writeByte(((Byte) obj).byteValue());
+        } else if (clazz == Character.class) {
+            writeByte(CompactSessionSerializer.TAG_CHARACTER);
+            writeChar(((Character) obj).charValue());
+        } else if (clazz == Float.class) {
+            writeByte(CompactSessionSerializer.TAG_FLOAT);
+            writeFloat(((Float) obj).floatValue());
+        } else if (clazz == Double.class) {
+            writeByte(CompactSessionSerializer.TAG_DOUBLE);
+            writeDouble(((Double) obj).doubleValue());
+        } else if (clazz == byte[].class) {
+            byte[] bytes = (byte[]) obj;
+            writeByte(CompactSessionSerializer.TAG_BYTE_ARRAY);
+            writeVarLong(bytes.length);
+            write(bytes);
+        } else if (clazz == Date.class) {
+            writeByte(CompactSessionSerializer.TAG_DATE);
+            writeLong(((Date) obj).getTime());
+        } else {
+            writeSerialized(obj);
+        }
+    }
+
+
+    /*
+     * Each value is serialized independently so that a value that cannot be
+     * serialized does not prevent subsequent values from being read. Mirror
+     * the behaviour of ObjectOutputStream and write a marker so the reader
+     * throws a WriteAbortedException for the value.
+     */
+    private void writeSerialized(Object obj) throws IOException {
+        if (serializationBuffer == null) {
+            serializationBuffer = new SerializationBuffer();
+        } else {
+            serializationBuffer.reset();
+        }
+        try (ObjectOutputStream oos = new ObjectOutputStream(serializationBuffer)) {
+            oos.writeObject(obj);
+        } catch (IOException ioe) {
+            writeByte(CompactSessionSerializer.TAG_ABORTED);
+            writeBoolean(ioe instanceof NotSerializableException);
+            writeString(ioe.toString());
+            throw ioe;
+        }
+        writeByte(CompactSessionSerializer.TAG_SERIALIZED);
+        writeVarLong(serializationBuffer.size());
+        serializationBuffer.writeTo(this);
+    }
+
+
+    @Override
+    public void writeUnshared(Object obj) throws IOException {
+        writeObject(obj);
+    }
+
+
+    @Override
+    public void reset() throws IOException {
+        // NO-OP. There are no back references to reset.
+    }
+
+
+    @Override
+    public void useProtocolVersion(int version) throws IOException {
+        // NO-OP. The format does not depend on the Java serialization protocol
+        // version.
+    }
+
+
+    @Override
+    public void defaultWriteObject() throws IOException {
+        throw new UnsupportedOperationException(
+                CompactSessionSerializer.sm.getString("compactSessionSerializer.notSupported", "defaultWriteObject"));
+    }
+
+
+    @Override
+    public PutField putFields() throws IOException {
+        throw new UnsupportedOperationException(
+                CompactSessionSerializer.sm.getString("compactSessionSerializer.notSupported", "putFields"));
+    }
+
+
+    @Override
+    public void writeFields() throws IOException {
+        throw new UnsupportedOperationException(
+                CompactSessionSerializer.sm.getString("compactSessionSerializer.notSupported", "writeFields"));
+    }
+
+
+    // -------------------------------------------------------- DataOutput methods
+
+    @Override
+    public void write(int b) throws IOException {
+        ensure(1);
+        buf[count++] = (byte) b;
+    }
+
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len > buf.length - count) {
+            flushBuffer();
+            if (len > buf.length) {
+                os.write(b, off, len);
+                return;
+            }
+        }
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+
+    @Override
+    public void writeBoolean(boolean v) throws IOException {
+        write(v ? 1 : 0);
+    }
+
+
+    @Override
+    public void writeByte(int v) throws IOException {
+        write(v);
+    }
+
+
+    @Override
+    public void writeShort(int v) throws IOException {
+        ensure(2);
+        buf[count++] = (byte) (v >>> 8);
+        buf[count++] = (byte) v;
+    }
+
+
+    @Override
+    public void writeChar(int v) throws IOException {
+        writeShort(v);
+    }
+
+
+    @Override
+    public void writeInt(int v) throws IOException {
+        ensure(4);
+        buf[count++] = (byte) (v >>> 24);
+        buf[count++] = (byte) (v >>> 16);
+        buf[count++] = (byte) (v >>> 8);
+        buf[count++] = (byte) v;
+    }
+
+
+    @Override
+    public void writeLong(long v) throws IOException {
+        writeInt((int) (v >>> 32));
+        writeInt((int) v);
+    }
+
+
+    @Override
+    public void writeFloat(float v) throws IOException {
+        writeInt(Float.floatToIntBits(v));
+    }
+
+
+    @Override
+    public void writeDouble(double v) throws IOException {
+        writeLong(Double.doubleToLongBits(v));
+    }
+
+
+    @Override
+    public void writeBytes(String s) throws IOException {
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            write(s.charAt(i));
+        }
+    }
+
+
+    @Override
+    public void writeChars(String s) throws IOException {
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            writeChar(s.charAt(i));
+        }
+    }
+
+
+    @Override
+    public void writeUTF(String str) throws IOException {
+        writeString(str);
+    }
+
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        os.flush();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        os.close();
+    }
+
+
+    // --------------------------------------------------------- Private methods
+
+    /*
+     * The length in chars followed by each char encoded using one to three
+     * bytes in the same way as modified UTF-8 (except for \u0000 which uses a
+     * single byte). Unlike UTF-8, unpaired surrogates are preserved.
+     */
+    private void writeString(String s) throws IOException {
+        int len = s.length();
+        writeVarLong(len);
+        int i = 0;
+        while (i < len) {
+            int end = Math.min(len, i + buf.length / 3);
+            ensure((end - i) * 3);
+            byte[] buf = this.buf;
+            int count = this.count;
+            for (; i < end; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    buf[count++] = (byte) c;
+                } else if (c < 0x800) {
+                    buf[count++] = (byte) (0xC0 | (c >> 6));
+                    buf[count++] = (byte) (0x80 | (c & 0x3F));
+                } else {
+                    buf[count++] = (byte) (0xE0 | (c >> 12));
+                    buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buf[count++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            this.count = count;
+        }
+    }
+
+
+    /*
+     * Zig-zag encoded so small negative values are also short.
+     */
+    private void writeVarLong(long v) throws IOException {
+        ensure(10);
+        long value = (v << 1) ^ (v >> 63);
+        while ((value & ~0x7FL) != 0) {
+            buf[count++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[count++] = (byte) value;
+    }
+
+
+    private void ensure(int len) throws IOException {
+        if (len > buf.length - count) {
+            flushBuffer();
+        }
+    }
+
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            os.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+
+    private static class SerializationBuffer extends ByteArrayOutputStream {
+    }
+}
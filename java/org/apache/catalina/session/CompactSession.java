@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.catalina.Manager;
+import org.apache.catalina.SessionListener;
+import org.apache.tomcat.util.collections.CompactConcurrentMap;
+
+/**
+ * A {@link StandardSession} that requires less memory when a session has few
+ * attributes and notes, as is typical. Attributes and notes are held in
+ * {@link CompactConcurrentMap}s, which store a small number of entries in a
+ * single array and only create a hash table when the number of entries grows
+ * beyond a threshold. The list of session listeners is not created until the
+ * first listener is added.
+ * <p>
+ * In all other respects this implementation behaves in the same way as
+ * {@link StandardSession}.
+ */
+public class CompactSession extends StandardSession {
+
+    private static final long serialVersionUID = 1L;
+
+
+    /**
+     * Construct a new Session associated with the specified Manager.
+     *
+     * @param manager The manager with which this Session is associated
+     */
+    public CompactSession(Manager manager) {
+        super(manager);
+    }
+
+
+    @Override
+    protected ConcurrentMap<String, Object> createAttributeMap() {
+        return new CompactConcurrentMap<>();
+    }
+
+
+    @Override
+    protected Map<String, Object> createNoteMap() {
+        return new CompactConcurrentMap<>();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Most sessions never have a session listener so the list is not created
+     * until the first listener is added.
+     */
+    @Override
+    protected ArrayList<SessionListener> createListenerList() {
+        return null;
+    }
+}
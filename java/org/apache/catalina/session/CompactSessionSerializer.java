@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+
+import org.apache.catalina.SessionSerializer;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Serializes sessions using a compact, tagged binary format. Values of common
+ * JDK types ({@link String}, the primitive wrapper types, <code>byte[]</code>
+ * and {@link java.util.Date}) are encoded directly. All other values are
+ * written using Java serialization, with each value serialized independently of
+ * the others.
+ * <p>
+ * Data written using Java serialization (e.g. by {@link JavaSessionSerializer}
+ * or by an earlier version of Tomcat) is detected and read using Java
+ * serialization so existing persisted sessions can still be loaded after
+ * switching to this serializer. The reverse is not true.
+ * <p>
+ * Note that values of the directly encoded types are not subject to the
+ * Manager's <code>sessionAttributeValueClassNameFilter</code> when read.
+ */
+public class CompactSessionSerializer implements SessionSerializer {
+
+    static final StringManager sm = StringManager.getManager(CompactSessionSerializer.class);
+
+    static final byte[] HEADER = new byte[] { 'T', 'C', 1 };
+
+    static final byte TAG_NULL = 0;
+    static final byte TAG_STRING = 1;
+    static final byte TAG_INTEGER = 2;
+    static final byte TAG_LONG = 3;
+    static final byte TAG_TRUE = 4;
+    static final byte TAG_FALSE = 5;
+    static final byte TAG_SHORT = 6;
+    static final byte TAG_BYTE = 7;
+    static final byte TAG_CHARACTER = 8;
+    static final byte TAG_FLOAT = 9;
+    static final byte TAG_DOUBLE = 10;
+    static final byte TAG_BYTE_ARRAY = 11;
+    static final byte TAG_DATE = 12;
+    static final byte TAG_SERIALIZED = 13;
+    static final byte TAG_ABORTED = 14;
+
+
+    @Override
+    public ObjectOutputStream getObjectOutputStream(OutputStream os) throws IOException {
+        return new CompactObjectOutputStream(os);
+    }
+
+
+    @Override
+    public ObjectInputStream getObjectInputStream(InputStream is,
+            ObjectInputStreamFactory javaStreamFactory) throws IOException {
+        byte[] header = new byte[HEADER.length];
+        int read = 0;
+        while (read < header.length) {
+            int n = is.read(header, read, header.length - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        if (read == header.length && header[0] == HEADER[0] && header[1] == HEADER[1]) {
+            if (header[2] != HEADER[2]) {
+                throw new IOException(sm.getString("compactSessionSerializer.version",
+                        Integer.valueOf(header[2])));
+            }
+            return new CompactObjectInputStream(is, javaStreamFactory);
+        }
+        // Not written by this serializer. Assume Java serialization.
+        return javaStreamFactory.create(new SequenceInputStream(new ByteArrayInputStream(header, 0, read), is));
+    }
+}
@@ -17,7 +17,6 @@
 package org.apache.catalina.session;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -620,8 +619,7 @@ public class DataSourceStore extends StoreBase {
                     remove(session.getIdInternal(), _conn);
 
                     bos = new ByteArrayOutputStream();
-                    try (ObjectOutputStream oos =
-                            new ObjectOutputStream(new BufferedOutputStream(bos))) {
+                    try (ObjectOutputStream oos = getObjectOutputStream(bos)) {
                         ((StandardSession) session).writeObjectData(oos);
                     }
                     byte[] obs = bos.toByteArray();
@@ -657,6 +655,102 @@ public class DataSourceStore extends StoreBase {
     }
 
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The sessions are serialized and then written using a single transaction
+     * that uses JDBC batches to remove any existing entries for the sessions
+     * and insert the new ones.
+     */
+    @Override
+    public void saveAll(Session[] sessions) throws IOException {
+        String removeSql = "DELETE FROM " + sessionTable
+                + " WHERE " + sessionIdCol + " = ?  AND "
+                + sessionAppCol + " = ?";
+        String saveSql = "INSERT INTO " + sessionTable + " ("
+                + sessionIdCol + ", " + sessionAppCol + ", "
+                + sessionDataCol + ", " + sessionValidCol
+                + ", " + sessionMaxInactiveCol + ", "
+                + sessionLastAccessedCol
+                + ") VALUES (?, ?, ?, ?, ?, ?)";
+
+        // Serialize the sessions before obtaining a connection
+        List<Session> toSave = new ArrayList<>(sessions.length);
+        List<byte[]> data = new ArrayList<>(sessions.length);
+        for (Session session : sessions) {
+            synchronized (session) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                try (ObjectOutputStream oos = getObjectOutputStream(bos)) {
+                    ((StandardSession) session).writeObjectData(oos);
+                } catch (IOException e) {
+                    manager.getContext().getLogger().error(
+                            sm.getString("persistentManager.serializeError", session.getIdInternal(), e));
+                    continue;
+                }
+                toSave.add(session);
+                data.add(bos.toByteArray());
+            }
+        }
+        if (toSave.isEmpty()) {
+            return;
+        }
+
+        boolean saved = false;
+        int numberOfTries = 2;
+        while (numberOfTries > 0) {
+            Connection _conn = getConnection();
+            if (_conn == null) {
+                return;
+            }
+
+            try {
+                boolean autoCommit = _conn.getAutoCommit();
+                _conn.setAutoCommit(false);
+                try (PreparedStatement preparedRemoveSql = _conn.prepareStatement(removeSql);
+                        PreparedStatement preparedSaveSql = _conn.prepareStatement(saveSql)) {
+                    for (Session session : toSave) {
+                        preparedRemoveSql.setString(1, session.getIdInternal());
+                        preparedRemoveSql.setString(2, getName());
+                        preparedRemoveSql.addBatch();
+                    }
+                    preparedRemoveSql.executeBatch();
+                    for (int i = 0; i < toSave.size(); i++) {
+                        Session session = toSave.get(i);
+                        byte[] obs = data.get(i);
+                        preparedSaveSql.setString(1, session.getIdInternal());
+                        preparedSaveSql.setString(2, getName());
+                        preparedSaveSql.setBinaryStream(3, new ByteArrayInputStream(obs), obs.length);
+                        preparedSaveSql.setString(4, session.isValid() ? "1" : "0");
+                        preparedSaveSql.setInt(5, session.getMaxInactiveInterval());
+                        preparedSaveSql.setLong(6, session.getLastAccessedTime());
+                        preparedSaveSql.addBatch();
+                    }
+                    preparedSaveSql.executeBatch();
+                    _conn.commit();
+                    saved = true;
+                    // Break out after the finally block
+                    numberOfTries = 0;
+                } catch (SQLException e) {
+                    _conn.rollback();
+                    throw e;
+                } finally {
+                    _conn.setAutoCommit(autoCommit);
+                }
+            } catch (SQLException e) {
+                manager.getContext().getLogger().error(sm.getString(getStoreName() + ".SQLException", e));
+            } finally {
+                release(_conn);
+            }
+            numberOfTries--;
+        }
+
+        if (saved && manager.getContext().getLogger().isDebugEnabled()) {
+            manager.getContext().getLogger().debug(sm.getString(getStoreName() + ".savingBatch",
+                    Integer.valueOf(toSave.size()), sessionTable));
+        }
+    }
+
+
     // --------------------------------------------------------- Protected Methods
 
     /**
@@ -16,25 +16,31 @@
  */
 package org.apache.catalina.session;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import jakarta.servlet.ServletContext;
 
 import org.apache.catalina.Context;
 import org.apache.catalina.Globals;
+import org.apache.catalina.LifecycleException;
 import org.apache.catalina.Session;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.res.StringManager;
+import org.apache.tomcat.util.threads.TaskThreadFactory;
 
 /**
  * Concrete implementation of the <b>Store</b> interface that utilizes
@@ -85,6 +91,19 @@ public final class FileStore extends StoreBase {
     private static final String threadName = "FileStore";
 
 
+    /**
+     * The number of threads used to write sessions when a group of sessions is
+     * saved.
+     */
+    private int saveThreads = 1;
+
+
+    /**
+     * The executor used to write sessions in parallel, if any.
+     */
+    private ExecutorService saveExecutor = null;
+
+
     // ------------------------------------------------------------- Properties
 
     /**
@@ -108,6 +127,31 @@ public final class FileStore extends StoreBase {
     }
 
 
+    /**
+     * @return The number of threads used to write sessions when a group of
+     *         sessions is saved.
+     */
+    public int getSaveThreads() {
+        return saveThreads;
+    }
+
+
+    /**
+     * Set the number of threads used to write sessions, each to its own file,
+     * when a group of sessions is saved by a write-behind
+     * {@link PersistentManager}. Values of less than two mean the sessions are
+     * written one at a time by the calling thread.
+     *
+     * @param saveThreads The new number of threads
+     */
+    public void setSaveThreads(int saveThreads) {
+        int oldSaveThreads = this.saveThreads;
+        this.saveThreads = saveThreads;
+        support.firePropertyChange("saveThreads", Integer.valueOf(oldSaveThreads),
+                Integer.valueOf(this.saveThreads));
+    }
+
+
     /**
      * @return The thread name for this Store.
      */
@@ -293,12 +337,85 @@ public final class FileStore extends StoreBase {
         }
 
         try (FileOutputStream fos = new FileOutputStream(file.getAbsolutePath());
-                ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(fos))) {
+                ObjectOutputStream oos = getObjectOutputStream(fos)) {
             ((StandardSession)session).writeObjectData(oos);
         }
     }
 
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If {@link #getSaveThreads()} is greater than one, the sessions are written
+     * in parallel.
+     */
+    @Override
+    public void saveAll(Session[] sessions) throws IOException {
+        ExecutorService executor = saveExecutor;
+        if (executor == null || sessions.length < 2) {
+            super.saveAll(sessions);
+            return;
+        }
+
+        List<Future<Void>> futures = new ArrayList<>(sessions.length);
+        for (Session session : sessions) {
+            futures.add(executor.submit(() -> {
+                save(session);
+                return null;
+            }));
+        }
+
+        IOException ioe = null;
+        for (Future<Void> future : futures) {
+            IOException e = null;
+            try {
+                future.get();
+            } catch (ExecutionException ee) {
+                Throwable cause = ee.getCause();
+                if (cause instanceof IOException) {
+                    e = (IOException) cause;
+                } else {
+                    e = new IOException(cause);
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                e = new InterruptedIOException();
+                e.initCause(ie);
+            }
+            if (e != null) {
+                if (ioe == null) {
+                    ioe = e;
+                } else {
+                    ioe.addSuppressed(e);
+                }
+            }
+        }
+        if (ioe != null) {
+            throw ioe;
+        }
+    }
+
+
+    @Override
+    protected synchronized void startInternal() throws LifecycleException {
+        if (saveThreads > 1) {
+            saveExecutor = Executors.newFixedThreadPool(saveThreads,
+                    new TaskThreadFactory(threadName + "-save-", true, Thread.NORM_PRIORITY));
+        }
+        super.startInternal();
+    }
+
+
+    @Override
+    protected synchronized void stopInternal() throws LifecycleException {
+        super.stopInternal();
+        if (saveExecutor != null) {
+            saveExecutor.shutdown();
+            saveExecutor = null;
+        }
+    }
+
+
     // -------------------------------------------------------- Private Methods
 
     /**
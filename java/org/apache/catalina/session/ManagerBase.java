@@ -43,6 +43,7 @@ import org.apache.catalina.LifecycleState;
 import org.apache.catalina.Manager;
 import org.apache.catalina.Session;
 import org.apache.catalina.SessionIdGenerator;
+import org.apache.catalina.SessionSerializer;
 import org.apache.catalina.util.LifecycleMBeanBase;
 import org.apache.catalina.util.SessionIdGeneratorBase;
 import org.apache.catalina.util.StandardSessionIdGenerator;
@@ -208,6 +209,24 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
 
     private boolean sessionLastAccessAtStart = Globals.STRICT_SERVLET_COMPLIANCE;
 
+    private SessionSerializer sessionSerializer = new JavaSessionSerializer();
+
+    private boolean indexedExpiration = false;
+
+    private boolean compactSessions = false;
+
+    /*
+     * The index of sessions by expiration time. Only used if indexed
+     * expiration is enabled.
+     */
+    private volatile SessionExpirationWheel expirationWheel = null;
+
+    /*
+     * Set if a session is added that cannot be indexed by expiration time.
+     * Expiration then falls back to examining every session.
+     */
+    private volatile boolean unindexedSessions = false;
+
     // ------------------------------------------------------------ Constructors
 
     public ManagerBase() {
@@ -460,6 +479,72 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
     }
 
 
+    /**
+     * @return the serializer used when sessions are persisted, saved across
+     *         restarts or replicated
+     */
+    public SessionSerializer getSessionSerializer() {
+        return sessionSerializer;
+    }
+
+
+    /**
+     * Set the serializer used when sessions are persisted, saved across
+     * restarts or replicated. The default is {@link JavaSessionSerializer}.
+     *
+     * @param sessionSerializer The serializer to use
+     */
+    public void setSessionSerializer(SessionSerializer sessionSerializer) {
+        this.sessionSerializer = sessionSerializer;
+    }
+
+
+    /**
+     * @return {@code true} if sessions are indexed by expiration time so that
+     *         expiration processing only examines sessions that are due to
+     *         expire
+     */
+    public boolean getIndexedExpiration() {
+        return indexedExpiration;
+    }
+
+
+    /**
+     * Configure whether sessions are indexed by expiration time so that
+     * expiration processing only examines sessions that are due to expire
+     * rather than every session. Changes take effect when the Manager is next
+     * started.
+     *
+     * @param indexedExpiration {@code true} to index sessions by expiration
+     *                          time
+     */
+    public void setIndexedExpiration(boolean indexedExpiration) {
+        this.indexedExpiration = indexedExpiration;
+    }
+
+
+    /**
+     * @return {@code true} if this Manager creates {@link CompactSession}s
+     *         rather than {@link StandardSession}s
+     */
+    public boolean getCompactSessions() {
+        return compactSessions;
+    }
+
+
+    /**
+     * Configure whether this Manager creates {@link CompactSession}s, which
+     * require less memory when sessions have few attributes, rather than
+     * {@link StandardSession}s. Managers that create their own session
+     * implementation ignore this setting.
+     *
+     * @param compactSessions {@code true} to create compact sessions
+     */
+    public void setCompactSessions(boolean compactSessions) {
+        this.compactSessions = compactSessions;
+    }
+
+
     /**
      * @return The descriptive short name of this Manager implementation.
      */
@@ -626,17 +711,11 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
     public void processExpires() {
 
         long timeNow = System.currentTimeMillis();
-        Session sessions[] = findSessions();
-        int expireHere = 0 ;
 
         if(log.isDebugEnabled()) {
-            log.debug("Start expire sessions " + getName() + " at " + timeNow + " sessioncount " + sessions.length);
-        }
-        for (Session session : sessions) {
-            if (session != null && !session.isValid()) {
-                expireHere++;
-            }
+            log.debug("Start expire sessions " + getName() + " at " + timeNow + " sessioncount " + getActiveSessions());
         }
+        int expireHere = expireSessions(timeNow);
         long timeEnd = System.currentTimeMillis();
         if(log.isDebugEnabled()) {
             log.debug("End expire sessions " + getName() + " processingTime " + (timeEnd - timeNow) + " expired sessions: " + expireHere);
@@ -646,6 +725,80 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
     }
 
 
+    /**
+     * Expire the sessions that are no longer valid. If indexed expiration is
+     * enabled, only the sessions that are due to expire are examined.
+     *
+     * @param timeNow The current time in milliseconds since the epoch
+     *
+     * @return The number of sessions that were found to be invalid
+     */
+    protected int expireSessions(long timeNow) {
+        int expireHere = 0;
+        SessionExpirationWheel expirationWheel = this.expirationWheel;
+        if (expirationWheel == null || unindexedSessions) {
+            Session sessions[] = findSessions();
+            for (Session session : sessions) {
+                if (session != null && !session.isValid()) {
+                    expireHere++;
+                }
+            }
+        } else {
+            for (StandardSession session : expirationWheel.expire(timeNow)) {
+                if (!isScheduled(session)) {
+                    // No longer managed by this Manager or already expired
+                    continue;
+                }
+                if (!session.isValid()) {
+                    expireHere++;
+                } else {
+                    // Accessed since it was scheduled or in use
+                    scheduleExpiration(session);
+                }
+            }
+        }
+        return expireHere;
+    }
+
+
+    /**
+     * Update the expiration index, if any, with the time at which the given
+     * session is next due to expire. This is called when a session is added to
+     * this Manager and when its maximum inactive interval changes. It is not
+     * necessary to call this when a session is accessed.
+     *
+     * @param session The session
+     */
+    protected void scheduleExpiration(Session session) {
+        SessionExpirationWheel expirationWheel = this.expirationWheel;
+        if (expirationWheel == null) {
+            return;
+        }
+        if (!(session instanceof StandardSession)) {
+            unindexedSessions = true;
+            return;
+        }
+        StandardSession standardSession = (StandardSession) session;
+        int maxInactiveInterval = session.getMaxInactiveInterval();
+        if (!isScheduled(standardSession) || maxInactiveInterval <= 0) {
+            expirationWheel.remove(standardSession);
+        } else {
+            expirationWheel.schedule(standardSession, System.currentTimeMillis() +
+                    maxInactiveInterval * 1000L - session.getIdleTimeInternal());
+        }
+    }
+
+
+    /*
+     * Checks if the session belongs in the expiration index. This must not look
+     * the session up in the sessions Map as, for some Map implementations,
+     * that is not a simple lookup.
+     */
+    private boolean isScheduled(StandardSession session) {
+        return session.getIdInternal() != null && session.getManager() == this && session.isValidInternal();
+    }
+
+
     @Override
     protected void initInternal() throws LifecycleException {
         super.initInternal();
@@ -659,6 +812,17 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
     @Override
     protected void startInternal() throws LifecycleException {
 
+        unindexedSessions = false;
+        if (getIndexedExpiration()) {
+            // One second ticks with a rotation of a little over an hour
+            expirationWheel = new SessionExpirationWheel(1000, 4096, System.currentTimeMillis());
+            for (Session session : findSessions()) {
+                scheduleExpiration(session);
+            }
+        } else {
+            expirationWheel = null;
+        }
+
         // Ensure caches for timing stats are the right size by filling with
         // nulls.
         while (sessionCreationTiming.size() < TIMING_STATS_CACHE_SIZE) {
@@ -709,6 +873,7 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
     @Override
     public void add(Session session) {
         sessions.put(session.getIdInternal(), session);
+        scheduleExpiration(session);
         int size = getActiveSessions();
         if( size > maxActive ) {
             synchronized(maxActiveUpdateLock) {
@@ -808,6 +973,10 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
         if (session.getIdInternal() != null) {
             sessions.remove(session.getIdInternal());
         }
+        SessionExpirationWheel expirationWheel = this.expirationWheel;
+        if (expirationWheel != null && session instanceof StandardSession) {
+            expirationWheel.remove((StandardSession) session);
+        }
     }
 
 
@@ -895,6 +1064,9 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
      * @return a new session for use with this manager
      */
     protected StandardSession getNewSession() {
+        if (compactSessions) {
+            return new CompactSession(this);
+        }
         return new StandardSession(this);
     }
 
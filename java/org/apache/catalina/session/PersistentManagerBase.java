@@ -20,15 +20,22 @@ import java.io.IOException;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.catalina.Container;
 import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleState;
+import org.apache.catalina.Service;
 import org.apache.catalina.Session;
 import org.apache.catalina.Store;
 import org.apache.catalina.StoreManager;
@@ -115,6 +122,22 @@ public abstract class PersistentManagerBase extends ManagerBase
         }
     }
 
+    private class PrivilegedStoreSaveAll
+        implements PrivilegedExceptionAction<Void> {
+
+        private Session[] sessions;
+
+        PrivilegedStoreSaveAll(Session[] sessions) {
+            this.sessions = sessions;
+        }
+
+        @Override
+        public Void run() throws Exception{
+           store.saveAll(sessions);
+           return null;
+        }
+    }
+
     private class PrivilegedStoreKeys
         implements PrivilegedExceptionAction<String[]> {
 
@@ -191,6 +214,42 @@ public abstract class PersistentManagerBase extends ManagerBase
     private final ThreadLocal<Session> sessionToSwapIn = new ThreadLocal<>();
 
 
+    /**
+     * Should sessions be written to, and removed from, the Store
+     * asynchronously rather than by the thread that triggers the write or
+     * removal?
+     */
+    private boolean writeBehind = false;
+
+
+    /**
+     * The maximum number of sessions passed to the Store in a single call when
+     * write-behind is enabled.
+     */
+    private int writeBehindBatchSize = 100;
+
+
+    /*
+     * Store operations waiting to be performed when write-behind is enabled.
+     * Keyed by session ID so that repeated operations for the same session are
+     * coalesced. An operation remains in the map until it has been performed
+     * so the insertion order keeps any later operation for the same session
+     * behind one that is in progress. Guarded by itself.
+     */
+    private final Map<String,StoreOperation> pendingStoreOperations = new LinkedHashMap<>();
+
+    /*
+     * Ensures only one thread performs the queued Store operations at a time.
+     */
+    private final Object storeOperationsLock = new Object();
+
+    private final AtomicBoolean storeOperationsScheduled = new AtomicBoolean(false);
+
+    private final AtomicLong writeBehindCoalesced = new AtomicLong(0);
+
+    private volatile long writeBehindMaxLag = 0;
+
+
     // ------------------------------------------------------------- Properties
 
 
@@ -306,6 +365,107 @@ public abstract class PersistentManagerBase extends ManagerBase
     }
 
 
+    /**
+     * @return {@code true} if sessions are written to, and removed from, the
+     *         Store asynchronously.
+     */
+    public boolean getWriteBehind() {
+        return writeBehind;
+    }
+
+
+    /**
+     * Configure whether sessions are written to, and removed from, the Store
+     * asynchronously. When enabled, sessions that need to be backed up,
+     * swapped out or removed are queued by the thread that would otherwise
+     * have accessed the Store and the queued operations are performed
+     * separately using the utility executor. Repeated operations for the same
+     * session are coalesced and sessions that need to be backed up are passed
+     * to {@link Store#saveAll(Session[])} in batches.
+     *
+     * @param writeBehind {@code true} to enable write-behind
+     */
+    public void setWriteBehind(boolean writeBehind) {
+        boolean oldWriteBehind = this.writeBehind;
+        this.writeBehind = writeBehind;
+        support.firePropertyChange("writeBehind",
+                                   Boolean.valueOf(oldWriteBehind),
+                                   Boolean.valueOf(this.writeBehind));
+    }
+
+
+    /**
+     * @return The maximum number of sessions passed to the Store in a single
+     *         call when write-behind is enabled.
+     */
+    public int getWriteBehindBatchSize() {
+        return writeBehindBatchSize;
+    }
+
+
+    /**
+     * Set the maximum number of sessions passed to the Store in a single call
+     * when write-behind is enabled.
+     *
+     * @param writeBehindBatchSize The new maximum batch size
+     */
+    public void setWriteBehindBatchSize(int writeBehindBatchSize) {
+        int oldWriteBehindBatchSize = this.writeBehindBatchSize;
+        this.writeBehindBatchSize = writeBehindBatchSize;
+        support.firePropertyChange("writeBehindBatchSize",
+                                   Integer.valueOf(oldWriteBehindBatchSize),
+                                   Integer.valueOf(this.writeBehindBatchSize));
+    }
+
+
+    /**
+     * @return The number of Store operations waiting to be performed when
+     *         write-behind is enabled.
+     */
+    public int getWriteBehindQueueSize() {
+        synchronized (pendingStoreOperations) {
+            return pendingStoreOperations.size();
+        }
+    }
+
+
+    /**
+     * @return The time in milliseconds that the oldest Store operation that is
+     *         waiting to be performed has been queued, or zero if no
+     *         operations are queued.
+     */
+    public long getWriteBehindQueueLag() {
+        synchronized (pendingStoreOperations) {
+            long oldest = Long.MAX_VALUE;
+            for (StoreOperation operation : pendingStoreOperations.values()) {
+                oldest = Math.min(oldest, operation.queued);
+            }
+            if (oldest == Long.MAX_VALUE) {
+                return 0;
+            }
+            return System.currentTimeMillis() - oldest;
+        }
+    }
+
+
+    /**
+     * @return The longest time in milliseconds between a Store operation
+     *         being queued and it being completed.
+     */
+    public long getWriteBehindMaxLag() {
+        return writeBehindMaxLag;
+    }
+
+
+    /**
+     * @return The number of Store operations that were not performed because
+     *         a later operation for the same session was queued first.
+     */
+    public long getWriteBehindCoalesced() {
+        return writeBehindCoalesced.get();
+    }
+
+
     /**
      * Check, whether a session is loaded in memory
      *
@@ -403,6 +563,10 @@ public abstract class PersistentManagerBase extends ManagerBase
             return;
         }
 
+        synchronized (pendingStoreOperations) {
+            pendingStoreOperations.clear();
+        }
+
         try {
             if (SecurityUtil.isPackageProtectionEnabled()) {
                 try {
@@ -429,17 +593,11 @@ public abstract class PersistentManagerBase extends ManagerBase
     public void processExpires() {
 
         long timeNow = System.currentTimeMillis();
-        Session sessions[] = findSessions();
-        int expireHere = 0 ;
         if(log.isDebugEnabled()) {
-            log.debug("Start expire sessions " + getName() + " at " + timeNow + " sessioncount " + sessions.length);
-        }
-        for (Session session : sessions) {
-            if (!session.isValid()) {
-                expiredSessions.incrementAndGet();
-                expireHere++;
-            }
+            log.debug("Start expire sessions " + getName() + " at " + timeNow + " sessioncount " + getActiveSessions());
         }
+        int expireHere = expireSessions(timeNow);
+        expiredSessions.addAndGet(expireHere);
         processPersistenceChecks();
         if (getStore() instanceof StoreBase) {
             ((StoreBase) getStore()).processExpires();
@@ -464,6 +622,10 @@ public abstract class PersistentManagerBase extends ManagerBase
         processMaxActiveSwaps();
         processMaxIdleBackups();
 
+        if (writeBehind) {
+            scheduleStoreOperations();
+        }
+
     }
 
 
@@ -595,6 +757,15 @@ public abstract class PersistentManagerBase extends ManagerBase
      * @param id Session's id to be removed
      */
     protected void removeSession(String id){
+        if (writeBehind) {
+            queueStoreOperation(id, new StoreOperation(null, false));
+        } else {
+            removeSessionFromStore(id);
+        }
+    }
+
+
+    private void removeSessionFromStore(String id) {
         try {
             if (SecurityUtil.isPackageProtectionEnabled()) {
                 try {
@@ -723,7 +894,8 @@ public abstract class PersistentManagerBase extends ManagerBase
             if (session == null) {
                 Session currentSwapInSession = sessionToSwapIn.get();
                 try {
-                    if (currentSwapInSession == null || !id.equals(currentSwapInSession.getId())) {
+                    if ((currentSwapInSession == null || !id.equals(currentSwapInSession.getId())) &&
+                            !isRemovePending(id)) {
                         session = loadSessionFromStore(id);
                         sessionToSwapIn.set(session);
 
@@ -902,6 +1074,9 @@ public abstract class PersistentManagerBase extends ManagerBase
 
         setState(LifecycleState.STOPPING);
 
+        // Complete any queued operations before the sessions are unloaded
+        processStoreOperations();
+
         if (getStore() != null && saveOnRestart) {
             unload();
         } else {
@@ -914,6 +1089,8 @@ public abstract class PersistentManagerBase extends ManagerBase
                 }
                 session.expire();
             }
+            // Perform the removals triggered by expiration
+            processStoreOperations();
         }
 
         if (getStore() instanceof Lifecycle) {
@@ -960,10 +1137,14 @@ public abstract class PersistentManagerBase extends ManagerBase
                                             session.getIdInternal(),
                                             Integer.valueOf(timeIdle)));
                         }
-                        try {
-                            swapOut(session);
-                        } catch (IOException e) {
-                            // This is logged in writeSession()
+                        if (writeBehind) {
+                            queueStoreOperation(session.getIdInternal(), new StoreOperation(session, true));
+                        } else {
+                            try {
+                                swapOut(session);
+                            } catch (IOException e) {
+                                // This is logged in writeSession()
+                            }
                         }
                     }
                 }
@@ -1015,10 +1196,14 @@ public abstract class PersistentManagerBase extends ManagerBase
                              session.getIdInternal(),
                              Integer.valueOf(timeIdle)));
                     }
-                    try {
-                        swapOut(session);
-                    } catch (IOException e) {
-                        // This is logged in writeSession()
+                    if (writeBehind) {
+                        queueStoreOperation(session.getIdInternal(), new StoreOperation(session, true));
+                    } else {
+                        try {
+                            swapOut(session);
+                        } catch (IOException e) {
+                            // This is logged in writeSession()
+                        }
                     }
                     toswap--;
                 }
@@ -1063,10 +1248,14 @@ public abstract class PersistentManagerBase extends ManagerBase
                                             Integer.valueOf(timeIdle)));
                         }
 
-                        try {
-                            writeSession(session);
-                        } catch (IOException e) {
-                            // This is logged in writeSession()
+                        if (writeBehind) {
+                            queueStoreOperation(session.getIdInternal(), new StoreOperation(session, false));
+                        } else {
+                            try {
+                                writeSession(session);
+                            } catch (IOException e) {
+                                // This is logged in writeSession()
+                            }
                         }
                         session.setNote(PERSISTED_LAST_ACCESSED_TIME,
                                 Long.valueOf(lastAccessedTime));
@@ -1077,4 +1266,172 @@ public abstract class PersistentManagerBase extends ManagerBase
 
     }
 
+
+    // ------------------------------------------------------ Write-behind support
+
+    /**
+     * Queue an operation to be performed on the Store for the given session,
+     * replacing any operation that has been queued for that session but not
+     * yet started.
+     *
+     * @param id        The ID of the session
+     * @param operation The operation to perform
+     */
+    private void queueStoreOperation(String id, StoreOperation operation) {
+        synchronized (pendingStoreOperations) {
+            StoreOperation previous = pendingStoreOperations.put(id, operation);
+            if (previous != null && !previous.started) {
+                writeBehindCoalesced.incrementAndGet();
+                // The lag is measured from the first queued operation
+                operation.queued = previous.queued;
+                if (previous.swapOut && operation.session != null) {
+                    operation.swapOut = true;
+                }
+            }
+        }
+    }
+
+
+    private boolean isRemovePending(String id) {
+        if (!writeBehind) {
+            return false;
+        }
+        synchronized (pendingStoreOperations) {
+            StoreOperation operation = pendingStoreOperations.get(id);
+            return operation != null && operation.session == null;
+        }
+    }
+
+
+    /**
+     * Perform the queued Store operations using the utility executor, unless
+     * that is already in progress.
+     */
+    protected void scheduleStoreOperations() {
+        if (getWriteBehindQueueSize() == 0 || !storeOperationsScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        Runnable task = () -> {
+            ClassLoader oldClassLoader = getContext().bind(false, null);
+            try {
+                processStoreOperations();
+            } finally {
+                getContext().unbind(false, oldClassLoader);
+                storeOperationsScheduled.set(false);
+            }
+        };
+        Service service = Container.getService(getContext());
+        if (service == null || service.getServer() == null) {
+            task.run();
+        } else {
+            service.getServer().getUtilityExecutor().execute(task);
+        }
+    }
+
+
+    /**
+     * Perform all of the queued Store operations. Sessions queued to be backed
+     * up are saved in batches of at most {@link #getWriteBehindBatchSize()}.
+     * Sessions queued to be swapped out are only swapped out if they have not
+     * been accessed since they were queued.
+     */
+    protected void processStoreOperations() {
+        synchronized (storeOperationsLock) {
+            List<String> ids = new ArrayList<>();
+            List<StoreOperation> operations = new ArrayList<>();
+            while (true) {
+                ids.clear();
+                operations.clear();
+                synchronized (pendingStoreOperations) {
+                    for (Map.Entry<String,StoreOperation> entry : pendingStoreOperations.entrySet()) {
+                        if (ids.size() >= Math.max(1, writeBehindBatchSize)) {
+                            break;
+                        }
+                        entry.getValue().started = true;
+                        ids.add(entry.getKey());
+                        operations.add(entry.getValue());
+                    }
+                }
+                if (ids.isEmpty()) {
+                    return;
+                }
+
+                List<Session> toSave = new ArrayList<>();
+                for (int i = 0; i < ids.size(); i++) {
+                    StoreOperation operation = operations.get(i);
+                    StandardSession session = operation.session;
+                    if (store == null) {
+                        // NO-OP
+                    } else if (session == null) {
+                        removeSessionFromStore(ids.get(i));
+                    } else if (operation.swapOut) {
+                        synchronized (session) {
+                            if (session.isValid() && session.getManager() == this &&
+                                    session.getThisAccessedTimeInternal() == operation.thisAccessedTime &&
+                                    (session.accessCount == null || session.accessCount.get() == 0)) {
+                                try {
+                                    swapOut(session);
+                                } catch (IOException e) {
+                                    // This is logged in writeSession()
+                                }
+                            }
+                        }
+                    } else if (session.isValid()) {
+                        toSave.add(session);
+                    }
+                }
+                if (!toSave.isEmpty()) {
+                    saveSessions(toSave.toArray(new Session[0]));
+                }
+
+                long now = System.currentTimeMillis();
+                synchronized (pendingStoreOperations) {
+                    for (int i = 0; i < ids.size(); i++) {
+                        StoreOperation operation = operations.get(i);
+                        pendingStoreOperations.remove(ids.get(i), operation);
+                        long lag = now - operation.queued;
+                        if (lag > writeBehindMaxLag) {
+                            writeBehindMaxLag = lag;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+
+    private void saveSessions(Session[] sessions) {
+        try {
+            if (SecurityUtil.isPackageProtectionEnabled()) {
+                try {
+                    AccessController.doPrivileged(new PrivilegedStoreSaveAll(sessions));
+                } catch (PrivilegedActionException ex) {
+                    log.error(sm.getString("persistentManager.saveAllError",
+                            Integer.valueOf(sessions.length)), ex.getException());
+                }
+            } else {
+                store.saveAll(sessions);
+            }
+        } catch (IOException e) {
+            log.error(sm.getString("persistentManager.saveAllError", Integer.valueOf(sessions.length)), e);
+        }
+    }
+
+
+    private static final class StoreOperation {
+
+        // null for a removal
+        private final StandardSession session;
+        private final long thisAccessedTime;
+        private boolean swapOut;
+        private long queued = System.currentTimeMillis();
+        // Guarded by pendingStoreOperations
+        private boolean started = false;
+
+        StoreOperation(Session session, boolean swapOut) {
+            this.session = (StandardSession) session;
+            this.swapOut = swapOut;
+            this.thisAccessedTime = session == null ? 0 : this.session.getThisAccessedTimeInternal();
+        }
+    }
 }
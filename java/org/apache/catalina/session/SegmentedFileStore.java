@@ -0,0 +1,883 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import jakarta.servlet.ServletContext;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Globals;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Session;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+
+/**
+ * Implementation of the <b>Store</b> interface that appends saved Sessions to
+ * a series of segment files in a configured directory. An in-memory index maps
+ * each session identifier to the location of the most recently saved copy of
+ * that session so loading and saving a session each require a single file
+ * operation and the list of saved sessions, and which of them have expired,
+ * can be obtained without accessing the file system.
+ * <p>
+ * When a segment reaches {@link #getMaxSegmentSize()} it is sealed by
+ * appending a footer that lists the records in the segment and a new segment
+ * is started. The index is rebuilt from the segment footers when the Store
+ * starts. A segment that was not sealed, e.g. because the JVM terminated
+ * unexpectedly, is recovered by reading its records and discarding any
+ * incomplete record at the end of the segment.
+ * <p>
+ * Sealed segments in which the fraction of the data that is still live falls
+ * below {@link #getCompactionThreshold()} are compacted when expired sessions
+ * are processed, by copying the live records to the current segment and
+ * deleting the sealed segment.
+ */
+public class SegmentedFileStore extends StoreBase {
+
+    private static final Log log = LogFactory.getLog(SegmentedFileStore.class);
+
+    // ----------------------------------------------------- Constants
+
+    private static final String SEGMENT_PREFIX = "sessions-";
+    private static final String SEGMENT_EXT = ".seg";
+
+    private static final int SEGMENT_MAGIC = 0x54435347;
+    private static final int SEGMENT_VERSION = 1;
+    private static final int SEGMENT_HEADER_SIZE = 8;
+
+    private static final long FOOTER_MAGIC = 0x5443534746545231L;
+    // entry count, CRC, footer start and magic
+    private static final int FOOTER_TAIL_SIZE = 4 + 4 + 8 + 8;
+
+    private static final byte RECORD_SESSION = 1;
+    private static final byte RECORD_REMOVE = 2;
+    // length and CRC
+    private static final int RECORD_OVERHEAD = 4 + 4;
+
+    /**
+     * Name to register for this Store, used for logging.
+     */
+    private static final String storeName = "segmentedFileStore";
+
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * The pathname of the directory in which Sessions are stored.
+     * This may be an absolute pathname, or a relative path that is
+     * resolved against the temporary work directory for this application.
+     */
+    private String directory = ".";
+
+
+    private int maxSegmentSize = 16 * 1024 * 1024;
+
+
+    private double compactionThreshold = 0.5;
+
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock readLock = lock.readLock();
+    private final Lock writeLock = lock.writeLock();
+
+    /*
+     * The following fields are guarded by lock.
+     */
+    private File directoryFile = null;
+    private final Map<String,Record> index = new HashMap<>();
+    private final TreeMap<Long,Segment> segments = new TreeMap<>();
+    private Segment activeSegment = null;
+    private final List<Record> activeRecords = new ArrayList<>();
+
+
+    // ------------------------------------------------------------- Properties
+
+    /**
+     * @return The directory path for this Store.
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+
+    /**
+     * Set the directory path for this Store. Changes take effect when the
+     * Store is next started.
+     *
+     * @param path The new directory path
+     */
+    public void setDirectory(String path) {
+        String oldDirectory = this.directory;
+        this.directory = path;
+        support.firePropertyChange("directory", oldDirectory, this.directory);
+    }
+
+
+    /**
+     * @return The size in bytes at which a segment is sealed and a new segment
+     *         started.
+     */
+    public int getMaxSegmentSize() {
+        return maxSegmentSize;
+    }
+
+
+    /**
+     * Set the size in bytes at which a segment is sealed and a new segment
+     * started.
+     *
+     * @param maxSegmentSize The new maximum segment size
+     */
+    public void setMaxSegmentSize(int maxSegmentSize) {
+        int oldMaxSegmentSize = this.maxSegmentSize;
+        this.maxSegmentSize = maxSegmentSize;
+        support.firePropertyChange("maxSegmentSize", oldMaxSegmentSize, this.maxSegmentSize);
+    }
+
+
+    /**
+     * @return The fraction of a sealed segment that must contain live data for
+     *         the segment not to be compacted.
+     */
+    public double getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+
+    /**
+     * Set the fraction of a sealed segment that must contain live data for the
+     * segment not to be compacted.
+     *
+     * @param compactionThreshold The new compaction threshold, from zero to
+     *                            one
+     */
+    public void setCompactionThreshold(double compactionThreshold) {
+        double oldCompactionThreshold = this.compactionThreshold;
+        this.compactionThreshold = compactionThreshold;
+        support.firePropertyChange("compactionThreshold",
+                Double.valueOf(oldCompactionThreshold), Double.valueOf(this.compactionThreshold));
+    }
+
+
+    /**
+     * Return the name for this Store, used for logging.
+     */
+    @Override
+    public String getStoreName() {
+        return storeName;
+    }
+
+
+    /**
+     * @return The number of segment files currently in use by this Store.
+     */
+    public int getSegmentCount() {
+        readLock.lock();
+        try {
+            return segments.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+
+    @Override
+    public int getSize() throws IOException {
+        readLock.lock();
+        try {
+            return index.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+
+    // --------------------------------------------------------- Public Methods
+
+    @Override
+    public void clear() throws IOException {
+        writeLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+                if (!segment.file.delete()) {
+                    throw new IOException(sm.getString("segmentedFileStore.deleteFailed", segment.file));
+                }
+            }
+            segments.clear();
+            index.clear();
+            activeRecords.clear();
+            activeSegment = null;
+            startSegment();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public String[] keys() throws IOException {
+        readLock.lock();
+        try {
+            return index.keySet().toArray(new String[0]);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The expired sessions are identified using the index so the segment files
+     * are not read.
+     */
+    @Override
+    public String[] expiredKeys() throws IOException {
+        long timeNow = System.currentTimeMillis();
+        List<String> expired = new ArrayList<>();
+        readLock.lock();
+        try {
+            for (Record record : index.values()) {
+                int timeIdle = (int) ((timeNow - record.thisAccessedTime) / 1000L);
+                if (timeIdle >= record.maxInactiveInterval) {
+                    expired.add(record.id);
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+        return expired.toArray(new String[0]);
+    }
+
+
+    @Override
+    public Session load(String id) throws ClassNotFoundException, IOException {
+        byte[] data;
+        readLock.lock();
+        try {
+            Record record = index.get(id);
+            if (record == null) {
+                return null;
+            }
+            data = readSessionData(record);
+        } finally {
+            readLock.unlock();
+        }
+
+        Context context = getManager().getContext();
+        Log contextLog = context.getLogger();
+
+        if (contextLog.isDebugEnabled()) {
+            contextLog.debug(sm.getString(getStoreName() + ".loading", id, directoryFile));
+        }
+
+        ClassLoader oldThreadContextCL = context.bind(Globals.IS_SECURITY_ENABLED, null);
+
+        try (ObjectInputStream ois = getObjectInputStream(new ByteArrayInputStream(data))) {
+            StandardSession session = (StandardSession) manager.createEmptySession();
+            session.readObjectData(ois);
+            session.setManager(manager);
+            return session;
+        } finally {
+            context.unbind(Globals.IS_SECURITY_ENABLED, oldThreadContextCL);
+        }
+    }
+
+
+    @Override
+    public void remove(String id) throws IOException {
+        if (manager.getContext().getLogger().isDebugEnabled()) {
+            manager.getContext().getLogger().debug(sm.getString(getStoreName() + ".removing",
+                    id, directoryFile));
+        }
+
+        writeLock.lock();
+        try {
+            if (index.containsKey(id)) {
+                ByteBuffer buffer = createRecord(RECORD_REMOVE, id, 0, 0, null);
+                append(new ByteBuffer[] { buffer }, new Record[] {
+                        new Record(RECORD_REMOVE, id, 0, buffer.remaining(), 0, 0) });
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public void save(Session session) throws IOException {
+        saveAll(new Session[] { session });
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The sessions are serialized and then appended to the current segment
+     * using a single write.
+     */
+    @Override
+    public void saveAll(Session[] sessions) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[sessions.length];
+        Record[] records = new Record[sessions.length];
+        for (int i = 0; i < sessions.length; i++) {
+            Session session = sessions[i];
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = getObjectOutputStream(bos)) {
+                ((StandardSession) session).writeObjectData(oos);
+            }
+            long thisAccessedTime = session.getThisAccessedTimeInternal();
+            int maxInactiveInterval = session.getMaxInactiveInterval();
+            buffers[i] = createRecord(RECORD_SESSION, session.getIdInternal(), thisAccessedTime,
+                    maxInactiveInterval, bos.toByteArray());
+            records[i] = new Record(RECORD_SESSION, session.getIdInternal(), 0,
+                    buffers[i].remaining(), thisAccessedTime, maxInactiveInterval);
+            if (manager.getContext().getLogger().isDebugEnabled()) {
+                manager.getContext().getLogger().debug(sm.getString(getStoreName() + ".saving",
+                        session.getIdInternal(), directoryFile));
+            }
+        }
+
+        writeLock.lock();
+        try {
+            append(buffers, records);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Once expired sessions have been processed, any sealed segments that
+     * contain less than the configured fraction of live data are compacted.
+     */
+    @Override
+    public void processExpires() {
+        super.processExpires();
+        if (!getState().isAvailable()) {
+            return;
+        }
+        try {
+            compact();
+        } catch (IOException e) {
+            manager.getContext().getLogger().error(sm.getString("segmentedFileStore.compactFailed"), e);
+        }
+    }
+
+
+    /**
+     * Copy the live records from any sealed segments that contain less than
+     * the configured fraction of live data to the current segment and delete
+     * those segments.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void compact() throws IOException {
+        writeLock.lock();
+        try {
+            List<Segment> candidates = new ArrayList<>();
+            for (Segment segment : segments.values()) {
+                if (segment != activeSegment &&
+                        segment.liveBytes < segment.size * compactionThreshold) {
+                    candidates.add(segment);
+                }
+            }
+            for (Segment segment : candidates) {
+                compact(segment);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    @Override
+    protected synchronized void startInternal() throws LifecycleException {
+        writeLock.lock();
+        try {
+            open();
+        } catch (IOException e) {
+            throw new LifecycleException(e);
+        } finally {
+            writeLock.unlock();
+        }
+        super.startInternal();
+    }
+
+
+    @Override
+    protected synchronized void stopInternal() throws LifecycleException {
+        super.stopInternal();
+        writeLock.lock();
+        try {
+            if (activeSegment != null) {
+                if (activeRecords.isEmpty()) {
+                    activeSegment.channel.close();
+                    if (!activeSegment.file.delete()) {
+                        log.warn(sm.getString("segmentedFileStore.deleteFailed", activeSegment.file));
+                    }
+                    segments.remove(Long.valueOf(activeSegment.id));
+                } else {
+                    seal(activeSegment, activeRecords);
+                }
+                activeSegment = null;
+                activeRecords.clear();
+            }
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+        } catch (IOException e) {
+            throw new LifecycleException(e);
+        } finally {
+            segments.clear();
+            index.clear();
+            writeLock.unlock();
+        }
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+    /*
+     * Must be called with the write lock held.
+     */
+    private void open() throws IOException {
+        File dir = new File(directory);
+        if (!dir.isAbsolute()) {
+            Context context = manager.getContext();
+            ServletContext servletContext = context.getServletContext();
+            File work = (File) servletContext.getAttribute(ServletContext.TEMPDIR);
+            dir = new File(work, directory);
+        }
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException(sm.getString("segmentedFileStore.createFailed", dir));
+        }
+        directoryFile = dir;
+
+        TreeMap<Long,File> files = new TreeMap<>();
+        String[] names = dir.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_EXT)) {
+                    try {
+                        long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                                name.length() - SEGMENT_EXT.length()));
+                        files.put(Long.valueOf(id), new File(dir, name));
+                    } catch (NumberFormatException e) {
+                        // Not a segment
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<Long,File> entry : files.entrySet()) {
+            Segment segment = new Segment(entry.getKey().longValue(), entry.getValue());
+            segment.channel = FileChannel.open(segment.file.toPath(),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment.size = segment.channel.size();
+            segments.put(entry.getKey(), segment);
+
+            List<Record> records = readFooter(segment);
+            if (records == null) {
+                records = recover(segment);
+                seal(segment, records);
+            }
+            for (Record record : records) {
+                record.segment = segment;
+                updateIndex(record);
+            }
+        }
+
+        startSegment();
+    }
+
+
+    /*
+     * Must be called with the write lock held.
+     */
+    private void startSegment() throws IOException {
+        long id = segments.isEmpty() ? 1 : segments.lastKey().longValue() + 1;
+        String name = String.format("%s%019d%s", SEGMENT_PREFIX, Long.valueOf(id), SEGMENT_EXT);
+        Segment segment = new Segment(id, new File(directoryFile, name));
+        segment.channel = FileChannel.open(segment.file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(SEGMENT_MAGIC);
+        header.putInt(SEGMENT_VERSION);
+        header.flip();
+        write(segment.channel, new ByteBuffer[] { header }, 0);
+        segment.size = SEGMENT_HEADER_SIZE;
+        segments.put(Long.valueOf(id), segment);
+        activeSegment = segment;
+        activeRecords.clear();
+    }
+
+
+    /*
+     * Must be called with the write lock held.
+     */
+    private void append(ByteBuffer[] buffers, Record[] records) throws IOException {
+        Segment segment = activeSegment;
+        long position = segment.size;
+        long written = write(segment.channel, buffers, position);
+        segment.size += written;
+        for (Record record : records) {
+            record.segment = segment;
+            record.offset = position;
+            position += record.size;
+            activeRecords.add(record);
+            updateIndex(record);
+        }
+        if (segment.size >= maxSegmentSize) {
+            seal(segment, activeRecords);
+            startSegment();
+        }
+    }
+
+
+    /*
+     * Must be called with the write lock held.
+     */
+    private void updateIndex(Record record) {
+        Record previous;
+        if (record.type == RECORD_SESSION) {
+            previous = index.put(record.id, record);
+            record.segment.liveBytes += record.size;
+        } else {
+            previous = index.remove(record.id);
+        }
+        if (previous != null) {
+            previous.segment.liveBytes -= previous.size;
+        }
+    }
+
+
+    /*
+     * Must be called with the write lock held.
+     */
+    private void compact(Segment segment) throws IOException {
+        if (manager.getContext().getLogger().isDebugEnabled()) {
+            manager.getContext().getLogger().debug(sm.getString("segmentedFileStore.compacting",
+                    segment.file, Long.valueOf(segment.liveBytes), Long.valueOf(segment.size)));
+        }
+        List<Record> records = readFooter(segment);
+        if (records == null) {
+            throw new IOException(sm.getString("segmentedFileStore.invalidFooter", segment.file));
+        }
+        // Removals only need to be retained if an older segment may contain the
+        // session being removed
+        boolean olderSegments = segments.firstKey().longValue() < segment.id;
+        for (Record record : records) {
+            Record current = index.get(record.id);
+            if (record.type == RECORD_SESSION) {
+                if (current != null && current.segment == segment && current.offset == record.offset) {
+                    ByteBuffer buffer = ByteBuffer.allocate(record.size);
+                    read(segment.channel, buffer, record.offset);
+                    buffer.flip();
+                    append(new ByteBuffer[] { buffer }, new Record[] { new Record(RECORD_SESSION,
+                            record.id, 0, record.size, record.thisAccessedTime, record.maxInactiveInterval) });
+                }
+            } else if (olderSegments && current == null) {
+                ByteBuffer buffer = ByteBuffer.allocate(record.size);
+                read(segment.channel, buffer, record.offset);
+                buffer.flip();
+                append(new ByteBuffer[] { buffer }, new Record[] { new Record(RECORD_REMOVE,
+                        record.id, 0, record.size, 0, 0) });
+            }
+        }
+        segment.channel.close();
+        segments.remove(Long.valueOf(segment.id));
+        if (!segment.file.delete()) {
+            throw new IOException(sm.getString("segmentedFileStore.deleteFailed", segment.file));
+        }
+    }
+
+
+    /*
+     * Append the footer listing the given records to the segment.
+     */
+    private void seal(Segment segment, List<Record> records) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(bos)) {
+            for (Record record : records) {
+                dos.writeByte(record.type);
+                dos.writeUTF(record.id);
+                dos.writeLong(record.offset);
+                dos.writeInt(record.size);
+                dos.writeLong(record.thisAccessedTime);
+                dos.writeInt(record.maxInactiveInterval);
+            }
+        }
+        byte[] entries = bos.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(entries);
+
+        ByteBuffer tail = ByteBuffer.allocate(FOOTER_TAIL_SIZE);
+        tail.putInt(records.size());
+        tail.putInt((int) crc.getValue());
+        tail.putLong(segment.size);
+        tail.putLong(FOOTER_MAGIC);
+        tail.flip();
+
+        segment.size += write(segment.channel,
+                new ByteBuffer[] { ByteBuffer.wrap(entries), tail }, segment.size);
+    }
+
+
+    /*
+     * Returns null if the segment does not have a valid footer.
+     */
+    private List<Record> readFooter(Segment segment) throws IOException {
+        if (segment.size < SEGMENT_HEADER_SIZE + FOOTER_TAIL_SIZE) {
+            return null;
+        }
+        ByteBuffer tail = ByteBuffer.allocate(FOOTER_TAIL_SIZE);
+        read(segment.channel, tail, segment.size - FOOTER_TAIL_SIZE);
+        tail.flip();
+        int count = tail.getInt();
+        int crc = tail.getInt();
+        long footerStart = tail.getLong();
+        long magic = tail.getLong();
+        long footerLength = segment.size - FOOTER_TAIL_SIZE - footerStart;
+        if (magic != FOOTER_MAGIC || count < 0 || footerStart < SEGMENT_HEADER_SIZE ||
+                footerLength < 0 || footerLength > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        ByteBuffer entries = ByteBuffer.allocate((int) footerLength);
+        read(segment.channel, entries, footerStart);
+        CRC32 actual = new CRC32();
+        actual.update(entries.array());
+        if ((int) actual.getValue() != crc) {
+            return null;
+        }
+
+        List<Record> records = new ArrayList<>(count);
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(entries.array()))) {
+            for (int i = 0; i < count; i++) {
+                byte type = dis.readByte();
+                String id = dis.readUTF();
+                long offset = dis.readLong();
+                int size = dis.readInt();
+                long thisAccessedTime = dis.readLong();
+                int maxInactiveInterval = dis.readInt();
+                Record record = new Record(type, id, offset, size, thisAccessedTime, maxInactiveInterval);
+                records.add(record);
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+        return records;
+    }
+
+
+    /*
+     * Read the records from a segment that was not sealed, truncating the
+     * segment after the last valid record.
+     */
+    private List<Record> recover(Segment segment) throws IOException {
+        List<Record> records = new ArrayList<>();
+        long position = SEGMENT_HEADER_SIZE;
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        while (position + RECORD_OVERHEAD <= segment.size) {
+            lengthBuffer.clear();
+            read(segment.channel, lengthBuffer, position);
+            lengthBuffer.flip();
+            int length = lengthBuffer.getInt();
+            if (length <= 0 || position + RECORD_OVERHEAD + length > segment.size) {
+                break;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length + RECORD_OVERHEAD);
+            read(segment.channel, buffer, position);
+            Record record = parseRecord(buffer.array(), position);
+            if (record == null) {
+                break;
+            }
+            records.add(record);
+            position += record.size;
+        }
+        if (position < segment.size) {
+            log.warn(sm.getString("segmentedFileStore.truncated", Long.valueOf(position),
+                    Long.valueOf(segment.size - position), segment.file));
+            segment.channel.truncate(position);
+            segment.size = position;
+        }
+        return records;
+    }
+
+
+    /*
+     * Must be called with the read lock held.
+     */
+    private byte[] readSessionData(Record record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(record.size);
+        read(record.segment.channel, buffer, record.offset);
+        byte[] bytes = buffer.array();
+        Record parsed = parseRecord(bytes, record.offset);
+        if (parsed == null || parsed.type != RECORD_SESSION || !parsed.id.equals(record.id)) {
+            throw new IOException(sm.getString("segmentedFileStore.invalidRecord", record.id,
+                    record.segment.file));
+        }
+        int dataStart = parsed.dataOffset;
+        int dataEnd = bytes.length - 4;
+        byte[] data = new byte[dataEnd - dataStart];
+        System.arraycopy(bytes, dataStart, data, 0, data.length);
+        return data;
+    }
+
+
+    /*
+     * Returns null if the bytes are not a valid record.
+     */
+    private static Record parseRecord(byte[] bytes, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int length = buffer.getInt();
+        if (length + RECORD_OVERHEAD != bytes.length) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 4, length);
+        buffer.position(4 + length);
+        if ((int) crc.getValue() != buffer.getInt()) {
+            return null;
+        }
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes, 4, length))) {
+            byte type = dis.readByte();
+            String id = dis.readUTF();
+            long thisAccessedTime = dis.readLong();
+            int maxInactiveInterval = dis.readInt();
+            Record record = new Record(type, id, offset, bytes.length, thisAccessedTime, maxInactiveInterval);
+            record.dataOffset = bytes.length - 4 - dis.available();
+            if (type != RECORD_SESSION && type != RECORD_REMOVE) {
+                return null;
+            }
+            return record;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+
+    private static ByteBuffer createRecord(byte type, String id, long thisAccessedTime,
+            int maxInactiveInterval, byte[] data) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(64 + (data == null ? 0 : data.length));
+        try (DataOutputStream dos = new DataOutputStream(bos)) {
+            // Placeholder for the length
+            dos.writeInt(0);
+            dos.writeByte(type);
+            dos.writeUTF(id);
+            dos.writeLong(thisAccessedTime);
+            dos.writeInt(maxInactiveInterval);
+            if (data != null) {
+                dos.write(data);
+            }
+            // Placeholder for the CRC
+            dos.writeInt(0);
+        }
+        byte[] bytes = bos.toByteArray();
+        int length = bytes.length - RECORD_OVERHEAD;
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 4, length);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.putInt(0, length);
+        buffer.putInt(bytes.length - 4, (int) crc.getValue());
+        return buffer;
+    }
+
+
+    private static long write(FileChannel channel, ByteBuffer[] buffers, long position) throws IOException {
+        long written = 0;
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, position + written);
+            }
+        }
+        return written;
+    }
+
+
+    private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long read = 0;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + read);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            read += n;
+        }
+    }
+
+
+    private static final class Segment {
+        private final long id;
+        private final File file;
+        private FileChannel channel;
+        private long size;
+        private long liveBytes;
+
+        Segment(long id, File file) {
+            this.id = id;
+            this.file = file;
+        }
+    }
+
+
+    private static final class Record {
+        private final byte type;
+        private final String id;
+        private long offset;
+        private final int size;
+        private final long thisAccessedTime;
+        private final int maxInactiveInterval;
+        private Segment segment;
+        // Only set when the record is parsed
+        private int dataOffset;
+
+        Record(byte type, String id, long offset, int size, long thisAccessedTime, int maxInactiveInterval) {
+            this.type = type;
+            this.id = id;
+            this.offset = offset;
+            this.size = size;
+            this.thisAccessedTime = thisAccessedTime;
+            this.maxInactiveInterval = maxInactiveInterval;
+        }
+    }
+}
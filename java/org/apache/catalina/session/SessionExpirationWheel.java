@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A hashed timing wheel that indexes sessions by the time at which they are
+ * next due to expire so that expiration processing only needs to examine the
+ * sessions that are due rather than every session.
+ * <p>
+ * Each slot of the wheel covers one tick. A session is placed in the slot for
+ * the tick in which it is due to expire. Sessions due more than one rotation
+ * in the future share a slot with sessions due sooner and are skipped until
+ * the rotation in which they are due.
+ * <p>
+ * Sessions are not moved when they are accessed. When a session becomes due,
+ * the caller checks whether it has really expired and, if it has not,
+ * schedules it again based on its current last accessed time. This keeps the
+ * cost of a request that accesses a session independent of the wheel.
+ */
+final class SessionExpirationWheel {
+
+    static final long NOT_SCHEDULED = -1;
+
+    private final long tickMillis;
+    private final int mask;
+    private final Set<StandardSession>[] slots;
+
+    /*
+     * Sessions scheduled for a tick that had already been processed when the
+     * session was added to its slot.
+     */
+    private final Queue<StandardSession> overdue = new ConcurrentLinkedQueue<>();
+
+    /*
+     * Only written by the thread processing expirations.
+     */
+    private volatile long lastTick;
+
+
+    @SuppressWarnings("unchecked")
+    SessionExpirationWheel(long tickMillis, int slotCount, long timeNow) {
+        if (Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException();
+        }
+        this.tickMillis = tickMillis;
+        this.mask = slotCount - 1;
+        this.slots = new Set[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = ConcurrentHashMap.newKeySet();
+        }
+        this.lastTick = timeNow / tickMillis;
+    }
+
+
+    /**
+     * Schedule the session to be returned by {@link #expire(long)} once the
+     * given time has passed, replacing any existing schedule for the session.
+     *
+     * @param session        The session to schedule
+     * @param expirationTime The time, in milliseconds since the epoch, at
+     *                       which the session is due to expire
+     */
+    void schedule(StandardSession session, long expirationTime) {
+        long tick = Math.max(expirationTime / tickMillis, lastTick + 1);
+        synchronized (session) {
+            long current = session.expirationTick;
+            if (current == tick) {
+                return;
+            }
+            if (current != NOT_SCHEDULED) {
+                slots[(int) (current & mask)].remove(session);
+            }
+            session.expirationTick = tick;
+            slots[(int) (tick & mask)].add(session);
+        }
+        if (tick <= lastTick) {
+            // The slot may have been processed before the session was added
+            overdue.add(session);
+        }
+    }
+
+
+    /**
+     * Remove any schedule for the session.
+     *
+     * @param session The session to remove
+     */
+    void remove(StandardSession session) {
+        synchronized (session) {
+            long current = session.expirationTick;
+            if (current != NOT_SCHEDULED) {
+                slots[(int) (current & mask)].remove(session);
+                session.expirationTick = NOT_SCHEDULED;
+            }
+        }
+    }
+
+
+    /**
+     * Remove and return the sessions that are due to expire at the given time.
+     * This method must not be called concurrently.
+     *
+     * @param timeNow The current time in milliseconds since the epoch
+     *
+     * @return The sessions that are due to expire. Sessions returned by this
+     *         method are no longer scheduled.
+     */
+    List<StandardSession> expire(long timeNow) {
+        long nowTick = timeNow / tickMillis;
+        long fromTick = lastTick + 1;
+        if (nowTick < fromTick) {
+            nowTick = fromTick - 1;
+        }
+        // Publish the new position before processing the slots so schedule()
+        // can detect sessions that are added to a slot after it is processed
+        lastTick = nowTick;
+
+        List<StandardSession> result = new ArrayList<>();
+        long toTick = Math.min(nowTick, fromTick + mask);
+        for (long tick = fromTick; tick <= toTick; tick++) {
+            Iterator<StandardSession> iter = slots[(int) (tick & mask)].iterator();
+            while (iter.hasNext()) {
+                StandardSession session = iter.next();
+                synchronized (session) {
+                    long sessionTick = session.expirationTick;
+                    if (sessionTick == NOT_SCHEDULED || (sessionTick & mask) != (tick & mask)) {
+                        // Stale entry
+                        iter.remove();
+                    } else if (sessionTick <= nowTick) {
+                        iter.remove();
+                        session.expirationTick = NOT_SCHEDULED;
+                        result.add(session);
+                    }
+                }
+            }
+        }
+
+        StandardSession session;
+        while ((session = overdue.poll()) != null) {
+            synchronized (session) {
+                long sessionTick = session.expirationTick;
+                if (sessionTick != NOT_SCHEDULED && sessionTick <= nowTick) {
+                    slots[(int) (sessionTick & mask)].remove(session);
+                    session.expirationTick = NOT_SCHEDULED;
+                    result.add(session);
+                }
+            }
+        }
+        return result;
+    }
+}
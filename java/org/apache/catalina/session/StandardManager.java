@@ -204,11 +204,15 @@ public class StandardManager extends ManagerBase {
                 classLoader = getClass().getClassLoader();
             }
 
+            final ClassLoader sessionClassLoader = classLoader;
+            final Log sessionLogger = logger;
+
             // Load the previously unloaded active sessions
             synchronized (sessions) {
-                try (ObjectInputStream ois = new CustomObjectInputStream(bis, classLoader, logger,
-                        getSessionAttributeValueClassNamePattern(),
-                        getWarnOnSessionAttributeFilterFailure())) {
+                try (ObjectInputStream ois = getSessionSerializer().getObjectInputStream(bis,
+                        is -> new CustomObjectInputStream(is, sessionClassLoader, sessionLogger,
+                                getSessionAttributeValueClassNamePattern(),
+                                getWarnOnSessionAttributeFilterFailure()))) {
                     Integer count = (Integer) ois.readObject();
                     int n = count.intValue();
                     if (log.isDebugEnabled()) {
@@ -219,6 +223,7 @@ public class StandardManager extends ManagerBase {
                         session.readObjectData(ois);
                         session.setManager(this);
                         sessions.put(session.getIdInternal(), session);
+                        scheduleExpiration(session);
                         session.activate();
                         if (!session.isValidInternal()) {
                             // If session is already invalid,
@@ -302,7 +307,7 @@ public class StandardManager extends ManagerBase {
 
         try (FileOutputStream fos = new FileOutputStream(file.getAbsolutePath());
                 BufferedOutputStream bos = new BufferedOutputStream(fos);
-                ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+                ObjectOutputStream oos = getSessionSerializer().getObjectOutputStream(bos)) {
 
             synchronized (sessions) {
                 if (log.isDebugEnabled()) {
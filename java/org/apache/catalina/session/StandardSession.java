@@ -124,7 +124,7 @@ public class StandardSession implements HttpSession, Session, Serializable {
     /**
      * The collection of user data attributes associated with this Session.
      */
-    protected ConcurrentMap<String, Object> attributes = new ConcurrentHashMap<>();
+    protected ConcurrentMap<String, Object> attributes = createAttributeMap();
 
 
     /**
@@ -170,9 +170,11 @@ public class StandardSession implements HttpSession, Session, Serializable {
 
 
     /**
-     * The session event listeners for this Session.
+     * The session event listeners for this Session. May be <code>null</code>
+     * if {@link #createListenerList()} defers the creation of the list until
+     * the first listener is added.
      */
-    protected transient ArrayList<SessionListener> listeners = new ArrayList<>();
+    protected transient ArrayList<SessionListener> listeners = createListenerList();
 
 
     /**
@@ -206,7 +208,7 @@ public class StandardSession implements HttpSession, Session, Serializable {
      * and event listeners.  <b>IMPLEMENTATION NOTE:</b> This object is
      * <em>not</em> saved and restored across session serializations!
      */
-    protected transient Map<String, Object> notes = new Hashtable<>();
+    protected transient Map<String, Object> notes = createNoteMap();
 
 
     /**
@@ -255,6 +257,13 @@ public class StandardSession implements HttpSession, Session, Serializable {
     protected transient boolean lastAccessAtStart;
 
 
+    /**
+     * The tick of the manager's expiration index in which this session is due
+     * to expire.
+     */
+    transient volatile long expirationTick = SessionExpirationWheel.NOT_SCHEDULED;
+
+
     // ----------------------------------------------------- Session Properties
 
 
@@ -558,6 +567,9 @@ public class StandardSession implements HttpSession, Session, Serializable {
     @Override
     public void setMaxInactiveInterval(int interval) {
         this.maxInactiveInterval = interval;
+        if (manager instanceof ManagerBase) {
+            ((ManagerBase) manager).scheduleExpiration(this);
+        }
     }
 
 
@@ -713,6 +725,13 @@ public class StandardSession implements HttpSession, Session, Serializable {
     @Override
     public void addSessionListener(SessionListener listener) {
 
+        ArrayList<SessionListener> listeners;
+        synchronized (this) {
+            if (this.listeners == null) {
+                this.listeners = new ArrayList<>();
+            }
+            listeners = this.listeners;
+        }
         listeners.add(listener);
 
     }
@@ -982,7 +1001,10 @@ public class StandardSession implements HttpSession, Session, Serializable {
     @Override
     public void removeSessionListener(SessionListener listener) {
 
-        listeners.remove(listener);
+        ArrayList<SessionListener> listeners = this.listeners;
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
 
     }
 
@@ -1446,7 +1468,7 @@ public class StandardSession implements HttpSession, Session, Serializable {
         }
 
         if (notes == null) {
-            notes = new Hashtable<>();
+            notes = createNoteMap();
         }
         /*
          * The next object read could either be the number of attributes
@@ -1494,7 +1516,7 @@ public class StandardSession implements HttpSession, Session, Serializable {
 
         // Deserialize the attribute count and attribute values
         if (attributes == null) {
-            attributes = new ConcurrentHashMap<>();
+            attributes = createAttributeMap();
         }
         int n = ((Integer) nextObject).intValue();
         boolean isValidSave = isValid;
@@ -1534,7 +1556,7 @@ public class StandardSession implements HttpSession, Session, Serializable {
         isValid = isValidSave;
 
         if (listeners == null) {
-            listeners = new ArrayList<>();
+            listeners = createListenerList();
         }
     }
 
@@ -1687,6 +1709,46 @@ public class StandardSession implements HttpSession, Session, Serializable {
 
     // ------------------------------------------------------ Protected Methods
 
+    /**
+     * Create the Map used to hold the attributes of this session. This is
+     * called when the session is constructed and when a session is
+     * deserialized. Sub-classes may override this to use a different
+     * implementation.
+     *
+     * @return a new, empty Map for the session attributes
+     */
+    protected ConcurrentMap<String, Object> createAttributeMap() {
+        return new ConcurrentHashMap<>();
+    }
+
+
+    /**
+     * Create the Map used to hold the internal notes of this session. This is
+     * called when the session is constructed and when a session is
+     * deserialized. Sub-classes may override this to use a different
+     * implementation.
+     *
+     * @return a new, empty Map for the session notes
+     */
+    protected Map<String, Object> createNoteMap() {
+        return new Hashtable<>();
+    }
+
+
+    /**
+     * Create the list used to hold the session event listeners of this
+     * session. This is called when the session is constructed and when a
+     * session is deserialized. Sub-classes may return <code>null</code> to
+     * defer the creation of the list until the first listener is added.
+     *
+     * @return a new, empty list for the session event listeners or
+     *         <code>null</code>
+     */
+    protected ArrayList<SessionListener> createListenerList() {
+        return new ArrayList<>();
+    }
+
+
     /**
      * Notify all session event listeners that a particular event has
      * occurred for this Session.  The default implementation performs
@@ -1696,7 +1758,8 @@ public class StandardSession implements HttpSession, Session, Serializable {
      * @param data Event data
      */
     public void fireSessionEvent(String type, Object data) {
-        if (listeners.size() < 1) {
+        ArrayList<SessionListener> listeners = this.listeners;
+        if (listeners == null || listeners.size() < 1) {
             return;
         }
         SessionEvent event = new SessionEvent(this, type, data);
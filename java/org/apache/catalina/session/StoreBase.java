@@ -19,9 +19,12 @@ package org.apache.catalina.session;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleState;
@@ -216,19 +219,40 @@ public abstract class StoreBase extends LifecycleBase implements Store {
     protected ObjectInputStream getObjectInputStream(InputStream is) throws IOException {
         BufferedInputStream bis = new BufferedInputStream(is);
 
-        CustomObjectInputStream ois;
         ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
 
         if (manager instanceof ManagerBase) {
             ManagerBase managerBase = (ManagerBase) manager;
-            ois = new CustomObjectInputStream(bis, classLoader, manager.getContext().getLogger(),
-                    managerBase.getSessionAttributeValueClassNamePattern(),
-                    managerBase.getWarnOnSessionAttributeFilterFailure());
+            return managerBase.getSessionSerializer().getObjectInputStream(bis,
+                    javaStream -> new CustomObjectInputStream(javaStream, classLoader,
+                            manager.getContext().getLogger(),
+                            managerBase.getSessionAttributeValueClassNamePattern(),
+                            managerBase.getWarnOnSessionAttributeFilterFailure()));
         } else {
-            ois = new CustomObjectInputStream(bis, classLoader);
+            return new CustomObjectInputStream(bis, classLoader);
         }
+    }
+
 
-        return ois;
+    /**
+     * Create the object output stream to use to write a session to the store.
+     *
+     * @param os The output stream provided by the sub-class to which the data
+     *           for a session will be written
+     *
+     * @return An appropriately configured ObjectOutputStream to which the
+     *         session can be written.
+     *
+     * @throws IOException if a problem occurs creating the ObjectOutputStream
+     */
+    protected ObjectOutputStream getObjectOutputStream(OutputStream os) throws IOException {
+        BufferedOutputStream bos = new BufferedOutputStream(os);
+
+        if (manager instanceof ManagerBase) {
+            return ((ManagerBase) manager).getSessionSerializer().getObjectOutputStream(bos);
+        } else {
+            return new ObjectOutputStream(bos);
+        }
     }
 
 
@@ -1214,12 +1214,17 @@ public class Tomcat {
         }
 
         @Override
-        public synchronized Servlet loadServlet() throws ServletException {
-            if (!instanceInitialized) {
-                existing.init(facade);
-                instanceInitialized = true;
+        public Servlet loadServlet() throws ServletException {
+            instanceLock.lock();
+            try {
+                if (!instanceInitialized) {
+                    existing.init(facade);
+                    instanceInitialized = true;
+                }
+                return existing;
+            } finally {
+                instanceLock.unlock();
             }
-            return existing;
         }
         @Override
         public long getAvailable() {
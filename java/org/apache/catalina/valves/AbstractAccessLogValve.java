@@ -20,12 +20,12 @@ package org.apache.catalina.valves;
 import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -52,8 +52,13 @@ import org.apache.coyote.RequestInfo;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.ExceptionUtils;
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.buf.CharChunk;
 import org.apache.tomcat.util.buf.HexUtils;
+import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.collections.SynchronizedStack;
+import org.apache.tomcat.util.http.MimeHeaders;
+import org.apache.tomcat.util.json.JSONFilter;
 import org.apache.tomcat.util.net.IPv6Utils;
 
 
@@ -706,7 +711,7 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
 
         CharArrayWriter result = charArrayWriters.pop();
         if (result == null) {
-            result = new CharArrayWriter(128);
+            result = new LogMessageWriter(128);
         }
 
         for (AccessLogElement logElement : logElements) {
@@ -989,12 +994,12 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
             if (requestAttributesEnabled) {
                 Object proto = request.getAttribute(PROTOCOL_ATTRIBUTE);
                 if (proto == null) {
-                    buf.append(request.getProtocol());
+                    append(request.getCoyoteRequest().protocol(), buf);
                 } else {
                     buf.append(proto.toString());
                 }
             } else {
-                buf.append(request.getProtocol());
+                append(request.getCoyoteRequest().protocol(), buf);
             }
         }
     }
@@ -1159,41 +1164,50 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
             if (type == FormatType.CLF) {
                 buf.append(localDateCache.get().getFormat(timestamp));
             } else if (type == FormatType.SEC) {
-                buf.append(Long.toString(timestamp / 1000));
+                appendLong(timestamp / 1000, buf);
             } else if (type == FormatType.MSEC) {
-                buf.append(Long.toString(timestamp));
+                appendLong(timestamp, buf);
             } else if (type == FormatType.MSEC_FRAC) {
                 frac = timestamp % 1000;
-                if (frac < 100) {
-                    if (frac < 10) {
-                        buf.append('0');
-                        buf.append('0');
-                    } else {
-                        buf.append('0');
-                    }
-                }
-                buf.append(Long.toString(frac));
+                appendTripleMsec(frac, buf);
             } else {
                 // FormatType.SDF
                 String temp = localDateCache.get().getFormat(format, locale, timestamp);
                 if (usesMsecs) {
+                    // Replace the placeholders as the formatted value is
+                    // written rather than creating new Strings
                     frac = timestamp % 1000;
-                    StringBuilder tripleMsec = new StringBuilder(4);
-                    if (frac < 100) {
-                        if (frac < 10) {
-                            tripleMsec.append('0');
-                            tripleMsec.append('0');
+                    int start = 0;
+                    int pos = temp.indexOf(msecPattern);
+                    while (pos > -1) {
+                        buf.write(temp, start, pos - start);
+                        if (temp.startsWith(tripleMsecPattern, pos)) {
+                            appendTripleMsec(frac, buf);
+                            start = pos + tripleMsecPattern.length();
                         } else {
-                            tripleMsec.append('0');
+                            appendLong(frac, buf);
+                            start = pos + msecPattern.length();
                         }
+                        pos = temp.indexOf(msecPattern, start);
                     }
-                    tripleMsec.append(frac);
-                    temp = temp.replace(tripleMsecPattern, tripleMsec);
-                    temp = temp.replace(msecPattern, Long.toString(frac));
+                    buf.write(temp, start, temp.length() - start);
+                } else {
+                    buf.append(temp);
                 }
-                buf.append(temp);
             }
         }
+
+        private void appendTripleMsec(long frac, CharArrayWriter buf) {
+            if (frac < 100) {
+                if (frac < 10) {
+                    buf.append('0');
+                    buf.append('0');
+                } else {
+                    buf.append('0');
+                }
+            }
+            appendLong(frac, buf);
+        }
     }
 
     /**
@@ -1204,20 +1218,22 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
         public void addElement(CharArrayWriter buf, Date date, Request request,
                 Response response, long time) {
             if (request != null) {
-                String method = request.getMethod();
-                if (method == null) {
+                org.apache.coyote.Request coyoteRequest = request.getCoyoteRequest();
+                MessageBytes method = coyoteRequest.method();
+                if (method.isNull()) {
                     // No method means no request line
                     buf.append('-');
                 } else {
-                    buf.append(request.getMethod());
+                    append(method, buf);
                     buf.append(' ');
-                    buf.append(request.getRequestURI());
-                    if (request.getQueryString() != null) {
+                    append(coyoteRequest.requestURI(), buf);
+                    MessageBytes query = coyoteRequest.queryString();
+                    if (!query.isNull()) {
                         buf.append('?');
-                        buf.append(request.getQueryString());
+                        append(query, buf);
                     }
                     buf.append(' ');
-                    buf.append(request.getProtocol());
+                    append(coyoteRequest.protocol(), buf);
                 }
             } else {
                 buf.append('-');
@@ -1286,15 +1302,15 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
             if (requestAttributesEnabled && portType == PortType.LOCAL) {
                 Object port = request.getAttribute(SERVER_PORT_ATTRIBUTE);
                 if (port == null) {
-                    buf.append(Integer.toString(request.getServerPort()));
+                    appendLong(request.getServerPort(), buf);
                 } else {
                     buf.append(port.toString());
                 }
             } else {
                 if (portType == PortType.LOCAL) {
-                    buf.append(Integer.toString(request.getServerPort()));
+                    appendLong(request.getServerPort(), buf);
                 } else {
-                    buf.append(Integer.toString(request.getRemotePort()));
+                    appendLong(request.getRemotePort(), buf);
                 }
             }
         }
@@ -1343,7 +1359,7 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
             if (length <= 0 && conversion) {
                 buf.append('-');
             } else {
-                buf.append(Long.toString(length));
+                appendLong(length, buf);
             }
         }
     }
@@ -1356,7 +1372,7 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
         public void addElement(CharArrayWriter buf, Date date, Request request,
                 Response response, long time) {
             if (request != null) {
-                buf.append(request.getMethod());
+                append(request.getCoyoteRequest().method(), buf);
             }
         }
     }
@@ -1382,12 +1398,12 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
         public void addElement(CharArrayWriter buf, Date date, Request request,
                 Response response, long time) {
             if (micros) {
-                buf.append(Long.toString(TimeUnit.NANOSECONDS.toMicros(time)));
+                appendLong(TimeUnit.NANOSECONDS.toMicros(time), buf);
             } else if (millis) {
-                buf.append(Long.toString(TimeUnit.NANOSECONDS.toMillis(time)));
+                appendLong(TimeUnit.NANOSECONDS.toMillis(time), buf);
             } else {
                 // second
-                buf.append(Long.toString(TimeUnit.NANOSECONDS.toSeconds(time)));
+                appendLong(TimeUnit.NANOSECONDS.toSeconds(time), buf);
             }
         }
     }
@@ -1403,7 +1419,7 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
                 buf.append('-');
             } else {
                 long delta = commitTime - request.getCoyoteRequest().getStartTimeNanos();
-                buf.append(Long.toString(TimeUnit.NANOSECONDS.toMillis(delta)));
+                appendLong(TimeUnit.NANOSECONDS.toMillis(delta), buf);
             }
         }
     }
@@ -1415,13 +1431,12 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
         @Override
         public void addElement(CharArrayWriter buf, Date date, Request request,
                 Response response, long time) {
-            String query = null;
             if (request != null) {
-                query = request.getQueryString();
-            }
-            if (query != null) {
-                buf.append('?');
-                buf.append(query);
+                MessageBytes query = request.getCoyoteRequest().queryString();
+                if (!query.isNull()) {
+                    buf.append('?');
+                    append(query, buf);
+                }
             }
         }
     }
@@ -1454,7 +1469,7 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
         public void addElement(CharArrayWriter buf, Date date, Request request,
                 Response response, long time) {
             if (request != null) {
-                buf.append(request.getRequestURI());
+                append(request.getCoyoteRequest().requestURI(), buf);
             } else {
                 buf.append('-');
             }
@@ -1519,12 +1534,15 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
         @Override
         public void addElement(CharArrayWriter buf, Date date, Request request,
                 Response response, long time) {
-            Enumeration<String> iter = request.getHeaders(header);
-            if (iter.hasMoreElements()) {
-                escapeAndAppend(iter.nextElement(), buf);
-                while (iter.hasMoreElements()) {
+            // Read the headers directly to avoid creating an Enumeration and
+            // converting each value to a String
+            MimeHeaders headers = request.getCoyoteRequest().getMimeHeaders();
+            int pos = headers.findHeader(header, 0);
+            if (pos > -1) {
+                escapeAndAppend(headers.getValue(pos), buf);
+                while ((pos = headers.findHeader(header, pos + 1)) > -1) {
                     buf.append(',');
-                    escapeAndAppend(iter.nextElement(), buf);
+                    escapeAndAppend(headers.getValue(pos), buf);
                 }
                 return;
             }
@@ -1545,7 +1563,9 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
         @Override
         public void addElement(CharArrayWriter buf, Date date, Request request,
                 Response response, long time) {
-            StringBuilder value = new StringBuilder();
+            // ',' is never escaped so escaping each value separately gives
+            // the same result as escaping the joined values
+            int start = buf.size();
             boolean first = true;
             Cookie[] cookies = request.getCookies();
             if (cookies != null) {
@@ -1554,16 +1574,17 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
                         if (first) {
                             first = false;
                         } else {
-                            value.append(',');
+                            buf.append(',');
+                        }
+                        String value = cookie.getValue();
+                        if (value != null && !value.isEmpty()) {
+                            escapeAndAppend(value, buf);
                         }
-                        value.append(cookie.getValue());
                     }
                 }
             }
-            if (value.length() == 0) {
+            if (buf.size() == start) {
                 buf.append('-');
-            } else {
-                escapeAndAppend(value.toString(), buf);
             }
         }
     }
@@ -1582,18 +1603,40 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
         public void addElement(CharArrayWriter buf, Date date, Request request,
                 Response response, long time) {
             if (null != response) {
-                Iterator<String> iter = response.getHeaders(header).iterator();
-                if (iter.hasNext()) {
-                    escapeAndAppend(iter.next(), buf);
-                    while (iter.hasNext()) {
-                        buf.append(',');
-                        escapeAndAppend(iter.next(), buf);
+                // Read the headers directly rather than via
+                // Response.getHeaders() which creates a Set of Strings.
+                // Duplicate values are skipped in the same way.
+                MimeHeaders headers = response.getCoyoteResponse().getMimeHeaders();
+                boolean found = false;
+                int pos = headers.findHeader(header, 0);
+                while (pos > -1) {
+                    MessageBytes value = headers.getValue(pos);
+                    if (!isDuplicate(headers, pos, value)) {
+                        if (found) {
+                            buf.append(',');
+                        }
+                        escapeAndAppend(value, buf);
+                        found = true;
                     }
+                    pos = headers.findHeader(header, pos + 1);
+                }
+                if (found) {
                     return;
                 }
             }
             buf.append('-');
         }
+
+        private boolean isDuplicate(MimeHeaders headers, int end, MessageBytes value) {
+            int pos = headers.findHeader(header, 0);
+            while (pos > -1 && pos < end) {
+                if (headers.getValue(pos).equals(value)) {
+                    return true;
+                }
+                pos = headers.findHeader(header, pos + 1);
+            }
+            return false;
+        }
     }
 
     /**
@@ -1741,8 +1784,10 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
                 replace = false;
             } else if (ch == '%') {
                 replace = true;
-                list.add(new StringElement(buf.toString()));
-                buf = new StringBuilder();
+                if (buf.length() > 0) {
+                    list.add(new StringElement(buf.toString()));
+                    buf = new StringBuilder();
+                }
             } else {
                 buf.append(ch);
             }
@@ -1750,7 +1795,34 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
         if (buf.length() > 0) {
             list.add(new StringElement(buf.toString()));
         }
-        return list.toArray(new AccessLogElement[0]);
+        return mergeStringElements(list).toArray(new AccessLogElement[0]);
+    }
+
+
+    /*
+     * Combine adjacent literal elements, such as those created for unknown
+     * pattern characters, so each log message needs as few calls as possible.
+     */
+    private static List<AccessLogElement> mergeStringElements(List<AccessLogElement> elements) {
+        List<AccessLogElement> result = new ArrayList<>(elements.size());
+        StringBuilder literal = new StringBuilder();
+        for (AccessLogElement element : elements) {
+            // Sub-classes may extend StringElement so only merge instances of
+            // StringElement itself
+            if (element.getClass() == StringElement.class) {
+                literal.append(((StringElement) element).str);
+            } else {
+                if (literal.length() > 0) {
+                    result.add(new StringElement(literal.toString()));
+                    literal.setLength(0);
+                }
+                result.add(element);
+            }
+        }
+        if (literal.length() > 0) {
+            result.add(new StringElement(literal.toString()));
+        }
+        return result;
     }
 
 
@@ -1920,40 +1992,229 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
             return;
         }
 
-        for (char c : input.toCharArray()) {
-            switch (c) {
-            // " and \
-            case '\\':
-                dest.append("\\\\");
-                break;
-            case '\"':
-                dest.append("\\\"");
-                break;
-            // Standard C escapes for whitespace (not all standard C escapes)
-            case '\f':
-                dest.append("\\f");
-                break;
-            case '\n':
-                dest.append("\\n");
-                break;
-            case '\r':
-                dest.append("\\r");
-                break;
-            case '\t':
-                dest.append("\\t");
-                break;
-            case '\u000b':
-                dest.append("\\v");
-                break;
-            default:
-                // Control, delete (127) or above 127
-                if (c < 32 || c > 126) {
-                    dest.append("\\u");
-                    dest.append(HexUtils.toHexString(c));
+        // Write runs of characters that do not need escaping in one call
+        int len = input.length();
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            char c = input.charAt(i);
+            if (needsEscape(c)) {
+                if (i > start) {
+                    dest.write(input, start, i - start);
+                }
+                escape(c, dest);
+                start = i + 1;
+            }
+        }
+        if (len > start) {
+            dest.write(input, start, len - start);
+        }
+    }
+
+
+    /*
+     * Equivalent to escapeAndAppend(input.toString(), dest) but avoids the
+     * conversion to String where possible.
+     */
+    private static void escapeAndAppend(MessageBytes input, CharArrayWriter dest) {
+        if (!isLatin1Bytes(input, dest)) {
+            escapeAndAppend(input.toString(), dest);
+            return;
+        }
+
+        ByteChunk bc = input.getByteChunk();
+        if (bc.getLength() == 0) {
+            dest.append('-');
+            return;
+        }
+
+        LogMessageWriter writer = (LogMessageWriter) dest;
+        byte[] b = bc.getBuffer();
+        int end = bc.getEnd();
+        int start = bc.getStart();
+        for (int i = start; i < end; i++) {
+            char c = (char) (b[i] & 0xFF);
+            if (needsEscape(c)) {
+                if (i > start) {
+                    writer.appendLatin1(b, start, i - start);
+                }
+                escape(c, dest);
+                start = i + 1;
+            }
+        }
+        if (end > start) {
+            writer.appendLatin1(b, start, end - start);
+        }
+    }
+
+
+    private static boolean needsEscape(char c) {
+        // Control, delete (127), above 127, " and \
+        return c < 32 || c > 126 || c == '\\' || c == '\"';
+    }
+
+
+    private static void escape(char c, CharArrayWriter dest) {
+        switch (c) {
+        // " and \
+        case '\\':
+            dest.append("\\\\");
+            break;
+        case '\"':
+            dest.append("\\\"");
+            break;
+        // Standard C escapes for whitespace (not all standard C escapes)
+        case '\f':
+            dest.append("\\f");
+            break;
+        case '\n':
+            dest.append("\\n");
+            break;
+        case '\r':
+            dest.append("\\r");
+            break;
+        case '\t':
+            dest.append("\\t");
+            break;
+        case '\u000b':
+            dest.append("\\v");
+            break;
+        default:
+            dest.append("\\u");
+            dest.append(HexUtils.toHexString(c));
+        }
+    }
+
+
+    /**
+     * Escape, so they may be used in a JSON string, the characters written to
+     * the buffer since it contained the given number of characters. When used
+     * with the buffers created by this valve, the characters are escaped in
+     * place.
+     *
+     * @param buf   The buffer
+     * @param start The size of the buffer before the characters to escape
+     *              were written
+     */
+    protected static void escapeJson(CharArrayWriter buf, int start) {
+        if (buf instanceof LogMessageWriter) {
+            ((LogMessageWriter) buf).escapeJson(start);
+        } else {
+            char[] chars = buf.toCharArray();
+            buf.reset();
+            buf.write(chars, 0, start);
+            buf.append(JSONFilter.escape(new String(chars, start, chars.length - start)));
+        }
+    }
+
+
+    /*
+     * Equivalent to dest.append(input.toString()) but avoids the conversion
+     * to String where possible.
+     */
+    private static void append(MessageBytes input, CharArrayWriter dest) {
+        if (isLatin1Bytes(input, dest)) {
+            ByteChunk bc = input.getByteChunk();
+            ((LogMessageWriter) dest).appendLatin1(bc.getBuffer(), bc.getStart(), bc.getLength());
+        } else if (input.getType() == MessageBytes.T_CHARS) {
+            CharChunk cc = input.getCharChunk();
+            dest.write(cc.getBuffer(), cc.getStart(), cc.getLength());
+        } else {
+            dest.append(input.toString());
+        }
+    }
+
+
+    /*
+     * Equivalent to dest.append(Long.toString(value)) but avoids creating the
+     * String where possible.
+     */
+    private static void appendLong(long value, CharArrayWriter dest) {
+        if (value >= 0 && dest instanceof LogMessageWriter) {
+            ((LogMessageWriter) dest).appendLong(value);
+        } else {
+            dest.append(Long.toString(value));
+        }
+    }
+
+
+    /*
+     * Can the bytes of the given MessageBytes be written directly? Each
+     * ISO-8859-1 byte maps to the char with the same value which is what
+     * MessageBytes.toString() would produce.
+     */
+    private static boolean isLatin1Bytes(MessageBytes input, CharArrayWriter dest) {
+        return input.getType() == MessageBytes.T_BYTES && dest instanceof LogMessageWriter &&
+                StandardCharsets.ISO_8859_1.equals(input.getCharset());
+    }
+
+
+    /**
+     * The buffer used to build each log message. Buffers are only used by one
+     * thread at a time so, unlike the methods inherited from
+     * {@link CharArrayWriter}, the additional methods do not synchronize.
+     * They allow bytes and numbers to be written without creating an
+     * intermediate String.
+     */
+    private static final class LogMessageWriter extends CharArrayWriter {
+
+        LogMessageWriter(int initialSize) {
+            super(initialSize);
+        }
+
+        void appendLatin1(byte[] b, int off, int len) {
+            ensureCapacity(count + len);
+            for (int i = 0; i < len; i++) {
+                buf[count++] = (char) (b[off + i] & 0xFF);
+            }
+        }
+
+        void appendLong(long value) {
+            int digits = 1;
+            for (long v = value / 10; v > 0; v /= 10) {
+                digits++;
+            }
+            ensureCapacity(count + digits);
+            int pos = count + digits;
+            do {
+                buf[--pos] = (char) ('0' + (value % 10));
+                value /= 10;
+            } while (value > 0);
+            count += digits;
+        }
+
+        void escapeJson(int start) {
+            int extra = 0;
+            for (int i = start; i < count; i++) {
+                String sequence = JSONFilter.escape(buf[i]);
+                if (sequence != null) {
+                    extra += sequence.length() - 1;
+                }
+            }
+            if (extra == 0) {
+                return;
+            }
+            // Expand from the end so each character is only moved once
+            ensureCapacity(count + extra);
+            int src = count - 1;
+            int dst = src + extra;
+            while (src < dst) {
+                char c = buf[src--];
+                String sequence = JSONFilter.escape(c);
+                if (sequence == null) {
+                    buf[dst--] = c;
                 } else {
-                    dest.append(c);
+                    for (int j = sequence.length() - 1; j >= 0; j--) {
+                        buf[dst--] = sequence.charAt(j);
+                    }
                 }
             }
+            count += extra;
+        }
+
+        private void ensureCapacity(int required) {
+            if (required > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, required));
+            }
         }
     }
 }
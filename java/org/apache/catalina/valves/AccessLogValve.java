@@ -25,18 +25,25 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.catalina.LifecycleException;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.ExceptionUtils;
 import org.apache.tomcat.util.buf.B2CConverter;
+import org.apache.tomcat.util.collections.SingleConsumerRingBuffer;
 
 
 /**
@@ -46,6 +53,8 @@ import org.apache.tomcat.util.buf.B2CConverter;
  * <ul>
  * <li>Automatic date-based rollover of log files</li>
  * <li>Optional log file rotation</li>
+ * <li>Optional asynchronous writing of log entries by a background
+ *     thread</li>
  * </ul>
  * <p>
  * For UNIX users, another field called <code>checkExists</code> is also
@@ -163,6 +172,48 @@ public class AccessLogValve extends AbstractAccessLogValve {
     private int maxDays = -1;
     private volatile boolean checkForOldLogs = false;
 
+    /**
+     * Should log entries be handed to a background thread that writes them
+     * to the log file in batches rather than being written by the request
+     * processing thread?
+     */
+    private boolean asyncWrite = false;
+
+    /**
+     * The maximum number of log entries that may be waiting to be written
+     * when {@link #asyncWrite} is enabled.
+     */
+    private int asyncQueueSize = 8192;
+
+    /**
+     * What to do with a log entry when {@link #asyncWrite} is enabled and
+     * the queue is full.
+     */
+    private OverflowPolicy asyncOverflowPolicy = OverflowPolicy.BLOCK;
+
+    /**
+     * The number of log entries discarded because the queue was full.
+     */
+    private final AtomicLong asyncDroppedCount = new AtomicLong(0);
+
+    /**
+     * The background writer, if {@link #asyncWrite} was enabled when this
+     * valve was started.
+     */
+    private volatile AsyncWriter asyncWriter = null;
+
+    /**
+     * The channel for the currently open log file. It writes to the same
+     * file descriptor as {@link #writer}.
+     */
+    private FileChannel channel = null;
+
+    /**
+     * The character set used to encode entries for the currently open log
+     * file.
+     */
+    private volatile Charset charset = StandardCharsets.ISO_8859_1;
+
     // ------------------------------------------------------------- Properties
 
 
@@ -362,6 +413,107 @@ public class AccessLogValve extends AbstractAccessLogValve {
         }
     }
 
+    /**
+     * Will log entries be written asynchronously?
+     *
+     * @return <code>true</code> if log entries are queued and written to the
+     *         log file in batches by a background thread
+     */
+    public boolean isAsyncWrite() {
+        return asyncWrite;
+    }
+
+
+    /**
+     * Configure whether log entries should be written asynchronously. A
+     * change takes effect the next time this valve is started.
+     *
+     * @param asyncWrite <code>true</code> to queue log entries for a
+     *                   background thread to write
+     */
+    public void setAsyncWrite(boolean asyncWrite) {
+        this.asyncWrite = asyncWrite;
+    }
+
+
+    /**
+     * @return the maximum number of log entries that may be waiting to be
+     *         written when writing asynchronously.
+     */
+    public int getAsyncQueueSize() {
+        return asyncQueueSize;
+    }
+
+
+    /**
+     * Set the maximum number of log entries that may be waiting to be
+     * written when writing asynchronously. The value is rounded up to the
+     * next power of two. A change takes effect the next time this valve is
+     * started.
+     *
+     * @param asyncQueueSize The new queue size
+     */
+    public void setAsyncQueueSize(int asyncQueueSize) {
+        if (asyncQueueSize < 1) {
+            throw new IllegalArgumentException(sm.getString(
+                    "accessLogValve.invalidAsyncQueueSize", Integer.toString(asyncQueueSize)));
+        }
+        this.asyncQueueSize = asyncQueueSize;
+    }
+
+
+    /**
+     * @return the policy applied when writing asynchronously and the queue
+     *         is full. One of <code>block</code>, <code>drop</code> or
+     *         <code>count</code>.
+     */
+    public String getAsyncOverflowPolicy() {
+        return asyncOverflowPolicy.toString();
+    }
+
+
+    /**
+     * Set the policy applied when writing asynchronously and the queue is
+     * full.
+     * <ul>
+     * <li><code>block</code> - the request processing thread waits until
+     *     there is space in the queue</li>
+     * <li><code>drop</code> - the log entry is discarded and the number of
+     *     discarded entries is periodically logged as a warning</li>
+     * <li><code>count</code> - the log entry is discarded and only the
+     *     counter exposed via JMX is updated</li>
+     * </ul>
+     *
+     * @param asyncOverflowPolicy The new policy
+     */
+    public void setAsyncOverflowPolicy(String asyncOverflowPolicy) {
+        this.asyncOverflowPolicy = OverflowPolicy.fromString(asyncOverflowPolicy);
+    }
+
+
+    /**
+     * @return the number of log entries waiting to be written by the
+     *         background thread or zero if log entries are not being written
+     *         asynchronously.
+     */
+    public int getAsyncQueueDepth() {
+        AsyncWriter asyncWriter = this.asyncWriter;
+        if (asyncWriter == null) {
+            return 0;
+        }
+        return asyncWriter.queue.size();
+    }
+
+
+    /**
+     * @return the number of log entries discarded because the queue was full
+     *         since this valve was created.
+     */
+    public long getAsyncDroppedCount() {
+        return asyncDroppedCount.get();
+    }
+
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -376,6 +528,11 @@ public class AccessLogValve extends AbstractAccessLogValve {
             writer.flush();
         }
 
+        AsyncWriter asyncWriter = this.asyncWriter;
+        if (asyncWriter != null) {
+            asyncWriter.reportDropped();
+        }
+
         int maxDays = this.maxDays;
         String prefix = this.prefix;
         String suffix = this.suffix;
@@ -572,6 +729,7 @@ public class AccessLogValve extends AbstractAccessLogValve {
             }
         }
         writer = null;
+        channel = null;
         dateStamp = "";
         currentLogFile = null;
     }
@@ -586,9 +744,41 @@ public class AccessLogValve extends AbstractAccessLogValve {
     @Override
     public void log(CharArrayWriter message) {
 
+        AsyncWriter asyncWriter = this.asyncWriter;
+        if (asyncWriter != null) {
+            // The message is recycled once this method returns so the
+            // background thread needs a copy
+            message.append(System.lineSeparator());
+            asyncWriter.add(message.toString().getBytes(charset));
+            return;
+        }
+
         rotate();
+        checkLogFileExists();
+
+        // Log this message
+        try {
+            message.write(System.lineSeparator());
+            synchronized(this) {
+                if (writer != null) {
+                    message.writeTo(writer);
+                    if (!buffered) {
+                        writer.flush();
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            log.warn(sm.getString(
+                    "accessLogValve.writeFail", message.toString()), ioe);
+        }
+    }
 
-        /* In case something external rotated the file instead */
+
+    /**
+     * If {@link #checkExists} is enabled, reopen the log file if something
+     * external has moved or removed it.
+     */
+    private void checkLogFileExists() {
         if (checkExists) {
             synchronized (this) {
                 if (currentLogFile != null && !currentLogFile.exists()) {
@@ -607,22 +797,6 @@ public class AccessLogValve extends AbstractAccessLogValve {
                 }
             }
         }
-
-        // Log this message
-        try {
-            message.write(System.lineSeparator());
-            synchronized(this) {
-                if (writer != null) {
-                    message.writeTo(writer);
-                    if (!buffered) {
-                        writer.flush();
-                    }
-                }
-            }
-        } catch (IOException ioe) {
-            log.warn(sm.getString(
-                    "accessLogValve.writeFail", message.toString()), ioe);
-        }
     }
 
 
@@ -647,14 +821,18 @@ public class AccessLogValve extends AbstractAccessLogValve {
             charset = StandardCharsets.ISO_8859_1;
         }
 
+        this.charset = charset;
+
         try {
+            FileOutputStream fos = new FileOutputStream(pathname, true);
             writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
-                    new FileOutputStream(pathname, true), charset), 128000),
-                    false);
+                    fos, charset), 128000), false);
+            channel = fos.getChannel();
 
             currentLogFile = pathname;
         } catch (IOException e) {
             writer = null;
+            channel = null;
             currentLogFile = null;
             log.error(sm.getString("accessLogValve.openFail", pathname, System.getProperty("user.name")), e);
         }
@@ -684,6 +862,11 @@ public class AccessLogValve extends AbstractAccessLogValve {
         }
         open();
 
+        if (asyncWrite) {
+            asyncWriter = new AsyncWriter(asyncQueueSize, asyncOverflowPolicy);
+            asyncWriter.start();
+        }
+
         super.startInternal();
     }
 
@@ -699,6 +882,201 @@ public class AccessLogValve extends AbstractAccessLogValve {
     protected synchronized void stopInternal() throws LifecycleException {
 
         super.stopInternal();
+        AsyncWriter asyncWriter = this.asyncWriter;
+        if (asyncWriter != null) {
+            this.asyncWriter = null;
+            asyncWriter.stop();
+        }
         close(false);
     }
+
+
+    private enum OverflowPolicy {
+        BLOCK,
+        DROP,
+        COUNT;
+
+        static OverflowPolicy fromString(String value) {
+            for (OverflowPolicy policy : values()) {
+                if (policy.toString().equalsIgnoreCase(value.trim())) {
+                    return policy;
+                }
+            }
+            throw new IllegalArgumentException(sm.getString(
+                    "accessLogValve.invalidOverflowPolicy", value));
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+
+    /**
+     * Writes queued log entries to the current log file. Request processing
+     * threads add encoded entries to a lock-free ring buffer and a single
+     * thread drains it, writing each batch of entries with one gathering
+     * write to the file channel. Rotation and the check for an externally
+     * removed file are performed by this thread once per batch.
+     */
+    private class AsyncWriter implements Runnable {
+
+        /*
+         * Limit the number of buffers passed to a single gathering write.
+         * Most platforms limit a single write to 1024 buffers.
+         */
+        private static final int MAX_BATCH = 1024;
+
+        private static final long BLOCK_WAIT_NANOS = 100_000;
+
+        private final SingleConsumerRingBuffer<byte[]> queue;
+        private final OverflowPolicy overflowPolicy;
+        private final Thread thread;
+        private final ByteBuffer[] batch = new ByteBuffer[MAX_BATCH];
+
+        private volatile boolean running = true;
+        private volatile boolean waiting = false;
+
+        /*
+         * Only accessed from backgroundProcess() which is synchronized.
+         */
+        private long droppedReported = asyncDroppedCount.get();
+
+        AsyncWriter(int queueSize, OverflowPolicy overflowPolicy) {
+            queue = new SingleConsumerRingBuffer<>(queueSize);
+            this.overflowPolicy = overflowPolicy;
+            thread = new Thread(this, "AccessLogWriter[" + getContainer().getName() + "]");
+            thread.setDaemon(true);
+        }
+
+
+        void start() {
+            thread.start();
+        }
+
+
+        /*
+         * Called with the valve's monitor held. It is released while waiting
+         * so the writer thread can complete any in progress write, rotation
+         * or file existence check.
+         */
+        void stop() {
+            running = false;
+            LockSupport.unpark(thread);
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    AccessLogValve.this.wait(100);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+
+        void add(byte[] entry) {
+            if (queue.offer(entry)) {
+                signal();
+                return;
+            }
+            if (overflowPolicy != OverflowPolicy.BLOCK) {
+                asyncDroppedCount.incrementAndGet();
+                return;
+            }
+            // Make sure the writer is not asleep and wait for it to free
+            // some space
+            signal();
+            while (!queue.offer(entry)) {
+                if (!running) {
+                    asyncDroppedCount.incrementAndGet();
+                    return;
+                }
+                LockSupport.parkNanos(BLOCK_WAIT_NANOS);
+            }
+            signal();
+        }
+
+
+        private void signal() {
+            if (waiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+
+        void reportDropped() {
+            long dropped = asyncDroppedCount.get();
+            if (overflowPolicy == OverflowPolicy.DROP && dropped > droppedReported) {
+                log.warn(sm.getString("accessLogValve.asyncDropped",
+                        Long.valueOf(dropped - droppedReported)));
+            }
+            droppedReported = dropped;
+        }
+
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    int count = 0;
+                    byte[] entry;
+                    while (count < MAX_BATCH && (entry = queue.poll()) != null) {
+                        batch[count++] = ByteBuffer.wrap(entry);
+                    }
+                    if (count > 0) {
+                        write(count);
+                    } else if (queue.size() > 0) {
+                        // A producer has claimed a slot but not yet filled it
+                        Thread.onSpinWait();
+                    } else if (running) {
+                        waiting = true;
+                        // Re-check after setting the flag to avoid missing the
+                        // signal for an entry added in the meantime
+                        if (queue.size() == 0 && running) {
+                            LockSupport.parkNanos(this, TimeUnit.SECONDS.toNanos(1));
+                        }
+                        waiting = false;
+                    } else {
+                        break;
+                    }
+                }
+            } finally {
+                synchronized (AccessLogValve.this) {
+                    AccessLogValve.this.notifyAll();
+                }
+            }
+        }
+
+
+        private void write(int count) {
+            try {
+                rotate();
+                checkLogFileExists();
+                synchronized (AccessLogValve.this) {
+                    if (channel != null) {
+                        // Anything written directly to the writer, such as
+                        // the header added by sub-classes, goes first
+                        writer.flush();
+                        int offset = 0;
+                        while (offset < count) {
+                            channel.write(batch, offset, count - offset);
+                            while (offset < count && !batch[offset].hasRemaining()) {
+                                offset++;
+                            }
+                        }
+                    }
+                }
+            } catch (Throwable t) {
+                ExceptionUtils.handleThrowable(t);
+                log.warn(sm.getString("accessLogValve.asyncWriteFail",
+                        Integer.toString(count)), t);
+            } finally {
+                Arrays.fill(batch, 0, count, null);
+            }
+        }
+    }
 }
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.valves;
+
+import java.io.CharArrayWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.tomcat.util.json.JSONFilter;
+
+/**
+ * An implementation of the {@link AccessLogValve} that writes each entry as a
+ * JSON object on a single line, creating a JSON lines file that can be
+ * consumed without having to parse the fields back out of a text line.
+ * <p>
+ * The same patterns as the {@link AccessLogValve} are supported. Each pattern
+ * element is written as an attribute of the JSON object and any literal text
+ * in the pattern is ignored. For example, the <code>common</code> pattern
+ * creates entries like:
+ * <pre>
+ * {"host":"192.168.0.1","logicalUserName":"-","user":"-","time":"[18/Sep/2011:19:18:28 -0400]","request":"GET /index.html HTTP/1.1","statusCode":"200","size":"1024"}
+ * </pre>
+ * Request headers (<code>%{xxx}i</code>), response headers
+ * (<code>%{xxx}o</code>), cookies (<code>%{xxx}c</code>), request attributes
+ * (<code>%{xxx}r</code>) and session attributes (<code>%{xxx}s</code>) are
+ * grouped into nested objects named <code>requestHeaders</code>,
+ * <code>responseHeaders</code>, <code>cookies</code>,
+ * <code>requestAttributes</code> and <code>sessionAttributes</code>
+ * respectively. Each element writes directly into the message buffer and the
+ * characters written are then escaped in place so no intermediate text line
+ * or String is created.
+ */
+public class JsonAccessLogValve extends AccessLogValve {
+
+    private static final Map<Character, String> ATTRIBUTE_NAMES;
+    private static final Map<Character, String> SUB_OBJECT_NAMES;
+
+    static {
+        Map<Character, String> names = new HashMap<>();
+        names.put(Character.valueOf('a'), "remoteAddr");
+        names.put(Character.valueOf('A'), "localAddr");
+        names.put(Character.valueOf('b'), "size");
+        names.put(Character.valueOf('B'), "byteSentNC");
+        names.put(Character.valueOf('D'), "elapsedTime");
+        names.put(Character.valueOf('F'), "firstByteTime");
+        names.put(Character.valueOf('h'), "host");
+        names.put(Character.valueOf('H'), "protocol");
+        names.put(Character.valueOf('I'), "threadName");
+        names.put(Character.valueOf('l'), "logicalUserName");
+        names.put(Character.valueOf('m'), "method");
+        names.put(Character.valueOf('p'), "port");
+        names.put(Character.valueOf('q'), "query");
+        names.put(Character.valueOf('r'), "request");
+        names.put(Character.valueOf('s'), "statusCode");
+        names.put(Character.valueOf('S'), "sessionId");
+        names.put(Character.valueOf('t'), "time");
+        names.put(Character.valueOf('T'), "elapsedTimeS");
+        names.put(Character.valueOf('u'), "user");
+        names.put(Character.valueOf('U'), "requestURI");
+        names.put(Character.valueOf('v'), "serverName");
+        names.put(Character.valueOf('X'), "connectionStatus");
+        ATTRIBUTE_NAMES = Collections.unmodifiableMap(names);
+
+        Map<Character, String> subObjectNames = new HashMap<>();
+        subObjectNames.put(Character.valueOf('c'), "cookies");
+        subObjectNames.put(Character.valueOf('i'), "requestHeaders");
+        subObjectNames.put(Character.valueOf('o'), "responseHeaders");
+        subObjectNames.put(Character.valueOf('r'), "requestAttributes");
+        subObjectNames.put(Character.valueOf('s'), "sessionAttributes");
+        SUB_OBJECT_NAMES = Collections.unmodifiableMap(subObjectNames);
+    }
+
+
+    @Override
+    protected AccessLogElement createAccessLogElement(char pattern) {
+        AccessLogElement element = super.createAccessLogElement(pattern);
+        String name = ATTRIBUTE_NAMES.get(Character.valueOf(pattern));
+        if (name == null) {
+            // Unknown pattern. The element is discarded.
+            return element;
+        }
+        return createJsonElement(null, name, element);
+    }
+
+
+    @Override
+    protected AccessLogElement createAccessLogElement(String name, char pattern) {
+        AccessLogElement element = super.createAccessLogElement(name, pattern);
+        String subObjectName = SUB_OBJECT_NAMES.get(Character.valueOf(pattern));
+        if (subObjectName != null) {
+            return createJsonElement(subObjectName, name, element);
+        }
+        String attributeName = ATTRIBUTE_NAMES.get(Character.valueOf(pattern));
+        if (attributeName == null) {
+            // Unknown pattern. The element is discarded.
+            return element;
+        }
+        // Such as %{remote}p or %{msec}t
+        return createJsonElement(null, attributeName + "-" + name, element);
+    }
+
+
+    @Override
+    protected AccessLogElement[] createLogElements() {
+        // Group the elements by top-level attribute in the order each
+        // attribute first appears. Literal text is dropped.
+        Map<String, List<JsonElement>> attributes = new LinkedHashMap<>();
+        for (AccessLogElement element : super.createLogElements()) {
+            if (element instanceof JsonElement) {
+                JsonElement jsonElement = (JsonElement) element;
+                String key = jsonElement.subObjectName == null ?
+                        jsonElement.name : jsonElement.subObjectName;
+                attributes.computeIfAbsent(key, k -> new ArrayList<>()).add(jsonElement);
+            }
+        }
+
+        // The structure of the JSON object is written by literal elements.
+        // Each value is surrounded by quotes.
+        List<AccessLogElement> result = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        literal.append('{');
+        boolean first = true;
+        for (Map.Entry<String, List<JsonElement>> attribute : attributes.entrySet()) {
+            if (first) {
+                first = false;
+            } else {
+                literal.append(',');
+            }
+            appendName(attribute.getKey(), literal);
+            List<JsonElement> elements = attribute.getValue();
+            if (elements.get(0).subObjectName == null) {
+                // Duplicate simple attributes are only written once
+                addValue(elements.get(0), literal, result);
+            } else {
+                literal.append('{');
+                Set<String> names = new HashSet<>();
+                for (JsonElement element : elements) {
+                    if (names.add(element.name)) {
+                        if (names.size() > 1) {
+                            literal.append(',');
+                        }
+                        appendName(element.name, literal);
+                        addValue(element, literal, result);
+                    }
+                }
+                literal.append('}');
+            }
+        }
+        literal.append('}');
+        result.add(new StringElement(literal.toString()));
+        return result.toArray(new AccessLogElement[0]);
+    }
+
+
+    private static JsonElement createJsonElement(String subObjectName, String name,
+            AccessLogElement element) {
+        if (element instanceof CachedElement) {
+            return new CachedJsonElement(subObjectName, name, element);
+        }
+        return new JsonElement(subObjectName, name, element);
+    }
+
+
+    private static void appendName(String name, StringBuilder literal) {
+        literal.append('"');
+        literal.append(JSONFilter.escape(name));
+        literal.append("\":");
+    }
+
+
+    private static void addValue(JsonElement element, StringBuilder literal,
+            List<AccessLogElement> result) {
+        literal.append('"');
+        result.add(new StringElement(literal.toString()));
+        literal.setLength(0);
+        result.add(element);
+        literal.append('"');
+    }
+
+
+    /**
+     * Wraps a standard element and escapes what it writes so it can be used
+     * as a JSON string.
+     */
+    protected static class JsonElement implements AccessLogElement {
+
+        private final String subObjectName;
+        private final String name;
+        private final AccessLogElement delegate;
+
+        public JsonElement(String subObjectName, String name, AccessLogElement delegate) {
+            this.subObjectName = subObjectName;
+            this.name = name;
+            this.delegate = delegate;
+        }
+
+        protected AccessLogElement getDelegate() {
+            return delegate;
+        }
+
+        @Override
+        public void addElement(CharArrayWriter buf, Date date, Request request,
+                Response response, long time) {
+            int start = buf.size();
+            delegate.addElement(buf, date, request, response, time);
+            escapeJson(buf, start);
+        }
+    }
+
+
+    /**
+     * Wraps a standard element that needs its value to be cached at the start
+     * of the request.
+     */
+    protected static class CachedJsonElement extends JsonElement implements CachedElement {
+
+        public CachedJsonElement(String subObjectName, String name, AccessLogElement delegate) {
+            super(subObjectName, name, delegate);
+        }
+
+        @Override
+        public void cache(Request request) {
+            ((CachedElement) getDelegate()).cache(request);
+        }
+    }
+}
@@ -16,19 +16,33 @@
  */
 package org.apache.catalina.webresources;
 
-import java.util.Comparator;
 import java.util.Iterator;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.catalina.WebResource;
 import org.apache.catalina.WebResourceRoot.CacheStrategy;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.collections.FrequencySketch;
 import org.apache.tomcat.util.res.StringManager;
 
+/**
+ * Caches resource metadata and content for a {@link StandardRoot}.
+ * <p>
+ * Eviction uses a TinyLFU policy. Every look-up is recorded in a
+ * {@link FrequencySketch}. When space is required, a small sample of cached
+ * entries is taken and the least frequently used entry in the sample is
+ * evicted. A new entry is only admitted to a full cache if it has been used at
+ * least as frequently as the entry that would have to be evicted to make space
+ * for it. This protects frequently used resources from being flushed from the
+ * cache by requests for large numbers of resources that are rarely used and
+ * requires neither sorting nor any per-access bookkeeping beyond updating the
+ * sketch.
+ */
 public class Cache {
 
     private static final Log log = LogFactory.getLog(Cache.class);
@@ -40,6 +54,12 @@ public class Cache {
     // objectMaxSize must be < maxSize/20
     private static final int OBJECT_MAX_SIZE_FACTOR = 20;
 
+    // The number of entries examined to select each entry to evict
+    private static final int EVICTION_SAMPLE_SIZE = 8;
+
+    // Used to estimate the number of entries when sizing the frequency sketch
+    private static final int ESTIMATED_ENTRY_SIZE = 4 * 1024;
+
     private final StandardRoot root;
     private final AtomicLong size = new AtomicLong(0);
 
@@ -47,13 +67,21 @@ public class Cache {
     private long maxSize = 10 * 1024 * 1024;
     private int objectMaxSize = (int) maxSize/OBJECT_MAX_SIZE_FACTOR;
     private CacheStrategy cacheStrategy;
+    private volatile boolean contentOffHeap = false;
 
     private AtomicLong lookupCount = new AtomicLong(0);
     private AtomicLong hitCount = new AtomicLong(0);
+    private AtomicLong evictionCount = new AtomicLong(0);
 
     private final ConcurrentMap<String,CachedResource> resourceCache =
             new ConcurrentHashMap<>();
 
+    private volatile FrequencySketch sketch = createSketch(maxSize);
+
+    private final Lock evictionLock = new ReentrantLock();
+    // Guarded by evictionLock
+    private Iterator<CachedResource> evictionIterator = null;
+
     public Cache(StandardRoot root) {
         this.root = root;
     }
@@ -72,6 +100,7 @@ public class Cache {
         }
 
         lookupCount.incrementAndGet();
+        sketch.increment(path.hashCode());
 
         CachedResource cacheEntry = resourceCache.get(path);
 
@@ -102,17 +131,15 @@ public class Cache {
                 size.addAndGet(delta);
 
                 if (size.get() > maxSize) {
-                    // Process resources unordered for speed. Trades cache
-                    // efficiency (younger entries may be evicted before older
-                    // ones) for speed since this is on the critical path for
-                    // request processing
                     long targetSize = maxSize * (100 - TARGET_FREE_PERCENT_GET) / 100;
-                    long newSize = evict(targetSize, resourceCache.values().iterator());
+                    long newSize = evict(targetSize, cacheEntry);
                     if (newSize > maxSize) {
-                        // Unable to create sufficient space for this resource
-                        // Remove it from the cache
-                        removeCacheEntry(path);
-                        log.warn(sm.getString("cache.addFail", path, root.getContext().getName()));
+                        // The resources already in the cache are used more
+                        // frequently than this one. Remove it from the cache.
+                        removeCacheEntry(cacheEntry);
+                        if (log.isDebugEnabled()) {
+                            log.debug(sm.getString("cache.admitFail", path, root.getContext().getName()));
+                        }
                     }
                 }
             } else {
@@ -147,6 +174,7 @@ public class Cache {
 
     protected WebResource[] getResources(String path, boolean useClassLoaderResources) {
         lookupCount.incrementAndGet();
+        sketch.increment(path.hashCode());
 
         // Don't call noCache(path) since the class loader only caches
         // individual resources. Therefore, always cache collections here
@@ -178,17 +206,15 @@ public class Cache {
                 size.addAndGet(delta);
 
                 if (size.get() > maxSize) {
-                    // Process resources unordered for speed. Trades cache
-                    // efficiency (younger entries may be evicted before older
-                    // ones) for speed since this is on the critical path for
-                    // request processing
                     long targetSize = maxSize * (100 - TARGET_FREE_PERCENT_GET) / 100;
-                    long newSize = evict(targetSize, resourceCache.values().iterator());
+                    long newSize = evict(targetSize, cacheEntry);
                     if (newSize > maxSize) {
-                        // Unable to create sufficient space for this resource
-                        // Remove it from the cache
-                        removeCacheEntry(path);
-                        log.warn(sm.getString("cache.addFail", path));
+                        // The resources already in the cache are used more
+                        // frequently than this one. Remove it from the cache.
+                        removeCacheEntry(cacheEntry);
+                        if (log.isDebugEnabled()) {
+                            log.debug(sm.getString("cache.admitFail", path, root.getContext().getName()));
+                        }
                     }
                 }
             } else {
@@ -204,18 +230,9 @@ public class Cache {
     }
 
     protected void backgroundProcess() {
-        // Create an ordered set of all cached resources with the least recently
-        // used first. This is a background process so we can afford to take the
-        // time to order the elements first
-        TreeSet<CachedResource> orderedResources =
-                new TreeSet<>(new EvictionOrder());
-        orderedResources.addAll(resourceCache.values());
-
-        Iterator<CachedResource> iter = orderedResources.iterator();
-
         long targetSize =
                 maxSize * (100 - TARGET_FREE_PERCENT_BACKGROUND) / 100;
-        long newSize = evict(targetSize, iter);
+        long newSize = evict(targetSize, null);
 
         if (newSize > targetSize) {
             log.info(sm.getString("cache.backgroundEvictFail",
@@ -237,27 +254,82 @@ public class Cache {
         return false;
     }
 
-    private long evict(long targetSize, Iterator<CachedResource> iter) {
-
-        long now = System.currentTimeMillis();
+    /*
+     * Evicts entries until the cache is no larger than the target size. If a
+     * candidate is provided, eviction stops if the entries that would be
+     * evicted are used more frequently than the candidate. Each call examines,
+     * at most, twice the number of entries in the cache so that the cost is
+     * bounded when entries cannot be evicted.
+     */
+    private long evict(long targetSize, CachedResource candidate) {
+        int candidateFrequency = Integer.MAX_VALUE;
+        if (candidate != null) {
+            candidateFrequency = sketch.frequency(candidate.getWebappPath().hashCode());
+        }
 
-        long newSize = size.get();
+        evictionLock.lock();
+        try {
+            long newSize = size.get();
+            int remaining = resourceCache.size() * 2;
+
+            while (newSize > targetSize && remaining > 0) {
+                CachedResource victim = null;
+                int victimFrequency = Integer.MAX_VALUE;
+                for (int i = 0; i < EVICTION_SAMPLE_SIZE && remaining > 0; i++) {
+                    CachedResource resource = nextEvictionCandidate();
+                    if (resource == null) {
+                        break;
+                    }
+                    remaining--;
+                    if (resource == candidate) {
+                        continue;
+                    }
+                    int frequency = sketch.frequency(resource.getWebappPath().hashCode());
+                    if (frequency < victimFrequency) {
+                        victim = resource;
+                        victimFrequency = frequency;
+                    }
+                }
 
-        while (newSize > targetSize && iter.hasNext()) {
-            CachedResource resource = iter.next();
+                if (victim == null || victimFrequency > candidateFrequency) {
+                    break;
+                }
 
-            // Don't expire anything that has been checked within the TTL
-            if (resource.getNextCheck() > now) {
-                continue;
+                if (removeCacheEntry(victim)) {
+                    evictionCount.incrementAndGet();
+                }
+                newSize = size.get();
             }
 
-            // Remove the entry from the cache
-            removeCacheEntry(resource.getWebappPath());
+            return newSize;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
 
-            newSize = size.get();
+    /*
+     * Iterates through the cache entries, starting again from the beginning
+     * when the end is reached, so that successive evictions sample different
+     * entries. The iterators of ConcurrentHashMap are weakly consistent so this
+     * is safe when entries are concurrently added and removed.
+     */
+    private CachedResource nextEvictionCandidate() {
+        if (evictionIterator == null || !evictionIterator.hasNext()) {
+            evictionIterator = resourceCache.values().iterator();
+            if (!evictionIterator.hasNext()) {
+                return null;
+            }
         }
+        return evictionIterator.next();
+    }
 
-        return newSize;
+    private boolean removeCacheEntry(CachedResource cachedResource) {
+        // Only remove the entry if it has not been replaced
+        if (resourceCache.remove(cachedResource.getWebappPath(), cachedResource)) {
+            size.addAndGet(-cachedResource.getSize());
+            return true;
+        }
+        return false;
     }
 
     void removeCacheEntry(String path) {
@@ -294,6 +366,15 @@ public class Cache {
     public void setMaxSize(long maxSize) {
         // Internally bytes, externally kilobytes
         this.maxSize = maxSize * 1024;
+        sketch = createSketch(this.maxSize);
+    }
+
+    public boolean isContentOffHeap() {
+        return contentOffHeap;
+    }
+
+    public void setContentOffHeap(boolean contentOffHeap) {
+        this.contentOffHeap = contentOffHeap;
     }
 
     public long getLookupCount() {
@@ -304,6 +385,10 @@ public class Cache {
         return hitCount.get();
     }
 
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
     public void setObjectMaxSize(int objectMaxSize) {
         if (objectMaxSize * 1024L > Integer.MAX_VALUE) {
             log.warn(sm.getString("cache.objectMaxSizeTooBigBytes", Integer.valueOf(objectMaxSize)));
@@ -343,22 +428,9 @@ public class Cache {
         return size.get() / 1024;
     }
 
-    private static class EvictionOrder implements Comparator<CachedResource> {
-
-        @Override
-        public int compare(CachedResource cr1, CachedResource cr2) {
-            long nc1 = cr1.getNextCheck();
-            long nc2 = cr2.getNextCheck();
-
-            // Oldest resource should be first (so iterator goes from oldest to
-            // youngest.
-            if (nc1 == nc2) {
-                return 0;
-            } else if (nc1 > nc2) {
-                return -1;
-            } else {
-                return 1;
-            }
-        }
+    private static FrequencySketch createSketch(long maxSize) {
+        long capacity = maxSize / ESTIMATED_ENTRY_SIZE;
+        // Small caches often contain many small entries
+        return new FrequencySketch((int) Math.max(256, Math.min(Integer.MAX_VALUE, capacity)));
     }
 }
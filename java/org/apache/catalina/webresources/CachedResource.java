@@ -24,6 +24,9 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.security.Permission;
 import java.security.cert.Certificate;
@@ -60,6 +63,7 @@ public class CachedResource implements WebResource {
     private final long ttl;
     private final int objectMaxSizeBytes;
     private final boolean usesClassLoaderResources;
+    private final boolean contentOffHeap;
 
     private volatile WebResource webResource;
     private volatile WebResource[] webResources;
@@ -68,6 +72,7 @@ public class CachedResource implements WebResource {
     private volatile Long cachedLastModified = null;
     private volatile String cachedLastModifiedHttp = null;
     private volatile byte[] cachedContent = null;
+    private volatile ByteBuffer cachedContentBuffer = null;
     private volatile Boolean cachedIsFile = null;
     private volatile Boolean cachedIsDirectory = null;
     private volatile Boolean cachedExists = null;
@@ -83,6 +88,7 @@ public class CachedResource implements WebResource {
         this.ttl = ttl;
         this.objectMaxSizeBytes = objectMaxSizeBytes;
         this.usesClassLoaderResources = usesClassLoaderResources;
+        this.contentOffHeap = cache.isContentOffHeap();
     }
 
     protected boolean validateResource(boolean useClassLoaderResources) {
@@ -289,6 +295,14 @@ public class CachedResource implements WebResource {
 
     @Override
     public InputStream getInputStream() {
+        if (contentOffHeap) {
+            ByteBuffer content = getContentBuffer();
+            if (content == null) {
+                // Can't cache InputStreams
+                return webResource.getInputStream();
+            }
+            return new ByteBufferInputStream(content);
+        }
         byte[] content = getContent();
         if (content == null) {
             // Can't cache InputStreams
@@ -299,6 +313,16 @@ public class CachedResource implements WebResource {
 
     @Override
     public byte[] getContent() {
+        if (contentOffHeap) {
+            // Callers expect a byte[] so a copy has to be made
+            ByteBuffer content = getContentBuffer();
+            if (content == null) {
+                return null;
+            }
+            byte[] result = new byte[content.remaining()];
+            content.get(result);
+            return result;
+        }
         if (cachedContent == null) {
             if (getContentLength() > objectMaxSizeBytes) {
                 return null;
@@ -308,6 +332,59 @@ public class CachedResource implements WebResource {
         return cachedContent;
     }
 
+    /**
+     * Obtain the cached content of this resource as a buffer. If the cache is
+     * configured to store content off-heap, this will be a read-only, direct
+     * buffer. Otherwise it will wrap the cached byte array. No copy of the
+     * content is made so callers must not modify the content. Each call
+     * returns a new buffer so the caller is free to change the position and
+     * limit of the returned buffer.
+     *
+     * @return The content or {@code null} if the content is too large to be
+     *         cached or is not available
+     */
+    public ByteBuffer getContentBuffer() {
+        if (contentOffHeap) {
+            ByteBuffer content = cachedContentBuffer;
+            if (content == null) {
+                content = loadContentBuffer();
+                if (content == null) {
+                    return null;
+                }
+                cachedContentBuffer = content;
+            }
+            return content.duplicate();
+        }
+        byte[] content = getContent();
+        if (content == null) {
+            return null;
+        }
+        return ByteBuffer.wrap(content);
+    }
+
+    private ByteBuffer loadContentBuffer() {
+        long contentLength = getContentLength();
+        if (contentLength > objectMaxSizeBytes || !isFile()) {
+            return null;
+        }
+        // Read the content directly into the direct buffer so the content is
+        // never fully copied to the heap
+        ByteBuffer content = ByteBuffer.allocateDirect((int) contentLength);
+        try (InputStream is = webResource.getInputStream();
+                ReadableByteChannel channel = Channels.newChannel(is)) {
+            while (content.hasRemaining() && channel.read(content) > -1) {
+                // NO-OP
+            }
+        } catch (IOException ioe) {
+            if (log.isDebugEnabled()) {
+                log.debug(sm.getString("cachedResource.loadContentFail", webAppPath), ioe);
+            }
+            return null;
+        }
+        content.flip();
+        return content.asReadOnlyBuffer();
+    }
+
     @Override
     public long getCreation() {
         return webResource.getCreation();
@@ -424,6 +501,52 @@ public class CachedResource implements WebResource {
     }
 
 
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer content;
+
+        ByteBufferInputStream(ByteBuffer content) {
+            this.content = content;
+        }
+
+        @Override
+        public int read() {
+            if (!content.hasRemaining()) {
+                return -1;
+            }
+            return content.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!content.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, content.remaining());
+            content.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            if (n <= 0) {
+                return 0;
+            }
+            int count = (int) Math.min(n, content.remaining());
+            content.position(content.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return content.remaining();
+        }
+    }
+
+
     private static class CachedResourceURLStreamHandler extends URLStreamHandler {
 
         private final URL resourceURL;
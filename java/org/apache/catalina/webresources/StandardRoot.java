@@ -544,6 +544,17 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
         return cache.getObjectMaxSize();
     }
 
+    @Override
+    public void setCacheContentOffHeap(boolean cacheContentOffHeap) {
+        // Only affects resources added to the cache after this point
+        cache.setContentOffHeap(cacheContentOffHeap);
+    }
+
+    @Override
+    public boolean isCacheContentOffHeap() {
+        return cache.isContentOffHeap();
+    }
+
     @Override
     public void setTrackLockedFiles(boolean trackLockedFiles) {
         this.trackLockedFiles = trackLockedFiles;
@@ -43,7 +43,7 @@ import org.apache.coyote.http11.upgrade.InternalHttpUpgradeHandler;
 import org.apache.juli.logging.Log;
 import org.apache.tomcat.InstanceManager;
 import org.apache.tomcat.util.ExceptionUtils;
-import org.apache.tomcat.util.collections.SynchronizedStack;
+import org.apache.tomcat.util.collections.StripedStack;
 import org.apache.tomcat.util.modeler.Registry;
 import org.apache.tomcat.util.net.AbstractEndpoint;
 import org.apache.tomcat.util.net.AbstractEndpoint.Handler;
@@ -248,6 +248,12 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler,
     }
 
 
+    public boolean getUseVirtualThreads() { return endpoint.getUseVirtualThreads(); }
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        endpoint.setUseVirtualThreads(useVirtualThreads);
+    }
+
+
     public int getAcceptCount() { return endpoint.getAcceptCount(); }
     public void setAcceptCount(int acceptCount) { endpoint.setAcceptCount(acceptCount); }
 
@@ -1156,7 +1162,7 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler,
         }
     }
 
-    protected static class RecycledProcessors extends SynchronizedStack<Processor> {
+    protected static class RecycledProcessors extends StripedStack<Processor> {
 
         private final transient ConnectionHandler<?> handler;
         protected final AtomicInteger size = new AtomicInteger(0);
@@ -1165,7 +1171,7 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler,
             this.handler = handler;
         }
 
-        @SuppressWarnings("sync-override") // Size may exceed cache size a bit
+        // Size may exceed cache size a bit
         @Override
         public boolean push(Processor processor) {
             int cacheSize = handler.getProtocol().getProcessorCache();
@@ -1184,7 +1190,7 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler,
             return result;
         }
 
-        @SuppressWarnings("sync-override") // OK if size is too big briefly
+        // OK if size is too big briefly
         @Override
         public Processor pop() {
             Processor result = super.pop();
@@ -1195,7 +1201,7 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler,
         }
 
         @Override
-        public synchronized void clear() {
+        public void clear() {
             Processor next = pop();
             while (next != null) {
                 handler.unregister(next);
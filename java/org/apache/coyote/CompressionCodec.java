@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A content coding that may be used to compress response bodies. Codecs are
+ * configured per connector via the <code>compressionCodecs</code> attribute and
+ * are selected for a response based on the Accept-Encoding header of the
+ * request.
+ * <p>
+ * Implementations must be thread safe and must have a public no-argument
+ * constructor.
+ */
+public interface CompressionCodec {
+
+    /**
+     * Obtain the name of the content coding implemented by this codec as used
+     * in the Accept-Encoding and Content-Encoding headers, e.g.
+     * <code>gzip</code>.
+     *
+     * @return The name of the content coding
+     */
+    String getEncoding();
+
+
+    /**
+     * Configure the compression level. The meaning of the value, including the
+     * range of valid values, is codec specific.
+     *
+     * @param level The compression level or <code>-1</code> to use the codec's
+     *              default
+     */
+    void setLevel(int level);
+
+
+    /**
+     * Configure the size of the window used for compression, expressed as the
+     * base two logarithm of the window size in bytes. Codecs that do not
+     * support configuring the window size ignore this setting.
+     *
+     * @param windowBits The window size or <code>-1</code> to use the codec's
+     *                   default
+     */
+    void setWindowBits(int windowBits);
+
+
+    /**
+     * Create a stream that compresses the data written to it and writes the
+     * compressed data to the provided stream. Calling {@link OutputStream#flush()}
+     * on the returned stream must write all of the data written so far to the
+     * provided stream in a form that the client is able to decompress. Calling
+     * {@link OutputStream#close()} must complete the compressed representation
+     * and must not close the provided stream.
+     * <p>
+     * Implementations may reuse encoder state that is expensive to create. Any
+     * such state associated with the returned stream is released when the
+     * stream is closed.
+     *
+     * @param out The stream to which compressed data should be written
+     *
+     * @return The compressing stream
+     *
+     * @throws IOException If the stream cannot be created
+     */
+    OutputStream createCompressionStream(OutputStream out) throws IOException;
+}
@@ -46,6 +46,10 @@ public class CompressionConfig {
             "text/javascript,application/javascript,application/json,application/xml";
     private String[] compressibleMimeTypes = null;
     private int compressionMinSize = 2048;
+    private String compressionCodecs = "gzip";
+    private volatile CompressionCodec[] compressionCodecsInternal = null;
+    private int compressionCodecLevel = -1;
+    private int compressionCodecWindowBits = -1;
 
 
     /**
@@ -182,6 +186,93 @@ public class CompressionConfig {
     }
 
 
+    public String getCompressionCodecs() {
+        return compressionCodecs;
+    }
+
+
+    /**
+     * Set the content codings that may be used to compress responses.
+     *
+     * @param compressionCodecs A comma separated list of content codings in
+     *                          order of preference. Each entry is either
+     *                          <code>gzip</code> or the fully qualified class
+     *                          name of a {@link CompressionCodec}
+     *                          implementation
+     */
+    public void setCompressionCodecs(String compressionCodecs) {
+        this.compressionCodecs = compressionCodecs;
+        compressionCodecsInternal = null;
+    }
+
+
+    public int getCompressionCodecLevel() {
+        return compressionCodecLevel;
+    }
+
+
+    /**
+     * Set the compression level passed to each configured
+     * {@link CompressionCodec}.
+     *
+     * @param compressionCodecLevel The codec specific compression level or
+     *                              <code>-1</code> for each codec's default
+     */
+    public void setCompressionCodecLevel(int compressionCodecLevel) {
+        this.compressionCodecLevel = compressionCodecLevel;
+        compressionCodecsInternal = null;
+    }
+
+
+    public int getCompressionCodecWindowBits() {
+        return compressionCodecWindowBits;
+    }
+
+
+    /**
+     * Set the window size passed to each configured {@link CompressionCodec}.
+     *
+     * @param compressionCodecWindowBits The base two logarithm of the window
+     *                                   size or <code>-1</code> for each
+     *                                   codec's default
+     */
+    public void setCompressionCodecWindowBits(int compressionCodecWindowBits) {
+        this.compressionCodecWindowBits = compressionCodecWindowBits;
+        compressionCodecsInternal = null;
+    }
+
+
+    public CompressionCodec[] getCompressionCodecsInternal() {
+        CompressionCodec[] result = compressionCodecsInternal;
+        if (result != null) {
+            return result;
+        }
+        List<CompressionCodec> values = new ArrayList<>();
+        StringTokenizer tokens = new StringTokenizer(compressionCodecs, ",");
+        while (tokens.hasMoreTokens()) {
+            String token = tokens.nextToken().trim();
+            if (token.length() > 0) {
+                try {
+                    CompressionCodec codec;
+                    if (token.equalsIgnoreCase("gzip")) {
+                        codec = new GzipCompressionCodec();
+                    } else {
+                        codec = (CompressionCodec) Class.forName(token).getConstructor().newInstance();
+                    }
+                    codec.setLevel(compressionCodecLevel);
+                    codec.setWindowBits(compressionCodecWindowBits);
+                    values.add(codec);
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    log.warn(sm.getString("compressionConfig.codecFail", token), e);
+                }
+            }
+        }
+        result = values.toArray(new CompressionCodec[0]);
+        compressionCodecsInternal = result;
+        return result;
+    }
+
+
     /**
      * Determines if compression should be enabled for the given response and if
      * it is, sets any necessary headers to mark it as such.
@@ -193,9 +284,33 @@ public class CompressionConfig {
      *         otherwise {@code false}
      */
     public boolean useCompression(Request request, Response response) {
+        return getCompressionCodec(request, response) != null;
+    }
+
+
+    /**
+     * Determines if compression should be enabled for the given response and if
+     * it is, selects the content coding to use and sets any necessary headers
+     * to mark it as such. The content coding is the one with the highest
+     * quality in the request's Accept-Encoding header. Where several have the
+     * same quality, the one listed first in {@link #getCompressionCodecs()} is
+     * used.
+     *
+     * @param request  The request that triggered the response
+     * @param response The response to consider compressing
+     *
+     * @return The codec to use to compress the given response or {@code null}
+     *         if the response should not be compressed
+     */
+    public CompressionCodec getCompressionCodec(Request request, Response response) {
         // Check if compression is enabled
         if (compressionLevel == 0) {
-            return false;
+            return null;
+        }
+
+        CompressionCodec[] codecs = getCompressionCodecsInternal();
+        if (codecs.length == 0) {
+            return null;
         }
 
         MimeHeaders responseHeaders = response.getMimeHeaders();
@@ -212,10 +327,15 @@ public class CompressionConfig {
                 // Because we are using StringReader, any exception here is a
                 // Tomcat bug.
                 log.warn(sm.getString("compressionConfig.ContentEncodingParseFail"), e);
-                return false;
+                return null;
             }
-            if (tokens.contains("gzip") || tokens.contains("br")) {
-                return false;
+            if (tokens.contains("gzip") || tokens.contains("br") || tokens.contains("zstd")) {
+                return null;
+            }
+            for (CompressionCodec codec : codecs) {
+                if (tokens.contains(codec.getEncoding())) {
+                    return null;
+                }
             }
         }
 
@@ -224,14 +344,14 @@ public class CompressionConfig {
             // Check if the response is of sufficient length to trigger the compression
             long contentLength = response.getContentLengthLong();
             if (contentLength != -1 && contentLength < compressionMinSize) {
-                return false;
+                return null;
             }
 
             // Check for compatible MIME-TYPE
             String[] compressibleMimeTypes = getCompressibleMimeTypes();
             if (compressibleMimeTypes != null &&
                     !startsWithStringArray(compressibleMimeTypes, response.getContentType())) {
-                return false;
+                return null;
             }
         }
 
@@ -240,37 +360,46 @@ public class CompressionConfig {
         if (eTag != null && !eTag.trim().startsWith("W/")) {
             // Has an ETag that doesn't start with "W/..." so it must be a
             // strong ETag
-            return false;
+            return null;
         }
 
         // If processing reaches this far, the response might be compressed.
         // Therefore, set the Vary header to keep proxies happy
         ResponseUtil.addVaryFieldName(responseHeaders, "accept-encoding");
 
-        // Check if user-agent supports gzip encoding
-        // Only interested in whether gzip encoding is supported. Other
-        // encodings and weights can be ignored.
+        // Select the content coding the user-agent prefers. Codings the
+        // user-agent does not support (including those with a quality of zero)
+        // are not present.
         Enumeration<String> headerValues = request.getMimeHeaders().values("accept-encoding");
-        boolean foundGzip = false;
-        while (!foundGzip && headerValues.hasMoreElements()) {
+        CompressionCodec selected = null;
+        int selectedIndex = -1;
+        double selectedQuality = 0;
+        while (headerValues.hasMoreElements()) {
             List<AcceptEncoding> acceptEncodings = null;
             try {
                 acceptEncodings = AcceptEncoding.parse(new StringReader(headerValues.nextElement()));
             } catch (IOException ioe) {
                 // If there is a problem reading the header, disable compression
-                return false;
+                return null;
             }
 
             for (AcceptEncoding acceptEncoding : acceptEncodings) {
-                if ("gzip".equalsIgnoreCase(acceptEncoding.getEncoding())) {
-                    foundGzip = true;
-                    break;
+                for (int i = 0; i < codecs.length; i++) {
+                    if (codecs[i].getEncoding().equalsIgnoreCase(acceptEncoding.getEncoding())) {
+                        double quality = acceptEncoding.getQuality();
+                        if (quality > selectedQuality || quality == selectedQuality && i < selectedIndex) {
+                            selected = codecs[i];
+                            selectedIndex = i;
+                            selectedQuality = quality;
+                        }
+                        break;
+                    }
                 }
             }
         }
 
-        if (!foundGzip) {
-            return false;
+        if (selected == null) {
+            return null;
         }
 
         // If force mode, the browser checks are skipped
@@ -282,7 +411,7 @@ public class CompressionConfig {
                 if(userAgentValueMB != null) {
                     String userAgentValue = userAgentValueMB.toString();
                     if (noCompressionUserAgents.matcher(userAgentValue).matches()) {
-                        return false;
+                        return null;
                     }
                 }
             }
@@ -293,9 +422,9 @@ public class CompressionConfig {
         // Compressed content length is unknown so mark it as such.
         response.setContentLength(-1);
         // Configure the content encoding for compressed content
-        responseHeaders.setValue("Content-Encoding").setString("gzip");
+        responseHeaders.setValue("Content-Encoding").setString(selected.getEncoding());
 
-        return true;
+        return selected;
     }
 
 
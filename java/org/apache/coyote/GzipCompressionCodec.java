@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.tomcat.util.collections.SynchronizedStack;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * The gzip content coding implemented using {@link Deflater}. Deflaters, along
+ * with the associated buffers, are pooled so that the native compression
+ * context is not created and destroyed for every compressed response.
+ */
+public class GzipCompressionCodec implements CompressionCodec {
+
+    private static final StringManager sm = StringManager.getManager(GzipCompressionCodec.class);
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final byte[] HEADER = new byte[] {
+            (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private final SynchronizedStack<GzipCompressionStream> streams =
+            new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE, SynchronizedStack.DEFAULT_SIZE);
+
+    private volatile int level = Deflater.DEFAULT_COMPRESSION;
+
+
+    @Override
+    public String getEncoding() {
+        return "gzip";
+    }
+
+
+    @Override
+    public void setLevel(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(sm.getString("gzipCompressionCodec.invalidLevel",
+                    Integer.toString(level)));
+        }
+        this.level = level;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * {@link Deflater} always uses a 32k window so this setting is ignored.
+     */
+    @Override
+    public void setWindowBits(int windowBits) {
+        // NO-OP
+    }
+
+
+    @Override
+    public OutputStream createCompressionStream(OutputStream out) throws IOException {
+        GzipCompressionStream stream = streams.pop();
+        if (stream == null) {
+            stream = new GzipCompressionStream(out, level);
+        } else {
+            stream.reset(out, level);
+        }
+        out.write(HEADER);
+        return stream;
+    }
+
+
+    private class GzipCompressionStream extends DeflaterOutputStream {
+
+        private final CRC32 crc = new CRC32();
+        private final byte[] trailer = new byte[8];
+        private boolean closed = false;
+
+        GzipCompressionStream(OutputStream out, int level) {
+            super(out, new Deflater(level, true), BUFFER_SIZE, true);
+        }
+
+
+        void reset(OutputStream out, int level) {
+            this.out = out;
+            def.reset();
+            def.setLevel(level);
+            crc.reset();
+            closed = false;
+        }
+
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            crc.update(b, off, len);
+        }
+
+
+        @Override
+        public void finish() throws IOException {
+            if (!def.finished()) {
+                def.finish();
+                while (!def.finished()) {
+                    deflate();
+                }
+                writeInt((int) crc.getValue(), 0);
+                writeInt((int) def.getBytesRead(), 4);
+                out.write(trailer);
+            }
+        }
+
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                finish();
+            } finally {
+                out = null;
+                // The Deflater is reset before it is next used
+                if (!streams.push(this)) {
+                    def.end();
+                }
+            }
+        }
+
+
+        private void writeInt(int i, int offset) {
+            trailer[offset] = (byte) i;
+            trailer[offset + 1] = (byte) (i >> 8);
+            trailer[offset + 2] = (byte) (i >> 16);
+            trailer[offset + 3] = (byte) (i >> 24);
+        }
+    }
+}
@@ -180,6 +180,24 @@ public class RequestInfo  {
         }
     }
 
+    /**
+     * Called by the processor when the request is going to be re-used after
+     * this {@code RequestInfo} has been removed from the associated
+     * {@link RequestGroupInfo}. The statistics will have been added to those of
+     * the {@link RequestGroupInfo} so they are cleared here to avoid them being
+     * counted twice.
+     */
+    public void recycleStatistics() {
+        bytesSent = 0;
+        bytesReceived = 0;
+        processingTime = 0;
+        maxTime = 0;
+        maxRequestUri = null;
+        requestCount = 0;
+        errorCount = 0;
+        lastRequestProcessingTime = 0;
+    }
+
     public int getStage() {
         return stage;
     }
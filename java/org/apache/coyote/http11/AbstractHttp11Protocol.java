@@ -34,6 +34,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpUpgradeHandler;
 
 import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.CompressionCodec;
 import org.apache.coyote.CompressionConfig;
 import org.apache.coyote.ContinueResponseTiming;
 import org.apache.coyote.Processor;
@@ -214,6 +215,34 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
     }
 
 
+    private int maxPipelinedFlushDelay = 0;
+    /**
+     * Obtain the maximum time, in milliseconds, that the responses to
+     * pipelined requests may be held in the socket write buffer so they can be
+     * written to the network together.
+     *
+     * @return The maximum delay in milliseconds. Zero or less means every
+     *         response is flushed as soon as it is complete.
+     */
+    public int getMaxPipelinedFlushDelay() { return maxPipelinedFlushDelay; }
+    /**
+     * Set the maximum time, in milliseconds, that the responses to pipelined
+     * requests may be held in the socket write buffer. When the next request is
+     * already present in the input buffer as a response completes, the flush of
+     * that response may be skipped so that it is written to the network with
+     * the responses that follow it. Buffered responses are always written
+     * before the next request is passed to the application, before Tomcat
+     * waits for more data from the client or once the socket write buffer is
+     * full.
+     *
+     * @param maxPipelinedFlushDelay The maximum delay in milliseconds. Zero or
+     *                               less disables the deferral of flushes
+     */
+    public void setMaxPipelinedFlushDelay(int maxPipelinedFlushDelay) {
+        this.maxPipelinedFlushDelay = maxPipelinedFlushDelay;
+    }
+
+
     private int maxSavePostSize = 4 * 1024;
     /**
      * Return the maximum size of the post which will be saved during FORM or
@@ -352,11 +381,40 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
     }
 
 
+    public String getCompressionCodecs() {
+        return compressionConfig.getCompressionCodecs();
+    }
+    public void setCompressionCodecs(String compressionCodecs) {
+        compressionConfig.setCompressionCodecs(compressionCodecs);
+    }
+
+
+    public int getCompressionCodecLevel() {
+        return compressionConfig.getCompressionCodecLevel();
+    }
+    public void setCompressionCodecLevel(int compressionCodecLevel) {
+        compressionConfig.setCompressionCodecLevel(compressionCodecLevel);
+    }
+
+
+    public int getCompressionCodecWindowBits() {
+        return compressionConfig.getCompressionCodecWindowBits();
+    }
+    public void setCompressionCodecWindowBits(int compressionCodecWindowBits) {
+        compressionConfig.setCompressionCodecWindowBits(compressionCodecWindowBits);
+    }
+
+
     public boolean useCompression(Request request, Response response) {
         return compressionConfig.useCompression(request, response);
     }
 
 
+    public CompressionCodec getCompressionCodec(Request request, Response response) {
+        return compressionConfig.getCompressionCodec(request, response);
+    }
+
+
     private Pattern restrictedUserAgents = null;
     /**
      * Get the string form of the regular expression that defines the User
@@ -18,7 +18,10 @@ package org.apache.coyote.http11;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
@@ -54,6 +57,15 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
     private static final byte[] CLIENT_PREFACE_START =
             "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
 
+    /*
+     * Used to scan header values eight bytes at a time. The byte order doesn't
+     * matter for the checks performed.
+     */
+    private static final VarHandle LONG_VIEW =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
     /**
      * Associated Coyote request.
      */
@@ -80,6 +92,13 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
     private boolean swallowInput;
 
 
+    /**
+     * Output for a previous, pipelined request that must be flushed before
+     * waiting for more data from the client.
+     */
+    private boolean flushBeforeRead = false;
+
+
     /**
      * The read buffer.
      */
@@ -268,6 +287,7 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
         byteBuffer.limit(0).position(0);
         lastActiveFilter = -1;
         swallowInput = true;
+        flushBeforeRead = false;
 
         chr = 0;
         prevChr = 0;
@@ -455,6 +475,10 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
                         return false;
                     }
                 }
+                if (chr != Constants.CR && scanRequestTarget()) {
+                    // Need more data
+                    continue;
+                }
                 int pos = byteBuffer.position();
                 prevChr = chr;
                 chr = byteBuffer.get();
@@ -658,6 +682,26 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
     }
 
 
+    /**
+     * Is there data for a pipelined request in the input buffer? Only valid
+     * once the current request has been ended.
+     *
+     * @return {@code true} if data for the next request has already been read
+     */
+    boolean hasPipelinedData() {
+        return byteBuffer.hasRemaining();
+    }
+
+
+    /**
+     * Ensure that any buffered output is flushed before the next time data is
+     * read from the socket.
+     */
+    void setFlushBeforeRead() {
+        flushBeforeRead = true;
+    }
+
+
     @Override
     public int available() {
         return available(false);
@@ -793,6 +837,16 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
             byteBuffer.limit(end).position(end);
         }
 
+        if (flushBeforeRead) {
+            // Responses to pipelined requests that have not been flushed must
+            // be written before (potentially) waiting for the client.
+            flushBeforeRead = false;
+            SocketWrapperBase<?> socketWrapper = this.wrapper;
+            if (socketWrapper != null) {
+                socketWrapper.flush(true);
+            }
+        }
+
         int nRead = -1;
         int mark = byteBuffer.position();
         try {
@@ -842,6 +896,111 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
     }
 
 
+    /*
+     * The scanXxx() methods below process, directly from the backing array,
+     * the bytes already read that do not require any of the special handling
+     * of the byte by byte parsing loops. They stop at the first byte that does
+     * (delimiters, line terminators and invalid bytes) leaving it for the
+     * parsing loop to process. Each returns true if all of the data read so far
+     * was consumed so more data is required before parsing can continue.
+     */
+
+    private boolean scanRequestTarget() {
+        byte[] buf = byteBuffer.array();
+        int pos = byteBuffer.position();
+        int limit = byteBuffer.limit();
+        int qPos = parsingRequestLineQPos;
+        while (pos < limit) {
+            byte b = buf[pos];
+            if (qPos == -1) {
+                if (b == Constants.QUESTION) {
+                    qPos = pos;
+                } else if (httpParser.isNotRequestTargetRelaxed(b)) {
+                    break;
+                }
+            } else if (!httpParser.isQueryRelaxed(b)) {
+                break;
+            }
+            pos++;
+        }
+        parsingRequestLineQPos = qPos;
+        return finishScan(pos, limit);
+    }
+
+
+    private boolean scanHeaderName() {
+        byte[] buf = byteBuffer.array();
+        int pos = byteBuffer.position();
+        int limit = byteBuffer.limit();
+        while (pos < limit) {
+            byte b = buf[pos];
+            if (b == Constants.COLON || !HttpParser.isToken(b)) {
+                break;
+            }
+            // Header names are stored in lower case
+            if ((b >= Constants.A) && (b <= Constants.Z)) {
+                buf[pos] = (byte) (b - Constants.LC_OFFSET);
+            }
+            pos++;
+        }
+        return finishScan(pos, limit);
+    }
+
+
+    /*
+     * Only called when the header value does not need to be moved (i.e. there
+     * has been no line folding) so the bytes can be left where they are.
+     */
+    private boolean scanHeaderValue() {
+        byte[] buf = byteBuffer.array();
+        int pos = byteBuffer.position();
+        int limit = byteBuffer.limit();
+        int lastSignificantChar = headerData.lastSignificantChar;
+        // Eight bytes at a time until a byte that needs checking (any control
+        // character, including HT, or DEL) is found.
+        while (limit - pos >= 8) {
+            long word = (long) LONG_VIEW.get(buf, pos);
+            // Bytes less than 0x20 or equal to 0x7F. Bytes of 0x80 and above
+            // are permitted (obs-text) and are excluded by the ~word term.
+            if ((((word - 0x2020202020202020L) | ((word ^ 0x7F7F7F7F7F7F7F7FL) - ONES)) & ~word & HIGH_BITS) != 0) {
+                break;
+            }
+            // Find the last non-space byte (HT has already been excluded)
+            for (int i = 7; i >= 0; i--) {
+                if (buf[pos + i] != Constants.SP) {
+                    lastSignificantChar = pos + i + 1;
+                    break;
+                }
+            }
+            pos += 8;
+        }
+        while (pos < limit) {
+            byte b = buf[pos];
+            if (b == Constants.SP || b == Constants.HT) {
+                // Not significant
+            } else if ((b >= 0 && b < 0x20) || b == 0x7F) {
+                // Control character (including CR and LF)
+                break;
+            } else {
+                lastSignificantChar = pos + 1;
+            }
+            pos++;
+        }
+        headerData.realPos = pos;
+        headerData.lastSignificantChar = lastSignificantChar;
+        return finishScan(pos, limit);
+    }
+
+
+    private boolean finishScan(int pos, int limit) {
+        if (pos > byteBuffer.position()) {
+            chr = byteBuffer.get(pos - 1);
+            byteBuffer.position(pos);
+        }
+        return pos == limit;
+    }
+
+
     /**
      * Parse an HTTP header.
      *
@@ -901,6 +1060,10 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
                 }
             }
 
+            if (scanHeaderName()) {
+                // Need more data
+                continue;
+            }
             int pos = byteBuffer.position();
             chr = byteBuffer.get();
             if (chr == Constants.COLON) {
@@ -978,6 +1141,11 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
                         }
                     }
 
+                    if (chr != Constants.CR && headerData.realPos == byteBuffer.position() && scanHeaderValue()) {
+                        // Need more data
+                        continue;
+                    }
+
                     prevChr = chr;
                     chr = byteBuffer.get();
                     if (chr == Constants.CR && prevChr != Constants.CR) {
@@ -103,6 +103,12 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
     protected long byteCount = 0;
 
 
+    /**
+     * Should the flush when the response ends be skipped?
+     */
+    private boolean deferFlush = false;
+
+
     protected Http11OutputBuffer(Response response, int headerBufferSize) {
 
         this.response = response;
@@ -241,6 +247,17 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
 
     // --------------------------------------------------------- Public Methods
 
+    /**
+     * Skip the flush when the current response ends as the response is to a
+     * pipelined request and will be written with the responses that follow.
+     *
+     * @param deferFlush {@code true} if the flush should be skipped
+     */
+    void setDeferFlush(boolean deferFlush) {
+        this.deferFlush = deferFlush;
+    }
+
+
     /**
      * Reset the header buffer if an error occurs during the writing of the
      * headers so the error response can be written.
@@ -278,6 +295,7 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
         lastActiveFilter = -1;
         ackSent = false;
         responseFinished = false;
+        deferFlush = false;
         byteCount = 0;
     }
 
@@ -565,7 +583,9 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
 
         @Override
         public void end() throws IOException {
-            socketWrapper.flush(true);
+            if (!deferFlush) {
+                socketWrapper.flush(true);
+            }
         }
 
         @Override
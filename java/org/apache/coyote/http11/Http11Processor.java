@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import jakarta.servlet.ServletConnection;
@@ -31,6 +32,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.apache.coyote.AbstractProcessor;
 import org.apache.coyote.ActionCode;
 import org.apache.coyote.Adapter;
+import org.apache.coyote.CompressionCodec;
 import org.apache.coyote.ContinueResponseTiming;
 import org.apache.coyote.ErrorState;
 import org.apache.coyote.Request;
@@ -40,7 +42,7 @@ import org.apache.coyote.UpgradeToken;
 import org.apache.coyote.http11.filters.BufferedInputFilter;
 import org.apache.coyote.http11.filters.ChunkedInputFilter;
 import org.apache.coyote.http11.filters.ChunkedOutputFilter;
-import org.apache.coyote.http11.filters.GzipOutputFilter;
+import org.apache.coyote.http11.filters.CompressionOutputFilter;
 import org.apache.coyote.http11.filters.IdentityInputFilter;
 import org.apache.coyote.http11.filters.IdentityOutputFilter;
 import org.apache.coyote.http11.filters.SavedRequestInputFilter;
@@ -152,6 +154,13 @@ public class Http11Processor extends AbstractProcessor {
     private SendfileDataBase sendfileData = null;
 
 
+    /**
+     * Time at which the first response to a pipelined request that was not
+     * flushed completed or -1 if there is no such response.
+     */
+    private long deferredFlushStartNanos = -1;
+
+
     public Http11Processor(AbstractHttp11Protocol<?> protocol, Adapter adapter) {
         super(adapter);
         this.protocol = protocol;
@@ -183,9 +192,9 @@ public class Http11Processor extends AbstractProcessor {
         // Create and add buffered input filter
         inputBuffer.addFilter(new BufferedInputFilter());
 
-        // Create and add the gzip filters.
+        // Create and add the compression filters.
         //inputBuffer.addFilter(new GzipInputFilter());
-        outputBuffer.addFilter(new GzipOutputFilter());
+        outputBuffer.addFilter(new CompressionOutputFilter());
 
         pluggableFilterIndex = inputBuffer.getFilters().length;
     }
@@ -272,6 +281,7 @@ public class Http11Processor extends AbstractProcessor {
                 if (!inputBuffer.parseRequestLine(keptAlive, protocol.getConnectionTimeout(),
                         protocol.getKeepAliveTimeout())) {
                     if (inputBuffer.getParsingRequestLinePhase() == -1) {
+                        flushDeferredResponses();
                         return SocketState.UPGRADING;
                     } else if (handleIncompleteRequestLineRead()) {
                         break;
@@ -363,6 +373,7 @@ public class Http11Processor extends AbstractProcessor {
                                     upgradeProtocol.getInternalUpgradeHandler(socketWrapper, getAdapter(), upgradeRequest);
                             UpgradeToken upgradeToken = new UpgradeToken(upgradeHandler, null, null, requestedProtocol);
                             action(ActionCode.UPGRADE, upgradeToken);
+                            flushDeferredResponses();
                             return SocketState.UPGRADING;
                         }
                     }
@@ -393,6 +404,10 @@ public class Http11Processor extends AbstractProcessor {
                 keepAlive = false;
             }
 
+            // Responses held for earlier pipelined requests must not wait for
+            // the application to process this one
+            flushDeferredResponses();
+
             // Process the request in the adapter
             if (getErrorState().isIoAllowed()) {
                 try {
@@ -469,6 +484,8 @@ public class Http11Processor extends AbstractProcessor {
             sendfileState = processSendfile(socketWrapper);
         }
 
+        flushDeferredResponses();
+
         rp.setStage(org.apache.coyote.Constants.STAGE_ENDED);
 
         if (getErrorState().isError() || (protocol.isPaused() && !isAsync())) {
@@ -930,9 +947,9 @@ public class Http11Processor extends AbstractProcessor {
         }
 
         // Check for compression
-        boolean useCompression = false;
+        CompressionCodec compressionCodec = null;
         if (entityBody && sendfileData == null) {
-            useCompression = protocol.useCompression(request, response);
+            compressionCodec = protocol.getCompressionCodec(request, response);
         }
 
         MimeHeaders headers = response.getMimeHeaders();
@@ -972,7 +989,8 @@ public class Http11Processor extends AbstractProcessor {
             }
         }
 
-        if (useCompression) {
+        if (compressionCodec != null) {
+            ((CompressionOutputFilter) outputFilters[Constants.GZIP_FILTER]).setCodec(compressionCodec);
             outputBuffer.addActiveFilter(outputFilters[Constants.GZIP_FILTER]);
         }
 
@@ -1224,8 +1242,53 @@ public class Http11Processor extends AbstractProcessor {
     }
 
 
+    /*
+     * Determines if the flush of the current response can be skipped so the
+     * response is written with the responses to following pipelined requests.
+     * The amount of data held is limited by the socket write buffer since the
+     * buffer is written to the network once it is full.
+     */
+    private boolean deferFlush() {
+        int maxDelay = protocol.getMaxPipelinedFlushDelay();
+        if (maxDelay <= 0 || !keepAlive || isAsync() || sendfileData != null ||
+                response.getWriteListener() != null || !inputBuffer.hasPipelinedData()) {
+            deferredFlushStartNanos = -1;
+            return false;
+        }
+        long now = System.nanoTime();
+        if (deferredFlushStartNanos == -1) {
+            deferredFlushStartNanos = now;
+        } else if (TimeUnit.NANOSECONDS.toMillis(now - deferredFlushStartNanos) >= maxDelay) {
+            deferredFlushStartNanos = -1;
+            return false;
+        }
+        // The next request has been received but may be incomplete
+        inputBuffer.setFlushBeforeRead();
+        return true;
+    }
+
+
+    /*
+     * Writes any responses to pipelined requests that are held in the socket
+     * write buffer.
+     */
+    private void flushDeferredResponses() {
+        if (deferredFlushStartNanos != -1) {
+            deferredFlushStartNanos = -1;
+            if (getErrorState().isIoAllowed()) {
+                try {
+                    outputBuffer.flushBuffer(true);
+                } catch (IOException e) {
+                    setErrorState(ErrorState.CLOSE_CONNECTION_NOW, e);
+                }
+            }
+        }
+    }
+
+
     @Override
     protected final void finishResponse() throws IOException {
+        outputBuffer.setDeferFlush(deferFlush());
         outputBuffer.end();
     }
 
@@ -1434,6 +1497,7 @@ public class Http11Processor extends AbstractProcessor {
         socketWrapper = null;
         sendfileData = null;
         sslSupport = null;
+        deferredFlushStartNanos = -1;
     }
 
 
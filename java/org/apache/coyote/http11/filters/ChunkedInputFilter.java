@@ -68,7 +68,8 @@ public class ChunkedInputFilter implements InputFilter, ApplicationBufferHandler
 
 
     /**
-     * Number of bytes remaining in the current chunk.
+     * Number of bytes remaining in the current chunk. While the chunk header is
+     * being parsed, this holds the chunk size parsed so far.
      */
     protected int remaining = 0;
 
@@ -80,24 +81,20 @@ public class ChunkedInputFilter implements InputFilter, ApplicationBufferHandler
 
 
     /**
-     * Flag set to true when the end chunk has been read.
+     * Flag set to true when the end chunk and any trailing headers have been
+     * read.
      */
     protected boolean endChunk = false;
 
 
     /**
-     * Byte chunk used to store trailing headers.
+     * Byte chunk used to store trailing headers. The trailer section is
+     * buffered here, with each line terminated by a single LF, until the blank
+     * line that ends it has been read.
      */
     protected final ByteChunk trailingHeaders = new ByteChunk();
 
 
-    /**
-     * Flag set to true if the next call to doRead() must parse a CRLF pair
-     * before doing anything else.
-     */
-    protected boolean needCRLFParse = false;
-
-
     /**
      * Request being parsed.
      */
@@ -133,11 +130,24 @@ public class ChunkedInputFilter implements InputFilter, ApplicationBufferHandler
 
     private final Set<String> allowedTrailerHeaders;
 
+
+    /*
+     * State of the parser. Parsing is incremental so, when using non-blocking
+     * IO, a chunk header, line terminator or trailer section may be split
+     * across multiple reads without the filter having to wait for the rest of
+     * it.
+     */
+    private ParseState parseState = ParseState.CHUNK_HEADER;
+    private int chunkSizeDigitsRead = 0;
+    private boolean parsingExtension = false;
+    private boolean crFound = false;
+    private boolean trailerLineStart = true;
+    private int trailerSize = 0;
+
     // ----------------------------------------------------------- Constructors
 
     public ChunkedInputFilter(int maxTrailerSize, Set<String> allowedTrailerHeaders,
             int maxExtensionSize, int maxSwallowSize) {
-        this.trailingHeaders.setLimit(maxTrailerSize);
         this.allowedTrailerHeaders = allowedTrailerHeaders;
         this.maxExtensionSize = maxExtensionSize;
         this.maxTrailerSize = maxTrailerSize;
@@ -149,61 +159,47 @@ public class ChunkedInputFilter implements InputFilter, ApplicationBufferHandler
 
     @Override
     public int doRead(ApplicationBufferHandler handler) throws IOException {
-        if (endChunk) {
-            return -1;
-        }
-
         checkError();
 
-        if(needCRLFParse) {
-            needCRLFParse = false;
-            parseCRLF(false);
-        }
-
-        if (remaining <= 0) {
-            if (!parseChunkHeader()) {
-                throwIOException(sm.getString("chunkedInputFilter.invalidHeader"));
-            }
-            if (endChunk) {
-                parseEndChunk();
-                return -1;
-            }
-        }
-
-        int result = 0;
-
-        if (readChunk == null || readChunk.position() >= readChunk.limit()) {
-            if (readBytes() < 0) {
-                throwIOException(sm.getString("chunkedInputFilter.eos"));
-            }
-        }
-
-        if (remaining > readChunk.remaining()) {
-            result = readChunk.remaining();
-            remaining = remaining - result;
-            if (readChunk != handler.getByteBuffer()) {
-                handler.setByteBuffer(readChunk.duplicate());
-            }
-            readChunk.position(readChunk.limit());
-        } else {
-            result = remaining;
-            if (readChunk != handler.getByteBuffer()) {
-                handler.setByteBuffer(readChunk.duplicate());
-                handler.getByteBuffer().limit(readChunk.position() + remaining);
-            }
-            readChunk.position(readChunk.position() + remaining);
-            remaining = 0;
-            //we need a CRLF
-            if ((readChunk.position() + 1) >= readChunk.limit()) {
-                //if we call parseCRLF we overrun the buffer here
-                //so we defer it to the next call BZ 11117
-                needCRLFParse = true;
-            } else {
-                parseCRLF(false); //parse the CRLF immediately
+        while (true) {
+            switch (parseState) {
+                case CHUNK_HEADER:
+                    if (!parseChunkHeader()) {
+                        return 0;
+                    }
+                    break;
+                case CHUNK_HEADER_CRLF:
+                    if (!parseCRLF(false)) {
+                        return 0;
+                    }
+                    if (chunkSizeDigitsRead == 0 || remaining < 0) {
+                        throwIOException(sm.getString("chunkedInputFilter.invalidHeader"));
+                    }
+                    chunkSizeDigitsRead = 0;
+                    parsingExtension = false;
+                    if (remaining == 0) {
+                        parseState = ParseState.TRAILER_FIELDS;
+                    } else {
+                        parseState = ParseState.CHUNK_BODY;
+                    }
+                    break;
+                case CHUNK_BODY:
+                    return parseChunkBody(handler);
+                case CHUNK_BODY_CRLF:
+                    if (!parseCRLF(false)) {
+                        return 0;
+                    }
+                    parseState = ParseState.CHUNK_HEADER;
+                    break;
+                case TRAILER_FIELDS:
+                    if (!parseTrailerFields()) {
+                        return 0;
+                    }
+                    break;
+                case FINISHED:
+                    return -1;
             }
         }
-
-        return result;
     }
 
 
@@ -275,11 +271,15 @@ public class ChunkedInputFilter implements InputFilter, ApplicationBufferHandler
             readChunk.position(0).limit(0);
         }
         endChunk = false;
-        needCRLFParse = false;
         trailingHeaders.recycle();
-        trailingHeaders.setLimit(maxTrailerSize);
         extensionSize = 0;
         error = false;
+        parseState = ParseState.CHUNK_HEADER;
+        chunkSizeDigitsRead = 0;
+        parsingExtension = false;
+        crFound = false;
+        trailerLineStart = true;
+        trailerSize = 0;
     }
 
 
@@ -312,7 +312,8 @@ public class ChunkedInputFilter implements InputFilter, ApplicationBufferHandler
 
 
     /**
-     * Parse the header of a chunk.
+     * Parse the header of a chunk, up to but not including the terminating
+     * CRLF. The chunk size is accumulated in {@link #remaining}.
      * A chunk header can look like one of the following:<br>
      * A10CRLF<br>
      * F23;chunk-extension to be ignoredCRLF
@@ -322,283 +323,278 @@ public class ChunkedInputFilter implements InputFilter, ApplicationBufferHandler
      * digits. We should not parse F23IAMGONNAMESSTHISUP34CRLF as a valid
      * header according to the spec.
      * @return <code>true</code> if the chunk header has been
-     *  successfully parsed
-     * @throws IOException Read error
+     *  parsed, <code>false</code> if more data is required
+     * @throws IOException Read error or invalid chunk header
      */
     protected boolean parseChunkHeader() throws IOException {
 
-        int result = 0;
-        boolean eol = false;
-        int readDigit = 0;
-        boolean extension = false;
-
-        while (!eol) {
-
-            if (readChunk == null || readChunk.position() >= readChunk.limit()) {
-                if (readBytes() <= 0) {
-                    return false;
-                }
+        while (true) {
+            int available = fill();
+            if (available < 0) {
+                throwIOException(sm.getString("chunkedInputFilter.invalidHeader"));
+            } else if (available == 0) {
+                return false;
             }
 
-            byte chr = readChunk.get(readChunk.position());
-            if (chr == Constants.CR || chr == Constants.LF) {
-                parseCRLF(false);
-                eol = true;
-            } else if (chr == Constants.SEMI_COLON && !extension) {
-                // First semi-colon marks the start of the extension. Further
-                // semi-colons may appear to separate multiple chunk-extensions.
-                // These need to be processed as part of parsing the extensions.
-                extension = true;
-                extensionSize++;
-            } else if (!extension) {
-                //don't read data after the trailer
-                int charValue = HexUtils.getDec(chr);
-                if (charValue != -1 && readDigit < 8) {
-                    readDigit++;
-                    result = (result << 4) | charValue;
+            int pos = readChunk.position();
+            int limit = readChunk.limit();
+            while (pos < limit) {
+                byte chr = readChunk.get(pos);
+                if (chr == Constants.CR || chr == Constants.LF) {
+                    readChunk.position(pos);
+                    parseState = ParseState.CHUNK_HEADER_CRLF;
+                    return true;
+                } else if (chr == Constants.SEMI_COLON && !parsingExtension) {
+                    // First semi-colon marks the start of the extension. Further
+                    // semi-colons may appear to separate multiple chunk-extensions.
+                    // These need to be processed as part of parsing the extensions.
+                    parsingExtension = true;
+                    extensionSize++;
+                } else if (!parsingExtension) {
+                    //don't read data after the trailer
+                    int charValue = HexUtils.getDec(chr);
+                    if (charValue != -1 && chunkSizeDigitsRead < 8) {
+                        chunkSizeDigitsRead++;
+                        remaining = (remaining << 4) | charValue;
+                    } else {
+                        //we shouldn't allow invalid, non hex characters
+                        //in the chunked header
+                        throwIOException(sm.getString("chunkedInputFilter.invalidHeader"));
+                    }
                 } else {
-                    //we shouldn't allow invalid, non hex characters
-                    //in the chunked header
-                    return false;
-                }
-            } else {
-                // Extension 'parsing'
-                // Note that the chunk-extension is neither parsed nor
-                // validated. Currently it is simply ignored.
-                extensionSize++;
-                if (maxExtensionSize > -1 && extensionSize > maxExtensionSize) {
-                    throwIOException(sm.getString("chunkedInputFilter.maxExtension"));
+                    // Extension 'parsing'
+                    // Note that the chunk-extension is neither parsed nor
+                    // validated. Currently it is simply ignored.
+                    extensionSize++;
+                    if (maxExtensionSize > -1 && extensionSize > maxExtensionSize) {
+                        throwIOException(sm.getString("chunkedInputFilter.maxExtension"));
+                    }
                 }
+                pos++;
             }
-
-            // Parsing the CRLF increments pos
-            if (!eol) {
-                readChunk.position(readChunk.position() + 1);
-            }
-        }
-
-        if (readDigit == 0 || result < 0) {
-            return false;
+            readChunk.position(pos);
         }
-
-        if (result == 0) {
-            endChunk = true;
-        }
-
-        remaining = result;
-        return true;
     }
 
 
     /**
-     * Parse CRLF at end of chunk.
+     * Parse CRLF at end of chunk header or chunk.
      *
      * @param   tolerant    Should tolerant parsing (LF and CRLF) be used? This
      *                      is recommended (RFC2616, section 19.3) for message
      *                      headers.
+     * @return <code>true</code> if the CRLF has been parsed,
+     *  <code>false</code> if more data is required
      * @throws IOException An error occurred parsing CRLF
      */
-    protected void parseCRLF(boolean tolerant) throws IOException {
-
-        boolean eol = false;
-        boolean crfound = false;
-
-        while (!eol) {
-            if (readChunk == null || readChunk.position() >= readChunk.limit()) {
-                if (readBytes() <= 0) {
-                    throwIOException(sm.getString("chunkedInputFilter.invalidCrlfNoData"));
-                }
+    protected boolean parseCRLF(boolean tolerant) throws IOException {
+
+        while (true) {
+            int available = fill();
+            if (available < 0) {
+                throwIOException(sm.getString("chunkedInputFilter.invalidCrlfNoData"));
+            } else if (available == 0) {
+                return false;
             }
 
-            byte chr = readChunk.get(readChunk.position());
+            byte chr = readChunk.get();
             if (chr == Constants.CR) {
-                if (crfound) {
+                if (crFound) {
                     throwIOException(sm.getString("chunkedInputFilter.invalidCrlfCRCR"));
                 }
-                crfound = true;
+                crFound = true;
             } else if (chr == Constants.LF) {
-                if (!tolerant && !crfound) {
+                if (!tolerant && !crFound) {
                     throwIOException(sm.getString("chunkedInputFilter.invalidCrlfNoCR"));
                 }
-                eol = true;
+                crFound = false;
+                return true;
             } else {
                 throwIOException(sm.getString("chunkedInputFilter.invalidCrlf"));
             }
-
-            readChunk.position(readChunk.position() + 1);
         }
     }
 
 
     /**
-     * Parse end chunk data.
-     * @throws IOException Error propagation
+     * Pass the next section of the current chunk to the handler. The handler
+     * is given a view of the buffer that the data was read into rather than a
+     * copy of it.
      */
-    protected void parseEndChunk() throws IOException {
-        // Handle optional trailer headers
-        while (parseHeader()) {
-            // Loop until we run out of headers
+    private int parseChunkBody(ApplicationBufferHandler handler) throws IOException {
+        int available = fill();
+        if (available < 0) {
+            throwIOException(sm.getString("chunkedInputFilter.eos"));
+        } else if (available == 0) {
+            return 0;
         }
-    }
 
-
-    private boolean parseHeader() throws IOException {
-
-        Map<String,String> headers = request.getTrailerFields();
-
-        byte chr = 0;
-
-        // Read new bytes if needed
-        if (readChunk == null || readChunk.position() >= readChunk.limit()) {
-            if (readBytes() <0) {
-               throwEOFException(sm.getString("chunkedInputFilter.eosTrailer"));
-            }
+        int result = Math.min(remaining, available);
+        int pos = readChunk.position();
+        if (readChunk != handler.getByteBuffer()) {
+            handler.setByteBuffer(readChunk.duplicate());
+            handler.getByteBuffer().limit(pos + result);
         }
-
-        // readBytes() above will set readChunk unless it returns a value < 0
-        chr = readChunk.get(readChunk.position());
-
-        // CRLF terminates the request
-        if (chr == Constants.CR || chr == Constants.LF) {
-            parseCRLF(false);
-            return false;
+        readChunk.position(pos + result);
+        remaining -= result;
+
+        if (remaining == 0) {
+            parseState = ParseState.CHUNK_BODY_CRLF;
+            // Only parse the CRLF now if it has already been read. Reading more
+            // data here could block the return of the chunk data. BZ 11117
+            if (readChunk.remaining() > 1) {
+                parseCRLF(false);
+                parseState = ParseState.CHUNK_HEADER;
+            }
         }
 
-        // Mark the current buffer position
-        int startPos = trailingHeaders.getEnd();
-
-        //
-        // Reading the header name
-        // Header name is always US-ASCII
-        //
+        return result;
+    }
 
-        boolean colon = false;
-        while (!colon) {
 
-            // Read new bytes if needed
-            if (readChunk == null || readChunk.position() >= readChunk.limit()) {
-                if (readBytes() <0) {
-                    throwEOFException(sm.getString("chunkedInputFilter.eosTrailer"));
-                }
+    /**
+     * Read the trailer section that follows the last chunk, up to and
+     * including the blank line that terminates it. Field lines may end in CRLF
+     * or LF. The blank line must be CRLF. The buffered fields are processed
+     * once the complete section has been read.
+     *
+     * @return <code>true</code> if the trailer section has been parsed,
+     *  <code>false</code> if more data is required
+     * @throws IOException Read error, invalid line terminator or the trailer
+     *  section is too large
+     */
+    private boolean parseTrailerFields() throws IOException {
+
+        while (true) {
+            int available = fill();
+            if (available < 0) {
+                throwEOFException(sm.getString("chunkedInputFilter.eosTrailer"));
+            } else if (available == 0) {
+                return false;
             }
 
-            // readBytes() above will set readChunk unless it returns a value < 0
-            chr = readChunk.get(readChunk.position());
-            if ((chr >= Constants.A) && (chr <= Constants.Z)) {
-                chr = (byte) (chr - Constants.LC_OFFSET);
-            }
+            int pos = readChunk.position();
+            int limit = readChunk.limit();
+            while (pos < limit) {
+                byte chr = readChunk.get(pos++);
+                if (crFound) {
+                    if (chr == Constants.CR) {
+                        throwIOException(sm.getString("chunkedInputFilter.invalidCrlfCRCR"));
+                    } else if (chr != Constants.LF) {
+                        throwIOException(sm.getString("chunkedInputFilter.invalidCrlf"));
+                    }
+                    crFound = false;
+                } else if (chr == Constants.CR) {
+                    crFound = true;
+                    continue;
+                } else if (chr == Constants.LF) {
+                    if (trailerLineStart) {
+                        // The blank line that ends the section must use CRLF
+                        throwIOException(sm.getString("chunkedInputFilter.invalidCrlfNoCR"));
+                    }
+                } else {
+                    if (maxTrailerSize > -1 && ++trailerSize > maxTrailerSize) {
+                        throwIOException(sm.getString("chunkedInputFilter.maxTrailer"));
+                    }
+                    trailingHeaders.append(chr);
+                    trailerLineStart = false;
+                    continue;
+                }
 
-            if (chr == Constants.COLON) {
-                colon = true;
-            } else {
-                trailingHeaders.append(chr);
+                // End of line
+                if (trailerLineStart) {
+                    readChunk.position(pos);
+                    processTrailerFields();
+                    endChunk = true;
+                    parseState = ParseState.FINISHED;
+                    return true;
+                }
+                trailingHeaders.append(Constants.LF);
+                trailerLineStart = true;
             }
-
-            readChunk.position(readChunk.position() + 1);
-
+            readChunk.position(pos);
         }
-        int colonPos = trailingHeaders.getEnd();
+    }
 
-        //
-        // Reading the header value (which can be spanned over multiple lines)
-        //
 
-        boolean eol = false;
-        boolean validLine = true;
-        int lastSignificantChar = 0;
+    private void processTrailerFields() {
 
-        while (validLine) {
+        Map<String,String> headers = request.getTrailerFields();
 
-            boolean space = true;
+        byte[] buf = trailingHeaders.getBytes();
+        int pos = trailingHeaders.getStart();
+        int end = trailingHeaders.getEnd();
 
-            // Skipping spaces
-            while (space) {
+        while (pos < end) {
+            int lineEnd = pos;
+            while (buf[lineEnd] != Constants.LF) {
+                lineEnd++;
+            }
 
-                // Read new bytes if needed
-                if (readChunk == null || readChunk.position() >= readChunk.limit()) {
-                    if (readBytes() <0) {
-                        throwEOFException(sm.getString("chunkedInputFilter.eosTrailer"));
-                    }
+            // Header name is always US-ASCII
+            int colonPos = pos;
+            while (colonPos < lineEnd && buf[colonPos] != Constants.COLON) {
+                colonPos++;
+            }
+            if (colonPos == lineEnd) {
+                // Not a valid field line. Ignore it.
+                pos = lineEnd + 1;
+                continue;
+            }
+            String headerName = new String(buf, pos, colonPos - pos,
+                    StandardCharsets.ISO_8859_1).toLowerCase(Locale.ENGLISH);
+
+            // The value can be spanned over multiple lines. A single
+            // SP or HT is retained between the lines
+            StringBuilder value = new StringBuilder();
+            int lastSignificantChar = 0;
+            int start = colonPos + 1;
+            while (true) {
+                while (start < lineEnd && (buf[start] == Constants.SP || buf[start] == Constants.HT)) {
+                    start++;
                 }
-
-                chr = readChunk.get(readChunk.position());
-                if ((chr == Constants.SP) || (chr == Constants.HT)) {
-                    readChunk.position(readChunk.position() + 1);
-                    // If we swallow whitespace, make sure it counts towards the
-                    // limit placed on trailing header size
-                    int newlimit = trailingHeaders.getLimit() -1;
-                    if (trailingHeaders.getEnd() > newlimit) {
-                        throwIOException(sm.getString("chunkedInputFilter.maxTrailer"));
+                for (int i = start; i < lineEnd; i++) {
+                    value.append((char) (buf[i] & 0xFF));
+                    if (buf[i] != Constants.SP) {
+                        lastSignificantChar = value.length();
                     }
-                    trailingHeaders.setLimit(newlimit);
-                } else {
-                    space = false;
                 }
-
-            }
-
-            // Reading bytes until the end of the line
-            while (!eol) {
-
-                // Read new bytes if needed
-                if (readChunk == null || readChunk.position() >= readChunk.limit()) {
-                    if (readBytes() <0) {
-                        throwEOFException(sm.getString("chunkedInputFilter.eosTrailer"));
+                pos = lineEnd + 1;
+                if (pos < end && (buf[pos] == Constants.SP || buf[pos] == Constants.HT)) {
+                    value.append((char) buf[pos]);
+                    start = pos + 1;
+                    lineEnd = start;
+                    while (buf[lineEnd] != Constants.LF) {
+                        lineEnd++;
                     }
-                }
-
-                chr = readChunk.get(readChunk.position());
-                if (chr == Constants.CR || chr == Constants.LF) {
-                    parseCRLF(true);
-                    eol = true;
-                } else if (chr == Constants.SP) {
-                    trailingHeaders.append(chr);
                 } else {
-                    trailingHeaders.append(chr);
-                    lastSignificantChar = trailingHeaders.getEnd();
-                }
-
-                if (!eol) {
-                    readChunk.position(readChunk.position() + 1);
-                }
-            }
-
-            // Checking the first character of the new line. If the character
-            // is a LWS, then it's a multiline header
-
-            // Read new bytes if needed
-            if (readChunk == null || readChunk.position() >= readChunk.limit()) {
-                if (readBytes() <0) {
-                    throwEOFException(sm.getString("chunkedInputFilter.eosTrailer"));
+                    break;
                 }
             }
 
-            chr = readChunk.get(readChunk.position());
-            if ((chr != Constants.SP) && (chr != Constants.HT)) {
-                validLine = false;
-            } else {
-                eol = false;
-                // Copying one extra space in the buffer (since there must
-                // be at least one space inserted between the lines)
-                trailingHeaders.append(chr);
+            if (allowedTrailerHeaders.contains(headerName)) {
+                value.setLength(lastSignificantChar);
+                headers.put(headerName, value.toString());
             }
-
         }
+    }
 
-        String headerName = new String(trailingHeaders.getBytes(), startPos,
-                colonPos - startPos, StandardCharsets.ISO_8859_1);
-
-        headerName = headerName.toLowerCase(Locale.ENGLISH);
-
-        if (allowedTrailerHeaders.contains(headerName)) {
-
-            String value = new String(trailingHeaders.getBytes(), colonPos,
-                    lastSignificantChar - colonPos, StandardCharsets.ISO_8859_1);
 
-            headers.put(headerName, value);
+    /**
+     * Ensure that there is data available to parse, reading more if necessary.
+     *
+     * @return the number of bytes available, zero if none are currently
+     *  available (non-blocking reads only) or -1 for end of stream
+     * @throws IOException Read error
+     */
+    private int fill() throws IOException {
+        if (readChunk == null || readChunk.position() >= readChunk.limit()) {
+            int result = readBytes();
+            if (result <= 0 || readChunk == null) {
+                return result < 0 ? -1 : 0;
+            }
         }
-
-        return true;
+        return readChunk.remaining();
     }
 
 
@@ -637,4 +633,14 @@ public class ChunkedInputFilter implements InputFilter, ApplicationBufferHandler
     public void expand(int size) {
         // no-op
     }
+
+
+    private enum ParseState {
+        CHUNK_HEADER,
+        CHUNK_HEADER_CRLF,
+        CHUNK_BODY,
+        CHUNK_BODY_CRLF,
+        TRAILER_FIELDS,
+        FINISHED
+    }
 }
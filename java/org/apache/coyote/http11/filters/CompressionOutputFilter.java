@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http11.filters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.coyote.CompressionCodec;
+import org.apache.coyote.Response;
+import org.apache.coyote.http11.HttpOutputBuffer;
+import org.apache.coyote.http11.OutputFilter;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+
+/**
+ * Output filter that compresses the response body using the content coding
+ * implemented by a {@link CompressionCodec}.
+ */
+public class CompressionOutputFilter implements OutputFilter {
+
+    protected static final Log log = LogFactory.getLog(CompressionOutputFilter.class);
+
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * Next buffer in the pipeline.
+     */
+    protected HttpOutputBuffer buffer;
+
+
+    /**
+     * Codec used to compress the current response.
+     */
+    protected CompressionCodec codec;
+
+
+    /**
+     * Compression output stream.
+     */
+    protected OutputStream compressionStream = null;
+
+
+    /**
+     * Internal output stream that writes to the next buffer in the pipeline.
+     */
+    protected final FakeOutputStream fakeOutputStream = new FakeOutputStream();
+
+
+    // ----------------------------------------------------------- Constructors
+
+    public CompressionOutputFilter() {
+    }
+
+
+    public CompressionOutputFilter(CompressionCodec codec) {
+        this.codec = codec;
+    }
+
+
+    // ------------------------------------------------------------- Properties
+
+    /**
+     * Set the codec to use to compress the current response.
+     *
+     * @param codec The codec to use
+     */
+    public void setCodec(CompressionCodec codec) {
+        this.codec = codec;
+    }
+
+
+    // --------------------------------------------------- OutputBuffer Methods
+
+    @Override
+    public int doWrite(ByteBuffer chunk) throws IOException {
+        if (compressionStream == null) {
+            compressionStream = codec.createCompressionStream(fakeOutputStream);
+        }
+        int len = chunk.remaining();
+        if (chunk.hasArray()) {
+            compressionStream.write(chunk.array(), chunk.arrayOffset() + chunk.position(), len);
+            chunk.position(chunk.position() + len);
+        } else {
+            byte[] bytes = new byte[len];
+            chunk.get(bytes);
+            compressionStream.write(bytes, 0, len);
+        }
+        return len;
+    }
+
+
+    @Override
+    public long getBytesWritten() {
+        return buffer.getBytesWritten();
+    }
+
+
+    // --------------------------------------------------- OutputFilter Methods
+
+    @Override
+    public void flush() throws IOException {
+        if (compressionStream != null) {
+            try {
+                if (log.isDebugEnabled()) {
+                    log.debug("Flushing the compression stream!");
+                }
+                compressionStream.flush();
+            } catch (IOException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Ignored exception while flushing compression filter", e);
+                }
+            }
+        }
+        buffer.flush();
+    }
+
+
+    @Override
+    public void setResponse(Response response) {
+        // NOOP: No need for parameters from response in this filter
+    }
+
+
+    @Override
+    public void setBuffer(HttpOutputBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+
+    @Override
+    public void end() throws IOException {
+        if (compressionStream == null) {
+            compressionStream = codec.createCompressionStream(fakeOutputStream);
+        }
+        OutputStream compressionStream = this.compressionStream;
+        this.compressionStream = null;
+        compressionStream.close();
+        buffer.end();
+    }
+
+
+    /**
+     * Make the filter ready to process the next request.
+     */
+    @Override
+    public void recycle() {
+        if (compressionStream != null) {
+            // The response was not completed. Close the compression stream so
+            // the codec can release any resources associated with it but
+            // discard the output.
+            fakeOutputStream.discard = true;
+            try {
+                compressionStream.close();
+            } catch (IOException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Ignored exception while closing compression filter", e);
+                }
+            } finally {
+                fakeOutputStream.discard = false;
+            }
+            compressionStream = null;
+        }
+    }
+
+
+    // ------------------------------------------- FakeOutputStream Inner Class
+
+    protected class FakeOutputStream extends OutputStream {
+        protected final ByteBuffer outputChunk = ByteBuffer.allocate(1);
+        protected boolean discard = false;
+        @Override
+        public void write(int b) throws IOException {
+            if (!discard) {
+                outputChunk.clear();
+                outputChunk.put(0, (byte) (b & 0xff));
+                buffer.doWrite(outputChunk);
+            }
+        }
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!discard) {
+                buffer.doWrite(ByteBuffer.wrap(b, off, len));
+            }
+        }
+        @Override
+        public void flush() throws IOException {/*NOOP*/}
+        @Override
+        public void close() throws IOException {/*NOOP*/}
+    }
+}
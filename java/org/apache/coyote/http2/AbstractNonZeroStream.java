@@ -21,6 +21,7 @@ import java.util.Iterator;
 
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.http.parser.Priority;
 import org.apache.tomcat.util.res.StringManager;
 
 /**
@@ -38,6 +39,10 @@ abstract class AbstractNonZeroStream extends AbstractStream {
 
     private volatile int weight = Constants.DEFAULT_WEIGHT;
 
+    // RFC 9218 priority
+    private volatile int urgency = Priority.DEFAULT_URGENCY;
+    private volatile boolean incremental = Priority.DEFAULT_INCREMENTAL;
+
 
     AbstractNonZeroStream(String connectionId, Integer identifier) {
         super(identifier);
@@ -57,6 +62,26 @@ abstract class AbstractNonZeroStream extends AbstractStream {
     }
 
 
+    final int getUrgency() {
+        return urgency;
+    }
+
+
+    final void setUrgency(int urgency) {
+        this.urgency = urgency;
+    }
+
+
+    final boolean getIncremental() {
+        return incremental;
+    }
+
+
+    final void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+
     /*
      * General method used when reprioritising a stream and care needs to be
      * taken not to create circular references.
@@ -19,6 +19,10 @@ package org.apache.coyote.http2;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
@@ -38,11 +42,21 @@ abstract class AbstractStream {
 
     private volatile AbstractStream parentStream = null;
     private final Set<AbstractNonZeroStream> childStreams = Collections.newSetFromMap(new ConcurrentHashMap<>());
-    private long windowSize = ConnectionSettingsBase.DEFAULT_INITIAL_WINDOW_SIZE;
+    private final AtomicLong windowSize = new AtomicLong(ConnectionSettingsBase.DEFAULT_INITIAL_WINDOW_SIZE);
 
     private volatile int connectionAllocationRequested = 0;
     private volatile int connectionAllocationMade = 0;
 
+    /*
+     * The flow control window itself is updated with compare and set so
+     * threads that find sufficient window never need to take this lock. The
+     * lock guards the allocation state and is used to signal threads waiting
+     * for an allocation.
+     * Lock/Condition so waiting for an allocation does not pin virtual threads.
+     */
+    protected final Lock windowAllocationLock = new ReentrantLock();
+    protected final Condition windowAllocationAvailable = windowAllocationLock.newCondition();
+
 
     AbstractStream(Integer identifier) {
         this.identifier = identifier;
@@ -105,13 +119,13 @@ abstract class AbstractStream {
     }
 
 
-    final synchronized void setWindowSize(long windowSize) {
-        this.windowSize = windowSize;
+    final void setWindowSize(long windowSize) {
+        this.windowSize.set(windowSize);
     }
 
 
-    final synchronized long getWindowSize() {
-        return windowSize;
+    final long getWindowSize() {
+        return windowSize.get();
     }
 
 
@@ -121,11 +135,11 @@ abstract class AbstractStream {
      * @throws Http2Exception If the window size is now higher than
      *  the maximum allowed
      */
-    synchronized void incrementWindowSize(int increment) throws Http2Exception {
+    void incrementWindowSize(int increment) throws Http2Exception {
         // No need for overflow protection here.
         // Increment can't be more than Integer.MAX_VALUE and once windowSize
         // goes beyond 2^31-1 an error is triggered.
-        windowSize += increment;
+        long windowSize = this.windowSize.addAndGet(increment);
 
         if (log.isDebugEnabled()) {
             log.debug(sm.getString("abstractStream.windowSizeInc", getConnectionId(),
@@ -145,11 +159,11 @@ abstract class AbstractStream {
     }
 
 
-    final synchronized void decrementWindowSize(int decrement) {
+    final void decrementWindowSize(int decrement) {
         // No need for overflow protection here. Decrement can never be larger
         // the Integer.MAX_VALUE and once windowSize goes negative no further
         // decrements are permitted
-        windowSize -= decrement;
+        long windowSize = this.windowSize.addAndGet(-decrement);
         if (log.isDebugEnabled()) {
             log.debug(sm.getString("abstractStream.windowSizeDec", getConnectionId(),
                     getIdAsString(), Integer.toString(decrement), Long.toString(windowSize)));
@@ -157,14 +171,44 @@ abstract class AbstractStream {
     }
 
 
+    /**
+     * Attempt to reserve part of the flow control window without blocking.
+     *
+     * @param reservation The number of bytes the caller would like to reserve
+     *
+     * @return The number of bytes reserved which will be the smaller of the
+     *         requested reservation and the current window size or zero if the
+     *         window is currently exhausted
+     */
+    final int tryDecrementWindowSize(int reservation) {
+        while (true) {
+            long windowSize = this.windowSize.get();
+            if (windowSize < 1) {
+                return 0;
+            }
+            int allocation = (int) Math.min(windowSize, reservation);
+            if (this.windowSize.compareAndSet(windowSize, windowSize - allocation)) {
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("abstractStream.windowSizeDec", getConnectionId(),
+                            getIdAsString(), Integer.toString(allocation), Long.toString(windowSize - allocation)));
+                }
+                return allocation;
+            }
+        }
+    }
+
+
     final int getConnectionAllocationRequested() {
         return connectionAllocationRequested;
     }
 
 
     final void setConnectionAllocationRequested(int connectionAllocationRequested) {
-        log.debug(sm.getString("abstractStream.setConnectionAllocationRequested", getConnectionId(), getIdAsString(),
-                Integer.toString(this.connectionAllocationRequested), Integer.toString(connectionAllocationRequested)));
+        if (log.isDebugEnabled()) {
+            log.debug(sm.getString("abstractStream.setConnectionAllocationRequested", getConnectionId(),
+                    getIdAsString(), Integer.toString(this.connectionAllocationRequested),
+                    Integer.toString(connectionAllocationRequested)));
+        }
         this.connectionAllocationRequested = connectionAllocationRequested;
     }
 
@@ -175,8 +219,11 @@ abstract class AbstractStream {
 
 
     final void setConnectionAllocationMade(int connectionAllocationMade) {
-        log.debug(sm.getString("abstractStream.setConnectionAllocationMade", getConnectionId(), getIdAsString(),
-                Integer.toString(this.connectionAllocationMade), Integer.toString(connectionAllocationMade)));
+        if (log.isDebugEnabled()) {
+            log.debug(sm.getString("abstractStream.setConnectionAllocationMade", getConnectionId(),
+                    getIdAsString(), Integer.toString(this.connectionAllocationMade),
+                    Integer.toString(connectionAllocationMade)));
+        }
         this.connectionAllocationMade = connectionAllocationMade;
     }
 
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.util.Arrays;
+
+/**
+ * Retains the state of closed streams that are no longer required in the
+ * priority tree so that frames received for those streams can still be
+ * processed correctly. Only the stream ID, the final stream state and the
+ * remaining flow control window are retained, held in sorted arrays of
+ * primitives rather than as a {@link RecycledStream} per closed stream in the
+ * map of streams.
+ * <p>
+ * Streams are usually closed in approximately the order in which they were
+ * created so additions are almost always appended to the end of the arrays.
+ * When the limit is reached the oldest (lowest ID) stream is discarded.
+ */
+class ClosedStreams {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] windows = new int[INITIAL_CAPACITY];
+    private byte[] states = new byte[INITIAL_CAPACITY];
+    // Entries are held in positions start to end-1
+    private int start = 0;
+    private int end = 0;
+
+
+    /**
+     * Retain the state of a closed stream. Any later changes to the given state
+     * are written back to the retained state.
+     *
+     * @param streamId                   The ID of the closed stream
+     * @param state                      The state of the closed stream
+     * @param remainingFlowControlWindow The remaining flow control window
+     * @param limit                      The maximum number of closed streams
+     *                                       to retain
+     */
+    void add(int streamId, StreamStateMachine state, int remainingFlowControlWindow, int limit) {
+        if (limit < 1) {
+            return;
+        }
+        // Lock the state first, as state changes do, so a change cannot be
+        // lost between reading the state and registering for write back.
+        synchronized (state) {
+            add(streamId, state.getStateId(), remainingFlowControlWindow, limit);
+            state.setClosedStreams(this);
+        }
+    }
+
+
+    private synchronized void add(int streamId, int stateId, int remainingFlowControlWindow, int limit) {
+        int pos = Arrays.binarySearch(ids, start, end, streamId);
+        if (pos >= 0) {
+            // Already present. Update it. Nothing needs to be discarded.
+            windows[pos] = remainingFlowControlWindow;
+            states[pos] = (byte) stateId;
+            return;
+        }
+        if (end - start >= limit) {
+            // Discard the oldest
+            start++;
+        }
+        if (end == ids.length) {
+            makeSpace();
+        }
+        // Search backwards since the new stream is usually the newest
+        pos = end;
+        while (pos > start && ids[pos - 1] > streamId) {
+            pos--;
+        }
+        if (pos < end) {
+            System.arraycopy(ids, pos, ids, pos + 1, end - pos);
+            System.arraycopy(windows, pos, windows, pos + 1, end - pos);
+            System.arraycopy(states, pos, states, pos + 1, end - pos);
+        }
+        end++;
+        ids[pos] = streamId;
+        windows[pos] = remainingFlowControlWindow;
+        states[pos] = (byte) stateId;
+    }
+
+
+    /**
+     * Obtain a transient representation of a closed stream.
+     *
+     * @param connectionId The ID of the connection that owns the stream
+     * @param streamId     The ID of the stream
+     *
+     * @return A {@link RecycledStream} that reflects the retained state or
+     *         {@code null} if no state is retained for the given stream.
+     *         The returned stream is not part of the priority tree.
+     */
+    synchronized RecycledStream get(String connectionId, int streamId) {
+        int pos = Arrays.binarySearch(ids, start, end, streamId);
+        if (pos < 0) {
+            return null;
+        }
+        return new RecycledStream(connectionId, Integer.valueOf(streamId),
+                new StreamStateMachine(connectionId, Integer.toString(streamId), states[pos], this), windows[pos],
+                this);
+    }
+
+
+    synchronized boolean contains(int streamId) {
+        return Arrays.binarySearch(ids, start, end, streamId) >= 0;
+    }
+
+
+    synchronized void setRemainingFlowControlWindow(int streamId, int remainingFlowControlWindow) {
+        int pos = Arrays.binarySearch(ids, start, end, streamId);
+        if (pos >= 0) {
+            windows[pos] = remainingFlowControlWindow;
+        }
+    }
+
+
+    synchronized void setState(int streamId, int stateId) {
+        int pos = Arrays.binarySearch(ids, start, end, streamId);
+        if (pos >= 0) {
+            states[pos] = (byte) stateId;
+        }
+    }
+
+
+    synchronized int size() {
+        return end - start;
+    }
+
+
+    private void makeSpace() {
+        int size = end - start;
+        if (size > ids.length / 2) {
+            int newCapacity = ids.length * 2;
+            ids = Arrays.copyOfRange(ids, start, start + newCapacity);
+            windows = Arrays.copyOfRange(windows, start, start + newCapacity);
+            states = Arrays.copyOfRange(states, start, start + newCapacity);
+        } else {
+            // Plenty of space at the start. Move the entries down.
+            System.arraycopy(ids, start, ids, 0, size);
+            System.arraycopy(windows, start, windows, 0, size);
+            System.arraycopy(states, start, states, 0, size);
+        }
+        start = 0;
+        end = size;
+    }
+}
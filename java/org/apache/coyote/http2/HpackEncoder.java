@@ -17,12 +17,8 @@
 package org.apache.coyote.http2;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -71,15 +67,31 @@ class HpackEncoder {
 
     private MimeHeaders currentHeaders;
 
-    private int entryPositionCounter;
-
     private int newMaxHeaderSize = -1; //if the max header size has been changed
     private int minNewMaxHeaderSize = -1; //records the smallest value of newMaxHeaderSize, as per section 4.1
 
     private static final Map<String, TableEntry[]> ENCODING_STATIC_TABLE;
 
-    private final Deque<TableEntry> evictionQueue = new ArrayDeque<>();
-    private final Map<String, List<TableEntry>> dynamicTable = new HashMap<>(); //TODO: use a custom data structure to reduce allocations
+    private final DynamicTable dynamicTable = new DynamicTable();
+
+    /*
+     * Header names set by applications are frequently not lower case. Retain
+     * the lower case form of recently seen names so the same name does not
+     * have to be converted (and a new String created) for every stream.
+     */
+    private static final int LOWER_CASE_NAME_CACHE_SIZE = 64;
+    private final String[] lowerCaseNameKeys = new String[LOWER_CASE_NAME_CACHE_SIZE];
+    private final String[] lowerCaseNameValues = new String[LOWER_CASE_NAME_CACHE_SIZE];
+
+    /*
+     * Headers that are never indexed (e.g. date) often have the same value for
+     * many consecutive responses. For each static table name, retain the
+     * encoded form of the last such value written so that it can be copied to
+     * the output rather than encoded again.
+     */
+    private final String[] literalValues = new String[Hpack.STATIC_TABLE_LENGTH + 1];
+    private final byte[][] encodedLiteralValues = new byte[Hpack.STATIC_TABLE_LENGTH + 1][];
+    private final int[] encodedLiteralLengths = new int[Hpack.STATIC_TABLE_LENGTH + 1];
 
     static {
         Map<String, TableEntry[]> map = new HashMap<>();
@@ -87,11 +99,11 @@ class HpackEncoder {
             Hpack.HeaderField m = Hpack.STATIC_TABLE[i];
             TableEntry[] existing = map.get(m.name);
             if (existing == null) {
-                map.put(m.name, new TableEntry[]{new TableEntry(m.name, m.value, i)});
+                map.put(m.name, new TableEntry[]{new TableEntry(m.value, i)});
             } else {
                 TableEntry[] newEntry = new TableEntry[existing.length + 1];
                 System.arraycopy(existing, 0, newEntry, 0, existing.length);
-                newEntry[existing.length] = new TableEntry(m.name, m.value, i);
+                newEntry[existing.length] = new TableEntry(m.value, i);
                 map.put(m.name, newEntry);
             }
         }
@@ -103,11 +115,6 @@ class HpackEncoder {
      */
     private int maxTableSize = Hpack.DEFAULT_TABLE_SIZE;
 
-    /**
-     * The current table size
-     */
-    private int currentTableSize;
-
     private final HpackHeaderFunction hpackHeaderFunction;
 
     HpackEncoder() {
@@ -136,7 +143,7 @@ class HpackEncoder {
         }
         while (it < currentHeaders.size()) {
             // FIXME: Review lowercase policy
-            String headerName = headers.getName(it).toString().toLowerCase(Locale.US);
+            String headerName = toLowerCase(headers.getName(it).toString());
             boolean skip = false;
             if (firstPass) {
                 if (headerName.charAt(0) != ':') {
@@ -153,7 +160,7 @@ class HpackEncoder {
                     if (log.isDebugEnabled()) {
                         log.debug(sm.getString("hpackEncoder.encodeHeader", headerName, val));
                     }
-                    TableEntry tableEntry = findInTable(headerName, val);
+                    int index = findInTable(headerName, val);
 
                     // We use 11 to make sure we have enough room for the
                     // variable length integers
@@ -166,36 +173,34 @@ class HpackEncoder {
                     // Only index if it will fit
                     boolean canIndex = hpackHeaderFunction.shouldUseIndexing(headerName, val) &&
                             (headerName.length() + val.length() + 32) < maxTableSize;
-                    if (tableEntry == null && canIndex) {
+                    if (index == 0 && canIndex) {
                         //add the entry to the dynamic table
                         target.put((byte) (1 << 6));
                         writeHuffmanEncodableName(target, headerName);
                         writeHuffmanEncodableValue(target, headerName, val);
                         addToDynamicTable(headerName, val);
-                    } else if (tableEntry == null) {
+                    } else if (index == 0) {
                         //literal never indexed
                         target.put((byte) (1 << 4));
                         writeHuffmanEncodableName(target, headerName);
                         writeHuffmanEncodableValue(target, headerName, val);
+                    } else if (index > 0) {
+                        //the whole thing is in the table
+                        target.put((byte) (1 << 7));
+                        Hpack.encodeInteger(target, index, 7);
                     } else {
-                        //so we know something is already in the table
-                        if (val.equals(tableEntry.value)) {
-                            //the whole thing is in the table
-                            target.put((byte) (1 << 7));
-                            Hpack.encodeInteger(target, tableEntry.getPosition(), 7);
+                        //so we know the name is already in the table
+                        if (canIndex) {
+                            //add the entry to the dynamic table
+                            target.put((byte) (1 << 6));
+                            Hpack.encodeInteger(target, -index, 6);
+                            writeHuffmanEncodableValue(target, headerName, val);
+                            addToDynamicTable(headerName, val);
+
                         } else {
-                            if (canIndex) {
-                                //add the entry to the dynamic table
-                                target.put((byte) (1 << 6));
-                                Hpack.encodeInteger(target, tableEntry.getPosition(), 6);
-                                writeHuffmanEncodableValue(target, headerName, val);
-                                addToDynamicTable(headerName, val);
-
-                            } else {
-                                target.put((byte) (1 << 4));
-                                Hpack.encodeInteger(target, tableEntry.getPosition(), 4);
-                                writeHuffmanEncodableValue(target, headerName, val);
-                            }
+                            target.put((byte) (1 << 4));
+                            Hpack.encodeInteger(target, -index, 4);
+                            writeNeverIndexedValue(target, -index, headerName, val);
                         }
                     }
 
@@ -210,6 +215,17 @@ class HpackEncoder {
         return State.COMPLETE;
     }
 
+    private String toLowerCase(String headerName) {
+        int slot = headerName.hashCode() & (LOWER_CASE_NAME_CACHE_SIZE - 1);
+        if (headerName.equals(lowerCaseNameKeys[slot])) {
+            return lowerCaseNameValues[slot];
+        }
+        String result = headerName.toLowerCase(Locale.US);
+        lowerCaseNameKeys[slot] = headerName;
+        lowerCaseNameValues[slot] = result;
+        return result;
+    }
+
     private void writeHuffmanEncodableName(ByteBuffer target, String headerName) {
         if (hpackHeaderFunction.shouldUseHuffman(headerName)) {
             if(HPackHuffman.encode(target, headerName, true)) {
@@ -234,6 +250,30 @@ class HpackEncoder {
         }
     }
 
+    private void writeNeverIndexedValue(ByteBuffer target, int nameIndex, String headerName, String val) {
+        if (nameIndex > Hpack.STATIC_TABLE_LENGTH) {
+            writeHuffmanEncodableValue(target, headerName, val);
+            return;
+        }
+        byte[] encoded = encodedLiteralValues[nameIndex];
+        if (val.equals(literalValues[nameIndex])) {
+            target.put(encoded, 0, encodedLiteralLengths[nameIndex]);
+            return;
+        }
+        int start = target.position();
+        writeHuffmanEncodableValue(target, headerName, val);
+        int len = target.position() - start;
+        if (encoded == null || encoded.length < len) {
+            encoded = new byte[Math.max(len, 32)];
+            encodedLiteralValues[nameIndex] = encoded;
+        }
+        for (int i = 0; i < len; i++) {
+            encoded[i] = target.get(start + i);
+        }
+        literalValues[nameIndex] = val;
+        encodedLiteralLengths[nameIndex] = len;
+    }
+
     private void writeValueString(ByteBuffer target, String val) {
         target.put((byte) 0); //to use encodeInteger we need to place the first byte in the buffer.
         Hpack.encodeInteger(target, val.length(), 7);
@@ -243,72 +283,32 @@ class HpackEncoder {
     }
 
     private void addToDynamicTable(String headerName, String val) {
-        int pos = entryPositionCounter++;
-        DynamicTableEntry d = new DynamicTableEntry(headerName, val, -pos);
-        List<TableEntry> existing = dynamicTable.get(headerName);
-        if (existing == null) {
-            dynamicTable.put(headerName, existing = new ArrayList<>(1));
-        }
-        existing.add(d);
-        evictionQueue.add(d);
-        currentTableSize += d.getSize();
-        runEvictionIfRequired();
-        if (entryPositionCounter == Integer.MAX_VALUE) {
-            //prevent rollover
-            preventPositionRollover();
-        }
-
-    }
-
-
-    private void preventPositionRollover() {
-        //if the position counter is about to roll over we iterate all the table entries
-        //and set their position to their actual position
-        for (List<TableEntry> tableEntries : dynamicTable.values()) {
-            for (TableEntry t : tableEntries) {
-                t.position = t.getPosition();
-            }
-        }
-        entryPositionCounter = 0;
-    }
-
-    private void runEvictionIfRequired() {
-
-        while (currentTableSize > maxTableSize) {
-            TableEntry next = evictionQueue.poll();
-            if (next == null) {
-                return;
-            }
-            currentTableSize -= next.size;
-            List<TableEntry> list = dynamicTable.get(next.name);
-            list.remove(next);
-            if (list.isEmpty()) {
-                dynamicTable.remove(next.name);
-            }
-        }
+        dynamicTable.add(headerName, val, 32 + headerName.length() + val.length());
+        dynamicTable.evict(maxTableSize);
     }
 
-    private TableEntry findInTable(String headerName, String value) {
+    /*
+     * Returns the index of an entry that matches both name and value, the
+     * negated index of an entry that matches the name only or zero if no entry
+     * matches.
+     */
+    private int findInTable(String headerName, String value) {
         TableEntry[] staticTable = ENCODING_STATIC_TABLE.get(headerName);
         if (staticTable != null) {
             for (TableEntry st : staticTable) {
-                if (st.value != null && st.value.equals(value)) { //todo: some form of lookup?
-                    return st;
+                if (st.value != null && st.value.equals(value)) {
+                    return st.position;
                 }
             }
         }
-        List<TableEntry> dynamic = dynamicTable.get(headerName);
-        if (dynamic != null) {
-            for (TableEntry st : dynamic) {
-                if (st.value.equals(value)) { //todo: some form of lookup?
-                    return st;
-                }
-            }
+        int index = dynamicTable.find(headerName, value);
+        if (index > 0) {
+            return index;
         }
         if (staticTable != null) {
-            return staticTable[0];
+            return -staticTable[0].position;
         }
-        return null;
+        return -dynamicTable.findName(headerName);
     }
 
     public void setMaxTableSize(int newSize) {
@@ -331,7 +331,7 @@ class HpackEncoder {
         target.put((byte) (1 << 5));
         Hpack.encodeInteger(target, newMaxHeaderSize, 5);
         maxTableSize = newMaxHeaderSize;
-        runEvictionIfRequired();
+        dynamicTable.evict(maxTableSize);
         newMaxHeaderSize = -1;
         minNewMaxHeaderSize = -1;
     }
@@ -343,40 +343,203 @@ class HpackEncoder {
     }
 
     private static class TableEntry {
-        private final String name;
         private final String value;
-        private final int size;
-        private int position;
+        private final int position;
 
-        private TableEntry(String name, String value, int position) {
-            this.name = name;
+        private TableEntry(String value, int position) {
             this.value = value;
             this.position = position;
-            if (value != null) {
-                this.size = 32 + name.length() + value.length();
-            } else {
-                this.size = -1;
+        }
+    }
+
+    /*
+     * The dynamic table. Entries are held in insertion order in a ring buffer.
+     * Two open addressing (linear probing) hash indexes map name and value, and
+     * name alone, to the position of an entry in the ring. Index slots hold the
+     * ring position plus one so that zero marks an empty slot. Once the ring
+     * has grown large enough for the maximum table size, adding, finding and
+     * evicting entries does not allocate.
+     */
+    private static class DynamicTable {
+
+        private static final int INITIAL_CAPACITY = 32;
+
+        private String[] names = new String[INITIAL_CAPACITY];
+        private String[] values = new String[INITIAL_CAPACITY];
+        private int[] sizes = new int[INITIAL_CAPACITY];
+        private int[] entryHashes = new int[INITIAL_CAPACITY];
+        private int[] nameHashes = new int[INITIAL_CAPACITY];
+
+        // The index tables are kept at least half empty
+        private int[] entryIndex = new int[INITIAL_CAPACITY * 2];
+        // Refers to the newest entry for each name
+        private int[] nameIndex = new int[INITIAL_CAPACITY * 2];
+
+        // Ring position of the oldest entry
+        private int head;
+        private int count;
+        private int currentSize;
+
+
+        int find(String name, String value) {
+            int hash = hash(name, value);
+            int mask = entryIndex.length - 1;
+            for (int i = spread(hash) & mask; entryIndex[i] != 0; i = (i + 1) & mask) {
+                int pos = entryIndex[i] - 1;
+                if (entryHashes[pos] == hash && names[pos].equals(name) && values[pos].equals(value)) {
+                    return toIndex(pos);
+                }
             }
+            return 0;
         }
 
-        int getPosition() {
-            return position;
+
+        int findName(String name) {
+            int slot = nameIndex[findNameSlot(name, name.hashCode())];
+            if (slot == 0) {
+                return 0;
+            }
+            return toIndex(slot - 1);
         }
 
-        int getSize() {
-            return size;
+
+        void add(String name, String value, int size) {
+            if (count == names.length) {
+                grow();
+            }
+            int pos = (head + count) & (names.length - 1);
+            names[pos] = name;
+            values[pos] = value;
+            sizes[pos] = size;
+            nameHashes[pos] = name.hashCode();
+            entryHashes[pos] = hash(name, value);
+            count++;
+            currentSize += size;
+            insert(entryIndex, entryHashes[pos], pos);
+            nameIndex[findNameSlot(name, nameHashes[pos])] = pos + 1;
         }
-    }
 
-    private class DynamicTableEntry extends TableEntry {
 
-        private DynamicTableEntry(String name, String value, int position) {
-            super(name, value, position);
+        void evict(int maxSize) {
+            while (currentSize > maxSize && count > 0) {
+                int pos = head;
+                remove(entryIndex, entryHashes, pos);
+                // Only present if this is the only entry with this name
+                remove(nameIndex, nameHashes, pos);
+                currentSize -= sizes[pos];
+                names[pos] = null;
+                values[pos] = null;
+                head = (head + 1) & (names.length - 1);
+                count--;
+            }
         }
 
-        @Override
-        int getPosition() {
-            return super.getPosition() + entryPositionCounter + Hpack.STATIC_TABLE_LENGTH;
+
+        /*
+         * Returns the slot in the name index that refers to the given name or,
+         * if there is no such slot, the empty slot where it should be added.
+         */
+        private int findNameSlot(String name, int hash) {
+            int mask = nameIndex.length - 1;
+            int i = spread(hash) & mask;
+            while (nameIndex[i] != 0) {
+                int pos = nameIndex[i] - 1;
+                if (nameHashes[pos] == hash && names[pos].equals(name)) {
+                    break;
+                }
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+
+        private int toIndex(int pos) {
+            int mask = names.length - 1;
+            int newest = (head + count - 1) & mask;
+            return Hpack.STATIC_TABLE_LENGTH + 1 + ((newest - pos) & mask);
+        }
+
+
+        private void grow() {
+            int oldMask = names.length - 1;
+            int capacity = names.length * 2;
+            String[] newNames = new String[capacity];
+            String[] newValues = new String[capacity];
+            int[] newSizes = new int[capacity];
+            int[] newEntryHashes = new int[capacity];
+            int[] newNameHashes = new int[capacity];
+            for (int i = 0; i < count; i++) {
+                int pos = (head + i) & oldMask;
+                newNames[i] = names[pos];
+                newValues[i] = values[pos];
+                newSizes[i] = sizes[pos];
+                newEntryHashes[i] = entryHashes[pos];
+                newNameHashes[i] = nameHashes[pos];
+            }
+            names = newNames;
+            values = newValues;
+            sizes = newSizes;
+            entryHashes = newEntryHashes;
+            nameHashes = newNameHashes;
+            head = 0;
+            entryIndex = new int[capacity * 2];
+            nameIndex = new int[capacity * 2];
+            // Oldest first so the name index ends up referring to the newest
+            for (int pos = 0; pos < count; pos++) {
+                insert(entryIndex, entryHashes[pos], pos);
+                nameIndex[findNameSlot(names[pos], nameHashes[pos])] = pos + 1;
+            }
+        }
+
+
+        private static void insert(int[] index, int hash, int pos) {
+            int mask = index.length - 1;
+            int i = spread(hash) & mask;
+            while (index[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            index[i] = pos + 1;
+        }
+
+
+        /*
+         * Removes the slot that refers to the given ring position, if any, and
+         * moves back later entries in the same cluster that would otherwise no
+         * longer be reachable from their home slot.
+         */
+        private static void remove(int[] index, int[] hashes, int pos) {
+            int mask = index.length - 1;
+            int i = spread(hashes[pos]) & mask;
+            while (index[i] != pos + 1) {
+                if (index[i] == 0) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            index[i] = 0;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (index[j] == 0) {
+                    return;
+                }
+                int home = spread(hashes[index[j] - 1]) & mask;
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    index[i] = index[j];
+                    index[j] = 0;
+                    i = j;
+                }
+            }
+        }
+
+
+        private static int hash(String name, String value) {
+            return 31 * name.hashCode() + value.hashCode();
+        }
+
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
         }
     }
 
@@ -26,6 +26,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import jakarta.servlet.http.WebConnection;
 
@@ -41,12 +43,17 @@ import org.apache.tomcat.util.net.SocketWrapperBase.CompletionState;
 public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
 
     private static final ByteBuffer[] BYTEBUFFER_ARRAY = new ByteBuffer[0];
+    // Maximum number of DATA frames included in a single sendfile write
+    private static final int MAX_SENDFILE_FRAMES = 32;
     // Ensures headers are generated and then written for one thread at a time.
     // Because of the compression used, headers need to be written to the
     // network in the same order they are generated.
     private final Object headerWriteLock = new Object();
     // Ensures thread triggers the stream reset is the first to send a RST frame
     private final Object sendResetLock = new Object();
+    // Ensures only one thread at a time writes a batch of queued frames. The
+    // socket lock is not used since it is held while processing socket events.
+    private final Lock frameWriteLock = new ReentrantLock();
     private final AtomicReference<Throwable> error = new AtomicReference<>();
     private final AtomicReference<IOException> applicationIOE = new AtomicReference<>();
 
@@ -196,9 +203,9 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
             AsyncHeaderFrameBuffers headerFrameBuffers = (AsyncHeaderFrameBuffers)
                     doWriteHeaders(stream, pushedStreamId, mimeHeaders, endOfStream, payloadSize);
             if (headerFrameBuffers != null) {
-                socketWrapper.write(BlockingMode.SEMI_BLOCK, protocol.getWriteTimeout(),
-                        TimeUnit.MILLISECONDS, null, SocketWrapperBase.COMPLETE_WRITE,
-                        applicationErrorCompletion, headerFrameBuffers.bufs.toArray(BYTEBUFFER_ARRAY));
+                // Queued while holding the header lock so header blocks reach
+                // the network in the order they were generated
+                writeFrame(new FrameWrite(headerFrameBuffers.bufs.toArray(BYTEBUFFER_ARRAY)));
                 handleAsyncException();
             }
         }
@@ -236,15 +243,48 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
             ByteUtil.set31Bits(header, 5, stream.getIdAsInt());
             int orgLimit = data.limit();
             data.limit(data.position() + len);
-            socketWrapper.write(BlockingMode.BLOCK, protocol.getWriteTimeout(),
-                    TimeUnit.MILLISECONDS, null, SocketWrapperBase.COMPLETE_WRITE,
-                    applicationErrorCompletion, ByteBuffer.wrap(header), data);
+            writeFrame(new FrameWrite(ByteBuffer.wrap(header), data));
             data.limit(orgLimit);
             handleAsyncException();
         }
     }
 
 
+    @Override
+    protected void writeFrames(FrameWrite[] frames, int count) {
+        if (count == 0) {
+            return;
+        }
+        ByteBuffer[] buffers;
+        if (count == 1) {
+            buffers = frames[0].getBuffers();
+        } else {
+            int length = 0;
+            for (int i = 0; i < count; i++) {
+                length += frames[i].getBuffers().length;
+            }
+            buffers = new ByteBuffer[length];
+            int pos = 0;
+            for (int i = 0; i < count; i++) {
+                ByteBuffer[] frameBuffers = frames[i].getBuffers();
+                System.arraycopy(frameBuffers, 0, buffers, pos, frameBuffers.length);
+                pos += frameBuffers.length;
+            }
+        }
+        // One gathering write for the whole batch. Errors are reported via the
+        // completion handler and picked up by each thread that queued a frame.
+        socketWrapper.write(BlockingMode.BLOCK, protocol.getWriteTimeout(),
+                TimeUnit.MILLISECONDS, null, SocketWrapperBase.COMPLETE_WRITE,
+                applicationErrorCompletion, buffers);
+    }
+
+
+    @Override
+    protected Lock getFrameWriteLock() {
+        return frameWriteLock;
+    }
+
+
     @Override
     void writeWindowUpdate(AbstractNonZeroStream stream, int increment, boolean applicationInitiated)
             throws IOException {
@@ -338,33 +378,13 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
                         Integer.valueOf(sendfile.connectionReservation), Integer.valueOf(sendfile.streamReservation)));
             }
 
-            // connectionReservation will always be smaller than or the same as
-            // streamReservation
-            int frameSize = Integer.min(getMaxFrameSize(), sendfile.connectionReservation);
-            boolean finished = (frameSize == sendfile.left) && sendfile.stream.getCoyoteResponse().getTrailerFields() == null;
-
             // Need to check this now since sending end of stream will change this.
             boolean writable = sendfile.stream.canWrite();
-            byte[] header = new byte[9];
-            ByteUtil.setThreeBytes(header, 0, frameSize);
-            header[3] = FrameType.DATA.getIdByte();
-            if (finished) {
-                header[4] = FLAG_END_OF_STREAM;
-                sendfile.stream.sentEndOfStream();
-                if (!sendfile.stream.isActive()) {
-                    setConnectionTimeoutForStreamCount(activeRemoteStreamCount.decrementAndGet());
-                }
-            }
+            ByteBuffer[] frames = prepareSendfileFrames(sendfile);
             if (writable) {
-                if (log.isDebugEnabled()) {
-                    log.debug(sm.getString("upgradeHandler.writeBody", connectionId, sendfile.stream.getIdAsString(),
-                            Integer.toString(frameSize), Boolean.valueOf(finished)));
-                }
-                ByteUtil.set31Bits(header, 5, sendfile.stream.getIdAsInt());
-                sendfile.mappedBuffer.limit(sendfile.mappedBuffer.position() + frameSize);
                 socketWrapper.write(BlockingMode.SEMI_BLOCK, protocol.getWriteTimeout(),
                         TimeUnit.MILLISECONDS, sendfile, SocketWrapperBase.COMPLETE_WRITE_WITH_COMPLETION,
-                        new SendfileCompletionHandler(), ByteBuffer.wrap(header), sendfile.mappedBuffer);
+                        new SendfileCompletionHandler(), frames);
                 try {
                     handleAsyncException();
                 } catch (IOException e) {
@@ -377,11 +397,59 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
         }
     }
 
+    /*
+     * Prepares as many DATA frames as the current connection reservation
+     * permits (up to MAX_SENDFILE_FRAMES) so that they can be written with a
+     * single gathering write. The frame payloads are views of the mapped file
+     * so no file content is copied.
+     */
+    private ByteBuffer[] prepareSendfileFrames(SendfileData sendfile) {
+        int maxFrameSize = getMaxFrameSize();
+        // connectionReservation will always be smaller than or the same as
+        // streamReservation
+        int available = sendfile.connectionReservation;
+        int frameCount = Integer.min(MAX_SENDFILE_FRAMES, (int) ((available + (long) maxFrameSize - 1) / maxFrameSize));
+        ByteBuffer[] frames = new ByteBuffer[frameCount * 2];
+        byte[] headers = new byte[frameCount * 9];
+        int position = sendfile.mappedBuffer.position();
+        int payload = 0;
+        for (int i = 0; i < frameCount; i++) {
+            int frameSize = Integer.min(maxFrameSize, available - payload);
+            boolean finished = (payload + frameSize == sendfile.left) &&
+                    sendfile.stream.getCoyoteResponse().getTrailerFields() == null;
+            int offset = i * 9;
+            ByteUtil.setThreeBytes(headers, offset, frameSize);
+            headers[offset + 3] = FrameType.DATA.getIdByte();
+            if (finished) {
+                headers[offset + 4] = FLAG_END_OF_STREAM;
+                sendfile.stream.sentEndOfStream();
+                if (!sendfile.stream.isActive()) {
+                    setConnectionTimeoutForStreamCount(activeRemoteStreamCount.decrementAndGet());
+                }
+            }
+            ByteUtil.set31Bits(headers, offset + 5, sendfile.stream.getIdAsInt());
+            if (log.isDebugEnabled()) {
+                log.debug(sm.getString("upgradeHandler.writeBody", connectionId, sendfile.stream.getIdAsString(),
+                        Integer.toString(frameSize), Boolean.valueOf(finished)));
+            }
+            frames[i * 2] = ByteBuffer.wrap(headers, offset, 9);
+            ByteBuffer data = sendfile.mappedBuffer.duplicate();
+            data.limit(position + payload + frameSize);
+            data.position(position + payload);
+            frames[i * 2 + 1] = data;
+            payload += frameSize;
+        }
+        sendfile.mappedBuffer.position(position + payload);
+        sendfile.pendingBytes = payload;
+        return frames;
+    }
+
+
     protected class SendfileCompletionHandler implements CompletionHandler<Long, SendfileData> {
         @Override
         public void completed(Long nBytes, SendfileData sendfile) {
             CompletionState completionState = null;
-            long bytesWritten = nBytes.longValue() - 9;
+            long bytesWritten = sendfile.pendingBytes;
 
             /*
              * Loop for in-line writes only. Avoids a possible stack-overflow of
@@ -418,36 +486,16 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
                             Integer.valueOf(sendfile.connectionReservation), Integer.valueOf(sendfile.streamReservation)));
                 }
 
-                // connectionReservation will always be smaller than or the same as
-                // streamReservation
-                int frameSize = Integer.min(getMaxFrameSize(), sendfile.connectionReservation);
-                boolean finished = (frameSize == sendfile.left) && sendfile.stream.getCoyoteResponse().getTrailerFields() == null;
-
                 // Need to check this now since sending end of stream will change this.
                 boolean writable = sendfile.stream.canWrite();
-                byte[] header = new byte[9];
-                ByteUtil.setThreeBytes(header, 0, frameSize);
-                header[3] = FrameType.DATA.getIdByte();
-                if (finished) {
-                    header[4] = FLAG_END_OF_STREAM;
-                    sendfile.stream.sentEndOfStream();
-                    if (!sendfile.stream.isActive()) {
-                        setConnectionTimeoutForStreamCount(activeRemoteStreamCount.decrementAndGet());
-                    }
-                }
+                ByteBuffer[] frames = prepareSendfileFrames(sendfile);
                 if (writable) {
-                    if (log.isDebugEnabled()) {
-                        log.debug(sm.getString("upgradeHandler.writeBody", connectionId, sendfile.stream.getIdAsString(),
-                                Integer.toString(frameSize), Boolean.valueOf(finished)));
-                    }
-                    ByteUtil.set31Bits(header, 5, sendfile.stream.getIdAsInt());
-                    sendfile.mappedBuffer.limit(sendfile.mappedBuffer.position() + frameSize);
                     // Note: Completion handler not called in the write
                     //       completes in-line. The wrote will continue via the
                     //       surrounding loop.
                     completionState = socketWrapper.write(BlockingMode.SEMI_BLOCK, protocol.getWriteTimeout(),
                             TimeUnit.MILLISECONDS, sendfile, SocketWrapperBase.COMPLETE_WRITE,
-                            this, ByteBuffer.wrap(header), sendfile.mappedBuffer);
+                            this, frames);
                     try {
                         handleAsyncException();
                     } catch (IOException e) {
@@ -456,7 +504,7 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
                     }
                 }
                 // Update bytesWritten for start of next loop iteration
-                bytesWritten = frameSize;
+                bytesWritten = sendfile.pendingBytes;
             } while (completionState == CompletionState.INLINE);
         }
 
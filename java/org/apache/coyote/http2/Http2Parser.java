@@ -27,6 +27,7 @@ import org.apache.coyote.http2.HpackDecoder.HeaderEmitter;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.buf.ByteBufferUtils;
+import org.apache.tomcat.util.http.parser.Priority;
 import org.apache.tomcat.util.res.StringManager;
 
 class Http2Parser {
@@ -123,6 +124,9 @@ class Http2Parser {
         case CONTINUATION:
             readContinuationFrame(streamId, flags, payloadSize, null);
             break;
+        case PRIORITY_UPDATE:
+            readPriorityUpdateFrame(payloadSize, null);
+            break;
         case UNKNOWN:
             readUnknownFrame(streamId, frameTypeId, flags, payloadSize, null);
         }
@@ -300,6 +304,41 @@ class Http2Parser {
     }
 
 
+    protected void readPriorityUpdateFrame(int payloadSize, ByteBuffer buffer) throws Http2Exception, IOException {
+        byte[] payload = new byte[payloadSize];
+        if (buffer == null) {
+            input.fill(true, payload);
+        } else {
+            buffer.get(payload);
+        }
+
+        int prioritizedStreamID = ByteUtil.get31Bits(payload, 0);
+
+        if (prioritizedStreamID == 0) {
+            throw new ConnectionException(sm.getString("http2Parser.processFramePriorityUpdate.streamZero",
+                    connectionId), Http2Error.PROTOCOL_ERROR);
+        }
+
+        String fieldValue = new String(payload, 4, payloadSize - 4, StandardCharsets.US_ASCII);
+        Priority p = Priority.parsePriority(fieldValue);
+
+        if (p == null) {
+            // RFC 9218 permits the recipient to ignore a field value it is
+            // unable to parse
+            if (log.isDebugEnabled()) {
+                log.debug(sm.getString("http2Parser.processFramePriorityUpdate.invalid", connectionId,
+                        Integer.toString(prioritizedStreamID), fieldValue));
+            }
+        } else if (log.isDebugEnabled()) {
+            log.debug(sm.getString("http2Parser.processFramePriorityUpdate.debug", connectionId,
+                    Integer.toString(prioritizedStreamID), Integer.toString(p.getUrgency()),
+                    Boolean.valueOf(p.getIncremental())));
+        }
+
+        output.priorityUpdate(prioritizedStreamID, p);
+    }
+
+
     protected void readRstFrame(int streamId, ByteBuffer buffer) throws Http2Exception, IOException {
         byte[] payload = new byte[4];
         if (buffer == null) {
@@ -621,10 +660,9 @@ class Http2Parser {
         hpackDecoder.getHeaderEmitter().validateHeaders();
 
         synchronized (output) {
-            output.headersEnd(streamId);
+            output.headersEnd(streamId, headersEndStream);
 
             if (headersEndStream) {
-                output.receivedEndOfStream(streamId);
                 headersEndStream = false;
             }
         }
@@ -780,12 +818,27 @@ class Http2Parser {
         HeaderEmitter headersStart(int streamId, boolean headersEndStream)
                 throws Http2Exception, IOException;
         void headersContinue(int payloadSize, boolean endOfHeaders);
-        void headersEnd(int streamId) throws Http2Exception;
+        void headersEnd(int streamId, boolean endOfStream) throws Http2Exception;
 
         // Priority frames (also headers)
         void reprioritise(int streamId, int parentStreamId, boolean exclusive, int weight)
                 throws Http2Exception;
 
+        /**
+         * Notification triggered when an RFC 9218 PRIORITY_UPDATE frame is
+         * received.
+         *
+         * @param prioritizedStreamID   The stream to which the new priority
+         *                              applies
+         * @param p                     The new priority or {@code null} if
+         *                              the priority field value could not be
+         *                              parsed
+         *
+         * @throws Http2Exception If an error fatal to the HTTP/2 connection
+         *                        occurs while processing the update
+         */
+        void priorityUpdate(int prioritizedStreamID, Priority p) throws Http2Exception;
+
         // Reset frames
         void reset(int streamId, long errorCode) throws Http2Exception;
 
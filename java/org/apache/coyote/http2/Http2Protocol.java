@@ -22,6 +22,7 @@ import java.util.Enumeration;
 import javax.management.ObjectName;
 
 import org.apache.coyote.Adapter;
+import org.apache.coyote.CompressionCodec;
 import org.apache.coyote.ContinueResponseTiming;
 import org.apache.coyote.Processor;
 import org.apache.coyote.Request;
@@ -91,6 +92,7 @@ public class Http2Protocol implements UpgradeProtocol {
 
     private boolean initiatePingDisabled = false;
     private boolean useSendfile = true;
+    private boolean useRfc9218Priorities = false;
     // Reference to HTTP/1.1 protocol that this instance is configured under
     private AbstractHttp11Protocol<?> http11Protocol = null;
 
@@ -331,11 +333,26 @@ public class Http2Protocol implements UpgradeProtocol {
     }
 
 
+    public void setUseRfc9218Priorities(boolean useRfc9218Priorities) {
+        this.useRfc9218Priorities = useRfc9218Priorities;
+    }
+
+
+    public boolean getUseRfc9218Priorities() {
+        return useRfc9218Priorities;
+    }
+
+
     public boolean useCompression(Request request, Response response) {
         return http11Protocol.useCompression(request, response);
     }
 
 
+    public CompressionCodec getCompressionCodec(Request request, Response response) {
+        return http11Protocol.getCompressionCodec(request, response);
+    }
+
+
     public ContinueResponseTiming getContinueResponseTimingInternal() {
         return http11Protocol.getContinueResponseTimingInternal();
     }
@@ -33,6 +33,7 @@ import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 
 import jakarta.servlet.ServletConnection;
 import jakarta.servlet.http.WebConnection;
@@ -48,7 +49,10 @@ import org.apache.coyote.http2.Http2Parser.Output;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.codec.binary.Base64;
+import org.apache.tomcat.util.collections.SingleConsumerRingBuffer;
+import org.apache.tomcat.util.collections.SynchronizedStack;
 import org.apache.tomcat.util.http.MimeHeaders;
+import org.apache.tomcat.util.http.parser.Priority;
 import org.apache.tomcat.util.log.UserDataHelper;
 import org.apache.tomcat.util.net.AbstractEndpoint.Handler.SocketState;
 import org.apache.tomcat.util.net.SSLSupport;
@@ -95,6 +99,8 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
 
     private static final HeaderSink HEADER_SINK = new HeaderSink();
 
+    private static final int FRAME_WRITE_QUEUE_SIZE = 64;
+
     private final Object priorityTreeLock = new Object();
 
     protected final String connectionId;
@@ -125,6 +131,10 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     private HpackEncoder hpackEncoder;
 
     private final ConcurrentNavigableMap<Integer,AbstractNonZeroStream> streams = new ConcurrentSkipListMap<>();
+    // Closed streams that are not required in the priority tree
+    private final ClosedStreams closedStreams = new ClosedStreams();
+    // Coyote requests (and associated responses) available for re-use
+    private final SynchronizedStack<Request> recycledRequests;
     protected final AtomicInteger activeRemoteStreamCount = new AtomicInteger(0);
     // Start at -1 so the 'add 2' logic in closeIdleStreams() works
     private volatile int maxActiveRemoteStreamId = -1;
@@ -134,6 +144,8 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     private volatile int newStreamsSinceLastPrune = 0;
     private final Set<AbstractStream> backLogStreams = Collections.newSetFromMap(new ConcurrentHashMap<>());
     private long backLogSize = 0;
+    // Only used when RFC 9218 priorities are in use
+    private final UrgencyBacklog urgencyBacklog;
     // The time at which the connection will timeout unless data arrives before
     // then. -1 means no timeout.
     private volatile long connectionTimeout = -1;
@@ -149,6 +161,13 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
 
     protected final UserDataHelper userDataHelper = new UserDataHelper(log);
 
+    // Frames waiting to be written by whichever thread next obtains the frame
+    // write lock. The batch array is only accessed while holding that lock
+    // and has room for one frame that could not be queued.
+    private final SingleConsumerRingBuffer<FrameWrite> frameWriteQueue =
+            new SingleConsumerRingBuffer<>(FRAME_WRITE_QUEUE_SIZE);
+    private final FrameWrite[] frameWriteBatch = new FrameWrite[FRAME_WRITE_QUEUE_SIZE + 1];
+
 
     Http2UpgradeHandler(Http2Protocol protocol, Adapter adapter, Request coyoteRequest, SocketWrapperBase<?> socketWrapper) {
         super (STREAM_ID_ZERO);
@@ -172,8 +191,17 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
         remoteSettings = new ConnectionSettingsRemote(connectionId);
         localSettings = new ConnectionSettingsLocal(connectionId);
 
+        recycledRequests = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
+                protocol.getMaxConcurrentStreamExecution());
+
         localSettings.set(Setting.MAX_CONCURRENT_STREAMS, protocol.getMaxConcurrentStreams());
         localSettings.set(Setting.INITIAL_WINDOW_SIZE, protocol.getInitialWindowSize());
+        if (protocol.getUseRfc9218Priorities()) {
+            localSettings.set(Setting.NO_RFC7540_PRIORITIES, 1);
+            urgencyBacklog = new UrgencyBacklog();
+        } else {
+            urgencyBacklog = null;
+        }
 
         pingManager.initiateDisabled = protocol.getInitiatePingDisabled();
 
@@ -828,23 +856,111 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
         }
         if (writable) {
             ByteUtil.set31Bits(header, 5, stream.getIdAsInt());
-            socketWrapper.getLock().lock();
-            try {
-                socketWrapper.write(true, header, 0, header.length);
-                int orgLimit = data.limit();
-                data.limit(data.position() + len);
-                socketWrapper.write(true, data);
-                data.limit(orgLimit);
-                socketWrapper.flush(true);
-            } catch (IOException ioe) {
-                handleAppInitiatedIOException(ioe);
-            } finally {
-                socketWrapper.getLock().unlock();
+            int orgLimit = data.limit();
+            data.limit(data.position() + len);
+            writeFrame(new FrameWrite(ByteBuffer.wrap(header), data));
+            data.limit(orgLimit);
+        }
+    }
+
+
+    /*
+     * Writes the given frame along with any frames queued by other threads so
+     * that they share a single write to the network. Returns once the given
+     * frame has been written.
+     */
+    void writeFrame(FrameWrite frameWrite) throws IOException {
+        boolean queued = frameWriteQueue.offer(frameWrite);
+        Lock frameWriteLock = getFrameWriteLock();
+        frameWriteLock.lock();
+        try {
+            if (!frameWrite.done) {
+                writeQueuedFrames(frameWrite, queued);
             }
+        } finally {
+            frameWriteLock.unlock();
+        }
+        if (frameWrite.error != null) {
+            handleAppInitiatedIOException(frameWrite.error);
         }
     }
 
 
+    /*
+     * Must be called with the frame write lock held. Writes every queued frame
+     * (at least up to and including the given frame, if any) as a single
+     * batch. Threads whose frames were written as part of the batch will find
+     * them marked as done when they obtain the lock.
+     */
+    private IOException writeQueuedFrames(FrameWrite own, boolean queued) {
+        int count = 0;
+        boolean waiting = own != null;
+        if (waiting && !queued) {
+            // Queue was full
+            frameWriteBatch[count++] = own;
+            waiting = false;
+        }
+        while (count < frameWriteBatch.length) {
+            FrameWrite frameWrite = frameWriteQueue.poll();
+            if (frameWrite == null) {
+                if (!waiting) {
+                    break;
+                }
+                // Another thread has claimed a position ahead of this thread's
+                // frame but has yet to store its frame.
+                Thread.onSpinWait();
+                continue;
+            }
+            if (frameWrite == own) {
+                waiting = false;
+            }
+            frameWriteBatch[count++] = frameWrite;
+        }
+        IOException error = null;
+        try {
+            writeFrames(frameWriteBatch, count);
+        } catch (IOException ioe) {
+            error = ioe;
+        }
+        for (int i = 0; i < count; i++) {
+            frameWriteBatch[i].error = error;
+            frameWriteBatch[i].done = true;
+            frameWriteBatch[i] = null;
+        }
+        return error;
+    }
+
+
+    /**
+     * Write a batch of frames to the network. Called with the frame write lock
+     * held. The blocking implementation copies the frames to the socket's
+     * write buffer and then flushes once for the whole batch.
+     *
+     * @param frames The frames to write
+     * @param count  The number of frames in the batch (may be zero)
+     *
+     * @throws IOException If an I/O error occurs writing the frames
+     */
+    protected void writeFrames(FrameWrite[] frames, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            for (ByteBuffer buffer : frames[i].buffers) {
+                socketWrapper.write(true, buffer);
+            }
+        }
+        socketWrapper.flush(true);
+    }
+
+
+    /**
+     * @return The lock that must be held to write a batch of queued frames.
+     *         Frames written directly (not via the queue) must be written
+     *         while holding this lock.
+     */
+    protected Lock getFrameWriteLock() {
+        return socketWrapper.getLock();
+    }
+
+
     /*
      * Handles an I/O error on the socket underlying the HTTP/2 connection when
      * it is triggered by application code (usually reading the request or
@@ -930,22 +1046,37 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
 
 
     int reserveWindowSize(Stream stream, int reservation, boolean block) throws IOException {
-        // Need to be holding the stream lock so releaseBacklog() can't notify
-        // this thread until after this thread enters wait()
         int allocation = 0;
-        synchronized (stream) {
-            synchronized (this) {
+        // Fast path. Streams are only added to the backlog when the connection
+        // window is exhausted so, if there is window available and this stream
+        // has not been granted an allocation, no locks are required.
+        if (stream.canWrite() && stream.getConnectionAllocationMade() == 0) {
+            allocation = tryDecrementWindowSize(reservation);
+            if (allocation > 0) {
+                return allocation;
+            }
+        }
+        // Need to be holding the stream lock so releaseBacklog() can't notify
+        // this thread until after this thread enters await()
+        stream.windowAllocationLock.lock();
+        try {
+            windowAllocationLock.lock();
+            try {
                 if (!stream.canWrite()) {
                     stream.doStreamCancel(sm.getString("upgradeHandler.stream.notWritable",
                             stream.getConnectionId(), stream.getIdAsString()), Http2Error.STREAM_CLOSED);
                 }
-                long windowSize = getWindowSize();
                 if (stream.getConnectionAllocationMade() > 0) {
                     allocation = stream.getConnectionAllocationMade();
                     stream.setConnectionAllocationMade(0);
-                } else  if (windowSize < 1) {
+                } else {
+                    allocation = tryDecrementWindowSize(reservation);
+                }
+                if (allocation == 0) {
                     // Has this stream been granted an allocation
-                    if (stream.getConnectionAllocationMade() == 0) {
+                    if (stream.getConnectionAllocationMade() == 0 && urgencyBacklog != null) {
+                        urgencyBacklog.add(stream, reservation);
+                    } else if (stream.getConnectionAllocationMade() == 0) {
                         stream.setConnectionAllocationRequested(reservation);
                         backLogSize += reservation;
                         backLogStreams.add(stream);
@@ -955,13 +1086,9 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
                             parent = parent.getParentStream();
                         }
                     }
-                } else if (windowSize < reservation) {
-                    allocation = (int) windowSize;
-                    decrementWindowSize(allocation);
-                } else {
-                    allocation = reservation;
-                    decrementWindowSize(allocation);
                 }
+            } finally {
+                windowAllocationLock.unlock();
             }
             if (allocation == 0) {
                 if (block) {
@@ -1009,19 +1136,21 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
                     return 0;
                 }
             }
+        } finally {
+            stream.windowAllocationLock.unlock();
         }
         return allocation;
     }
 
 
 
-    @SuppressWarnings("sync-override") // notify() needs to be outside sync
-                                       // to avoid deadlock
     @Override
     protected void incrementWindowSize(int increment) throws Http2Exception {
         Set<AbstractStream> streamsToNotify = null;
 
-        synchronized (this) {
+        // Notification needs to be outside the lock to avoid deadlock
+        windowAllocationLock.lock();
+        try {
             long windowSize = getWindowSize();
             if (windowSize < 1 && windowSize + increment > 0) {
                 // Connection window is exhausted. Assume there will be streams
@@ -1030,6 +1159,8 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
             } else {
                 super.incrementWindowSize(increment);
             }
+        } finally {
+            windowAllocationLock.unlock();
         }
 
         if (streamsToNotify != null) {
@@ -1063,8 +1194,18 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     }
 
 
-    private synchronized Set<AbstractStream> releaseBackLog(int increment) throws Http2Exception {
+    /*
+     * Must be called with windowAllocationLock held.
+     */
+    private Set<AbstractStream> releaseBackLog(int increment) throws Http2Exception {
         Set<AbstractStream> result = new HashSet<>();
+        if (urgencyBacklog != null) {
+            int remaining = urgencyBacklog.release(increment, result);
+            if (remaining > 0) {
+                super.incrementWindowSize(remaining);
+            }
+            return result;
+        }
         int remaining = increment;
         if (backLogSize < remaining) {
             // Can clear the whole backlog
@@ -1098,7 +1239,10 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     }
 
 
-    private synchronized int allocate(AbstractStream stream, int allocation) {
+    /*
+     * Must be called with windowAllocationLock held.
+     */
+    private int allocate(AbstractStream stream, int allocation) {
         if (log.isDebugEnabled()) {
             log.debug(sm.getString("upgradeHandler.allocate.debug", getConnectionId(),
                     stream.getIdAsString(), Integer.toString(allocation)));
@@ -1205,7 +1349,11 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
 
     private AbstractNonZeroStream getAbstractNonZeroStream(int streamId) {
         Integer key = Integer.valueOf(streamId);
-        return streams.get(key);
+        AbstractNonZeroStream result = streams.get(key);
+        if (result == null) {
+            result = closedStreams.get(connectionId, streamId);
+        }
+        return result;
     }
 
 
@@ -1632,10 +1780,15 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
                 getAbstractNonZeroStream(streamId, connectionState.get().isNewStreamAllowed());
         if (abstractNonZeroStream instanceof Stream) {
             Stream stream = (Stream) abstractNonZeroStream;
-            stream.receivedEndOfStream();
-            if (!stream.isActive()) {
-                setConnectionTimeoutForStreamCount(activeRemoteStreamCount.decrementAndGet());
-            }
+            receivedEndOfStream(stream);
+        }
+    }
+
+
+    private void receivedEndOfStream(Stream stream) throws ConnectionException {
+        stream.receivedEndOfStream();
+        if (!stream.isActive()) {
+            setConnectionTimeoutForStreamCount(activeRemoteStreamCount.decrementAndGet());
         }
     }
 
@@ -1704,16 +1857,25 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
 
         increaseOverheadCount(FrameType.PRIORITY);
 
+        if (urgencyBacklog != null) {
+            // RFC 9218 priorities are in use. Ignore RFC 7540 priorities.
+            return;
+        }
+
         synchronized (priorityTreeLock) {
             // Need to look up stream and parent stream inside the lock else it
             // is possible for a stream to be recycled before it is
             // reprioritised. This can result in incorrect references to the
             // non-recycled stream being retained after reprioritisation.
-            AbstractNonZeroStream abstractNonZeroStream = getAbstractNonZeroStream(streamId);
+            AbstractNonZeroStream abstractNonZeroStream = streams.get(Integer.valueOf(streamId));
             if (abstractNonZeroStream == null) {
+                if (closedStreams.contains(streamId)) {
+                    // Closed and no longer part of the priority tree
+                    return;
+                }
                 abstractNonZeroStream = createRemoteStream(streamId);
             }
-            AbstractStream parentStream = getAbstractNonZeroStream(parentStreamId);
+            AbstractStream parentStream = streams.get(Integer.valueOf(parentStreamId));
             if (parentStream == null) {
                 parentStream = this;
             }
@@ -1722,6 +1884,33 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     }
 
 
+    @Override
+    public void priorityUpdate(int prioritizedStreamID, Priority p) throws Http2Exception {
+        increaseOverheadCount(FrameType.PRIORITY_UPDATE);
+
+        if (urgencyBacklog == null || p == null) {
+            // RFC 9218 priorities are not in use or the update is invalid
+            return;
+        }
+
+        AbstractNonZeroStream abstractNonZeroStream = getAbstractNonZeroStream(prioritizedStreamID);
+        if (abstractNonZeroStream == null) {
+            // Stream not yet open or already pruned. Ignore the update.
+            if (log.isDebugEnabled()) {
+                log.debug(sm.getString("upgradeHandler.priorityUpdate.unknownStream",
+                        connectionId, Integer.toString(prioritizedStreamID)));
+            }
+            return;
+        }
+        windowAllocationLock.lock();
+        try {
+            urgencyBacklog.setPriority(abstractNonZeroStream, p.getUrgency(), p.getIncremental());
+        } finally {
+            windowAllocationLock.unlock();
+        }
+    }
+
+
     @Override
     public void headersContinue(int payloadSize, boolean endOfHeaders) {
         // Generally, continuation frames don't impact the overhead count but if
@@ -1742,10 +1931,11 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
 
 
     @Override
-    public void headersEnd(int streamId) throws Http2Exception {
+    public void headersEnd(int streamId, boolean endOfStream) throws Http2Exception {
         AbstractNonZeroStream abstractNonZeroStream =
                 getAbstractNonZeroStream(streamId, connectionState.get().isNewStreamAllowed());
         if (abstractNonZeroStream instanceof Stream) {
+            boolean processStream = false;
             setMaxProcessedStream(streamId);
             Stream stream = (Stream) abstractNonZeroStream;
             if (stream.isActive()) {
@@ -1762,9 +1952,21 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
                     // Valid new stream reduces the overhead count
                     reduceOverheadCount(FrameType.HEADERS);
 
-                    processStreamOnContainerThread(stream);
+                    processStream = true;
                 }
             }
+            /*
+             * End of stream has to be processed before the stream is passed to
+             * a container thread. Otherwise the container thread may complete
+             * the response before end of stream is processed, conclude the
+             * request body has not been fully read and reset the stream.
+             */
+            if (endOfStream) {
+                receivedEndOfStream(stream);
+            }
+            if (processStream) {
+                processStreamOnContainerThread(stream);
+            }
         }
     }
 
@@ -1916,20 +2118,47 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     }
 
 
-    void replaceStream(AbstractNonZeroStream original, AbstractNonZeroStream replacement) {
+    void recycleStream(Stream original, StreamStateMachine state, int remainingFlowControlWindow) {
         synchronized (priorityTreeLock) {
             AbstractNonZeroStream current = streams.get(original.getIdentifier());
             // Might already have been recycled or removed from the priority
             // tree entirely. Only replace it if the full stream is still in the
             // priority tree.
             if (current instanceof Stream) {
-                streams.put(original.getIdentifier(), replacement);
-                original.replaceStream(replacement);
+                if (original.getChildStreams().isEmpty()) {
+                    // Not required in the priority tree. Retain the state in
+                    // compact form.
+                    streams.remove(original.getIdentifier());
+                    original.detachFromParent();
+                    closedStreams.add(original.getIdAsInt(), state, remainingFlowControlWindow,
+                            getClosedStreamLimit());
+                } else {
+                    AbstractNonZeroStream replacement = new RecycledStream(
+                            connectionId, original.getIdentifier(), state, remainingFlowControlWindow);
+                    streams.put(original.getIdentifier(), replacement);
+                    original.replaceStream(replacement);
+                }
             }
         }
     }
 
 
+    Request pollRecycledRequest() {
+        return recycledRequests.pop();
+    }
+
+
+    void releaseRecycledRequest(Request request) {
+        recycledRequests.push(request);
+    }
+
+
+    private int getClosedStreamLimit() {
+        // See pruneClosedStreams()
+        return (int) Math.min(localSettings.getMaxConcurrentStreams() * 5, Integer.MAX_VALUE);
+    }
+
+
     public ServletConnection getServletConnection() {
         if (socketWrapper.getSslSupport() == null) {
             return socketWrapper.getServletConnection("h2c", "");
@@ -2044,6 +2273,26 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     }
 
 
+    /*
+     * A frame that is waiting to be written. The state is only accessed while
+     * holding the frame write lock.
+     */
+    static class FrameWrite {
+
+        private final ByteBuffer[] buffers;
+        private boolean done;
+        private IOException error;
+
+        FrameWrite(ByteBuffer... buffers) {
+            this.buffers = buffers;
+        }
+
+        ByteBuffer[] getBuffers() {
+            return buffers;
+        }
+    }
+
+
     private enum ConnectionState {
 
         NEW(true),
@@ -2095,7 +2344,6 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
             try {
                 socketWrapper.write(true, header, 0, header.length);
                 socketWrapper.write(true, payload);
-                socketWrapper.flush(true);
             } catch (IOException ioe) {
                 handleAppInitiatedIOException(ioe);
             }
@@ -2103,8 +2351,12 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
         }
 
         @Override
-        public void endHeaders() {
-            // NO-OP
+        public void endHeaders() throws IOException {
+            // Any frames queued by other threads can share the flush
+            IOException ioe = writeQueuedFrames(null, false);
+            if (ioe != null) {
+                handleAppInitiatedIOException(ioe);
+            }
         }
 
         @Override
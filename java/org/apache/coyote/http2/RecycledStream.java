@@ -20,17 +20,28 @@ import java.nio.ByteBuffer;
 
 /**
  * Represents a closed stream in the priority tree. Used in preference to the
- * full {@link Stream} as has much lower memory usage.
+ * full {@link Stream} as has much lower memory usage. Closed streams that are
+ * not required in the priority tree are retained in {@link ClosedStreams} and
+ * represented by a transient instance of this class when required.
  */
 class RecycledStream extends AbstractNonZeroStream {
 
     private final String connectionId;
     private int remainingFlowControlWindow;
+    // Non-null if this stream is a transient view of a closed stream
+    private final ClosedStreams closedStreams;
 
     RecycledStream(String connectionId, Integer identifier, StreamStateMachine state, int remainingFlowControlWindow) {
+        this(connectionId, identifier, state, remainingFlowControlWindow, null);
+    }
+
+
+    RecycledStream(String connectionId, Integer identifier, StreamStateMachine state, int remainingFlowControlWindow,
+            ClosedStreams closedStreams) {
         super(identifier, state);
         this.connectionId = connectionId;
         this.remainingFlowControlWindow = remainingFlowControlWindow;
+        this.closedStreams = closedStreams;
     }
 
 
@@ -50,6 +61,9 @@ class RecycledStream extends AbstractNonZeroStream {
     @Override
     void receivedData(int payloadSize) throws ConnectionException {
         remainingFlowControlWindow -= payloadSize;
+        if (closedStreams != null) {
+            closedStreams.setRemainingFlowControlWindow(getIdAsInt(), remainingFlowControlWindow);
+        }
     }
 
 
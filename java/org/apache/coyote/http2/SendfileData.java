@@ -30,4 +30,6 @@ class SendfileData {
     int connectionReservation;
     long pos;
     long end;
+    // Payload bytes included in the current write
+    int pendingBytes;
 }
\ No newline at end of file
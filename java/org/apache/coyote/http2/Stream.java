@@ -27,6 +27,8 @@ import java.util.HashSet;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
 import org.apache.coyote.ActionCode;
@@ -45,6 +47,7 @@ import org.apache.tomcat.util.buf.ByteChunk;
 import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.http.MimeHeaders;
 import org.apache.tomcat.util.http.parser.Host;
+import org.apache.tomcat.util.http.parser.Priority;
 import org.apache.tomcat.util.net.ApplicationBufferHandler;
 import org.apache.tomcat.util.net.WriteBuffer;
 import org.apache.tomcat.util.res.StringManager;
@@ -82,11 +85,14 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
 
     private final Http2UpgradeHandler handler;
     private final WindowAllocationManager allocationManager = new WindowAllocationManager(this);
-    private final Request coyoteRequest;
-    private final Response coyoteResponse = new Response();
+    // Cleared if the request and response are released for re-use
+    private Request coyoteRequest;
+    private Response coyoteResponse;
+    // Only requests created for new HTTP/2 streams may be re-used
+    private final boolean coyoteRequestReusable;
     private final StreamInputBuffer inputBuffer;
     private final StreamOutputBuffer streamOutputBuffer = new StreamOutputBuffer();
-    private final Http2OutputBuffer http2OutputBuffer = new Http2OutputBuffer(coyoteResponse, streamOutputBuffer);
+    private final Http2OutputBuffer http2OutputBuffer;
 
     // State machine would be too much overhead
     private int headerState = HEADER_STATE_START;
@@ -111,12 +117,24 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
         setWindowSize(handler.getRemoteSettings().getInitialWindowSize());
         if (coyoteRequest == null) {
             // HTTP/2 new request
-            this.coyoteRequest = new Request();
+            Request recycledRequest = handler.pollRecycledRequest();
+            if (recycledRequest == null) {
+                this.coyoteRequest = new Request();
+                this.coyoteResponse = new Response();
+            } else {
+                this.coyoteRequest = recycledRequest;
+                this.coyoteResponse = recycledRequest.getResponse();
+            }
+            this.coyoteRequestReusable = true;
+            this.http2OutputBuffer = new Http2OutputBuffer(coyoteResponse, streamOutputBuffer);
             this.inputBuffer = new StandardStreamInputBuffer();
             this.coyoteRequest.setInputBuffer(inputBuffer);
         } else {
             // HTTP/2 Push or HTTP/1.1 upgrade
             this.coyoteRequest = coyoteRequest;
+            this.coyoteResponse = new Response();
+            this.coyoteRequestReusable = false;
+            this.http2OutputBuffer = new Http2OutputBuffer(coyoteResponse, streamOutputBuffer);
             this.inputBuffer = new SavedRequestStreamInputBuffer(
                     (SavedRequestInputFilter) coyoteRequest.getInputBuffer());
             // Headers have been read by this point
@@ -206,54 +224,61 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
 
 
     @Override
-    final synchronized void incrementWindowSize(int windowSizeIncrement) throws Http2Exception {
-        // If this is zero then any thread that has been trying to write for
-        // this stream will be waiting. Notify that thread it can continue. Use
-        // notify all even though only one thread is waiting to be on the safe
-        // side.
-        boolean notify = getWindowSize() < 1;
-        super.incrementWindowSize(windowSizeIncrement);
-        if (notify && getWindowSize() > 0) {
-            allocationManager.notifyStream();
+    final void incrementWindowSize(int windowSizeIncrement) throws Http2Exception {
+        windowAllocationLock.lock();
+        try {
+            // If this is zero then any thread that has been trying to write for
+            // this stream will be waiting. Notify that thread it can continue. Use
+            // notify all even though only one thread is waiting to be on the safe
+            // side.
+            boolean notify = getWindowSize() < 1;
+            super.incrementWindowSize(windowSizeIncrement);
+            if (notify && getWindowSize() > 0) {
+                allocationManager.notifyStream();
+            }
+        } finally {
+            windowAllocationLock.unlock();
         }
     }
 
 
-    final synchronized int reserveWindowSize(int reservation, boolean block)
-            throws IOException {
-        long windowSize = getWindowSize();
-        while (windowSize < 1) {
-            if (!canWrite()) {
-                throw new CloseNowException(sm.getString("stream.notWritable",
-                        getConnectionId(), getIdAsString()));
-            }
-            if (block) {
-                try {
-                    long writeTimeout = handler.getProtocol().getStreamWriteTimeout();
-                    allocationManager.waitForStream(writeTimeout);
-                    windowSize = getWindowSize();
-                    if (windowSize == 0) {
-                        doStreamCancel(sm.getString("stream.writeTimeout"), Http2Error.ENHANCE_YOUR_CALM);
+    final int reserveWindowSize(int reservation, boolean block) throws IOException {
+        // Fast path. Only need the lock if this thread may have to wait.
+        int allocation = tryDecrementWindowSize(reservation);
+        if (allocation > 0) {
+            return allocation;
+        }
+        windowAllocationLock.lock();
+        try {
+            allocation = tryDecrementWindowSize(reservation);
+            while (allocation == 0) {
+                if (!canWrite()) {
+                    throw new CloseNowException(sm.getString("stream.notWritable",
+                            getConnectionId(), getIdAsString()));
+                }
+                if (block) {
+                    try {
+                        long writeTimeout = handler.getProtocol().getStreamWriteTimeout();
+                        allocationManager.waitForStream(writeTimeout);
+                        allocation = tryDecrementWindowSize(reservation);
+                        if (allocation == 0 && getWindowSize() == 0) {
+                            doStreamCancel(sm.getString("stream.writeTimeout"), Http2Error.ENHANCE_YOUR_CALM);
+                        }
+                    } catch (InterruptedException e) {
+                        // Possible shutdown / rst or similar. Use an IOException to
+                        // signal to the client that further I/O isn't possible for this
+                        // Stream.
+                        throw new IOException(e);
                     }
-                } catch (InterruptedException e) {
-                    // Possible shutdown / rst or similar. Use an IOException to
-                    // signal to the client that further I/O isn't possible for this
-                    // Stream.
-                    throw new IOException(e);
+                } else {
+                    allocationManager.waitForStreamNonBlocking();
+                    return 0;
                 }
-            } else {
-                allocationManager.waitForStreamNonBlocking();
-                return 0;
             }
+            return allocation;
+        } finally {
+            windowAllocationLock.unlock();
         }
-        int allocation;
-        if (windowSize < reservation) {
-            allocation = (int) windowSize;
-        } else {
-            allocation = reservation;
-        }
-        decrementWindowSize(allocation);
-        return allocation;
     }
 
 
@@ -428,6 +453,15 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
             if ("expect".equals(name) && "100-continue".equals(value)) {
                 coyoteRequest.setExpectation(true);
             }
+            if ("priority".equals(name) && headerState != HEADER_STATE_TRAILER &&
+                    handler.getProtocol().getUseRfc9218Priorities()) {
+                Priority p = Priority.parsePriority(value);
+                // Invalid values are ignored
+                if (p != null) {
+                    setUrgency(p.getUrgency());
+                    setIncremental(p.getIncremental());
+                }
+            }
             if (pseudoHeader) {
                 headerException = new StreamException(sm.getString(
                         "stream.header.unknownPseudoHeader", getConnectionId(), getIdAsString(),
@@ -761,7 +795,37 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
         } else {
             remaining = inputByteBuffer.remaining();
         }
-        handler.replaceStream(this, new RecycledStream(getConnectionId(), getIdentifier(), state, remaining));
+        handler.recycleStream(this, state, remaining);
+    }
+
+
+    /**
+     * Returns the Coyote request and response to the connection for re-use by
+     * a later stream. Must only be called once processing of this stream has
+     * completed cleanly and the stream has been recycled. The request and
+     * response are not released if this stream is still waiting for a flow
+     * control window allocation as it may still be notified. This stream's
+     * references to the request and response are cleared so they cannot be
+     * reached via this stream once in use by another stream.
+     */
+    final void releaseCoyoteRequest() {
+        if (!coyoteRequestReusable) {
+            return;
+        }
+        Request request;
+        windowAllocationLock.lock();
+        try {
+            if (coyoteRequest == null || getConnectionAllocationRequested() > 0 ||
+                    allocationManager.isWaitingForStream() || allocationManager.isWaitingForConnection()) {
+                return;
+            }
+            request = coyoteRequest;
+            coyoteRequest = null;
+            coyoteResponse = null;
+        } finally {
+            windowAllocationLock.unlock();
+        }
+        handler.releaseRecycledRequest(request);
     }
 
 
@@ -891,140 +955,163 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
         private volatile StreamException reset = null;
         private volatile boolean endOfStreamSent = false;
 
-        /* The write methods are synchronized to ensure that only one thread at
-         * a time is able to access the buffer. Without this protection, a
-         * client that performed concurrent writes could corrupt the buffer.
+        /* The write methods are protected by this lock to ensure that only one
+         * thread at a time is able to access the buffer. Without this
+         * protection, a client that performed concurrent writes could corrupt
+         * the buffer.
+         * A Lock as flushing may block for a flow control window while held.
          */
+        private final Lock writeLock = new ReentrantLock();
 
         @Override
-        public final synchronized int doWrite(ByteBuffer chunk) throws IOException {
-            if (closed) {
-                throw new IOException (
-                        sm.getString("stream.closed", getConnectionId(), getIdAsString()));
-            }
-            // chunk is always fully written
-            int result = chunk.remaining();
-            if (writeBuffer.isEmpty()) {
-                int chunkLimit = chunk.limit();
-                while (chunk.remaining() > 0) {
-                    int thisTime = Math.min(buffer.remaining(), chunk.remaining());
-                    chunk.limit(chunk.position() + thisTime);
-                    buffer.put(chunk);
-                    chunk.limit(chunkLimit);
-                    if (chunk.remaining() > 0 && !buffer.hasRemaining()) {
-                        // Only flush if we have more data to write and the buffer
-                        // is full
-                        if (flush(true, coyoteResponse.getWriteListener() == null)) {
-                            writeBuffer.add(chunk);
-                            dataLeft = true;
-                            break;
+        public final int doWrite(ByteBuffer chunk) throws IOException {
+            writeLock.lock();
+            try {
+                if (closed) {
+                    throw new IOException (
+                            sm.getString("stream.closed", getConnectionId(), getIdAsString()));
+                }
+                // chunk is always fully written
+                int result = chunk.remaining();
+                if (writeBuffer.isEmpty()) {
+                    int chunkLimit = chunk.limit();
+                    while (chunk.remaining() > 0) {
+                        int thisTime = Math.min(buffer.remaining(), chunk.remaining());
+                        chunk.limit(chunk.position() + thisTime);
+                        buffer.put(chunk);
+                        chunk.limit(chunkLimit);
+                        if (chunk.remaining() > 0 && !buffer.hasRemaining()) {
+                            // Only flush if we have more data to write and the buffer
+                            // is full
+                            if (flush(true, coyoteResponse.getWriteListener() == null)) {
+                                writeBuffer.add(chunk);
+                                dataLeft = true;
+                                break;
+                            }
                         }
                     }
+                } else {
+                    writeBuffer.add(chunk);
                 }
-            } else {
-                writeBuffer.add(chunk);
+                written += result;
+                return result;
+            } finally {
+                writeLock.unlock();
             }
-            written += result;
-            return result;
         }
 
-        final synchronized boolean flush(boolean block) throws IOException {
-            /*
-             * Need to ensure that there is exactly one call to flush even when
-             * there is no data to write.
-             * Too few calls (i.e. zero) and the end of stream message is not
-             * sent for a completed asynchronous write.
-             * Too many calls and the end of stream message is sent too soon and
-             * trailer headers are not sent.
-             */
-            boolean dataInBuffer = buffer.position() > 0;
-            boolean flushed = false;
-
-            if (dataInBuffer) {
-                dataInBuffer = flush(false, block);
-                flushed = true;
-            }
+        final boolean flush(boolean block) throws IOException {
+            writeLock.lock();
+            try {
+                /*
+                 * Need to ensure that there is exactly one call to flush even when
+                 * there is no data to write.
+                 * Too few calls (i.e. zero) and the end of stream message is not
+                 * sent for a completed asynchronous write.
+                 * Too many calls and the end of stream message is sent too soon and
+                 * trailer headers are not sent.
+                 */
+                boolean dataInBuffer = buffer.position() > 0;
+                boolean flushed = false;
+
+                if (dataInBuffer) {
+                    dataInBuffer = flush(false, block);
+                    flushed = true;
+                }
 
-            if (dataInBuffer) {
-                dataLeft = true;
-            } else {
-                if (writeBuffer.isEmpty()) {
-                    // Both buffer and writeBuffer are empty.
-                    if (flushed) {
-                        dataLeft = false;
+                if (dataInBuffer) {
+                    dataLeft = true;
+                } else {
+                    if (writeBuffer.isEmpty()) {
+                        // Both buffer and writeBuffer are empty.
+                        if (flushed) {
+                            dataLeft = false;
+                        } else {
+                            dataLeft = flush(false, block);
+                        }
                     } else {
-                        dataLeft = flush(false, block);
+                        dataLeft = writeBuffer.write(this, block);
                     }
-                } else {
-                    dataLeft = writeBuffer.write(this, block);
                 }
-            }
 
-            return dataLeft;
+                return dataLeft;
+            } finally {
+                writeLock.unlock();
+            }
         }
 
-        private final synchronized boolean flush(boolean writeInProgress, boolean block)
+        private boolean flush(boolean writeInProgress, boolean block)
                 throws IOException {
-            if (log.isDebugEnabled()) {
-                log.debug(sm.getString("stream.outputBuffer.flush.debug", getConnectionId(),
-                        getIdAsString(), Integer.toString(buffer.position()),
-                        Boolean.toString(writeInProgress), Boolean.toString(closed)));
-            }
-            if (buffer.position() == 0) {
-                if (closed && !endOfStreamSent) {
-                    // Handling this special case here is simpler than trying
-                    // to modify the following code to handle it.
-                    handler.writeBody(Stream.this, buffer, 0,
-                            coyoteResponse.getTrailerFields() == null);
+            writeLock.lock();
+            try {
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("stream.outputBuffer.flush.debug", getConnectionId(),
+                            getIdAsString(), Integer.toString(buffer.position()),
+                            Boolean.toString(writeInProgress), Boolean.toString(closed)));
                 }
-                // Buffer is empty. Nothing to do.
-                return false;
-            }
-            buffer.flip();
-            int left = buffer.remaining();
-            while (left > 0) {
-                if (streamReservation == 0) {
-                    streamReservation  = reserveWindowSize(left, block);
-                    if (streamReservation == 0) {
-                        // Must be non-blocking.
-                        // Note: Can't add to the writeBuffer here as the write
-                        // may originate from the writeBuffer.
-                        buffer.compact();
-                        return true;
+                if (buffer.position() == 0) {
+                    if (closed && !endOfStreamSent) {
+                        // Handling this special case here is simpler than trying
+                        // to modify the following code to handle it.
+                        handler.writeBody(Stream.this, buffer, 0,
+                                coyoteResponse.getTrailerFields() == null);
                     }
+                    // Buffer is empty. Nothing to do.
+                    return false;
                 }
-                while (streamReservation > 0) {
-                    int connectionReservation =
-                                handler.reserveWindowSize(Stream.this, streamReservation, block);
-                    if (connectionReservation == 0) {
-                        // Must be non-blocking.
-                        // Note: Can't add to the writeBuffer here as the write
-                        // may originate from the writeBuffer.
-                        buffer.compact();
-                        return true;
+                buffer.flip();
+                int left = buffer.remaining();
+                while (left > 0) {
+                    if (streamReservation == 0) {
+                        streamReservation  = reserveWindowSize(left, block);
+                        if (streamReservation == 0) {
+                            // Must be non-blocking.
+                            // Note: Can't add to the writeBuffer here as the write
+                            // may originate from the writeBuffer.
+                            buffer.compact();
+                            return true;
+                        }
+                    }
+                    while (streamReservation > 0) {
+                        int connectionReservation =
+                                    handler.reserveWindowSize(Stream.this, streamReservation, block);
+                        if (connectionReservation == 0) {
+                            // Must be non-blocking.
+                            // Note: Can't add to the writeBuffer here as the write
+                            // may originate from the writeBuffer.
+                            buffer.compact();
+                            return true;
+                        }
+                        // Do the write
+                        handler.writeBody(Stream.this, buffer, connectionReservation,
+                                !writeInProgress && closed && left == connectionReservation &&
+                                coyoteResponse.getTrailerFields() == null);
+                        streamReservation -= connectionReservation;
+                        left -= connectionReservation;
                     }
-                    // Do the write
-                    handler.writeBody(Stream.this, buffer, connectionReservation,
-                            !writeInProgress && closed && left == connectionReservation &&
-                            coyoteResponse.getTrailerFields() == null);
-                    streamReservation -= connectionReservation;
-                    left -= connectionReservation;
                 }
+                buffer.clear();
+                return false;
+            } finally {
+                writeLock.unlock();
             }
-            buffer.clear();
-            return false;
         }
 
-        final synchronized boolean isReady() {
-            // Bug 63682
-            // Only want to return false if the window size is zero AND we are
-            // already waiting for an allocation.
-            if (getWindowSize() > 0 && allocationManager.isWaitingForStream() ||
-                    handler.getWindowSize() > 0 && allocationManager.isWaitingForConnection() ||
-                    dataLeft) {
-                return false;
-            } else {
-                return true;
+        final boolean isReady() {
+            writeLock.lock();
+            try {
+                // Bug 63682
+                // Only want to return false if the window size is zero AND we are
+                // already waiting for an allocation.
+                if (getWindowSize() > 0 && allocationManager.isWaitingForStream() ||
+                        handler.getWindowSize() > 0 && allocationManager.isWaitingForConnection() ||
+                        dataLeft) {
+                    return false;
+                } else {
+                    return true;
+                }
+            } finally {
+                writeLock.unlock();
             }
         }
 
@@ -1068,18 +1155,23 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
         }
 
         @Override
-        public synchronized boolean writeFromBuffer(ByteBuffer src, boolean blocking) throws IOException {
-            int chunkLimit = src.limit();
-            while (src.remaining() > 0) {
-                int thisTime = Math.min(buffer.remaining(), src.remaining());
-                src.limit(src.position() + thisTime);
-                buffer.put(src);
-                src.limit(chunkLimit);
-                if (flush(false, blocking)) {
-                    return true;
+        public boolean writeFromBuffer(ByteBuffer src, boolean blocking) throws IOException {
+            writeLock.lock();
+            try {
+                int chunkLimit = src.limit();
+                while (src.remaining() > 0) {
+                    int thisTime = Math.min(buffer.remaining(), src.remaining());
+                    src.limit(src.position() + thisTime);
+                    buffer.put(src);
+                    src.limit(chunkLimit);
+                    if (flush(false, blocking)) {
+                        return true;
+                    }
                 }
+                return false;
+            } finally {
+                writeLock.unlock();
             }
-            return false;
         }
     }
 
@@ -29,12 +29,13 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.apache.coyote.AbstractProcessor;
 import org.apache.coyote.ActionCode;
 import org.apache.coyote.Adapter;
+import org.apache.coyote.CompressionCodec;
 import org.apache.coyote.ContinueResponseTiming;
 import org.apache.coyote.ErrorState;
 import org.apache.coyote.Request;
 import org.apache.coyote.RequestGroupInfo;
 import org.apache.coyote.Response;
-import org.apache.coyote.http11.filters.GzipOutputFilter;
+import org.apache.coyote.http11.filters.CompressionOutputFilter;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.buf.ByteChunk;
@@ -83,6 +84,7 @@ class StreamProcessor extends AbstractProcessor {
                 // HTTP/2 equivalent of AbstractConnectionHandler#process() without the
                 // socket <-> processor mapping
                 SocketState state = SocketState.CLOSED;
+                boolean releaseRequest = false;
                 try {
                     state = process(socketWrapper, event);
 
@@ -117,6 +119,7 @@ class StreamProcessor extends AbstractProcessor {
                             if (!stream.isActive()) {
                                 // stream.close() will call recycle so only need it here
                                 stream.recycle();
+                                releaseRequest = true;
                             }
                         }
                     }
@@ -132,6 +135,15 @@ class StreamProcessor extends AbstractProcessor {
                 } finally {
                     if (state == SocketState.CLOSED) {
                         recycle();
+                        if (releaseRequest) {
+                            // Only re-use the request and response after a
+                            // clean completion
+                            getAdapter().checkRecycled(request, response);
+                            request.getRequestProcessor().recycleStatistics();
+                            request.recycle();
+                            response.recycle();
+                            stream.releaseCoyoteRequest();
+                        }
                     }
                 }
             }
@@ -182,11 +194,13 @@ class StreamProcessor extends AbstractProcessor {
         // Compression can't be used with sendfile
         // Need to check for compression (and set headers appropriately) before
         // adding headers below
-        if (noSendfile && protocol != null &&
-                protocol.useCompression(coyoteRequest, coyoteResponse)) {
-            // Enable compression. Headers will have been set. Need to configure
-            // output filter at this point.
-            stream.addOutputFilter(new GzipOutputFilter());
+        if (noSendfile && protocol != null) {
+            CompressionCodec compressionCodec = protocol.getCompressionCodec(coyoteRequest, coyoteResponse);
+            if (compressionCodec != null) {
+                // Enable compression. Headers will have been set. Need to
+                // configure output filter at this point.
+                stream.addOutputFilter(new CompressionOutputFilter(compressionCodec));
+            }
         }
 
         // Check to see if a response body is present
@@ -43,6 +43,8 @@ class StreamStateMachine {
     private final String streamId;
 
     private State state;
+    // Non-null if the state of this closed stream is retained in compact form
+    private ClosedStreams closedStreams;
 
 
     StreamStateMachine(String connectionId, String streamId) {
@@ -52,6 +54,17 @@ class StreamStateMachine {
     }
 
 
+    /*
+     * Used to restore the state of a closed stream retained in compact form.
+     */
+    StreamStateMachine(String connectionId, String streamId, int stateId, ClosedStreams closedStreams) {
+        this.connectionId = connectionId;
+        this.streamId = streamId;
+        this.state = State.values()[stateId];
+        this.closedStreams = closedStreams;
+    }
+
+
     final synchronized void sentPushPromise() {
         stateChange(State.IDLE, State.RESERVED_LOCAL);
     }
@@ -111,6 +124,9 @@ class StreamStateMachine {
     private void stateChange(State oldState, State newState) {
         if (state == oldState) {
             state = newState;
+            if (closedStreams != null) {
+                closedStreams.setState(Integer.parseInt(streamId), newState.ordinal());
+            }
             if (log.isDebugEnabled()) {
                 log.debug(sm.getString("streamStateMachine.debug.change", connectionId,
                         streamId, oldState, newState));
@@ -160,6 +176,23 @@ class StreamStateMachine {
         return state == State.CLOSED_FINAL;
     }
 
+    /*
+     * Used to retain the state of a closed stream in compact form.
+     */
+    final synchronized int getStateId() {
+        return state.ordinal();
+    }
+
+
+    /*
+     * Used to write back any further state changes once the state of a closed
+     * stream is retained in compact form.
+     */
+    final synchronized void setClosedStreams(ClosedStreams closedStreams) {
+        this.closedStreams = closedStreams;
+    }
+
+
     final synchronized void closeIfIdle() {
         stateChange(State.IDLE, State.CLOSED_FINAL);
     }
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+
+/**
+ * Tracks the streams waiting for an allocation from the connection flow
+ * control window when the RFC 9218 prioritization scheme is in use.
+ * <p>
+ * There is a FIFO queue for each combination of urgency and incremental flag
+ * so adding a stream and selecting the next stream to receive an allocation
+ * are both O(1) regardless of the number of streams waiting. Allocations are
+ * made in urgency order. Within an urgency, non-incremental streams are served
+ * one at a time, in the order in which they requested an allocation, before
+ * the remaining window is shared equally between the incremental streams. A
+ * stream that receives an allocation leaves the backlog and, if it has more to
+ * write, re-joins the back of its queue when it next requests an allocation
+ * which results in round-robin scheduling of streams with the same priority.
+ * <p>
+ * This class is not thread safe. All access must be made while holding the
+ * connection's window allocation lock.
+ */
+class UrgencyBacklog {
+
+    private static final int URGENCY_LEVELS = 8;
+
+    private final ArrayDeque<AbstractNonZeroStream>[] queues;
+    private long size = 0;
+
+
+    @SuppressWarnings("unchecked")
+    UrgencyBacklog() {
+        queues = new ArrayDeque[URGENCY_LEVELS * 2];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ArrayDeque<>();
+        }
+    }
+
+
+    /**
+     * Add a stream to the backlog or, if the stream is already waiting for an
+     * allocation, update the size of the allocation it is waiting for.
+     *
+     * @param stream        The stream requesting an allocation
+     * @param reservation   The size of the requested allocation
+     */
+    void add(AbstractNonZeroStream stream, int reservation) {
+        int previous = stream.getConnectionAllocationRequested();
+        stream.setConnectionAllocationRequested(reservation);
+        size += reservation - previous;
+        if (previous == 0) {
+            queues[getQueueIndex(stream)].add(stream);
+        }
+    }
+
+
+    /**
+     * Update the priority of a stream. If the stream is waiting for an
+     * allocation and the priority has changed, the stream is moved to the back
+     * of the queue for its new priority.
+     *
+     * @param stream        The stream to update
+     * @param urgency       The new urgency
+     * @param incremental   The new incremental flag
+     */
+    void setPriority(AbstractNonZeroStream stream, int urgency, boolean incremental) {
+        if (stream.getUrgency() == urgency && stream.getIncremental() == incremental) {
+            return;
+        }
+        boolean queued = stream.getConnectionAllocationRequested() > 0;
+        if (queued) {
+            queues[getQueueIndex(stream)].remove(stream);
+        }
+        stream.setUrgency(urgency);
+        stream.setIncremental(incremental);
+        if (queued) {
+            queues[getQueueIndex(stream)].add(stream);
+        }
+    }
+
+
+    /**
+     * @return The total of the allocations requested by the streams in the
+     *         backlog
+     */
+    long getSize() {
+        return size;
+    }
+
+
+    /**
+     * Allocate the given increment to the connection flow control window to
+     * the streams in the backlog.
+     *
+     * @param increment The size of the allocation available
+     * @param allocated Streams that receive an allocation will be added to this
+     *                  collection so they can be notified once the window
+     *                  allocation lock is released
+     *
+     * @return The part of the increment that was not allocated because the
+     *         backlog was not large enough to use all of it
+     */
+    int release(int increment, Collection<AbstractStream> allocated) {
+        int remaining = increment;
+        for (int urgency = 0; urgency < URGENCY_LEVELS && remaining > 0; urgency++) {
+            ArrayDeque<AbstractNonZeroStream> sequential = queues[urgency * 2];
+            while (remaining > 0 && !sequential.isEmpty()) {
+                remaining -= allocate(sequential.poll(), remaining, allocated);
+            }
+            ArrayDeque<AbstractNonZeroStream> incremental = queues[urgency * 2 + 1];
+            if (remaining > 0 && !incremental.isEmpty()) {
+                // Any part of a share not required by a stream is left for
+                // streams with a lower urgency
+                int count = incremental.size();
+                int share = Math.max(1, remaining / count);
+                while (remaining > 0 && count-- > 0) {
+                    remaining -= allocate(incremental.poll(), Math.min(remaining, share), allocated);
+                }
+            }
+        }
+        return remaining;
+    }
+
+
+    private int allocate(AbstractNonZeroStream stream, int available, Collection<AbstractStream> allocated) {
+        int requested = stream.getConnectionAllocationRequested();
+        int allocation = Math.min(requested, available);
+        stream.setConnectionAllocationRequested(0);
+        stream.setConnectionAllocationMade(stream.getConnectionAllocationMade() + allocation);
+        size -= requested;
+        allocated.add(stream);
+        return allocation;
+    }
+
+
+    private static int getQueueIndex(AbstractNonZeroStream stream) {
+        return stream.getUrgency() * 2 + (stream.getIncremental() ? 1 : 0);
+    }
+}
@@ -16,6 +16,8 @@
  */
 package org.apache.coyote.http2;
 
+import java.util.concurrent.TimeUnit;
+
 import org.apache.coyote.ActionCode;
 import org.apache.coyote.Response;
 import org.apache.juli.logging.Log;
@@ -46,7 +48,7 @@ import org.apache.tomcat.util.res.StringManager;
  * A previous implementation used separate locks for the stream and connection
  * notifications. However, correct handling of allocation waiting requires
  * holding the stream lock when making the decision to wait. Therefore both
- * allocations need to wait on the Stream.
+ * allocations need to wait on the Stream's window allocation lock.
  */
 class WindowAllocationManager {
 
@@ -132,14 +134,18 @@ class WindowAllocationManager {
 
 
     private boolean isWaitingFor(int waitTarget) {
-        synchronized (stream) {
+        stream.windowAllocationLock.lock();
+        try {
             return (waitingFor & waitTarget) > 0;
+        } finally {
+            stream.windowAllocationLock.unlock();
         }
     }
 
 
     private void waitFor(int waitTarget, long timeout) throws InterruptedException {
-        synchronized (stream) {
+        stream.windowAllocationLock.lock();
+        try {
             if (waitingFor != NONE) {
                 throw new IllegalStateException(sm.getString("windowAllocationManager.waitFor.ise",
                         stream.getConnectionId(), stream.getIdAsString()));
@@ -148,16 +154,19 @@ class WindowAllocationManager {
             waitingFor = waitTarget;
 
             if (timeout < 0) {
-                stream.wait();
+                stream.windowAllocationAvailable.await();
             } else {
-                stream.wait(timeout);
+                stream.windowAllocationAvailable.await(timeout, TimeUnit.MILLISECONDS);
             }
+        } finally {
+            stream.windowAllocationLock.unlock();
         }
     }
 
 
     private void waitForNonBlocking(int waitTarget) {
-        synchronized (stream) {
+        stream.windowAllocationLock.lock();
+        try {
             if (waitingFor == NONE) {
                 waitingFor = waitTarget;
             } else if (waitingFor == waitTarget) {
@@ -167,14 +176,16 @@ class WindowAllocationManager {
                 throw new IllegalStateException(sm.getString("windowAllocationManager.waitFor.ise",
                         stream.getConnectionId(), stream.getIdAsString()));
             }
-
+        } finally {
+            stream.windowAllocationLock.unlock();
         }
     }
 
 
     private void notify(int notifyTarget) {
 
-        synchronized (stream) {
+        stream.windowAllocationLock.lock();
+        try {
             if (log.isDebugEnabled()) {
                 log.debug(sm.getString("windowAllocationManager.notify", stream.getConnectionId(),
                         stream.getIdAsString(), Integer.toString(waitingFor), Integer.toString(notifyTarget)));
@@ -184,18 +195,18 @@ class WindowAllocationManager {
                 // Reset this here so multiple notifies (possible with a
                 // backlog containing multiple streams and small window updates)
                 // are handled correctly (only the first should trigger a call
-                // to stream.notify(). Additional notify() calls may trigger
+                // to signal(). Additional signal() calls may trigger
                 // unexpected timeouts.
                 waitingFor = NONE;
                 Response response = stream.getCoyoteResponse();
                 if (response != null) {
                     if (response.getWriteListener() == null) {
-                        // Blocking, so use notify to release StreamOutputBuffer
+                        // Blocking, so use signal to release StreamOutputBuffer
                         if (log.isDebugEnabled()) {
                             log.debug(sm.getString("windowAllocationManager.notified",
                                     stream.getConnectionId(), stream.getIdAsString()));
                         }
-                        stream.notify();
+                        stream.windowAllocationAvailable.signal();
                     } else {
                         // Non-blocking so dispatch
                         if (log.isDebugEnabled()) {
@@ -210,6 +221,8 @@ class WindowAllocationManager {
                     }
                 }
             }
+        } finally {
+            stream.windowAllocationLock.unlock();
         }
     }
 }
@@ -1,41 +1,43 @@
 /*
- *  Licensed to the Apache Software Foundation (ASF) under one or more
- *  contributor license agreements.  See the NOTICE file distributed with
- *  this work for additional information regarding copyright ownership.
- *  The ASF licenses this file to You under the Apache License, Version 2.0
- *  (the "License"); you may not use this file except in compliance with
- *  the License.  You may obtain a copy of the License at
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
  *
- *      http://www.apache.org/licenses/LICENSE-2.0
+ *     http://www.apache.org/licenses/LICENSE-2.0
  *
- *  Unless required by applicable law or agreed to in writing, software
- *  distributed under the License is distributed on an "AS IS" BASIS,
- *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- *  See the License for the specific language governing permissions and
- *  limitations under the License.
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
  */
 package org.apache.tomcat.util.buf;
 
 import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
-import org.apache.juli.logging.Log;
-import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.collections.FrequencySketch;
 
 /**
  * This class implements a String cache for ByteChunk and CharChunk.
+ * <p>
+ * The cache is a fixed size, two-way set associative hash table keyed on the
+ * raw bytes (and charset) or chars being converted. Look-ups and updates are
+ * lock-free. The cache adapts continuously to the Strings being converted
+ * using TinyLFU admission: a compact, periodically aged frequency sketch
+ * records how often each key is converted and a new entry only replaces an
+ * existing entry if it has been seen more often recently than the entry it
+ * would replace.
  *
  * @author Remy Maucherat
  */
 public class StringCache {
 
 
-    private static final Log log = LogFactory.getLog(StringCache.class);
-
-
     // ------------------------------------------------------- Static Variables
 
 
@@ -50,6 +52,10 @@ public class StringCache {
             "tomcat.util.buf.StringCache.char.enabled", "false")));
 
 
+    /**
+     * @deprecated Unused. Will be removed in Tomcat 11.
+     */
+    @Deprecated
     protected static int trainThreshold = Integer.parseInt(System.getProperty(
             "tomcat.util.buf.StringCache.trainThreshold", "20000"));
 
@@ -63,54 +69,34 @@ public class StringCache {
                     "tomcat.util.buf.StringCache.maxStringSize", "128"));
 
 
-   /**
-     * Statistics hash map for byte chunk.
-     */
-    protected static final HashMap<ByteEntry,int[]> bcStats =
-            new HashMap<>(cacheSize);
-
-
-    /**
-     * toString count for byte chunk.
-     */
-    protected static int bcCount = 0;
-
-
     /**
      * Cache for byte chunk.
      */
-    protected static volatile ByteEntry[] bcCache = null;
-
-
-    /**
-     * Statistics hash map for char chunk.
-     */
-    protected static final HashMap<CharEntry,int[]> ccStats =
-            new HashMap<>(cacheSize);
+    private static volatile Cache<ByteEntry> bcCache = new Cache<>(cacheSize);
 
 
     /**
-     * toString count for char chunk.
+     * Cache for char chunk.
      */
-    protected static int ccCount = 0;
+    private static volatile Cache<CharEntry> ccCache = new Cache<>(cacheSize);
 
 
     /**
-     * Cache for char chunk.
+     * Access count.
      */
-    protected static volatile CharEntry[] ccCache = null;
+    private static final LongAdder accessCount = new LongAdder();
 
 
     /**
-     * Access count.
+     * Hit count.
      */
-    protected static int accessCount = 0;
+    private static final LongAdder hitCount = new LongAdder();
 
 
     /**
-     * Hit count.
+     * Eviction count.
      */
-    protected static int hitCount = 0;
+    private static final LongAdder evictionCount = new LongAdder();
 
 
     // ------------------------------------------------------------ Properties
@@ -129,6 +115,8 @@ public class StringCache {
      */
     public void setCacheSize(int cacheSize) {
         StringCache.cacheSize = cacheSize;
+        bcCache = new Cache<>(cacheSize);
+        ccCache = new Cache<>(cacheSize);
     }
 
 
@@ -166,7 +154,11 @@ public class StringCache {
 
     /**
      * @return Returns the trainThreshold.
+     *
+     * @deprecated Unused. The cache no longer has a training phase. Will be
+     *             removed in Tomcat 11.
      */
+    @Deprecated
     public int getTrainThreshold() {
         return trainThreshold;
     }
@@ -174,7 +166,11 @@ public class StringCache {
 
     /**
      * @param trainThreshold The trainThreshold to set.
+     *
+     * @deprecated Unused. The cache no longer has a training phase. Will be
+     *             removed in Tomcat 11.
      */
+    @Deprecated
     public void setTrainThreshold(int trainThreshold) {
         StringCache.trainThreshold = trainThreshold;
     }
@@ -184,7 +180,7 @@ public class StringCache {
      * @return Returns the accessCount.
      */
     public int getAccessCount() {
-        return accessCount;
+        return (int) accessCount.sum();
     }
 
 
@@ -192,520 +188,292 @@ public class StringCache {
      * @return Returns the hitCount.
      */
     public int getHitCount() {
-        return hitCount;
+        return (int) hitCount.sum();
+    }
+
+
+    /**
+     * @return the number of cached Strings that have been replaced by more
+     *         frequently used Strings
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+
+    /**
+     * @return the ratio of cache hits to cache accesses or zero if there
+     *         have been no accesses
+     */
+    public double getHitRatio() {
+        long accesses = accessCount.sum();
+        if (accesses == 0) {
+            return 0;
+        }
+        return (double) hitCount.sum() / accesses;
     }
 
 
     // -------------------------------------------------- Public Static Methods
 
 
+    /**
+     * Resets the statistics. The cached Strings are retained since the cache
+     * adapts to changes in usage without needing to be re-trained.
+     */
     public void reset() {
-        hitCount = 0;
-        accessCount = 0;
-        synchronized (bcStats) {
-            bcCache = null;
-            bcCount = 0;
-        }
-        synchronized (ccStats) {
-            ccCache = null;
-            ccCount = 0;
-        }
+        hitCount.reset();
+        accessCount.reset();
+        evictionCount.reset();
     }
 
 
     public static String toString(ByteChunk bc) {
+        if (!byteEnabled || bc.getLength() >= maxStringSize) {
+            return bc.toStringInternal();
+        }
 
-        // If the cache is null, then either caching is disabled, or we're
-        // still training
-        if (bcCache == null) {
-            String value = bc.toStringInternal();
-            if (byteEnabled && (value.length() < maxStringSize)) {
-                // If training, everything is synced
-                synchronized (bcStats) {
-                    // If the cache has been generated on a previous invocation
-                    // while waiting for the lock, just return the toString
-                    // value we just calculated
-                    if (bcCache != null) {
-                        return value;
-                    }
-                    // Two cases: either we just exceeded the train count, in
-                    // which case the cache must be created, or we just update
-                    // the count for the string
-                    if (bcCount > trainThreshold) {
-                        long t1 = System.currentTimeMillis();
-                        // Sort the entries according to occurrence
-                        TreeMap<Integer,ArrayList<ByteEntry>> tempMap =
-                                new TreeMap<>();
-                        for (Entry<ByteEntry,int[]> item : bcStats.entrySet()) {
-                            ByteEntry entry = item.getKey();
-                            int[] countA = item.getValue();
-                            Integer count = Integer.valueOf(countA[0]);
-                            // Add to the list for that count
-                            ArrayList<ByteEntry> list = tempMap.get(count);
-                            if (list == null) {
-                                // Create list
-                                list = new ArrayList<>();
-                                tempMap.put(count, list);
-                            }
-                            list.add(entry);
-                        }
-                        // Allocate array of the right size
-                        int size = bcStats.size();
-                        if (size > cacheSize) {
-                            size = cacheSize;
-                        }
-                        ByteEntry[] tempbcCache = new ByteEntry[size];
-                        // Fill it up using an alphabetical order
-                        // and a dumb insert sort
-                        ByteChunk tempChunk = new ByteChunk();
-                        int n = 0;
-                        while (n < size) {
-                            Object key = tempMap.lastKey();
-                            ArrayList<ByteEntry> list = tempMap.get(key);
-                            for (int i = 0; i < list.size() && n < size; i++) {
-                                ByteEntry entry = list.get(i);
-                                tempChunk.setBytes(entry.name, 0,
-                                        entry.name.length);
-                                int insertPos = findClosest(tempChunk,
-                                        tempbcCache, n);
-                                if (insertPos == n) {
-                                    tempbcCache[n + 1] = entry;
-                                } else {
-                                    System.arraycopy(tempbcCache, insertPos + 1,
-                                            tempbcCache, insertPos + 2,
-                                            n - insertPos - 1);
-                                    tempbcCache[insertPos + 1] = entry;
-                                }
-                                n++;
-                            }
-                            tempMap.remove(key);
-                        }
-                        bcCount = 0;
-                        bcStats.clear();
-                        bcCache = tempbcCache;
-                        if (log.isDebugEnabled()) {
-                            long t2 = System.currentTimeMillis();
-                            log.debug("ByteCache generation time: " +
-                                    (t2 - t1) + "ms");
-                        }
-                    } else {
-                        bcCount++;
-                        // Allocate new ByteEntry for the lookup
-                        ByteEntry entry = new ByteEntry();
-                        entry.value = value;
-                        int[] count = bcStats.get(entry);
-                        if (count == null) {
-                            int end = bc.getEnd();
-                            int start = bc.getStart();
-                            // Create byte array and copy bytes
-                            entry.name = new byte[bc.getLength()];
-                            System.arraycopy(bc.getBuffer(), start, entry.name,
-                                    0, end - start);
-                            // Set encoding
-                            entry.charset = bc.getCharset();
-                            // Initialize occurrence count to one
-                            count = new int[1];
-                            count[0] = 1;
-                            // Set in the stats hash map
-                            bcStats.put(entry, count);
-                        } else {
-                            count[0] = count[0] + 1;
-                        }
-                    }
-                }
-            }
-            return value;
-        } else {
-            accessCount++;
-            // Find the corresponding String
-            String result = find(bc);
-            if (result == null) {
-                return bc.toStringInternal();
+        byte[] buff = bc.getBuffer();
+        int start = bc.getStart();
+        int end = bc.getEnd();
+        Charset charset = bc.getCharset();
+        if (charset == null) {
+            charset = ByteChunk.DEFAULT_CHARSET;
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buff[i];
+        }
+        hash = spread(hash ^ charset.hashCode());
+
+        accessCount.increment();
+        Cache<ByteEntry> cache = bcCache;
+        cache.sketch.increment(hash);
+
+        int bucket = cache.bucket(hash);
+        for (int i = bucket; i < bucket + 2; i++) {
+            ByteEntry entry = cache.entries.get(i);
+            if (entry != null && entry.matches(hash, buff, start, end, charset)) {
+                hitCount.increment();
+                return entry.value;
             }
-            // Note: We don't care about safety for the stats
-            hitCount++;
-            return result;
         }
 
+        String value = bc.toStringInternal();
+        if (value.length() < maxStringSize) {
+            // Only copy the key once the candidate has been admitted
+            int slot = cache.admissionSlot(bucket, hash);
+            if (slot >= 0) {
+                int len = end - start;
+                byte[] name = new byte[len];
+                System.arraycopy(buff, start, name, 0, len);
+                cache.admit(slot, new ByteEntry(hash, name, charset, value));
+            }
+        }
+        return value;
     }
 
 
     public static String toString(CharChunk cc) {
+        if (!charEnabled || cc.getLength() >= maxStringSize) {
+            return cc.toStringInternal();
+        }
 
-        // If the cache is null, then either caching is disabled, or we're
-        // still training
-        if (ccCache == null) {
-            String value = cc.toStringInternal();
-            if (charEnabled && (value.length() < maxStringSize)) {
-                // If training, everything is synced
-                synchronized (ccStats) {
-                    // If the cache has been generated on a previous invocation
-                    // while waiting for the lock, just return the toString
-                    // value we just calculated
-                    if (ccCache != null) {
-                        return value;
-                    }
-                    // Two cases: either we just exceeded the train count, in
-                    // which case the cache must be created, or we just update
-                    // the count for the string
-                    if (ccCount > trainThreshold) {
-                        long t1 = System.currentTimeMillis();
-                        // Sort the entries according to occurrence
-                        TreeMap<Integer,ArrayList<CharEntry>> tempMap =
-                                new TreeMap<>();
-                        for (Entry<CharEntry,int[]> item : ccStats.entrySet()) {
-                            CharEntry entry = item.getKey();
-                            int[] countA = item.getValue();
-                            Integer count = Integer.valueOf(countA[0]);
-                            // Add to the list for that count
-                            ArrayList<CharEntry> list = tempMap.get(count);
-                            if (list == null) {
-                                // Create list
-                                list = new ArrayList<>();
-                                tempMap.put(count, list);
-                            }
-                            list.add(entry);
-                        }
-                        // Allocate array of the right size
-                        int size = ccStats.size();
-                        if (size > cacheSize) {
-                            size = cacheSize;
-                        }
-                        CharEntry[] tempccCache = new CharEntry[size];
-                        // Fill it up using an alphabetical order
-                        // and a dumb insert sort
-                        CharChunk tempChunk = new CharChunk();
-                        int n = 0;
-                        while (n < size) {
-                            Object key = tempMap.lastKey();
-                            ArrayList<CharEntry> list = tempMap.get(key);
-                            for (int i = 0; i < list.size() && n < size; i++) {
-                                CharEntry entry = list.get(i);
-                                tempChunk.setChars(entry.name, 0,
-                                        entry.name.length);
-                                int insertPos = findClosest(tempChunk,
-                                        tempccCache, n);
-                                if (insertPos == n) {
-                                    tempccCache[n + 1] = entry;
-                                } else {
-                                    System.arraycopy(tempccCache, insertPos + 1,
-                                            tempccCache, insertPos + 2,
-                                            n - insertPos - 1);
-                                    tempccCache[insertPos + 1] = entry;
-                                }
-                                n++;
-                            }
-                            tempMap.remove(key);
-                        }
-                        ccCount = 0;
-                        ccStats.clear();
-                        ccCache = tempccCache;
-                        if (log.isDebugEnabled()) {
-                            long t2 = System.currentTimeMillis();
-                            log.debug("CharCache generation time: " +
-                                    (t2 - t1) + "ms");
-                        }
-                    } else {
-                        ccCount++;
-                        // Allocate new CharEntry for the lookup
-                        CharEntry entry = new CharEntry();
-                        entry.value = value;
-                        int[] count = ccStats.get(entry);
-                        if (count == null) {
-                            int end = cc.getEnd();
-                            int start = cc.getStart();
-                            // Create char array and copy chars
-                            entry.name = new char[cc.getLength()];
-                            System.arraycopy(cc.getBuffer(), start, entry.name,
-                                    0, end - start);
-                            // Initialize occurrence count to one
-                            count = new int[1];
-                            count[0] = 1;
-                            // Set in the stats hash map
-                            ccStats.put(entry, count);
-                        } else {
-                            count[0] = count[0] + 1;
-                        }
-                    }
-                }
-            }
-            return value;
-        } else {
-            accessCount++;
-            // Find the corresponding String
-            String result = find(cc);
-            if (result == null) {
-                return cc.toStringInternal();
+        char[] buff = cc.getBuffer();
+        int start = cc.getStart();
+        int end = cc.getEnd();
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buff[i];
+        }
+        hash = spread(hash);
+
+        accessCount.increment();
+        Cache<CharEntry> cache = ccCache;
+        cache.sketch.increment(hash);
+
+        int bucket = cache.bucket(hash);
+        for (int i = bucket; i < bucket + 2; i++) {
+            CharEntry entry = cache.entries.get(i);
+            if (entry != null && entry.matches(hash, buff, start, end)) {
+                hitCount.increment();
+                return entry.value;
             }
-            // Note: We don't care about safety for the stats
-            hitCount++;
-            return result;
         }
 
+        String value = cc.toStringInternal();
+        // Only copy the key once the candidate has been admitted
+        int slot = cache.admissionSlot(bucket, hash);
+        if (slot >= 0) {
+            int len = end - start;
+            char[] name = new char[len];
+            System.arraycopy(buff, start, name, 0, len);
+            cache.admit(slot, new CharEntry(hash, name, value));
+        }
+        return value;
     }
 
 
-    // ----------------------------------------------------- Protected Methods
-
+    // ------------------------------------------------------- Private Methods
 
-    /**
-     * Compare given byte chunk with byte array.
-     * @param name The name to compare
-     * @param compareTo The compared to data
-     * @return -1, 0 or +1 if inferior, equal, or superior to the String.
-     */
-    protected static final int compare(ByteChunk name, byte[] compareTo) {
-        int result = 0;
 
-        byte[] b = name.getBuffer();
-        int start = name.getStart();
-        int end = name.getEnd();
-        int len = compareTo.length;
-
-        if ((end - start) < len) {
-            len = end - start;
-        }
-        for (int i = 0; (i < len) && (result == 0); i++) {
-            if (b[i + start] > compareTo[i]) {
-                result = 1;
-            } else if (b[i + start] < compareTo[i]) {
-                result = -1;
-            }
-        }
-        if (result == 0) {
-            if (compareTo.length > (end - start)) {
-                result = -1;
-            } else if (compareTo.length < (end - start)) {
-                result = 1;
-            }
-        }
-        return result;
+    private static int spread(int hash) {
+        // Murmur3 finalizer. Ensures all bits of the hash affect the low bits
+        // used to select a bucket and the sketch counters.
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
     }
 
 
-    /**
-     * Find an entry given its name in the cache and return the associated
-     * String.
-     * @param name The name to find
-     * @return the corresponding value
-     */
-    protected static final String find(ByteChunk name) {
-        int pos = findClosest(name, bcCache, bcCache.length);
-        if ((pos < 0) || (compare(name, bcCache[pos].name) != 0)
-                || !(name.getCharset().equals(bcCache[pos].charset))) {
-            return null;
-        } else {
-            return bcCache[pos].value;
-        }
-    }
+    // ------------------------------------------------------ Cache Inner Class
 
 
-    /**
-     * Find an entry given its name in a sorted array of map elements.
-     * This will return the index for the closest inferior or equal item in the
-     * given array.
-     * @param name The name to find
-     * @param array The array in which to look
-     * @param len The effective length of the array
-     * @return the position of the best match
-     */
-    protected static final int findClosest(ByteChunk name, ByteEntry[] array,
-            int len) {
+    private static class Cache<T extends Entry> {
 
-        int a = 0;
-        int b = len - 1;
+        private final AtomicReferenceArray<T> entries;
+        private final int mask;
+        private final FrequencySketch sketch;
 
-        // Special cases: -1 and 0
-        if (b == -1) {
-            return -1;
+        Cache(int size) {
+            int capacity = 2;
+            while (capacity < size) {
+                capacity <<= 1;
+            }
+            entries = new AtomicReferenceArray<>(capacity);
+            // Buckets are pairs of adjacent entries
+            mask = capacity - 2;
+            sketch = new FrequencySketch(capacity);
         }
 
-        if (compare(name, array[0].name) < 0) {
-            return -1;
-        }
-        if (b == 0) {
-            return 0;
+        int bucket(int hash) {
+            return hash & mask;
         }
 
-        int i = 0;
-        while (true) {
-            i = (b + a) >>> 1;
-            int result = compare(name, array[i].name);
-            if (result == 1) {
-                a = i;
-            } else if (result == 0) {
-                return i;
+        /*
+         * TinyLFU admission. Use an empty slot if there is one else replace
+         * the least frequently used entry in the bucket if the candidate has
+         * been used more frequently. Returns the slot to use or -1 if the
+         * candidate should not be admitted. Only the hash is required so
+         * rejected candidates do not need to be created.
+         */
+        int admissionSlot(int bucket, int hash) {
+            T first = entries.get(bucket);
+            if (first == null) {
+                return bucket;
+            }
+            T second = entries.get(bucket + 1);
+            if (second == null) {
+                return bucket + 1;
+            }
+            int firstFrequency = sketch.frequency(first.hash);
+            int secondFrequency = sketch.frequency(second.hash);
+            int victimIndex;
+            int victimFrequency;
+            if (firstFrequency <= secondFrequency) {
+                victimIndex = bucket;
+                victimFrequency = firstFrequency;
             } else {
-                b = i;
+                victimIndex = bucket + 1;
+                victimFrequency = secondFrequency;
             }
-            if ((b - a) == 1) {
-                int result2 = compare(name, array[b].name);
-                if (result2 < 0) {
-                    return a;
-                } else {
-                    return b;
-                }
+            if (sketch.frequency(hash) > victimFrequency) {
+                return victimIndex;
             }
+            return -1;
         }
 
-    }
-
-
-    /**
-     * Compare given char chunk with char array.
-     * @param name The name to compare
-     * @param compareTo The compared to data
-     * @return -1, 0 or +1 if inferior, equal, or superior to the String.
-     */
-    protected static final int compare(CharChunk name, char[] compareTo) {
-        int result = 0;
-
-        char[] c = name.getBuffer();
-        int start = name.getStart();
-        int end = name.getEnd();
-        int len = compareTo.length;
-
-        if ((end - start) < len) {
-            len = end - start;
-        }
-        for (int i = 0; (i < len) && (result == 0); i++) {
-            if (c[i + start] > compareTo[i]) {
-                result = 1;
-            } else if (c[i + start] < compareTo[i]) {
-                result = -1;
-            }
-        }
-        if (result == 0) {
-            if (compareTo.length > (end - start)) {
-                result = -1;
-            } else if (compareTo.length < (end - start)) {
-                result = 1;
+        /*
+         * Place the admitted candidate in the slot returned by
+         * admissionSlot(). If another thread has updated the slot
+         * concurrently with a more frequently used entry, or updates it while
+         * this method is running, the update is simply skipped.
+         */
+        void admit(int slot, T candidate) {
+            T victim = entries.get(slot);
+            if (victim == null) {
+                entries.compareAndSet(slot, null, candidate);
+            } else if (sketch.frequency(candidate.hash) > sketch.frequency(victim.hash) &&
+                    entries.compareAndSet(slot, victim, candidate)) {
+                evictionCount.increment();
             }
         }
-        return result;
     }
 
 
-    /**
-     * Find an entry given its name in the cache and return the associated
-     * String.
-     * @param name The name to find
-     * @return the corresponding value
-     */
-    protected static final String find(CharChunk name) {
-        int pos = findClosest(name, ccCache, ccCache.length);
-        if ((pos < 0) || (compare(name, ccCache[pos].name) != 0)) {
-            return null;
-        } else {
-            return ccCache[pos].value;
-        }
-    }
+    // ------------------------------------------------------ Entry Inner Class
 
 
-    /**
-     * Find an entry given its name in a sorted array of map elements.
-     * This will return the index for the closest inferior or equal item in the
-     * given array.
-     * @param name The name to find
-     * @param array The array in which to look
-     * @param len The effective length of the array
-     * @return the position of the best match
-     */
-    protected static final int findClosest(CharChunk name, CharEntry[] array,
-            int len) {
+    private abstract static class Entry {
 
-        int a = 0;
-        int b = len - 1;
+        protected final int hash;
+        protected final String value;
 
-        // Special cases: -1 and 0
-        if (b == -1) {
-            return -1;
+        Entry(int hash, String value) {
+            this.hash = hash;
+            this.value = value;
         }
 
-        if (compare(name, array[0].name) < 0 ) {
-            return -1;
-        }
-        if (b == 0) {
-            return 0;
-        }
-
-        int i = 0;
-        while (true) {
-            i = (b + a) >>> 1;
-            int result = compare(name, array[i].name);
-            if (result == 1) {
-                a = i;
-            } else if (result == 0) {
-                return i;
-            } else {
-                b = i;
-            }
-            if ((b - a) == 1) {
-                int result2 = compare(name, array[b].name);
-                if (result2 < 0) {
-                    return a;
-                } else {
-                    return b;
-                }
-            }
+        @Override
+        public String toString() {
+            return value;
         }
-
     }
 
 
     // -------------------------------------------------- ByteEntry Inner Class
 
 
-    private static class ByteEntry {
+    private static class ByteEntry extends Entry {
 
-        private byte[] name = null;
-        private Charset charset = null;
-        private String value = null;
+        private final byte[] name;
+        private final Charset charset;
 
-        @Override
-        public String toString() {
-            return value;
+        ByteEntry(int hash, byte[] name, Charset charset, String value) {
+            super(hash, value);
+            this.name = name;
+            this.charset = charset;
         }
-        @Override
-        public int hashCode() {
-            return value.hashCode();
-        }
-        @Override
-        public boolean equals(Object obj) {
-            if (obj instanceof ByteEntry) {
-                return value.equals(((ByteEntry) obj).value);
+
+        boolean matches(int hash, byte[] buff, int start, int end, Charset charset) {
+            if (this.hash != hash || name.length != end - start || !this.charset.equals(charset)) {
+                return false;
             }
-            return false;
+            for (int i = 0; i < name.length; i++) {
+                if (name[i] != buff[start + i]) {
+                    return false;
+                }
+            }
+            return true;
         }
-
     }
 
 
     // -------------------------------------------------- CharEntry Inner Class
 
 
-    private static class CharEntry {
+    private static class CharEntry extends Entry {
 
-        private char[] name = null;
-        private String value = null;
+        private final char[] name;
 
-        @Override
-        public String toString() {
-            return value;
-        }
-        @Override
-        public int hashCode() {
-            return value.hashCode();
+        CharEntry(int hash, char[] name, String value) {
+            super(hash, value);
+            this.name = name;
         }
-        @Override
-        public boolean equals(Object obj) {
-            if (obj instanceof CharEntry) {
-                return value.equals(((CharEntry) obj).value);
+
+        boolean matches(int hash, char[] buff, int start, int end) {
+            if (this.hash != hash || name.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < name.length; i++) {
+                if (name[i] != buff[start + i]) {
+                    return false;
+                }
             }
-            return false;
+            return true;
         }
-
     }
-
-
 }
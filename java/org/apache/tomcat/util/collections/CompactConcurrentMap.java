@@ -0,0 +1,487 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link ConcurrentMap} optimised for a small number of entries. Entries are
+ * held in a single array that is replaced on every modification so reads do
+ * not require locking. When the number of entries exceeds a threshold, the
+ * entries are moved to a {@link ConcurrentHashMap} which is then used for all
+ * further operations until the Map is cleared.
+ * <p>
+ * An empty instance of this class requires significantly less memory than an
+ * empty {@link ConcurrentHashMap} and, until the threshold is reached, each
+ * entry requires two array elements rather than a separate node object.
+ * <p>
+ * Like {@link ConcurrentHashMap}, <code>null</code> keys and values are not
+ * permitted. The {@link #keySet()}, {@link #values()} and {@link #entrySet()}
+ * views are backed by the Map and support removal, whether the entries are
+ * held in the array or in the {@link ConcurrentHashMap}. Their iterators are
+ * weakly consistent in the same way as those of {@link ConcurrentHashMap}.
+ *
+ * @param <K> The type of keys maintained by this Map
+ * @param <V> The type of mapped values
+ */
+public class CompactConcurrentMap<K,V> extends AbstractMap<K,V> implements ConcurrentMap<K,V> {
+
+    private static final int DEFAULT_THRESHOLD = 8;
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private final int threshold;
+
+    /*
+     * Keys and values in alternate elements. null once the entries have been
+     * moved to map.
+     */
+    private volatile Object[] entries = EMPTY;
+
+    private volatile ConcurrentHashMap<K,V> map = null;
+
+
+    public CompactConcurrentMap() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+
+    /**
+     * Create a Map that moves its entries to a {@link ConcurrentHashMap} once
+     * there are more than the given number of entries.
+     *
+     * @param threshold The maximum number of entries to hold in the array
+     */
+    public CompactConcurrentMap(int threshold) {
+        this.threshold = threshold;
+    }
+
+
+    @Override
+    public int size() {
+        while (true) {
+            Object[] entries = this.entries;
+            if (entries != null) {
+                return entries.length >> 1;
+            }
+            ConcurrentHashMap<K,V> map = this.map;
+            if (map != null) {
+                return map.size();
+            }
+        }
+    }
+
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        while (true) {
+            Object[] entries = this.entries;
+            if (entries != null) {
+                int index = indexOf(entries, key);
+                return index < 0 ? null : (V) entries[index + 1];
+            }
+            ConcurrentHashMap<K,V> map = this.map;
+            if (map != null) {
+                return map.get(key);
+            }
+        }
+    }
+
+
+    @Override
+    public synchronized V put(K key, V value) {
+        return doPut(key, value, false);
+    }
+
+
+    @Override
+    public synchronized V putIfAbsent(K key, V value) {
+        return doPut(key, value, true);
+    }
+
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(Object key) {
+        Object[] entries = this.entries;
+        if (entries == null) {
+            return map.remove(key);
+        }
+        int index = indexOf(entries, key);
+        if (index < 0) {
+            return null;
+        }
+        V oldValue = (V) entries[index + 1];
+        removeAt(entries, index);
+        return oldValue;
+    }
+
+
+    @Override
+    public synchronized boolean remove(Object key, Object value) {
+        Object[] entries = this.entries;
+        if (entries == null) {
+            return map.remove(key, value);
+        }
+        int index = indexOf(entries, key);
+        if (index < 0 || !entries[index + 1].equals(value)) {
+            return false;
+        }
+        removeAt(entries, index);
+        return true;
+    }
+
+
+    @Override
+    public synchronized boolean replace(K key, V oldValue, V newValue) {
+        if (newValue == null) {
+            throw new NullPointerException();
+        }
+        Object[] entries = this.entries;
+        if (entries == null) {
+            return map.replace(key, oldValue, newValue);
+        }
+        int index = indexOf(entries, key);
+        if (index < 0 || !entries[index + 1].equals(oldValue)) {
+            return false;
+        }
+        setAt(entries, index, newValue);
+        return true;
+    }
+
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized V replace(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        Object[] entries = this.entries;
+        if (entries == null) {
+            return map.replace(key, value);
+        }
+        int index = indexOf(entries, key);
+        if (index < 0) {
+            return null;
+        }
+        V oldValue = (V) entries[index + 1];
+        setAt(entries, index, value);
+        return oldValue;
+    }
+
+
+    @Override
+    public synchronized void clear() {
+        // Readers that see null entries will retry until they see EMPTY
+        entries = EMPTY;
+        map = null;
+    }
+
+
+    @Override
+    public Set<K> keySet() {
+        return new KeySet();
+    }
+
+
+    @Override
+    public Set<Map.Entry<K,V>> entrySet() {
+        return new EntrySet();
+    }
+
+
+    /*
+     * Must be called while holding the lock.
+     */
+    @SuppressWarnings("unchecked")
+    private V doPut(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        Object[] entries = this.entries;
+        if (entries == null) {
+            return onlyIfAbsent ? map.putIfAbsent(key, value) : map.put(key, value);
+        }
+        int index = indexOf(entries, key);
+        if (index >= 0) {
+            V oldValue = (V) entries[index + 1];
+            if (!onlyIfAbsent) {
+                setAt(entries, index, value);
+            }
+            return oldValue;
+        }
+        int size = entries.length >> 1;
+        if (size < threshold) {
+            Object[] newEntries = new Object[entries.length + 2];
+            System.arraycopy(entries, 0, newEntries, 0, entries.length);
+            newEntries[entries.length] = key;
+            newEntries[entries.length + 1] = value;
+            this.entries = newEntries;
+        } else {
+            ConcurrentHashMap<K,V> newMap = new ConcurrentHashMap<>((size + 1) * 2);
+            for (int i = 0; i < entries.length; i += 2) {
+                newMap.put((K) entries[i], (V) entries[i + 1]);
+            }
+            newMap.put(key, value);
+            // Publish the map before clearing the entries so readers that see
+            // null entries always see the map
+            this.map = newMap;
+            this.entries = null;
+        }
+        return null;
+    }
+
+
+    /*
+     * Must be called while holding the lock.
+     */
+    private void setAt(Object[] entries, int index, Object value) {
+        Object[] newEntries = entries.clone();
+        newEntries[index + 1] = value;
+        this.entries = newEntries;
+    }
+
+
+    /*
+     * Must be called while holding the lock.
+     */
+    private void removeAt(Object[] entries, int index) {
+        if (entries.length == 2) {
+            this.entries = EMPTY;
+            return;
+        }
+        Object[] newEntries = new Object[entries.length - 2];
+        System.arraycopy(entries, 0, newEntries, 0, index);
+        System.arraycopy(entries, index + 2, newEntries, index, entries.length - index - 2);
+        this.entries = newEntries;
+    }
+
+
+    private static int indexOf(Object[] entries, Object key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        for (int i = 0; i < entries.length; i += 2) {
+            Object k = entries[i];
+            if (k == key || k.equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    private class KeySet extends AbstractSet<K> {
+
+        @Override
+        public int size() {
+            return CompactConcurrentMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return CompactConcurrentMap.this.remove(o) != null;
+        }
+
+        @Override
+        public void clear() {
+            CompactConcurrentMap.this.clear();
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return new BaseIterator<K>() {
+                @Override
+                public K next() {
+                    advance();
+                    return lastKey;
+                }
+            };
+        }
+    }
+
+
+    private class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+
+        @Override
+        public int size() {
+            return CompactConcurrentMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+            Object key = entry.getKey();
+            Object value = entry.getValue();
+            if (key == null || value == null) {
+                return false;
+            }
+            V v = get(key);
+            return v != null && v.equals(value);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+            Object key = entry.getKey();
+            Object value = entry.getValue();
+            if (key == null || value == null) {
+                return false;
+            }
+            return CompactConcurrentMap.this.remove(key, value);
+        }
+
+        @Override
+        public void clear() {
+            CompactConcurrentMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new BaseIterator<Map.Entry<K,V>>() {
+                @Override
+                public Map.Entry<K,V> next() {
+                    advance();
+                    return new WriteThroughEntry(lastKey, lastValue);
+                }
+            };
+        }
+    }
+
+
+    /*
+     * Iterates over the entries held when the iterator was created, either the
+     * array or the ConcurrentHashMap. Removal is applied to the current state
+     * of the Map.
+     */
+    private abstract class BaseIterator<E> implements Iterator<E> {
+
+        private final Object[] entries;
+        private final Iterator<Map.Entry<K,V>> mapIterator;
+        private int index = 0;
+        private boolean canRemove = false;
+
+        protected K lastKey;
+        protected V lastValue;
+
+        BaseIterator() {
+            while (true) {
+                Object[] entries = CompactConcurrentMap.this.entries;
+                if (entries != null) {
+                    this.entries = entries;
+                    this.mapIterator = null;
+                    return;
+                }
+                ConcurrentHashMap<K,V> map = CompactConcurrentMap.this.map;
+                if (map != null) {
+                    this.entries = null;
+                    this.mapIterator = map.entrySet().iterator();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (entries != null) {
+                return index < entries.length;
+            }
+            return mapIterator.hasNext();
+        }
+
+        @SuppressWarnings("unchecked")
+        protected void advance() {
+            if (entries != null) {
+                if (index >= entries.length) {
+                    throw new NoSuchElementException();
+                }
+                lastKey = (K) entries[index];
+                lastValue = (V) entries[index + 1];
+                index += 2;
+            } else {
+                Map.Entry<K,V> entry = mapIterator.next();
+                lastKey = entry.getKey();
+                lastValue = entry.getValue();
+            }
+            canRemove = true;
+        }
+
+        @Override
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            canRemove = false;
+            CompactConcurrentMap.this.remove(lastKey);
+        }
+    }
+
+
+    /*
+     * Entry returned by the entry set iterator. Setting the value updates the
+     * Map.
+     */
+    private class WriteThroughEntry extends AbstractMap.SimpleEntry<K,V> {
+
+        private static final long serialVersionUID = 1L;
+
+        WriteThroughEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (value == null) {
+                throw new NullPointerException();
+            }
+            V oldValue = super.setValue(value);
+            put(getKey(), value);
+            return oldValue;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free, approximate frequency counter for use by caches that implement
+ * TinyLFU style admission and eviction policies.
+ * <p>
+ * This is a count-min sketch with four rows of 4-bit counters, packed sixteen
+ * to a long, that saturate at 15. All the counters are halved once the number
+ * of recorded accesses reaches ten times the capacity of the cache so the
+ * frequencies reflect recent usage. The memory required is approximately four
+ * bytes per unit of capacity.
+ * <p>
+ * Keys are identified by their hash code. Callers should provide well
+ * distributed hash codes.
+ */
+public class FrequencySketch {
+
+    public static final int MAX_FREQUENCY = 15;
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = new int[] {
+            0x97cb3127, 0xb7ef2b59, 0x5bd1e995, 0xcc9e2d51 };
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final AtomicLongArray counters;
+    private final int widthMask;
+    private final int sampleSize;
+    private final LongAdder additions = new LongAdder();
+
+
+    /**
+     * Create a sketch suitable for a cache with the given capacity.
+     *
+     * @param capacity The expected maximum number of entries in the cache
+     */
+    public FrequencySketch(int capacity) {
+        if (capacity < 1) {
+            capacity = 1;
+        } else if (capacity > (1 << 22)) {
+            capacity = 1 << 22;
+        }
+        int width = 16;
+        while (width < capacity * 2) {
+            width <<= 1;
+        }
+        counters = new AtomicLongArray(DEPTH * width / 16);
+        widthMask = width - 1;
+        sampleSize = capacity * 10;
+    }
+
+
+    /**
+     * Obtain the estimated number of recent accesses for the given key.
+     *
+     * @param hash The hash code of the key
+     *
+     * @return The estimated frequency, between zero and
+     *         {@link #MAX_FREQUENCY} inclusive
+     */
+    public int frequency(int hash) {
+        int result = MAX_FREQUENCY;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            long value = counters.get(index >>> 4);
+            result = Math.min(result, (int) (value >>> ((index & 15) << 2)) & 0x0F);
+        }
+        return result;
+    }
+
+
+    /**
+     * Record an access for the given key.
+     *
+     * @param hash The hash code of the key
+     */
+    public void increment(int hash) {
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            int i = index >>> 4;
+            int shift = (index & 15) << 2;
+            long value;
+            do {
+                value = counters.get(i);
+                if (((value >>> shift) & 0x0F) == MAX_FREQUENCY) {
+                    break;
+                }
+            } while (!counters.compareAndSet(i, value, value + (1L << shift)));
+        }
+        additions.increment();
+        // Summing the additions is relatively expensive so only check whether
+        // the sketch needs to be aged for a random sample of increments
+        if (ThreadLocalRandom.current().nextInt(16) == 0 && additions.sum() >= sampleSize) {
+            age();
+        }
+    }
+
+
+    /**
+     * Reset all the counters to zero.
+     */
+    public void clear() {
+        additions.reset();
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+
+    private int index(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[row];
+        h ^= h >>> 16;
+        return row * (widthMask + 1) + (h & widthMask);
+    }
+
+
+    private void age() {
+        // Multiple threads may age concurrently. The counters are approximate
+        // so this does no harm beyond slightly faster aging.
+        additions.reset();
+        for (int i = 0; i < counters.length(); i++) {
+            counters.updateAndGet(i, value -> (value >>> 1) & RESET_MASK);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free, unbounded, multiple producer, single consumer alternative to
+ * {@link SynchronizedQueue}. Producers claim a position in the queue with a
+ * single atomic increment and never wait for each other or for the consumer.
+ * Elements are stored in fixed size chunks that are linked together as the
+ * queue grows. The only garbage created is one chunk each time the producers
+ * move on to a new chunk.
+ * <p>
+ * Only one thread may call {@link #poll()} and {@link #clear()} at any one
+ * time. If a producer has claimed a position but not yet stored its element,
+ * {@link #poll()} will return {@code null} rather than wait for it. Null
+ * elements are not permitted. Callers
+ * that need to know when the element becomes available must arrange for the
+ * producer to signal the consumer after {@link #offer(Object)} returns.
+ *
+ * @param <T> The type of object managed by this queue
+ */
+public class SingleConsumerQueue<T> {
+
+    public static final int DEFAULT_SIZE = 128;
+
+    private final int chunkSize;
+
+    private final AtomicLong producerIndex = new AtomicLong(0);
+
+    /*
+     * The chunk most recently reached by a producer. Only ever moves forwards.
+     */
+    private final AtomicReference<Chunk> producerChunk;
+
+    /*
+     * Only written by the consumer. Volatile so size() can be called from any
+     * thread.
+     */
+    private volatile long consumerIndex = 0;
+    private Chunk consumerChunk;
+
+
+    public SingleConsumerQueue() {
+        this(DEFAULT_SIZE);
+    }
+
+    public SingleConsumerQueue(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.chunkSize = chunkSize;
+        Chunk first = new Chunk(0, chunkSize);
+        producerChunk = new AtomicReference<>(first);
+        consumerChunk = first;
+    }
+
+
+    public boolean offer(T t) {
+        if (t == null) {
+            throw new NullPointerException();
+        }
+        // Read the chunk before claiming the index. The chunk can only have
+        // been reached by a producer that claimed an earlier index so it must
+        // start at or before the index claimed below.
+        Chunk chunk = producerChunk.get();
+        long index = producerIndex.getAndIncrement();
+        while (index >= chunk.base + chunkSize) {
+            Chunk next = chunk.next.get();
+            if (next == null) {
+                Chunk newChunk = new Chunk(chunk.base + chunkSize, chunkSize);
+                if (chunk.next.compareAndSet(null, newChunk)) {
+                    next = newChunk;
+                } else {
+                    next = chunk.next.get();
+                }
+            }
+            chunk = next;
+        }
+        Chunk current = producerChunk.get();
+        while (current.base < chunk.base && !producerChunk.compareAndSet(current, chunk)) {
+            current = producerChunk.get();
+        }
+        chunk.elements.set((int) (index - chunk.base), t);
+        return true;
+    }
+
+
+    public T poll() {
+        long index = consumerIndex;
+        Chunk chunk = consumerChunk;
+        if (index == chunk.base + chunkSize) {
+            Chunk next = chunk.next.get();
+            if (next == null) {
+                // Empty or the next chunk is still being linked
+                return null;
+            }
+            chunk = next;
+            consumerChunk = next;
+        }
+        int offset = (int) (index - chunk.base);
+        @SuppressWarnings("unchecked")
+        T result = (T) chunk.elements.get(offset);
+        if (result == null) {
+            // Empty or the producer has not yet stored the element
+            return null;
+        }
+        chunk.elements.lazySet(offset, null);
+        consumerIndex = index + 1;
+        return result;
+    }
+
+
+    public int size() {
+        long result = producerIndex.get() - consumerIndex;
+        if (result < 0) {
+            return 0;
+        } else if (result > Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) result;
+    }
+
+
+    public void clear() {
+        // Discard the elements that are available. Elements being added
+        // concurrently may remain in the queue.
+        while (poll() != null) {
+            // NO-OP
+        }
+    }
+
+
+    private static final class Chunk {
+
+        private final long base;
+        private final AtomicReferenceArray<Object> elements;
+        private final AtomicReference<Chunk> next = new AtomicReference<>();
+
+        Chunk(long base, int size) {
+            this.base = base;
+            elements = new AtomicReferenceArray<>(size);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free, bounded, multiple producer, single consumer queue backed by a
+ * fixed size ring. Producers claim a position with a single compare and set
+ * and never wait for each other or for the consumer. No garbage is created
+ * once the queue has been constructed.
+ * <p>
+ * When the ring is full {@link #offer(Object)} returns {@code false} and it
+ * is for the caller to decide whether to retry, discard the element or
+ * otherwise handle the overflow.
+ * <p>
+ * Only one thread may call {@link #poll()} and {@link #clear()} at any one
+ * time. If a producer has claimed a position but not yet stored its element,
+ * {@link #poll()} will return {@code null} rather than wait for it. Null
+ * elements are not permitted.
+ *
+ * @param <T> The type of object managed by this queue
+ */
+public class SingleConsumerRingBuffer<T> {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<T> elements;
+
+    private final AtomicLong producerIndex = new AtomicLong(0);
+
+    /*
+     * Only written by the consumer. Volatile so producers see slots freed by
+     * the consumer and so size() can be called from any thread.
+     */
+    private volatile long consumerIndex = 0;
+
+
+    public SingleConsumerRingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a ring buffer.
+     *
+     * @param capacity The minimum number of elements the queue will hold. It
+     *                 will be rounded up to the next power of two.
+     */
+    public SingleConsumerRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        mask = this.capacity - 1;
+        elements = new AtomicReferenceArray<>(this.capacity);
+    }
+
+
+    /**
+     * Add an element to the queue if there is space.
+     *
+     * @param t The element to add
+     *
+     * @return {@code true} if the element was added, {@code false} if the
+     *         queue was full
+     */
+    public boolean offer(T t) {
+        if (t == null) {
+            throw new NullPointerException();
+        }
+        long index;
+        do {
+            index = producerIndex.get();
+            if (index - consumerIndex >= capacity) {
+                return false;
+            }
+        } while (!producerIndex.compareAndSet(index, index + 1));
+        // The consumer clears a slot before it moves past it so the slot for
+        // the claimed index is guaranteed to be empty.
+        elements.set((int) index & mask, t);
+        return true;
+    }
+
+
+    public T poll() {
+        long index = consumerIndex;
+        int offset = (int) index & mask;
+        T result = elements.get(offset);
+        if (result == null) {
+            // Empty or the producer has not yet stored the element
+            return null;
+        }
+        elements.lazySet(offset, null);
+        consumerIndex = index + 1;
+        return result;
+    }
+
+
+    public int size() {
+        long result = producerIndex.get() - consumerIndex;
+        if (result < 0) {
+            return 0;
+        } else if (result > capacity) {
+            return capacity;
+        }
+        return (int) result;
+    }
+
+
+    public int capacity() {
+        return capacity;
+    }
+
+
+    public void clear() {
+        // Discard the elements that are available. Elements being added
+        // concurrently may remain in the queue.
+        while (poll() != null) {
+            // NO-OP
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A non-blocking alternative to {@link SynchronizedStack} for pools of
+ * re-usable objects that are accessed by many threads concurrently. The pool is
+ * split into a number of stripes, each of which is a small array based stack
+ * with its own lock. Each thread has a home stripe and only moves on to another
+ * stripe if its home stripe is in use by another thread, is empty (when
+ * popping) or is full (when pushing). Threads only wait for a stripe when every
+ * stripe that could satisfy the request is in use. Like
+ * {@link SynchronizedStack}, the stripes never shrink and the only garbage
+ * created is the old array when a stripe expands.
+ * <p>
+ * Objects pushed and popped by a single thread are returned in LIFO order but
+ * there is no ordering guarantee across threads.
+ *
+ * @param <T> The type of object managed by this stack
+ */
+public class StripedStack<T> {
+
+    public static final int DEFAULT_SIZE = 128;
+    private static final int DEFAULT_LIMIT = -1;
+    private static final int MAX_STRIPES = 64;
+    // Spinning is pointless if there is only one processor
+    private static final int MAX_SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 64 : 0;
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+
+    public StripedStack() {
+        this(DEFAULT_SIZE, DEFAULT_LIMIT);
+    }
+
+    public StripedStack(int size, int limit) {
+        int stripeCount = stripeCount(Runtime.getRuntime().availableProcessors(), limit);
+        stripes = new Stripe[stripeCount];
+        mask = stripeCount - 1;
+        for (int i = 0; i < stripeCount; i++) {
+            int stripeLimit = DEFAULT_LIMIT;
+            if (limit > -1) {
+                // Distribute the limit as evenly as possible across the stripes
+                stripeLimit = limit / stripeCount;
+                if (i < limit % stripeCount) {
+                    stripeLimit++;
+                }
+            }
+            stripes[i] = new Stripe(Math.max(1, size / stripeCount), stripeLimit);
+        }
+    }
+
+
+    public boolean push(T obj) {
+        int home = home();
+        boolean busy = false;
+        for (int i = 0; i <= mask; i++) {
+            Stripe stripe = stripes[(home + i) & mask];
+            if (stripe.isFull()) {
+                continue;
+            }
+            if (stripe.tryLock()) {
+                try {
+                    if (stripe.push(obj)) {
+                        return true;
+                    }
+                } finally {
+                    stripe.unlock();
+                }
+            } else {
+                busy = true;
+            }
+        }
+        if (busy) {
+            // Every stripe with space was in use. Wait for one.
+            for (int i = 0; i <= mask; i++) {
+                Stripe stripe = stripes[(home + i) & mask];
+                if (stripe.isFull()) {
+                    continue;
+                }
+                stripe.lock();
+                try {
+                    if (stripe.push(obj)) {
+                        return true;
+                    }
+                } finally {
+                    stripe.unlock();
+                }
+            }
+        }
+        return false;
+    }
+
+
+    public T pop() {
+        int home = home();
+        boolean busy = false;
+        for (int i = 0; i <= mask; i++) {
+            Stripe stripe = stripes[(home + i) & mask];
+            if (stripe.isEmpty()) {
+                continue;
+            }
+            if (stripe.tryLock()) {
+                try {
+                    @SuppressWarnings("unchecked")
+                    T result = (T) stripe.pop();
+                    if (result != null) {
+                        return result;
+                    }
+                } finally {
+                    stripe.unlock();
+                }
+            } else {
+                busy = true;
+            }
+        }
+        if (busy) {
+            // Every stripe with content was in use. Wait for one.
+            for (int i = 0; i <= mask; i++) {
+                Stripe stripe = stripes[(home + i) & mask];
+                if (stripe.isEmpty()) {
+                    continue;
+                }
+                stripe.lock();
+                try {
+                    @SuppressWarnings("unchecked")
+                    T result = (T) stripe.pop();
+                    if (result != null) {
+                        return result;
+                    }
+                } finally {
+                    stripe.unlock();
+                }
+            }
+        }
+        return null;
+    }
+
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.lock();
+            try {
+                stripe.clear();
+            } finally {
+                stripe.unlock();
+            }
+        }
+    }
+
+
+    private int home() {
+        // Spread the thread ID so sequentially allocated IDs do not map to
+        // adjacent stripes
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32));
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        h ^= h >>> 16;
+        return h & mask;
+    }
+
+
+    static int stripeCount(int processors, int limit) {
+        int count = 1;
+        while (count < processors && count < MAX_STRIPES) {
+            count <<= 1;
+        }
+        // Every stripe must be able to hold at least one object
+        while (limit > -1 && count > 1 && count > limit) {
+            count >>= 1;
+        }
+        return count;
+    }
+
+
+    private static final class Stripe {
+
+        private final AtomicBoolean locked = new AtomicBoolean(false);
+        private final int limit;
+
+        /*
+         * Only accessed while holding the lock.
+         */
+        private int size;
+        private Object[] stack;
+
+        /*
+         * Points to the next available object in the stack. Written while
+         * holding the lock but may be read without it to skip empty and full
+         * stripes.
+         */
+        private volatile int index = -1;
+
+        Stripe(int size, int limit) {
+            if (limit > -1 && size > limit) {
+                this.size = limit;
+            } else {
+                this.size = size;
+            }
+            this.limit = limit;
+            stack = new Object[this.size];
+        }
+
+        boolean tryLock() {
+            return locked.compareAndSet(false, true);
+        }
+
+        void lock() {
+            int spins = 0;
+            while (!locked.compareAndSet(false, true)) {
+                // The lock is only held for a few instructions but the holder
+                // may have been descheduled so don't spin indefinitely.
+                if (++spins < MAX_SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+        }
+
+        void unlock() {
+            locked.set(false);
+        }
+
+        boolean isEmpty() {
+            return index == -1;
+        }
+
+        boolean isFull() {
+            return limit > -1 && index + 1 >= limit;
+        }
+
+        boolean push(Object obj) {
+            int newIndex = index + 1;
+            if (newIndex == size) {
+                if (limit == -1 || size < limit) {
+                    expand();
+                } else {
+                    return false;
+                }
+            }
+            stack[newIndex] = obj;
+            index = newIndex;
+            return true;
+        }
+
+        Object pop() {
+            int currentIndex = index;
+            if (currentIndex == -1) {
+                return null;
+            }
+            Object result = stack[currentIndex];
+            stack[currentIndex] = null;
+            index = currentIndex - 1;
+            return result;
+        }
+
+        void clear() {
+            for (int i = 0; i <= index; i++) {
+                stack[i] = null;
+            }
+            index = -1;
+        }
+
+        private void expand() {
+            int newSize = Math.max(1, size * 2);
+            if (limit != -1 && newSize > limit) {
+                newSize = limit;
+            }
+            Object[] newStack = new Object[newSize];
+            System.arraycopy(stack, 0, newStack, 0, size);
+            stack = newStack;
+            size = newSize;
+        }
+    }
+}
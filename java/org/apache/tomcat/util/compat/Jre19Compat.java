@@ -17,6 +17,8 @@
 package org.apache.tomcat.util.compat;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
@@ -29,18 +31,33 @@ public class Jre19Compat extends Jre16Compat {
 
     private static final boolean supported;
 
+    private static final Method ofVirtualMethod;
+    private static final Method nameMethod;
+    private static final Method startMethod;
+
     static {
-        // Don't need any Java 19 specific classes (yet) so just test for one of
-        // the new ones for now.
         Class<?> c1 = null;
+        Method m1 = null;
+        Method m2 = null;
+        Method m3 = null;
         try {
             c1 = Class.forName("java.lang.WrongThreadException");
+            Class<?> c2 = Class.forName("java.lang.Thread$Builder");
+            m1 = Thread.class.getMethod("ofVirtual");
+            m2 = c2.getMethod("name", String.class, long.class);
+            m3 = c2.getMethod("start", Runnable.class);
         } catch (ClassNotFoundException cnfe) {
-            // Must be pre-Java 16
+            // Must be pre-Java 19
             log.debug(sm.getString("jre19Compat.javaPre19"), cnfe);
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            // Should never happen
+            log.error(sm.getString("jre19Compat.unexpected"), e);
         }
 
         supported = (c1 != null);
+        ofVirtualMethod = m1;
+        nameMethod = m2;
+        startMethod = m3;
     }
 
     static boolean isSupported() {
@@ -81,4 +98,45 @@ public class Jre19Compat extends Jre16Compat {
 
         return result;
     }
+
+
+    @Override
+    public Object createVirtualThreadBuilder(String name) {
+        if (ofVirtualMethod == null) {
+            return super.createVirtualThreadBuilder(name);
+        }
+        try {
+            // Java 19 and 20 will throw UnsupportedOperationException here
+            // unless preview features are enabled
+            Object threadBuilder = ofVirtualMethod.invoke(null);
+            nameMethod.invoke(threadBuilder, name, Long.valueOf(0));
+            return threadBuilder;
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            throw new UnsupportedOperationException(e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UnsupportedOperationException) {
+                throw (UnsupportedOperationException) cause;
+            }
+            throw new UnsupportedOperationException(cause);
+        }
+    }
+
+
+    @Override
+    public void threadBuilderStart(Object threadBuilder, Runnable command) {
+        try {
+            startMethod.invoke(threadBuilder, command);
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            throw new UnsupportedOperationException(e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new UnsupportedOperationException(cause);
+        }
+    }
 }
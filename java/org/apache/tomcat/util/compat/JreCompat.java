@@ -118,6 +118,30 @@ public class JreCompat {
 
     // Java 11 implementations of Java 19 methods
 
+    /**
+     * Create a thread builder for virtual threads using the given name to name
+     * the threads.
+     *
+     * @param name The base name for the threads
+     *
+     * @return The thread builder for virtual threads
+     */
+    public Object createVirtualThreadBuilder(String name) {
+        throw new UnsupportedOperationException(sm.getString("jreCompat.noVirtualThreads"));
+    }
+
+
+    /**
+     * Create a thread with the given thread builder and use it to execute the
+     * given runnable.
+     *
+     * @param threadBuilder The thread builder to use to create a thread
+     * @param command       The command to run
+     */
+    public void threadBuilderStart(Object threadBuilder, Runnable command) {
+        throw new UnsupportedOperationException(sm.getString("jreCompat.noVirtualThreads"));
+    }
+
 
     /**
      * Obtains the executor, if any, used to create the provided thread.
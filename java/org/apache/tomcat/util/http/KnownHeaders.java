@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.http;
+
+import org.apache.tomcat.util.buf.Ascii;
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.buf.CharChunk;
+import org.apache.tomcat.util.buf.MessageBytes;
+
+/**
+ * Assigns a small integer ID to the header names that Tomcat and typical
+ * applications look up most often so {@link MimeHeaders} can index them. The
+ * IDs are looked up via a pre-computed, case-insensitive hash of the name so
+ * classifying a name requires a single pass over its bytes and no allocation.
+ */
+final class KnownHeaders {
+
+    static final int UNKNOWN = -1;
+
+    /*
+     * Must not contain more than 64 entries since MimeHeaders tracks which
+     * headers are present with a long bit mask. All names must be lower case.
+     */
+    private static final String[] NAMES = new String[] {
+            "accept", "accept-charset", "accept-encoding", "accept-language", "authorization",
+            "cache-control", "connection", "content-encoding", "content-language", "content-length",
+            "content-type", "cookie", "date", "etag", "expect", "forwarded", "host", "http2-settings",
+            "if-match", "if-modified-since", "if-none-match", "if-range", "if-unmodified-since",
+            "keep-alive", "last-modified", "location", "origin", "pragma", "proxy-authorization",
+            "range", "referer", "sec-websocket-extensions", "sec-websocket-key",
+            "sec-websocket-protocol", "sec-websocket-version", "server", "set-cookie", "te",
+            "trailer", "transfer-encoding", "upgrade", "user-agent", "vary", "via",
+            "www-authenticate", "x-forwarded-for", "x-forwarded-host", "x-forwarded-port",
+            "x-forwarded-proto", "x-requested-with" };
+
+    static final int COUNT = NAMES.length;
+
+    private static final byte[][] NAMES_BYTES = new byte[COUNT][];
+
+    // Open addressing. Sized so the table is always less than half full.
+    private static final int TABLE_MASK = 127;
+    private static final int[] TABLE = new int[TABLE_MASK + 1];
+
+    static {
+        if (COUNT > Long.SIZE) {
+            throw new IllegalStateException();
+        }
+        for (int i = 0; i < TABLE.length; i++) {
+            TABLE[i] = UNKNOWN;
+        }
+        for (int id = 0; id < COUNT; id++) {
+            String name = NAMES[id];
+            byte[] bytes = new byte[name.length()];
+            int hash = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) name.charAt(i);
+                hash = 31 * hash + bytes[i];
+            }
+            NAMES_BYTES[id] = bytes;
+            int slot = mix(hash);
+            while (TABLE[slot] != UNKNOWN) {
+                slot = (slot + 1) & TABLE_MASK;
+            }
+            TABLE[slot] = id;
+        }
+    }
+
+
+    private KnownHeaders() {
+        // Utility class. Hide default constructor.
+    }
+
+
+    static String getName(int id) {
+        return NAMES[id];
+    }
+
+
+    static int getId(MessageBytes name) {
+        if (name == null) {
+            return UNKNOWN;
+        }
+        switch (name.getType()) {
+            case MessageBytes.T_BYTES: {
+                ByteChunk bc = name.getByteChunk();
+                return getId(bc.getBuffer(), bc.getStart(), bc.getLength());
+            }
+            case MessageBytes.T_CHARS: {
+                CharChunk cc = name.getCharChunk();
+                return getId(cc.getBuffer(), cc.getStart(), cc.getLength());
+            }
+            case MessageBytes.T_STR:
+                return getId(name.getString());
+            default:
+                return UNKNOWN;
+        }
+    }
+
+
+    static int getId(byte[] b, int start, int len) {
+        if (b == null) {
+            return UNKNOWN;
+        }
+        int end = start + len;
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + Ascii.toLower(b[i]);
+        }
+        int slot = mix(hash);
+        int id;
+        while ((id = TABLE[slot]) != UNKNOWN) {
+            byte[] candidate = NAMES_BYTES[id];
+            if (candidate.length == len) {
+                int i = 0;
+                while (i < len && Ascii.toLower(b[start + i]) == candidate[i]) {
+                    i++;
+                }
+                if (i == len) {
+                    return id;
+                }
+            }
+            slot = (slot + 1) & TABLE_MASK;
+        }
+        return UNKNOWN;
+    }
+
+
+    static int getId(String name) {
+        if (name == null) {
+            return UNKNOWN;
+        }
+        int len = name.length();
+        int hash = 0;
+        for (int i = 0; i < len; i++) {
+            char c = name.charAt(i);
+            if (c > 127) {
+                return UNKNOWN;
+            }
+            hash = 31 * hash + Ascii.toLower(c);
+        }
+        int slot = mix(hash);
+        int id;
+        while ((id = TABLE[slot]) != UNKNOWN) {
+            byte[] candidate = NAMES_BYTES[id];
+            if (candidate.length == len) {
+                int i = 0;
+                while (i < len && Ascii.toLower(name.charAt(i)) == candidate[i]) {
+                    i++;
+                }
+                if (i == len) {
+                    return id;
+                }
+            }
+            slot = (slot + 1) & TABLE_MASK;
+        }
+        return UNKNOWN;
+    }
+
+
+    static int getId(char[] c, int start, int len) {
+        if (c == null) {
+            return UNKNOWN;
+        }
+        int end = start + len;
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            if (c[i] > 127) {
+                return UNKNOWN;
+            }
+            hash = 31 * hash + Ascii.toLower(c[i]);
+        }
+        int slot = mix(hash);
+        int id;
+        while ((id = TABLE[slot]) != UNKNOWN) {
+            byte[] candidate = NAMES_BYTES[id];
+            if (candidate.length == len) {
+                int i = 0;
+                while (i < len && Ascii.toLower(c[start + i]) == candidate[i]) {
+                    i++;
+                }
+                if (i == len) {
+                    return id;
+                }
+            }
+            slot = (slot + 1) & TABLE_MASK;
+        }
+        return UNKNOWN;
+    }
+
+
+    private static int mix(int hash) {
+        return (hash ^ (hash >>> 7) ^ (hash >>> 16)) & TABLE_MASK;
+    }
+}
@@ -55,11 +55,15 @@ import org.apache.tomcat.util.res.StringManager;
    Apache seems to be using a similar method for storing and manipulating
    headers.
 
+   The names of well-known headers (see KnownHeaders) are classified as
+   they are added and the position of the first field for each is recorded
+   so look-ups of those headers - which are the vast majority of look-ups -
+   do not need to scan the header list. Look-ups of other headers are
+   unchanged.
+
    Future enhancements:
    - hash the headers the first time a header is requested ( i.e. if the
    servlet needs direct access to headers).
-   - scan "common" values ( length, cookies, etc ) during the parse
-   ( addHeader hook )
 
 */
 
@@ -80,7 +84,6 @@ import org.apache.tomcat.util.res.StringManager;
  *  XXX one-buffer parsing - for http ( other protocols don't need that )
  *  XXX remove unused methods
  *  XXX External enumerations, with 0 GC.
- *  XXX use HeaderName ID
  *
  *
  * @author dac@eng.sun.com
@@ -113,6 +116,22 @@ public class MimeHeaders {
      */
     private int limit = -1;
 
+    /**
+     * Bit mask of the known headers (by ID) that are present.
+     */
+    private long present;
+
+    /**
+     * Bit mask of the known headers (by ID) that are present more than once.
+     */
+    private long multiple;
+
+    /**
+     * The index of the first field for each known header that is present.
+     * Entries for known headers that are not present are undefined.
+     */
+    private final int[] first = new int[KnownHeaders.COUNT];
+
     /**
      * Creates a new MimeHeaders object using a default buffer size.
      */
@@ -150,6 +169,8 @@ public class MimeHeaders {
             headers[i].recycle();
         }
         count = 0;
+        present = 0;
+        multiple = 0;
     }
 
     /**
@@ -179,6 +200,7 @@ public class MimeHeaders {
             MimeHeaderField mhf = createHeader();
             mhf.getName().duplicate(source.getName(i));
             mhf.getValue().duplicate(source.getValue(i));
+            index(count - 1, KnownHeaders.getId(mhf.getName()));
         }
     }
 
@@ -195,7 +217,8 @@ public class MimeHeaders {
     /**
      * @param n The header index
      * @return the Nth header name, or null if there is no such header.
-     * This may be used to iterate through all header fields.
+     * This may be used to iterate through all header fields. The returned
+     * name must not be modified.
      */
     public MessageBytes getName(int n) {
         return n >= 0 && n < count ? headers[n].getName() : null;
@@ -217,13 +240,26 @@ public class MimeHeaders {
      * @return the header index
      */
     public int findHeader( String name, int starting ) {
-        // We can use a hash - but it's not clear how much
-        // benefit you can get - there is an  overhead
-        // and the number of headers is small (4-5 ?)
-        // Another problem is that we'll pay the overhead
-        // of constructing the hashtable
+        int id = KnownHeaders.getId(name);
+        if (id != KnownHeaders.UNKNOWN) {
+            long bit = 1L << id;
+            if ((present & bit) == 0) {
+                return -1;
+            }
+            int i = Math.max(starting, first[id]);
+            if ((multiple & bit) == 0) {
+                return i == first[id] ? i : -1;
+            }
+            for (; i < count; i++) {
+                if (headers[i].getId() == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
 
-        // A custom search tree may be better
+        // Not a known header so fall back to a linear search. The number of
+        // headers is usually small.
         for (int i = starting; i < count; i++) {
             if (headers[i].getName().equalsIgnoreCase(name)) {
                 return i;
@@ -279,6 +315,33 @@ public class MimeHeaders {
         return mh;
     }
 
+    /**
+     * Records the ID of the known header, if any, at the given index.
+     */
+    private void index(int idx, int id) {
+        headers[idx].setId(id);
+        if (id != KnownHeaders.UNKNOWN) {
+            long bit = 1L << id;
+            if ((present & bit) == 0) {
+                present |= bit;
+                first[id] = idx;
+            } else {
+                multiple |= bit;
+            }
+        }
+    }
+
+    /**
+     * Re-creates the known header index after a header has been removed.
+     */
+    private void reindex() {
+        present = 0;
+        multiple = 0;
+        for (int i = 0; i < count; i++) {
+            index(i, headers[i].getId());
+        }
+    }
+
     /**
      * Create a new named header , return the MessageBytes
      * container for the new value
@@ -288,6 +351,7 @@ public class MimeHeaders {
     public MessageBytes addValue( String name ) {
         MimeHeaderField mh = createHeader();
         mh.getName().setString(name);
+        index(count - 1, KnownHeaders.getId(name));
         return mh.getValue();
     }
 
@@ -303,6 +367,7 @@ public class MimeHeaders {
     public MessageBytes addValue(byte b[], int startN, int len) {
         MimeHeaderField mhf=createHeader();
         mhf.getName().setBytes(b, startN, len);
+        index(count - 1, KnownHeaders.getId(b, startN, len));
         return mhf.getValue();
     }
 
@@ -313,6 +378,25 @@ public class MimeHeaders {
      * @return the message bytes container for the value
      */
     public MessageBytes setValue( String name ) {
+        int id = KnownHeaders.getId(name);
+        if (id != KnownHeaders.UNKNOWN) {
+            long bit = 1L << id;
+            if ((present & bit) != 0) {
+                int i = first[id];
+                if ((multiple & bit) != 0) {
+                    for (int j = count - 1; j > i; j--) {
+                        if (headers[j].getId() == id) {
+                            removeHeader(j);
+                        }
+                    }
+                }
+                return headers[i].getValue();
+            }
+            MimeHeaderField mh = createHeader();
+            mh.getName().setString(name);
+            index(count - 1, id);
+            return mh.getValue();
+        }
         for ( int i = 0; i < count; i++ ) {
             if(headers[i].getName().equalsIgnoreCase(name)) {
                 for ( int j=i+1; j < count; j++ ) {
@@ -325,6 +409,7 @@ public class MimeHeaders {
         }
         MimeHeaderField mh = createHeader();
         mh.getName().setString(name);
+        index(count - 1, KnownHeaders.UNKNOWN);
         return mh.getValue();
     }
 
@@ -337,6 +422,13 @@ public class MimeHeaders {
      * @return the value
      */
     public MessageBytes getValue(String name) {
+        int id = KnownHeaders.getId(name);
+        if (id != KnownHeaders.UNKNOWN) {
+            if ((present & (1L << id)) == 0) {
+                return null;
+            }
+            return headers[first[id]].getValue();
+        }
         for (int i = 0; i < count; i++) {
             if (headers[i].getName().equalsIgnoreCase(name)) {
                 return headers[i].getValue();
@@ -354,6 +446,17 @@ public class MimeHeaders {
      * @throws IllegalArgumentException if the header has multiple values
      */
     public MessageBytes getUniqueValue(String name) {
+        int id = KnownHeaders.getId(name);
+        if (id != KnownHeaders.UNKNOWN) {
+            long bit = 1L << id;
+            if ((present & bit) == 0) {
+                return null;
+            }
+            if ((multiple & bit) != 0) {
+                throw new IllegalArgumentException();
+            }
+            return headers[first[id]].getValue();
+        }
         MessageBytes result = null;
         for (int i = 0; i < count; i++) {
             if (headers[i].getName().equalsIgnoreCase(name)) {
@@ -384,6 +487,20 @@ public class MimeHeaders {
         // XXX
         // warning: rather sticky code; heavily tuned
 
+        int id = KnownHeaders.getId(name);
+        if (id != KnownHeaders.UNKNOWN) {
+            long bit = 1L << id;
+            if ((present & bit) != 0) {
+                int start = first[id];
+                for (int i = count - 1; i >= start; i--) {
+                    if (headers[i].getId() == id) {
+                        removeHeader(i);
+                    }
+                }
+            }
+            return;
+        }
+
         for (int i = 0; i < count; i++) {
             if (headers[i].getName().equalsIgnoreCase(name)) {
                 removeHeader(i--);
@@ -414,6 +531,9 @@ public class MimeHeaders {
 
         // Reduce the count
         count--;
+
+        // The positions of the remaining headers may have changed
+        reindex();
     }
 
 }
@@ -519,6 +639,7 @@ class MimeHeaderField {
 
     private final MessageBytes nameB = MessageBytes.newInstance();
     private final MessageBytes valueB = MessageBytes.newInstance();
+    private int id = KnownHeaders.UNKNOWN;
 
     /**
      * Creates a new, uninitialized header field.
@@ -530,6 +651,15 @@ class MimeHeaderField {
     public void recycle() {
         nameB.recycle();
         valueB.recycle();
+        id = KnownHeaders.UNKNOWN;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
     }
 
     public MessageBytes getName() {
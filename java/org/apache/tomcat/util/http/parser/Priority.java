@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.http.parser;
+
+/**
+ * HTTP priority header parser as per RFC 9218.
+ */
+public class Priority {
+
+    public static final int DEFAULT_URGENCY = 3;
+    public static final boolean DEFAULT_INCREMENTAL = false;
+
+    // Explicitly set the defaults as per RFC 9218
+    private int urgency = DEFAULT_URGENCY;
+    private boolean incremental = DEFAULT_INCREMENTAL;
+
+    public Priority() {
+        // Default constructor is NO-OP.
+    }
+
+    public int getUrgency() {
+        return urgency;
+    }
+
+    public void setUrgency(int urgency) {
+        this.urgency = urgency;
+    }
+
+    public boolean getIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+
+    /**
+     * Parses a priority header value, or the Priority Field Value of an HTTP/2
+     * PRIORITY_UPDATE frame, as an RFC 8941 structured field dictionary.
+     * Unknown keys and keys with values of an unexpected type or outside the
+     * permitted range are ignored.
+     *
+     * @param input The header value to parse
+     *
+     * @return The parsed priority or <code>null</code> if the input is not a
+     *         valid dictionary
+     */
+    public static Priority parsePriority(String input) {
+        Priority result = new Priority();
+        Dictionary dictionary = new Dictionary(input);
+        dictionary.skipSpace();
+        if (dictionary.isEnd()) {
+            return result;
+        }
+        while (true) {
+            String key = dictionary.readKey();
+            if (key == null) {
+                return null;
+            }
+            Object value;
+            if (dictionary.skip('=')) {
+                value = dictionary.readItemOrInnerList();
+                if (value == null) {
+                    return null;
+                }
+            } else {
+                value = Boolean.TRUE;
+            }
+            if (!dictionary.skipParameters()) {
+                return null;
+            }
+
+            // Later members replace earlier members with the same key
+            if ("u".equals(key)) {
+                result.setUrgency(DEFAULT_URGENCY);
+                if (value instanceof Long) {
+                    long urgency = ((Long) value).longValue();
+                    if (urgency >= 0 && urgency <= 7) {
+                        result.setUrgency((int) urgency);
+                    }
+                }
+            } else if ("i".equals(key)) {
+                result.setIncremental(DEFAULT_INCREMENTAL);
+                if (value instanceof Boolean) {
+                    result.setIncremental(((Boolean) value).booleanValue());
+                }
+            }
+
+            dictionary.skipOptionalWhitespace();
+            if (dictionary.isEnd()) {
+                return result;
+            }
+            if (!dictionary.skip(',')) {
+                return null;
+            }
+            dictionary.skipOptionalWhitespace();
+            if (dictionary.isEnd()) {
+                // Trailing comma
+                return null;
+            }
+        }
+    }
+
+
+    /*
+     * Minimal RFC 8941 parser. Only integers and booleans are converted to
+     * values. Other item types are validated and then represented by a
+     * placeholder as they are not used by any priority parameter.
+     */
+    private static class Dictionary {
+
+        private static final Object OTHER = new Object();
+
+        private final String input;
+        private int pos = 0;
+
+        Dictionary(String input) {
+            this.input = input;
+        }
+
+        boolean isEnd() {
+            return pos >= input.length();
+        }
+
+        private int peek() {
+            return isEnd() ? -1 : input.charAt(pos);
+        }
+
+        boolean skip(char c) {
+            if (peek() == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void skipSpace() {
+            while (peek() == ' ') {
+                pos++;
+            }
+        }
+
+        void skipOptionalWhitespace() {
+            int c = peek();
+            while (c == ' ' || c == '\t') {
+                pos++;
+                c = peek();
+            }
+        }
+
+        String readKey() {
+            int start = pos;
+            int c = peek();
+            if (!isLowerAlpha(c) && c != '*') {
+                return null;
+            }
+            pos++;
+            c = peek();
+            while (isLowerAlpha(c) || isDigit(c) || c == '_' || c == '-' || c == '.' || c == '*') {
+                pos++;
+                c = peek();
+            }
+            return input.substring(start, pos);
+        }
+
+        Object readItemOrInnerList() {
+            if (skip('(')) {
+                while (true) {
+                    skipSpace();
+                    if (skip(')')) {
+                        return skipParameters() ? OTHER : null;
+                    }
+                    if (readBareItem() == null || !skipParameters()) {
+                        return null;
+                    }
+                    int c = peek();
+                    if (c != ' ' && c != ')') {
+                        return null;
+                    }
+                }
+            }
+            return readBareItem();
+        }
+
+        boolean skipParameters() {
+            while (skip(';')) {
+                skipSpace();
+                if (readKey() == null) {
+                    return false;
+                }
+                if (skip('=') && readBareItem() == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Object readBareItem() {
+            int c = peek();
+            if (c == '-' || isDigit(c)) {
+                return readNumber();
+            } else if (c == '?') {
+                pos++;
+                if (skip('1')) {
+                    return Boolean.TRUE;
+                } else if (skip('0')) {
+                    return Boolean.FALSE;
+                }
+                return null;
+            } else if (c == '"') {
+                pos++;
+                while (!isEnd()) {
+                    c = input.charAt(pos++);
+                    if (c == '\\') {
+                        c = peek();
+                        if (c != '"' && c != '\\') {
+                            return null;
+                        }
+                        pos++;
+                    } else if (c == '"') {
+                        return OTHER;
+                    } else if (c < 0x20 || c > 0x7E) {
+                        return null;
+                    }
+                }
+                return null;
+            } else if (c == ':') {
+                pos++;
+                while (!isEnd()) {
+                    c = input.charAt(pos++);
+                    if (c == ':') {
+                        return OTHER;
+                    } else if (!isAlpha(c) && !isDigit(c) &&
+                            c != '+' && c != '/' && c != '=') {
+                        return null;
+                    }
+                }
+                return null;
+            } else if (isAlpha(c) || c == '*') {
+                pos++;
+                c = peek();
+                while (c != -1 && (HttpParser.isToken(c) || c == ':' || c == '/')) {
+                    pos++;
+                    c = peek();
+                }
+                return OTHER;
+            }
+            return null;
+        }
+
+        private Object readNumber() {
+            boolean negative = skip('-');
+            long value = 0;
+            int digits = 0;
+            int c = peek();
+            while (isDigit(c)) {
+                if (++digits > 15) {
+                    return null;
+                }
+                value = value * 10 + (c - '0');
+                pos++;
+                c = peek();
+            }
+            if (digits == 0) {
+                return null;
+            }
+            if (skip('.')) {
+                // Decimal
+                if (digits > 12) {
+                    return null;
+                }
+                int fractionDigits = 0;
+                while (isDigit(peek())) {
+                    fractionDigits++;
+                    pos++;
+                }
+                if (fractionDigits == 0 || fractionDigits > 3) {
+                    return null;
+                }
+                return OTHER;
+            }
+            return Long.valueOf(negative ? -value : value);
+        }
+
+        private static boolean isLowerAlpha(int c) {
+            return c >= 'a' && c <= 'z';
+        }
+
+        private static boolean isAlpha(int c) {
+            return isLowerAlpha(c) || c >= 'A' && c <= 'Z';
+        }
+
+        private static boolean isDigit(int c) {
+            return c >= '0' && c <= '9';
+        }
+    }
+}
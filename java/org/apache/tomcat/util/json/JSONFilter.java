@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.json;
+
+/**
+ * Provides escaping of values so they can be included in a JSON document.
+ * Escaping is based on the definition of JSON found in
+ * <a href="https://www.rfc-editor.org/rfc/rfc8259.html">RFC 8259</a>.
+ */
+public class JSONFilter {
+
+    private static final String[] CONTROL_ESCAPES = new String[0x20];
+
+    static {
+        for (int i = 0; i < CONTROL_ESCAPES.length; i++) {
+            CONTROL_ESCAPES[i] = String.format("\\u%04X", Integer.valueOf(i));
+        }
+        CONTROL_ESCAPES['\b'] = "\\b";
+        CONTROL_ESCAPES['\t'] = "\\t";
+        CONTROL_ESCAPES['\n'] = "\\n";
+        CONTROL_ESCAPES['\f'] = "\\f";
+        CONTROL_ESCAPES['\r'] = "\\r";
+    }
+
+
+    private JSONFilter() {
+        // Utility class. Hide the default constructor.
+    }
+
+
+    /**
+     * Obtain the escape sequence, if any, required to include the given
+     * character in a JSON string. No objects are created so this may be used
+     * by callers that write escaped output directly to a buffer.
+     *
+     * @param c The character to escape
+     *
+     * @return The escape sequence or {@code null} if the character does not
+     *         need to be escaped
+     */
+    public static String escape(char c) {
+        if (c < 0x20) {
+            return CONTROL_ESCAPES[c];
+        } else if (c == '"') {
+            return "\\\"";
+        } else if (c == '\\') {
+            return "\\\\";
+        }
+        return null;
+    }
+
+
+    /**
+     * Escape the given string so it may be included in a JSON string.
+     *
+     * @param input The string to escape
+     *
+     * @return The escaped string. If no escaping is required, the input is
+     *         returned.
+     */
+    public static String escape(String input) {
+        StringBuilder escaped = null;
+        int len = input.length();
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            String sequence = escape(input.charAt(i));
+            if (sequence != null) {
+                if (escaped == null) {
+                    escaped = new StringBuilder(len + 16);
+                }
+                escaped.append(input, start, i);
+                escaped.append(sequence);
+                start = i + 1;
+            }
+        }
+        if (escaped == null) {
+            return input;
+        }
+        escaped.append(input, start, len);
+        return escaped.toString();
+    }
+}
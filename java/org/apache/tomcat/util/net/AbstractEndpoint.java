@@ -44,7 +44,7 @@ import javax.management.ObjectName;
 import org.apache.juli.logging.Log;
 import org.apache.tomcat.util.ExceptionUtils;
 import org.apache.tomcat.util.IntrospectionUtils;
-import org.apache.tomcat.util.collections.SynchronizedStack;
+import org.apache.tomcat.util.collections.StripedStack;
 import org.apache.tomcat.util.modeler.Registry;
 import org.apache.tomcat.util.net.Acceptor.AcceptorState;
 import org.apache.tomcat.util.res.StringManager;
@@ -53,6 +53,7 @@ import org.apache.tomcat.util.threads.ResizableExecutor;
 import org.apache.tomcat.util.threads.TaskQueue;
 import org.apache.tomcat.util.threads.TaskThreadFactory;
 import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
 
 /**
  * @param <S> The type used by the socket wrapper associated with this endpoint.
@@ -193,7 +194,7 @@ public abstract class AbstractEndpoint<S,U> {
     /**
      * Cache for SocketProcessor objects
      */
-    protected SynchronizedStack<SocketProcessorBase<S>> processorCache;
+    protected StripedStack<SocketProcessorBase<S>> processorCache;
 
     private ObjectName oname = null;
 
@@ -512,6 +513,23 @@ public abstract class AbstractEndpoint<S,U> {
     public Executor getExecutor() { return executor; }
 
 
+    private boolean useVirtualThreads = false;
+    /**
+     * Should the internal executor, if one is created, use a new virtual
+     * thread for each task rather than a pool of platform threads? Requires a
+     * JRE that supports virtual threads. Has no effect if an external executor
+     * is configured.
+     *
+     * @param useVirtualThreads {@code true} to use virtual threads
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+    public boolean getUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+
     /**
      * External Executor based thread pool for utility tasks.
      */
@@ -924,6 +942,8 @@ public abstract class AbstractEndpoint<S,U> {
                 return ((java.util.concurrent.ThreadPoolExecutor) executor).getActiveCount();
             } else if (executor instanceof ResizableExecutor) {
                 return ((ResizableExecutor) executor).getActiveCount();
+            } else if (executor instanceof VirtualThreadExecutor) {
+                return ((VirtualThreadExecutor) executor).getActiveCount();
             } else {
                 return -1;
             }
@@ -943,6 +963,10 @@ public abstract class AbstractEndpoint<S,U> {
 
     public void createExecutor() {
         internalExecutor = true;
+        if (getUseVirtualThreads()) {
+            executor = new VirtualThreadExecutor(getName() + "-virt-");
+            return;
+        }
         TaskQueue taskqueue = new TaskQueue();
         TaskThreadFactory tf = new TaskThreadFactory(getName() + "-exec-", daemon, getThreadPriority());
         executor = new ThreadPoolExecutor(getMinSpareThreads(), getMaxThreads(), 60, TimeUnit.SECONDS,taskqueue, tf);
@@ -970,6 +994,20 @@ public abstract class AbstractEndpoint<S,U> {
                 }
                 TaskQueue queue = (TaskQueue) tpe.getQueue();
                 queue.setParent(null);
+            } else if (executor instanceof VirtualThreadExecutor) {
+                VirtualThreadExecutor vte = (VirtualThreadExecutor) executor;
+                vte.shutdown();
+                long timeout = getExecutorTerminationTimeoutMillis();
+                if (timeout > 0) {
+                    try {
+                        vte.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        // Ignore
+                    }
+                    if (!vte.isTerminated()) {
+                        getLog().warn(sm.getString("endpoint.warn.executorShutdown", getName()));
+                    }
+                }
             }
         }
     }
@@ -125,11 +125,11 @@ public class Acceptor<U> implements Runnable {
                     try {
                         // Accept the next incoming connection from the server
                         // socket
-                        socket = endpoint.serverSocketAccept();
+                        socket = accept();
                     } catch (Exception ioe) {
                         // We didn't get a socket
                         endpoint.countDownConnection();
-                        if (endpoint.isRunning()) {
+                        if (endpoint.isRunning() && !stopCalled) {
                             // Introduce delay if necessary
                             errorDelay = handleExceptionWithDelay(errorDelay);
                             // re-throw
@@ -164,6 +164,20 @@ public class Acceptor<U> implements Runnable {
     }
 
 
+    /**
+     * Accept the next incoming connection. By default, connections are
+     * accepted from the endpoint's server socket. Sub-classes may override
+     * this to accept from a different server socket.
+     *
+     * @return The newly accepted socket
+     *
+     * @throws Exception If an error occurs accepting the connection
+     */
+    protected U accept() throws Exception {
+        return endpoint.serverSocketAccept();
+    }
+
+
     /**
      * Signals the Acceptor to stop, optionally waiting for that stop process
      * to complete before returning. If a wait is requested and the stop does
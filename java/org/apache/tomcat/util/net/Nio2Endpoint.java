@@ -43,7 +43,7 @@ import javax.net.ssl.SSLEngine;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.ExceptionUtils;
-import org.apache.tomcat.util.collections.SynchronizedStack;
+import org.apache.tomcat.util.collections.StripedStack;
 import org.apache.tomcat.util.compat.JrePlatform;
 import org.apache.tomcat.util.net.AbstractEndpoint.Handler.SocketState;
 import org.apache.tomcat.util.net.Acceptor.AcceptorState;
@@ -84,7 +84,7 @@ public class Nio2Endpoint extends AbstractJsseEndpoint<Nio2Channel,AsynchronousS
     /**
      * Bytebuffer cache, each channel holds a set of buffers (two, except for SSL holds four)
      */
-    private SynchronizedStack<Nio2Channel> nioChannels;
+    private StripedStack<Nio2Channel> nioChannels;
 
     private SocketAddress previousAcceptedSocketRemoteAddress = null;
     private long previousAcceptedSocketNanoTime = 0;
@@ -146,13 +146,13 @@ public class Nio2Endpoint extends AbstractJsseEndpoint<Nio2Channel,AsynchronousS
             paused = false;
 
             if (socketProperties.getProcessorCache() != 0) {
-                processorCache = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
+                processorCache = new StripedStack<>(StripedStack.DEFAULT_SIZE,
                         socketProperties.getProcessorCache());
             }
             int actualBufferPool =
                     socketProperties.getActualBufferPool(isSSLEnabled() ? getSniParseLimit() * 2 : 0);
             if (actualBufferPool != 0) {
-                nioChannels = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
+                nioChannels = new StripedStack<>(StripedStack.DEFAULT_SIZE,
                         actualBufferPool);
             }
             // Create worker collection
@@ -350,7 +350,7 @@ public class Nio2Endpoint extends AbstractJsseEndpoint<Nio2Channel,AsynchronousS
     }
 
 
-    protected SynchronizedStack<Nio2Channel> getNioChannels() {
+    protected StripedStack<Nio2Channel> getNioChannels() {
         return nioChannels;
     }
 
@@ -498,7 +498,7 @@ public class Nio2Endpoint extends AbstractJsseEndpoint<Nio2Channel,AsynchronousS
 
     public static class Nio2SocketWrapper extends SocketWrapperBase<Nio2Channel> {
 
-        private final SynchronizedStack<Nio2Channel> nioChannels;
+        private final StripedStack<Nio2Channel> nioChannels;
 
         private SendfileData sendfileData = null;
 
@@ -24,6 +24,7 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.Channel;
@@ -42,23 +43,31 @@ import java.nio.file.Paths;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+import javax.management.ObjectName;
 import javax.net.ssl.SSLEngine;
 
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.ExceptionUtils;
-import org.apache.tomcat.util.collections.SynchronizedQueue;
-import org.apache.tomcat.util.collections.SynchronizedStack;
+import org.apache.tomcat.util.collections.SingleConsumerQueue;
+import org.apache.tomcat.util.collections.StripedStack;
 import org.apache.tomcat.util.compat.JreCompat;
 import org.apache.tomcat.util.compat.JrePlatform;
+import org.apache.tomcat.util.modeler.Registry;
 import org.apache.tomcat.util.net.AbstractEndpoint.Handler.SocketState;
 import org.apache.tomcat.util.net.Acceptor.AcceptorState;
 import org.apache.tomcat.util.net.jsse.JSSESupport;
@@ -103,15 +112,25 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
     /**
      * Cache for poller events
      */
-    private SynchronizedStack<PollerEvent> eventCache;
+    private StripedStack<PollerEvent> eventCache;
 
     /**
      * Bytebuffer cache, each channel holds a set of buffers (two, except for SSL holds four)
      */
-    private SynchronizedStack<NioChannel> nioChannels;
+    private StripedStack<NioChannel> nioChannels;
 
-    private SocketAddress previousAcceptedSocketRemoteAddress = null;
-    private long previousAcceptedSocketNanoTime = 0;
+    private final DuplicateAcceptCheck duplicateAcceptCheck = new DuplicateAcceptCheck();
+
+    /**
+     * Additional server sockets, bound with SO_REUSEPORT, used when more than
+     * one acceptor thread is configured.
+     */
+    private volatile ServerSocketChannel[] reusePortServerSocks = null;
+
+    /**
+     * The acceptors for the additional server sockets.
+     */
+    private volatile List<Acceptor<SocketChannel>> reusePortAcceptors = null;
 
 
     // ------------------------------------------------------------- Properties
@@ -152,14 +171,45 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
     public int getPollerThreadPriority() { return pollerThreadPriority; }
 
 
+    /**
+     * Number of poller threads. Each poller has its own selector and new
+     * connections are distributed between the pollers on a round-robin basis.
+     */
+    private int pollerThreadCount = 1;
+    public void setPollerThreadCount(int pollerThreadCount) {
+        if (pollerThreadCount < 1) {
+            throw new IllegalArgumentException(
+                    sm.getString("endpoint.nio.invalidPollerThreadCount", Integer.toString(pollerThreadCount)));
+        }
+        this.pollerThreadCount = pollerThreadCount;
+    }
+    public int getPollerThreadCount() { return pollerThreadCount; }
+
+
+    /**
+     * Number of acceptor threads. If more than one is configured, each
+     * additional acceptor uses its own server socket bound to the same address
+     * with SO_REUSEPORT so the operating system distributes new connections
+     * between the acceptors. Only used for TCP sockets (not for inherited
+     * channels or Unix domain sockets) and only on platforms that support
+     * SO_REUSEPORT.
+     */
+    private int acceptorThreadCount = 1;
+    public void setAcceptorThreadCount(int acceptorThreadCount) {
+        this.acceptorThreadCount = acceptorThreadCount;
+    }
+    public int getAcceptorThreadCount() { return acceptorThreadCount; }
+
+
     private long selectorTimeout = 1000;
     public void setSelectorTimeout(long timeout) { this.selectorTimeout = timeout;}
     public long getSelectorTimeout() { return this.selectorTimeout; }
 
     /**
-     * The socket poller.
+     * The socket pollers.
      */
-    private Poller poller = null;
+    private volatile Poller[] pollers = null;
+    private final AtomicInteger pollerRotater = new AtomicInteger(0);
 
 
     // --------------------------------------------------------- Public Methods
@@ -171,10 +221,15 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
      *         for the next request to be received on the socket
      */
     public int getKeepAliveCount() {
-        if (poller == null) {
+        Poller[] pollers = this.pollers;
+        if (pollers == null) {
             return 0;
         } else {
-            return poller.getKeyCount();
+            int sum = 0;
+            for (Poller poller : pollers) {
+                sum += poller.getKeyCount();
+            }
+            return sum;
         }
     }
 
@@ -200,7 +255,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
     public void bind() throws Exception {
         initServerSocket();
 
-        setStopLatch(new CountDownLatch(1));
+        setStopLatch(new CountDownLatch(getPollerThreadCount()));
 
         // Initialize SSL if needed
         initialiseSsl();
@@ -242,6 +297,14 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
         } else {
             serverSock = ServerSocketChannel.open();
             socketProperties.setProperties(serverSock.socket());
+            if (getAcceptorThreadCount() > 1) {
+                if (serverSock.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                    serverSock.setOption(StandardSocketOptions.SO_REUSEPORT, Boolean.TRUE);
+                } else {
+                    log.warn(sm.getString("endpoint.nio.reusePortNotSupported",
+                            getName(), Integer.toString(getAcceptorThreadCount())));
+                }
+            }
             InetSocketAddress addr = new InetSocketAddress(getAddress(), getPortWithOffset());
             serverSock.bind(addr, getAcceptCount());
         }
@@ -249,6 +312,84 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
     }
 
 
+    /*
+     * The additional server sockets are bound on start and closed on stop
+     * (rather than following bindOnInit) as closing the socket is the only
+     * reliable way to release an acceptor blocked on a socket that shares its
+     * port with other sockets.
+     */
+    private void startReusePortAcceptors() throws IOException {
+        if (getAcceptorThreadCount() < 2 || getUseInheritedChannel() || getUnixDomainSocketPath() != null ||
+                serverSock == null) {
+            return;
+        }
+        Boolean reusePort;
+        try {
+            reusePort = serverSock.getOption(StandardSocketOptions.SO_REUSEPORT);
+        } catch (UnsupportedOperationException uoe) {
+            reusePort = Boolean.FALSE;
+        }
+        if (!reusePort.booleanValue()) {
+            return;
+        }
+        // Use the actual port in case an ephemeral port was requested
+        int port = ((InetSocketAddress) serverSock.getLocalAddress()).getPort();
+        InetSocketAddress addr = new InetSocketAddress(getAddress(), port);
+        int count = getAcceptorThreadCount() - 1;
+        ServerSocketChannel[] socks = new ServerSocketChannel[count];
+        List<Acceptor<SocketChannel>> acceptors = new ArrayList<>(count);
+        reusePortServerSocks = socks;
+        reusePortAcceptors = acceptors;
+        for (int i = 0; i < count; i++) {
+            ServerSocketChannel sock = ServerSocketChannel.open();
+            socks[i] = sock;
+            socketProperties.setProperties(sock.socket());
+            sock.setOption(StandardSocketOptions.SO_REUSEPORT, Boolean.TRUE);
+            sock.bind(addr, getAcceptCount());
+            sock.configureBlocking(true);
+
+            ReusePortAcceptor acceptor = new ReusePortAcceptor(sock);
+            String threadName = getName() + "-Acceptor-" + (i + 1);
+            acceptor.setThreadName(threadName);
+            acceptors.add(acceptor);
+            Thread t = new Thread(acceptor, threadName);
+            t.setPriority(getAcceptorThreadPriority());
+            t.setDaemon(getDaemon());
+            t.start();
+        }
+    }
+
+
+    private void stopReusePortAcceptors() {
+        List<Acceptor<SocketChannel>> acceptors = reusePortAcceptors;
+        reusePortAcceptors = null;
+        if (acceptors != null) {
+            for (Acceptor<SocketChannel> acceptor : acceptors) {
+                acceptor.stop(-1);
+            }
+        }
+        ServerSocketChannel[] socks = reusePortServerSocks;
+        reusePortServerSocks = null;
+        if (socks != null) {
+            for (ServerSocketChannel sock : socks) {
+                if (sock != null) {
+                    try {
+                        // Closing the socket releases the blocked acceptor
+                        sock.close();
+                    } catch (IOException ioe) {
+                        getLog().warn(sm.getString("endpoint.serverSocket.closeFailed", getName()), ioe);
+                    }
+                }
+            }
+        }
+        if (acceptors != null) {
+            for (Acceptor<SocketChannel> acceptor : acceptors) {
+                acceptor.stop(10);
+            }
+        }
+    }
+
+
     /**
      * Start the NIO endpoint, creating acceptor, poller threads.
      */
@@ -260,17 +401,17 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
             paused = false;
 
             if (socketProperties.getProcessorCache() != 0) {
-                processorCache = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
+                processorCache = new StripedStack<>(StripedStack.DEFAULT_SIZE,
                         socketProperties.getProcessorCache());
             }
             if (socketProperties.getEventCache() != 0) {
-                eventCache = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
+                eventCache = new StripedStack<>(StripedStack.DEFAULT_SIZE,
                         socketProperties.getEventCache());
             }
             int actualBufferPool =
                     socketProperties.getActualBufferPool(isSSLEnabled() ? getSniParseLimit() * 2 : 0);
             if (actualBufferPool != 0) {
-                nioChannels = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
+                nioChannels = new StripedStack<>(StripedStack.DEFAULT_SIZE,
                         actualBufferPool);
             }
 
@@ -281,14 +422,25 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 
             initializeConnectionLatch();
 
-            // Start poller thread
-            poller = new Poller();
-            Thread pollerThread = new Thread(poller, getName() + "-Poller");
-            pollerThread.setPriority(threadPriority);
-            pollerThread.setDaemon(true);
-            pollerThread.start();
+            // Start poller threads
+            Poller[] pollers = new Poller[getPollerThreadCount()];
+            for (int i = 0; i < pollers.length; i++) {
+                pollers[i] = new Poller();
+                String pollerName = getName() + "-Poller";
+                if (pollers.length > 1) {
+                    pollerName += "-" + i;
+                }
+                pollers[i].setName(pollerName);
+                Thread pollerThread = new Thread(pollers[i], pollerName);
+                pollerThread.setPriority(threadPriority);
+                pollerThread.setDaemon(true);
+                pollerThread.start();
+                registerJmx(pollers[i], i);
+            }
+            this.pollers = pollers;
 
             startAcceptorThread();
+            startReusePortAcceptors();
         }
     }
 
@@ -304,9 +456,14 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
         if (running) {
             running = false;
             acceptor.stop(10);
-            if (poller != null) {
-                poller.destroy();
-                poller = null;
+            stopReusePortAcceptors();
+            Poller[] pollers = this.pollers;
+            if (pollers != null) {
+                for (Poller poller : pollers) {
+                    poller.destroy();
+                    unregisterJmx(poller);
+                }
+                this.pollers = null;
             }
             try {
                 if (!getStopLatch().await(selectorTimeout + 100, TimeUnit.MILLISECONDS)) {
@@ -366,6 +523,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 
     @Override
     protected void doCloseServerSocket() throws IOException {
+        stopReusePortAcceptors();
         try {
             if (!getUseInheritedChannel() && serverSock != null) {
                 // Close server socket
@@ -416,13 +574,58 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
     }
 
 
-    protected SynchronizedStack<NioChannel> getNioChannels() {
+    protected StripedStack<NioChannel> getNioChannels() {
         return nioChannels;
     }
 
 
+    /**
+     * Obtain the poller to use for a new connection. Where multiple pollers are
+     * configured, they are used in turn.
+     *
+     * @return The poller or {@code null} if the endpoint is not running
+     */
     protected Poller getPoller() {
-        return poller;
+        Poller[] pollers = this.pollers;
+        if (pollers == null) {
+            return null;
+        }
+        if (pollers.length == 1) {
+            return pollers[0];
+        }
+        return pollers[(pollerRotater.getAndIncrement() & Integer.MAX_VALUE) % pollers.length];
+    }
+
+
+    /**
+     * @return The current pollers or {@code null} if the endpoint is not
+     *         running
+     */
+    protected Poller[] getPollers() {
+        return pollers;
+    }
+
+
+    private void registerJmx(Poller poller, int index) {
+        if (getDomain() == null) {
+            return;
+        }
+        try {
+            ObjectName pollerOname = new ObjectName(getDomain() + ":type=Poller,ThreadPool=\"" +
+                    getName() + "\",name=" + index);
+            poller.setObjectName(pollerOname);
+            Registry.getRegistry(null, null).registerComponent(poller, pollerOname, null);
+        } catch (Exception e) {
+            log.warn(sm.getString("endpoint.nio.jmxRegistrationFailed", poller.getName()), e);
+        }
+    }
+
+
+    private void unregisterJmx(Poller poller) {
+        ObjectName pollerOname = poller.getObjectName();
+        if (pollerOname != null) {
+            Registry.getRegistry(null, null).unregisterComponent(pollerOname);
+        }
     }
 
 
@@ -478,7 +681,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
             socketWrapper.setReadTimeout(getConnectionTimeout());
             socketWrapper.setWriteTimeout(getConnectionTimeout());
             socketWrapper.setKeepAliveLeft(NioEndpoint.this.getMaxKeepAliveRequests());
-            poller.register(socketWrapper);
+            socketWrapper.getPoller().register(socketWrapper);
             return true;
         } catch (Throwable t) {
             ExceptionUtils.handleThrowable(t);
@@ -518,19 +721,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
     @Override
     protected SocketChannel serverSocketAccept() throws Exception {
         SocketChannel result = serverSock.accept();
-
-        // Bug does not affect Windows platform and Unix Domain Socket. Skip the check.
-        if (!JrePlatform.IS_WINDOWS && getUnixDomainSocketPath() == null) {
-            SocketAddress currentRemoteAddress = result.getRemoteAddress();
-            long currentNanoTime = System.nanoTime();
-            if (currentRemoteAddress.equals(previousAcceptedSocketRemoteAddress) &&
-                    currentNanoTime - previousAcceptedSocketNanoTime < 1000) {
-                throw new IOException(sm.getString("endpoint.err.duplicateAccept"));
-            }
-            previousAcceptedSocketRemoteAddress = currentRemoteAddress;
-            previousAcceptedSocketNanoTime = currentNanoTime;
-        }
-
+        duplicateAcceptCheck.check(result);
         return result;
     }
 
@@ -547,6 +738,56 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
         return new SocketProcessor(socketWrapper, event);
     }
 
+    // ---------------------------------------------------- Acceptor Inner Classes
+
+    /**
+     * Acceptor for an additional server socket bound with SO_REUSEPORT.
+     */
+    private class ReusePortAcceptor extends Acceptor<SocketChannel> {
+
+        private final ServerSocketChannel serverSocket;
+        private final DuplicateAcceptCheck duplicateAcceptCheck = new DuplicateAcceptCheck();
+
+        ReusePortAcceptor(ServerSocketChannel serverSocket) {
+            super(NioEndpoint.this);
+            this.serverSocket = serverSocket;
+        }
+
+        @Override
+        protected SocketChannel accept() throws Exception {
+            SocketChannel result = serverSocket.accept();
+            duplicateAcceptCheck.check(result);
+            return result;
+        }
+    }
+
+
+    /**
+     * Protects against a JRE bug that can cause the same connection to be
+     * returned from multiple calls to accept(). There must be one instance per
+     * server socket and it must only be used by the acceptor for that socket.
+     */
+    private class DuplicateAcceptCheck {
+
+        private SocketAddress previousAcceptedSocketRemoteAddress = null;
+        private long previousAcceptedSocketNanoTime = 0;
+
+        void check(SocketChannel socket) throws IOException {
+            // Bug does not affect Windows platform and Unix Domain Socket. Skip the check.
+            if (!JrePlatform.IS_WINDOWS && getUnixDomainSocketPath() == null) {
+                SocketAddress currentRemoteAddress = socket.getRemoteAddress();
+                long currentNanoTime = System.nanoTime();
+                if (currentRemoteAddress.equals(previousAcceptedSocketRemoteAddress) &&
+                        currentNanoTime - previousAcceptedSocketNanoTime < 1000) {
+                    throw new IOException(sm.getString("endpoint.err.duplicateAccept"));
+                }
+                previousAcceptedSocketRemoteAddress = currentRemoteAddress;
+                previousAcceptedSocketNanoTime = currentNanoTime;
+            }
+        }
+    }
+
+
     // ----------------------------------------------------- Poller Inner Classes
 
     /**
@@ -591,8 +832,8 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
     public class Poller implements Runnable {
 
         private Selector selector;
-        private final SynchronizedQueue<PollerEvent> events =
-                new SynchronizedQueue<>();
+        private final SingleConsumerQueue<PollerEvent> events =
+                new SingleConsumerQueue<>();
 
         private volatile boolean close = false;
         // Optimize expiration handling
@@ -602,12 +843,62 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 
         private volatile int keyCount = 0;
 
+        private String name;
+        private volatile ObjectName oname = null;
+
+        // Statistics. Other than the wake-up count, these are only written by
+        // the Poller thread.
+        private volatile int registeredKeyCount = 0;
+        private volatile long processedKeyCount = 0;
+        private volatile long processedKeysPerSecond = 0;
+        private final AtomicLong selectorWakeupCount = new AtomicLong(0);
+        private long rateStartTime = System.nanoTime();
+        private long rateStartCount = 0;
+
         public Poller() throws IOException {
             this.selector = Selector.open();
         }
 
         public int getKeyCount() { return keyCount; }
 
+        public String getName() { return name; }
+
+        void setName(String name) { this.name = name; }
+
+        ObjectName getObjectName() { return oname; }
+
+        void setObjectName(ObjectName oname) { this.oname = oname; }
+
+        /**
+         * @return The number of keys (connections) currently registered with
+         *         this Poller's selector
+         */
+        public int getRegisteredKeyCount() { return registeredKeyCount; }
+
+        /**
+         * @return The total number of selected keys processed by this Poller
+         */
+        public long getProcessedKeyCount() { return processedKeyCount; }
+
+        /**
+         * @return The number of selected keys processed by this Poller per
+         *         second, measured over the most recent interval of
+         *         approximately one second
+         */
+        public long getProcessedKeysPerSecond() { return processedKeysPerSecond; }
+
+        /**
+         * @return The number of times this Poller's selector has been woken up
+         *         to process newly added events
+         */
+        public long getSelectorWakeupCount() { return selectorWakeupCount.get(); }
+
+        /**
+         * @return The number of events waiting to be added to this Poller's
+         *         selector
+         */
+        public int getEventQueueSize() { return events.size(); }
+
         public Selector getSelector() { return selector; }
 
         /**
@@ -624,6 +915,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
         private void addEvent(PollerEvent event) {
             events.offer(event);
             if (wakeupCounter.incrementAndGet() == 0) {
+                selectorWakeupCount.incrementAndGet();
                 selector.wakeup();
             }
         }
@@ -772,6 +1064,8 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
                     continue;
                 }
 
+                updateStatistics();
+
                 Iterator<SelectionKey> iterator =
                     keyCount > 0 ? selector.selectedKeys().iterator() : null;
                 // Walk through the collection of ready keys and dispatch
@@ -794,6 +1088,19 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
             getStopLatch().countDown();
         }
 
+        private void updateStatistics() {
+            registeredKeyCount = selector.keys().size();
+            long count = processedKeyCount + keyCount;
+            processedKeyCount = count;
+            long now = System.nanoTime();
+            long elapsed = now - rateStartTime;
+            if (elapsed >= 1_000_000_000L) {
+                processedKeysPerSecond = (count - rateStartCount) * 1_000_000_000L / elapsed;
+                rateStartTime = now;
+                rateStartCount = count;
+            }
+        }
+
         protected void processKey(SelectionKey sk, NioSocketWrapper socketWrapper) {
             try {
                 if (close) {
@@ -812,9 +1119,12 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
                                         closeSocket = true;
                                     }
                                 } else if (socketWrapper.readBlocking) {
-                                    synchronized (socketWrapper.readLock) {
+                                    socketWrapper.readLock.lock();
+                                    try {
                                         socketWrapper.readBlocking = false;
-                                        socketWrapper.readLock.notify();
+                                        socketWrapper.readLockCondition.signal();
+                                    } finally {
+                                        socketWrapper.readLock.unlock();
                                     }
                                 } else if (!processSocket(socketWrapper, SocketEvent.OPEN_READ, true)) {
                                     closeSocket = true;
@@ -826,9 +1136,12 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
                                         closeSocket = true;
                                     }
                                 } else if (socketWrapper.writeBlocking) {
-                                    synchronized (socketWrapper.writeLock) {
+                                    socketWrapper.writeLock.lock();
+                                    try {
                                         socketWrapper.writeBlocking = false;
-                                        socketWrapper.writeLock.notify();
+                                        socketWrapper.writeLockCondition.signal();
+                                    } finally {
+                                        socketWrapper.writeLock.unlock();
                                     }
                                 } else if (!processSocket(socketWrapper, SocketEvent.OPEN_WRITE, true)) {
                                     closeSocket = true;
@@ -1066,7 +1379,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 
     public static class NioSocketWrapper extends SocketWrapperBase<NioChannel> {
 
-        private final SynchronizedStack<NioChannel> nioChannels;
+        private final StripedStack<NioChannel> nioChannels;
         private final Poller poller;
 
         private int interestOps = 0;
@@ -1074,9 +1387,12 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
         private volatile long lastRead = System.currentTimeMillis();
         private volatile long lastWrite = lastRead;
 
-        private final Object readLock;
+        // Lock/Condition so blocking reads and writes do not pin virtual threads
+        private final Lock readLock = new ReentrantLock();
+        private final Condition readLockCondition = readLock.newCondition();
         private volatile boolean readBlocking = false;
-        private final Object writeLock;
+        private final Lock writeLock = new ReentrantLock();
+        private final Condition writeLockCondition = writeLock.newCondition();
         private volatile boolean writeBlocking = false;
 
         public NioSocketWrapper(NioChannel channel, NioEndpoint endpoint) {
@@ -1093,8 +1409,6 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
             nioChannels = endpoint.getNioChannels();
             poller = endpoint.getPoller();
             socketBufferHandler = channel.getBufHandler();
-            readLock = (readPending == null) ? new Object() : readPending;
-            writeLock = (writePending == null) ? new Object() : writePending;
         }
 
         public Poller getPoller() { return poller; }
@@ -1268,19 +1582,22 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
                             readBlocking = true;
                             registerReadInterest();
                         }
-                        synchronized (readLock) {
+                        readLock.lock();
+                        try {
                             if (readBlocking) {
                                 try {
                                     if (timeout > 0) {
                                         startNanos = System.nanoTime();
-                                        readLock.wait(timeout);
+                                        readLockCondition.await(timeout, TimeUnit.MILLISECONDS);
                                     } else {
-                                        readLock.wait();
+                                        readLockCondition.await();
                                     }
                                 } catch (InterruptedException e) {
                                     // Continue
                                 }
                             }
+                        } finally {
+                            readLock.unlock();
                         }
                     }
                 } while (n == 0); // TLS needs to loop as reading zero application bytes is possible
@@ -1381,20 +1698,23 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
                         // block if there is still data to write.
                         writeBlocking = true;
                         registerWriteInterest();
-                        synchronized (writeLock) {
+                        writeLock.lock();
+                        try {
                             if (writeBlocking) {
                                 try {
                                     if (timeout > 0) {
                                         startNanos = System.nanoTime();
-                                        writeLock.wait(timeout);
+                                        writeLockCondition.await(timeout, TimeUnit.MILLISECONDS);
                                     } else {
-                                        writeLock.wait();
+                                        writeLockCondition.await();
                                     }
                                 } catch (InterruptedException e) {
                                     // Continue
                                 }
                                 writeBlocking = false;
                             }
+                        } finally {
+                            writeLock.unlock();
                         }
                     } else if (startNanos > 0) {
                         // If something was written, reset timeout
@@ -1692,8 +2012,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
              * in turn can result in unintentionally closing currently active
              * connections.
              */
-            Poller poller = NioEndpoint.this.poller;
-            if (poller == null) {
+            if (NioEndpoint.this.pollers == null) {
                 socketWrapper.close();
                 return;
             }
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.threads;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.tomcat.util.compat.JreCompat;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * An executor that uses a new virtual thread for each task. There is no pool
+ * and therefore no limit on the number of concurrent tasks other than any
+ * limits imposed by the caller (e.g. maxConnections for an endpoint).
+ * <p>
+ * Virtual threads require Java 21 or later (or Java 19/20 with preview features
+ * enabled). Attempting to create an instance of this class on an earlier JRE
+ * will trigger an {@link UnsupportedOperationException}.
+ */
+public class VirtualThreadExecutor extends AbstractExecutorService {
+
+    private static final StringManager sm = StringManager.getManager(VirtualThreadExecutor.class);
+
+    private final JreCompat jreCompat = JreCompat.getInstance();
+
+    private final Object threadBuilder;
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    private final Lock terminationLock = new ReentrantLock();
+    private final Condition terminationCondition = terminationLock.newCondition();
+
+    private volatile boolean shutdown = false;
+
+
+    public VirtualThreadExecutor(String namePrefix) {
+        threadBuilder = jreCompat.createVirtualThreadBuilder(namePrefix);
+    }
+
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException(
+                    sm.getString("virtualThreadExecutor.taskRejected", command.toString(), this.toString()));
+        }
+        activeCount.incrementAndGet();
+        try {
+            jreCompat.threadBuilderStart(threadBuilder, new TaskWrapper(command));
+        } catch (RuntimeException | Error e) {
+            taskComplete();
+            throw e;
+        }
+    }
+
+
+    /**
+     * @return the number of tasks that are currently being executed.
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        signalIfTerminated();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Tasks are never queued by this executor so this is equivalent to
+     * {@link #shutdown()}. Running tasks are not interrupted.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        return Collections.emptyList();
+    }
+
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && activeCount.get() == 0;
+    }
+
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        terminationLock.lock();
+        try {
+            while (!isTerminated()) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = terminationCondition.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            terminationLock.unlock();
+        }
+    }
+
+
+    private void taskComplete() {
+        if (activeCount.decrementAndGet() == 0) {
+            signalIfTerminated();
+        }
+    }
+
+
+    private void signalIfTerminated() {
+        if (isTerminated()) {
+            terminationLock.lock();
+            try {
+                terminationCondition.signalAll();
+            } finally {
+                terminationLock.unlock();
+            }
+        }
+    }
+
+
+    private class TaskWrapper implements Runnable {
+
+        private final Runnable task;
+
+        TaskWrapper(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                taskComplete();
+            }
+        }
+    }
+}
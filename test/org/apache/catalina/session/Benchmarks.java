@@ -358,4 +358,73 @@ public class Benchmarks {
             }
         }
     }
+
+
+    /*
+     * Heap used by sessions with a typical number of attributes and notes.
+     *
+     * Results in bytes per session on a 64-bit JVM with compressed oops
+     *  Attributes  StandardSession  CompactSession
+     *       0            ~370            ~250
+     *       2            ~480            ~280
+     *      20           ~1130           ~1100
+     */
+    @Test
+    public void testSessionHeapFootprint() throws Exception {
+        doTestSessionHeapFootprint(false, 0);
+        doTestSessionHeapFootprint(true, 0);
+        doTestSessionHeapFootprint(false, 2);
+        doTestSessionHeapFootprint(true, 2);
+        doTestSessionHeapFootprint(false, 20);
+        doTestSessionHeapFootprint(true, 20);
+    }
+
+
+    private void doTestSessionHeapFootprint(boolean compact, int attributeCount) throws Exception {
+        int sessionCount = 100000;
+
+        StandardManager mgr = new StandardManager();
+        mgr.setContext(new StandardContext());
+        mgr.setCompactSessions(compact);
+        // Created before the measurement starts
+        String[] names = new String[attributeCount];
+        for (int j = 0; j < attributeCount; j++) {
+            names[j] = "attribute" + j;
+        }
+        StandardSession[] sessions = new StandardSession[sessionCount];
+
+        long before = usedHeap();
+        for (int i = 0; i < sessionCount; i++) {
+            StandardSession session = mgr.getNewSession();
+            session.setValid(true);
+            for (int j = 0; j < attributeCount; j++) {
+                session.setAttribute(names[j], Boolean.TRUE);
+            }
+            session.setNote(org.apache.catalina.authenticator.Constants.SESSION_ID_NOTE, names);
+            sessions[i] = session;
+        }
+        long after = usedHeap();
+
+        StringBuilder result = new StringBuilder();
+        result.append(compact ? "CompactSession" : "StandardSession");
+        result.append(", Attributes: ");
+        result.append(attributeCount);
+        result.append(", Bytes per session: ");
+        result.append((after - before) / sessionCount);
+        System.out.println(result.toString());
+
+        // Ensure the sessions are not collected before the measurement
+        Assert.assertEquals(sessionCount, sessions.length);
+        Assert.assertNotNull(sessions[sessionCount - 1]);
+    }
+
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
 }
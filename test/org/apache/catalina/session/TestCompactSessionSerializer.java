@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.WriteAbortedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Manager;
+import org.apache.catalina.SessionSerializer;
+import org.apache.catalina.core.StandardContext;
+
+public class TestCompactSessionSerializer {
+
+    private static final Manager TEST_MANAGER;
+
+    static {
+        TEST_MANAGER = new StandardManager();
+        TEST_MANAGER.setContext(new StandardContext());
+    }
+
+    private final SessionSerializer serializer = new CompactSessionSerializer();
+
+
+    @Test
+    public void testNativeTypes() throws Exception {
+        StringBuilder longString = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            longString.append((char) i);
+        }
+        byte[] largeBytes = new byte[20000];
+        for (int i = 0; i < largeBytes.length; i++) {
+            largeBytes[i] = (byte) i;
+        }
+
+        Object[] values = new Object[] {
+                null, "", "ascii", "caf\u00e9 \u20ac \ud83d\ude00 \ud800", longString.toString(),
+                Integer.valueOf(0), Integer.valueOf(-1), Integer.valueOf(Integer.MIN_VALUE),
+                Integer.valueOf(Integer.MAX_VALUE), Long.valueOf(Long.MIN_VALUE),
+                Long.valueOf(Long.MAX_VALUE), Long.valueOf(300), Boolean.TRUE, Boolean.FALSE,
+                Short.valueOf((short) -2), Byte.valueOf((byte) 0x80), Character.valueOf('\uffff'),
+                Float.valueOf(1.5f), Double.valueOf(Double.NaN), new Date(1234567890123L),
+                new byte[0], largeBytes };
+
+        List<Object> result = roundTrip(values);
+
+        Assert.assertEquals(values.length, result.size());
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] instanceof byte[]) {
+                Assert.assertArrayEquals((byte[]) values[i], (byte[]) result.get(i));
+            } else {
+                Assert.assertEquals(values[i], result.get(i));
+            }
+        }
+    }
+
+
+    @Test
+    public void testSerializableFallback() throws Exception {
+        Map<String,Integer> map = new HashMap<>();
+        map.put("a", Integer.valueOf(1));
+        TesterBean bean = new TesterBean();
+        bean.name = "bean";
+        bean.values = Arrays.asList("x", "y");
+
+        List<Object> result = roundTrip(map, bean, Integer.valueOf(42));
+
+        Assert.assertEquals(map, result.get(0));
+        Assert.assertEquals(bean, result.get(1));
+        Assert.assertEquals(Integer.valueOf(42), result.get(2));
+    }
+
+
+    @Test
+    public void testNotSerializable() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = serializer.getObjectOutputStream(baos)) {
+            oos.writeObject("before");
+            try {
+                oos.writeObject(new ArrayList<>(Arrays.asList(new Object())));
+                Assert.fail();
+            } catch (NotSerializableException expected) {
+                // Expected
+            }
+            oos.writeObject("after");
+        }
+
+        try (ObjectInputStream ois = serializer.getObjectInputStream(
+                new ByteArrayInputStream(baos.toByteArray()), ObjectInputStream::new)) {
+            Assert.assertEquals("before", ois.readObject());
+            try {
+                ois.readObject();
+                Assert.fail();
+            } catch (WriteAbortedException expected) {
+                Assert.assertTrue(expected.getCause() instanceof NotSerializableException);
+            }
+            Assert.assertEquals("after", ois.readObject());
+        }
+    }
+
+
+    @Test
+    public void testPrimitives() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = serializer.getObjectOutputStream(baos)) {
+            oos.writeBoolean(true);
+            oos.writeByte(-3);
+            oos.writeShort(-300);
+            oos.writeChar('\u1234');
+            oos.writeInt(-70000);
+            oos.writeLong(Long.MIN_VALUE + 1);
+            oos.writeFloat(2.25f);
+            oos.writeDouble(-0.5);
+            oos.writeUTF("utf \u00e9");
+        }
+
+        try (ObjectInputStream ois = serializer.getObjectInputStream(
+                new ByteArrayInputStream(baos.toByteArray()), ObjectInputStream::new)) {
+            Assert.assertTrue(ois.readBoolean());
+            Assert.assertEquals(-3, ois.readByte());
+            Assert.assertEquals(-300, ois.readShort());
+            Assert.assertEquals('\u1234', ois.readChar());
+            Assert.assertEquals(-70000, ois.readInt());
+            Assert.assertEquals(Long.MIN_VALUE + 1, ois.readLong());
+            Assert.assertEquals(2.25f, ois.readFloat(), 0);
+            Assert.assertEquals(-0.5, ois.readDouble(), 0);
+            Assert.assertEquals("utf \u00e9", ois.readUTF());
+        }
+    }
+
+
+    @Test
+    public void testReadJavaSerialization() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new JavaSessionSerializer().getObjectOutputStream(baos)) {
+            oos.writeObject("value");
+            oos.writeInt(1);
+        }
+
+        try (ObjectInputStream ois = serializer.getObjectInputStream(
+                new ByteArrayInputStream(baos.toByteArray()), ObjectInputStream::new)) {
+            Assert.assertFalse(ois instanceof CompactObjectInputStream);
+            Assert.assertEquals("value", ois.readObject());
+            Assert.assertEquals(1, ois.readInt());
+        }
+    }
+
+
+    @Test
+    public void testSmallerThanJavaSerialization() throws Exception {
+        StandardSession session = createSession();
+
+        int compact = serialize(session, serializer).length;
+        int java = serialize(session, new JavaSessionSerializer()).length;
+
+        Assert.assertTrue("compact [" + compact + "] java [" + java + "]", compact < java);
+    }
+
+
+    @Test
+    public void testSession() throws Exception {
+        StandardSession s1 = createSession();
+        s1.setAttribute("nonSerializable", new Object());
+
+        byte[] data = serialize(s1, serializer);
+
+        StandardSession s2 = new StandardSession(TEST_MANAGER);
+        try (ObjectInputStream ois = serializer.getObjectInputStream(
+                new ByteArrayInputStream(data), ObjectInputStream::new)) {
+            s2.readObjectData(ois);
+        }
+
+        Assert.assertEquals(s1.getIdInternal(), s2.getIdInternal());
+        Assert.assertEquals(s1.getCreationTimeInternal(), s2.getCreationTimeInternal());
+        Assert.assertEquals(s1.getMaxInactiveInterval(), s2.getMaxInactiveInterval());
+        Assert.assertEquals("value", s2.getAttribute("string"));
+        Assert.assertEquals(Integer.valueOf(7), s2.getAttribute("integer"));
+        Assert.assertEquals(s1.getAttribute("bean"), s2.getAttribute("bean"));
+        Assert.assertNull(s2.getAttribute("nonSerializable"));
+    }
+
+
+    private StandardSession createSession() {
+        StandardSession session = new StandardSession(TEST_MANAGER);
+        session.setValid(true);
+        session.setId("0123456789ABCDEF0123456789ABCDEF", false);
+        session.setAttribute("string", "value");
+        session.setAttribute("integer", Integer.valueOf(7));
+        session.setAttribute("long", Long.valueOf(System.currentTimeMillis()));
+        session.setAttribute("flag", Boolean.TRUE);
+        TesterBean bean = new TesterBean();
+        bean.name = "bean";
+        bean.values = Arrays.asList("a", "b", "c");
+        session.setAttribute("bean", bean);
+        return session;
+    }
+
+
+    private static byte[] serialize(StandardSession session, SessionSerializer serializer)
+            throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = serializer.getObjectOutputStream(baos)) {
+            session.writeObjectData(oos);
+        }
+        return baos.toByteArray();
+    }
+
+
+    private List<Object> roundTrip(Object... values) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = serializer.getObjectOutputStream(baos)) {
+            for (Object value : values) {
+                oos.writeObject(value);
+            }
+        }
+
+        List<Object> result = new ArrayList<>();
+        try (ObjectInputStream ois = serializer.getObjectInputStream(
+                new ByteArrayInputStream(baos.toByteArray()), ObjectInputStream::new)) {
+            for (int i = 0; i < values.length; i++) {
+                result.add(ois.readObject());
+            }
+            Assert.assertEquals(-1, ois.read());
+        }
+        return result;
+    }
+
+
+    private static class TesterBean implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String name;
+        private List<String> values;
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TesterBean)) {
+                return false;
+            }
+            TesterBean other = (TesterBean) obj;
+            return name.equals(other.name) && values.equals(other.values);
+        }
+    }
+}
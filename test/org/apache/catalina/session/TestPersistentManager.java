@@ -16,6 +16,7 @@
  */
 package org.apache.catalina.session;
 
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -71,6 +72,113 @@ public class TestPersistentManager {
         Assert.assertEquals(3, manager.getActiveSessionsFull());
     }
 
+    @Test
+    public void testWriteBehindMinIdleSwap() throws Exception {
+        PersistentManager manager = new PersistentManager();
+        manager.setStore(new TesterStore());
+        manager.setWriteBehind(true);
+
+        Host host = new TesterHost();
+        Context context = new TesterContext();
+        context.setParent(host);
+
+        manager.setContext(context);
+
+        manager.setMaxActiveSessions(2);
+        manager.setMinIdleSwap(0);
+
+        manager.start();
+
+        // Create the maximum number of sessions
+        manager.createSession(null);
+        manager.createSession(null);
+
+        // No Service so the queued swap is performed immediately
+        manager.processPersistenceChecks();
+        Assert.assertEquals(1, manager.getActiveSessions());
+        Assert.assertEquals(2, manager.getActiveSessionsFull());
+        Assert.assertEquals(0, manager.getWriteBehindQueueSize());
+    }
+
+    @Test
+    public void testWriteBehindBackup() throws Exception {
+        PersistentManager manager = new PersistentManager();
+        TesterStore store = new TesterStore();
+        manager.setStore(store);
+        manager.setWriteBehind(true);
+        manager.setWriteBehindBatchSize(2);
+        manager.setMaxIdleBackup(0);
+
+        Host host = new TesterHost();
+        Context context = new TesterContext();
+        context.setParent(host);
+
+        manager.setContext(context);
+
+        manager.start();
+
+        Session s1 = manager.createSession(null);
+        Session s2 = manager.createSession(null);
+        Session s3 = manager.createSession(null);
+
+        // Queue the back ups without performing them
+        manager.processMaxIdleBackups();
+        Assert.assertEquals(3, manager.getWriteBehindQueueSize());
+        Assert.assertEquals(0, store.getSavedIds().size());
+
+        // The removal replaces the queued back up
+        String id = s1.getIdInternal();
+        s1.expire();
+        Assert.assertEquals(3, manager.getWriteBehindQueueSize());
+        Assert.assertEquals(1, manager.getWriteBehindCoalesced());
+        Assert.assertNull(manager.findSession(id));
+
+        manager.processStoreOperations();
+        Assert.assertEquals(0, manager.getWriteBehindQueueSize());
+        Assert.assertEquals(2, store.getSavedIds().size());
+        Assert.assertFalse(store.getSavedIds().contains(id));
+        Assert.assertTrue(store.getSavedIds().contains(s2.getIdInternal()));
+        Assert.assertTrue(store.getSavedIds().contains(s3.getIdInternal()));
+        // The queue order depends on the session IDs so the removal may be in
+        // either batch but no batch may exceed the configured size
+        Assert.assertTrue(store.getSaveAllCount() >= 1);
+        for (Integer size : store.getSaveAllSizes()) {
+            Assert.assertTrue(size.intValue() <= 2);
+        }
+        Assert.assertTrue(manager.getWriteBehindMaxLag() >= 0);
+    }
+
+    @Test
+    public void testWriteBehindBackupBatches() throws Exception {
+        PersistentManager manager = new PersistentManager();
+        TesterStore store = new TesterStore();
+        manager.setStore(store);
+        manager.setWriteBehind(true);
+        manager.setWriteBehindBatchSize(2);
+        manager.setMaxIdleBackup(0);
+
+        Host host = new TesterHost();
+        Context context = new TesterContext();
+        context.setParent(host);
+
+        manager.setContext(context);
+
+        manager.start();
+
+        manager.createSession(null);
+        manager.createSession(null);
+        manager.createSession(null);
+
+        manager.processMaxIdleBackups();
+        Assert.assertEquals(3, manager.getWriteBehindQueueSize());
+
+        manager.processStoreOperations();
+        Assert.assertEquals(0, manager.getWriteBehindQueueSize());
+        Assert.assertEquals(3, store.getSavedIds().size());
+        // Three back ups in batches of no more than 2
+        Assert.assertEquals(Arrays.asList(Integer.valueOf(2), Integer.valueOf(1)), store.getSaveAllSizes());
+    }
+
     @Test
     public void testBug62175() throws Exception {
         PersistentManager manager = new PersistentManager();
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.Session;
+import org.apache.tomcat.unittest.TesterContext;
+import org.apache.tomcat.unittest.TesterServletContext;
+import org.apache.tomcat.util.http.fileupload.FileUtils;
+
+public class TestSegmentedFileStore {
+
+    private static final File dir = new File("SEGMENTED_SESS_TEMP");
+
+    private StandardManager manager;
+
+
+    @Before
+    public void setup() throws IOException {
+        if (dir.exists()) {
+            FileUtils.deleteDirectory(dir);
+        }
+        TesterContext testerContext = new TesterContext();
+        testerContext.setServletContext(new TesterServletContext());
+        manager = new StandardManager();
+        manager.setContext(testerContext);
+    }
+
+
+    @After
+    public void cleanup() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+
+    @Test
+    public void testSaveLoadRemove() throws Exception {
+        SegmentedFileStore store = createStore();
+
+        store.save(createSession("s1", "value1"));
+        store.save(createSession("s2", "value2"));
+        Assert.assertEquals(2, store.getSize());
+
+        Session loaded = store.load("s1");
+        Assert.assertEquals("s1", loaded.getIdInternal());
+        Assert.assertEquals("value1", ((StandardSession) loaded).getAttribute("attr"));
+
+        // A later save replaces the earlier copy
+        store.save(createSession("s1", "value3"));
+        Assert.assertEquals(2, store.getSize());
+        loaded = store.load("s1");
+        Assert.assertEquals("value3", ((StandardSession) loaded).getAttribute("attr"));
+
+        store.remove("s1");
+        Assert.assertEquals(1, store.getSize());
+        Assert.assertNull(store.load("s1"));
+        Assert.assertArrayEquals(new String[] { "s2" }, store.keys());
+
+        store.clear();
+        Assert.assertEquals(0, store.getSize());
+        Assert.assertNull(store.load("s2"));
+
+        store.stop();
+    }
+
+
+    @Test
+    public void testRestart() throws Exception {
+        SegmentedFileStore store = createStore();
+        store.saveAll(new Session[] {
+                createSession("s1", "value1"), createSession("s2", "value2"), createSession("s3", "value3") });
+        store.remove("s2");
+        store.save(createSession("s3", "value4"));
+        store.stop();
+
+        store = createStore();
+        String[] keys = store.keys();
+        Arrays.sort(keys);
+        Assert.assertArrayEquals(new String[] { "s1", "s3" }, keys);
+        Assert.assertEquals("value1", ((StandardSession) store.load("s1")).getAttribute("attr"));
+        Assert.assertEquals("value4", ((StandardSession) store.load("s3")).getAttribute("attr"));
+        store.stop();
+    }
+
+
+    @Test
+    public void testRecoverIncompleteSegment() throws Exception {
+        SegmentedFileStore store = createStore();
+        store.save(createSession("s1", "value1"));
+        store.save(createSession("s2", "value2"));
+
+        File[] files = dir.listFiles();
+        Assert.assertEquals(1, files.length);
+        long length = files[0].length();
+        // Stopping seals the segment and closes it
+        store.stop();
+
+        // Simulate a failure part way through writing the last record. This
+        // also removes the footer written when the segment was sealed.
+        try (RandomAccessFile raf = new RandomAccessFile(files[0], "rw")) {
+            raf.setLength(length - 10);
+        }
+
+        SegmentedFileStore recovered = createStore();
+        Assert.assertArrayEquals(new String[] { "s1" }, recovered.keys());
+        Assert.assertEquals("value1", ((StandardSession) recovered.load("s1")).getAttribute("attr"));
+
+        // The recovered segment is usable after a further restart
+        recovered.save(createSession("s3", "value3"));
+        recovered.stop();
+        recovered = createStore();
+        String[] keys = recovered.keys();
+        Arrays.sort(keys);
+        Assert.assertArrayEquals(new String[] { "s1", "s3" }, keys);
+        recovered.stop();
+    }
+
+
+    @Test
+    public void testCompaction() throws Exception {
+        SegmentedFileStore store = createStore();
+        // Start a new segment after every write
+        store.setMaxSegmentSize(1);
+        for (int i = 0; i < 5; i++) {
+            store.save(createSession("s1", "value" + i));
+        }
+        store.save(createSession("s2", "other"));
+        store.remove("s2");
+        Assert.assertEquals(8, store.getSegmentCount());
+
+        store.compact();
+
+        // The segment holding the live copy of s1, the segment holding the
+        // carried forward removal of s2 and the active segment
+        Assert.assertEquals(3, store.getSegmentCount());
+        Assert.assertArrayEquals(new String[] { "s1" }, store.keys());
+        Assert.assertEquals("value4", ((StandardSession) store.load("s1")).getAttribute("attr"));
+        store.stop();
+
+        store = createStore();
+        Assert.assertArrayEquals(new String[] { "s1" }, store.keys());
+        Assert.assertEquals("value4", ((StandardSession) store.load("s1")).getAttribute("attr"));
+        store.stop();
+    }
+
+
+    @Test
+    public void testExpiredKeys() throws Exception {
+        SegmentedFileStore store = createStore();
+        StandardSession expired = createSession("s1", "value1");
+        expired.setCreationTime(System.currentTimeMillis() - 10000);
+        expired.setMaxInactiveInterval(5);
+        store.save(expired);
+        store.save(createSession("s2", "value2"));
+
+        Assert.assertArrayEquals(new String[] { "s1" }, store.expiredKeys());
+        store.stop();
+    }
+
+
+    private SegmentedFileStore createStore() throws Exception {
+        SegmentedFileStore store = new SegmentedFileStore();
+        store.setDirectory(dir.getAbsolutePath());
+        store.setManager(manager);
+        store.start();
+        return store;
+    }
+
+
+    private StandardSession createSession(String id, String value) {
+        StandardSession session = new StandardSession(manager);
+        session.setValid(true);
+        session.setCreationTime(System.currentTimeMillis());
+        session.setMaxInactiveInterval(1800);
+        session.setId(id, false);
+        session.setAttribute("attr", value);
+        return session;
+    }
+}
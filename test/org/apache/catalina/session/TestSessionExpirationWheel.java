@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Host;
+import org.apache.catalina.Session;
+import org.apache.tomcat.unittest.TesterContext;
+import org.apache.tomcat.unittest.TesterHost;
+
+public class TestSessionExpirationWheel {
+
+    private static final long START = 1_000_000_000L;
+
+    @Test
+    public void testExpire() {
+        SessionExpirationWheel wheel = new SessionExpirationWheel(1000, 8, START);
+        StandardSession s1 = createSession();
+        StandardSession s2 = createSession();
+        StandardSession s3 = createSession();
+
+        wheel.schedule(s1, START + 2500);
+        wheel.schedule(s2, START + 5000);
+        // More than one rotation in the future
+        wheel.schedule(s3, START + 20000);
+
+        Assert.assertTrue(wheel.expire(START + 1000).isEmpty());
+        assertExpired(wheel.expire(START + 3000), s1);
+        assertExpired(wheel.expire(START + 10000), s2);
+        Assert.assertTrue(wheel.expire(START + 19000).isEmpty());
+        assertExpired(wheel.expire(START + 21000), s3);
+        Assert.assertTrue(wheel.expire(START + 60000).isEmpty());
+    }
+
+
+    @Test
+    public void testRescheduleAndRemove() {
+        SessionExpirationWheel wheel = new SessionExpirationWheel(1000, 8, START);
+        StandardSession s1 = createSession();
+        StandardSession s2 = createSession();
+
+        wheel.schedule(s1, START + 6000);
+        wheel.schedule(s1, START + 2000);
+        wheel.schedule(s2, START + 3000);
+        wheel.remove(s2);
+
+        assertExpired(wheel.expire(START + 4000), s1);
+        Assert.assertTrue(wheel.expire(START + 10000).isEmpty());
+    }
+
+
+    @Test
+    public void testScheduleInPast() {
+        SessionExpirationWheel wheel = new SessionExpirationWheel(1000, 8, START);
+        StandardSession s1 = createSession();
+
+        wheel.expire(START + 5000);
+        // Already due so expires on the next tick
+        wheel.schedule(s1, START + 1000);
+        Assert.assertTrue(wheel.expire(START + 5500).isEmpty());
+        assertExpired(wheel.expire(START + 6000), s1);
+    }
+
+
+    @Test
+    public void testManagerIndexedExpiration() throws Exception {
+        PersistentManager manager = new PersistentManager();
+        manager.setStore(new TesterStore());
+        manager.setIndexedExpiration(true);
+
+        Host host = new TesterHost();
+        Context context = new TesterContext();
+        context.setParent(host);
+        manager.setContext(context);
+        manager.start();
+
+        Session expired = manager.createSession(null);
+        Session accessed = manager.createSession(null);
+        Session notDue = manager.createSession(null);
+        expired.setCreationTime(System.currentTimeMillis() - 5000);
+        expired.setMaxInactiveInterval(1);
+        accessed.setMaxInactiveInterval(1);
+        accessed.access();
+
+        // Both short lived sessions are due but only one has expired
+        Assert.assertEquals(1, manager.expireSessions(System.currentTimeMillis() + 2000));
+        Assert.assertNull(manager.findSession(expired.getIdInternal()));
+        Assert.assertSame(accessed, manager.findSession(accessed.getIdInternal()));
+        Assert.assertSame(notDue, manager.findSession(notDue.getIdInternal()));
+
+        // The session that is still valid is scheduled again
+        Assert.assertNotEquals(SessionExpirationWheel.NOT_SCHEDULED, ((StandardSession) accessed).expirationTick);
+
+        manager.stop();
+    }
+
+
+    private static void assertExpired(List<StandardSession> result, StandardSession expected) {
+        Assert.assertEquals(1, result.size());
+        Assert.assertSame(expected, result.get(0));
+        Assert.assertEquals(SessionExpirationWheel.NOT_SCHEDULED, expected.expirationTick);
+    }
+
+
+    private static StandardSession createSession() {
+        return new StandardSession(null);
+    }
+}
@@ -118,13 +118,37 @@ public class TestStandardSession {
     }
 
 
+    @Test
+    public void testSerializationCompact() throws Exception {
+
+        StandardSession s1 = new CompactSession(TEST_MANAGER);
+        s1.setValid(true);
+        // Enough attributes for the attribute map to switch to a hash table
+        for (int i = 0; i < 20; i++) {
+            s1.setAttribute("attr" + i, "value" + i);
+        }
+        s1.setAttribute("attr2", new NonSerializable());
+        s1.removeAttribute("attr3");
+
+        StandardSession s2 = serializeThenDeserialize(s1, new CompactSession(TEST_MANAGER));
+
+        Assert.assertNull(s2.getAttribute("attr2"));
+        validateSame(s2, s1, 18);
+    }
+
+
     private StandardSession serializeThenDeserialize(StandardSession source)
             throws IOException, ClassNotFoundException {
+        return serializeThenDeserialize(source, new StandardSession(TEST_MANAGER));
+    }
+
+
+    private StandardSession serializeThenDeserialize(StandardSession source, StandardSession dest)
+            throws IOException, ClassNotFoundException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         ObjectOutputStream oos = new ObjectOutputStream(baos);
         source.writeObjectData(oos);
 
-        StandardSession dest = new StandardSession(TEST_MANAGER);
         ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
         ObjectInputStream ois = new ObjectInputStream(bais);
         dest.readObjectData(ois);
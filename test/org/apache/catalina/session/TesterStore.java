@@ -32,11 +32,20 @@ class TesterStore implements Store {
     private Manager manager;
     private Map<String, Session> sessions = new HashMap<>();
     private List<String> savedIds = new ArrayList<>();
+    private List<Integer> saveAllSizes = new ArrayList<>();
 
     List<String> getSavedIds() {
         return savedIds;
     }
 
+    int getSaveAllCount() {
+        return saveAllSizes.size();
+    }
+
+    List<Integer> getSaveAllSizes() {
+        return saveAllSizes;
+    }
+
     @Override
     public Manager getManager() {
         return this.manager;
@@ -86,5 +95,11 @@ class TesterStore implements Store {
         savedIds.add(session.getId());
     }
 
+    @Override
+    public void saveAll(Session[] sessions) throws IOException {
+        saveAllSizes.add(Integer.valueOf(sessions.length));
+        Store.super.saveAll(sessions);
+    }
+
 }
 
@@ -88,6 +88,21 @@ public class TestAccessLogValve {
         Assert.assertArrayEquals(expected, dfc.cLFCache.cache);
     }
 
+    @Test
+    public void testAsyncOverflowPolicy() {
+        AccessLogValve valve = new AccessLogValve();
+        Assert.assertEquals("block", valve.getAsyncOverflowPolicy());
+        valve.setAsyncOverflowPolicy("DROP");
+        Assert.assertEquals("drop", valve.getAsyncOverflowPolicy());
+        valve.setAsyncOverflowPolicy(" count ");
+        Assert.assertEquals("count", valve.getAsyncOverflowPolicy());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAsyncOverflowPolicyInvalid() {
+        new AccessLogValve().setAsyncOverflowPolicy("discard");
+    }
+
     private String generateExpected(SimpleDateFormat sdf, long secs) {
         return sdf.format(new Date(secs * 1000));
     }
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.valves;
+
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.buf.ByteChunk;
+
+public class TestAccessLogValveIntegration extends TomcatBaseTest {
+
+    @Test
+    public void testAsyncWrite() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+        Tomcat.addServlet(ctx, "hello", new HelloWorldServlet());
+        ctx.addServletMappingDecoded("/", "hello");
+
+        File logDir = new File(getTemporaryDirectory(), "async-access-log");
+        addDeleteOnTearDown(logDir);
+
+        AccessLogValve valve = new AccessLogValve();
+        valve.setDirectory(logDir.getAbsolutePath());
+        valve.setRotatable(false);
+        valve.setPattern("%r %s");
+        valve.setAsyncWrite(true);
+        // Small enough for the writer to fall behind
+        valve.setAsyncQueueSize(4);
+        ctx.getPipeline().addValve(valve);
+
+        tomcat.start();
+
+        final int requestCount = 100;
+        for (int i = 0; i < requestCount; i++) {
+            getUrl("http://localhost:" + getPort() + "/?i=" + i);
+        }
+
+        // Stopping the valve writes any queued entries
+        tomcat.stop();
+
+        List<String> lines = Files.readAllLines(
+                new File(logDir, "access_log").toPath(), StandardCharsets.ISO_8859_1);
+        Assert.assertEquals(requestCount, lines.size());
+        Set<String> entries = new HashSet<>(lines);
+        for (int i = 0; i < requestCount; i++) {
+            Assert.assertTrue(entries.contains("GET /?i=" + i + " HTTP/1.1 200"));
+        }
+        Assert.assertEquals(0, valve.getAsyncDroppedCount());
+        Assert.assertEquals(0, valve.getAsyncQueueDepth());
+    }
+
+    @Test
+    public void testPatternElements() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+        Tomcat.addServlet(ctx, "headers", new ResponseHeaderServlet());
+        ctx.addServletMappingDecoded("/", "headers");
+
+        CapturingAccessLogValve valve = new CapturingAccessLogValve();
+        valve.setPattern("%m %U%q %r %H %s %b [%{X-In}i] [%{X-Out}o] [%{c1}c] [%{X-None}i] " +
+                "%{begin:msec}t %{begin:msec_frac}t %{begin:SSS|S}t");
+        ctx.getPipeline().addValve(valve);
+
+        tomcat.start();
+
+        Map<String, List<String>> reqHead = new HashMap<>();
+        reqHead.put("X-In", Collections.singletonList("a\"b\\c"));
+        reqHead.put("Cookie", Collections.singletonList("c1=v1; c2=v2; c1=v3"));
+        int rc = getUrl("http://localhost:" + getPort() + "/path?q=1", new ByteChunk(), reqHead, null);
+        Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+
+        // The entry is logged after the response has been sent
+        String entry = valve.messages.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(entry);
+
+        String[] parts = entry.split(" ");
+        Assert.assertEquals(15, parts.length);
+        String expected = "GET /path?q=1 GET /path?q=1 HTTP/1.1 HTTP/1.1 200 2 " +
+                "[a\\\"b\\\\c] [x,y] [v1,v3] [-] ";
+        Assert.assertTrue(entry, entry.startsWith(expected));
+
+        long msec = Long.parseLong(parts[12]);
+        long frac = msec % 1000;
+        Assert.assertEquals(String.format("%03d", Long.valueOf(frac)), parts[13]);
+        Assert.assertEquals(String.format("%03d|%d", Long.valueOf(frac), Long.valueOf(frac)), parts[14]);
+    }
+
+    private static class ResponseHeaderServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            // Duplicate values are only logged once
+            resp.addHeader("X-Out", "x");
+            resp.addHeader("X-Out", "y");
+            resp.addHeader("X-Out", "x");
+            resp.getWriter().print("OK");
+        }
+    }
+
+    private static class CapturingAccessLogValve extends AbstractAccessLogValve {
+
+        private final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+
+        @Override
+        protected void log(CharArrayWriter message) {
+            messages.add(message.toString());
+        }
+    }
+}
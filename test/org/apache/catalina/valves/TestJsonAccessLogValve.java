@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.valves;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.json.JSONParser;
+
+public class TestJsonAccessLogValve extends TomcatBaseTest {
+
+    @Test
+    public void testCommon() throws Exception {
+        Map<String, Object> entry = doTest("common");
+
+        Assert.assertEquals(Arrays.asList("host", "logicalUserName", "user", "time", "request",
+                "statusCode", "size"), Arrays.asList(entry.keySet().toArray()));
+        Assert.assertEquals("-", entry.get("logicalUserName"));
+        Assert.assertEquals("GET /test?a=1 HTTP/1.1", entry.get("request"));
+        Assert.assertEquals("200", entry.get("statusCode"));
+        Assert.assertEquals("2", entry.get("size"));
+    }
+
+
+    @Test
+    public void testSubObjects() throws Exception {
+        Map<String, Object> entry = doTest(
+                "%{X-In}i %s %{X-Out}o %{X-None}i %{c1}c %{remote}p %{X-In}i ???");
+
+        Assert.assertEquals(Arrays.asList("requestHeaders", "statusCode", "responseHeaders",
+                "cookies", "port-remote"), Arrays.asList(entry.keySet().toArray()));
+
+        Map<String, Object> requestHeaders = getObject(entry, "requestHeaders");
+        Assert.assertEquals(2, requestHeaders.size());
+        // The access log escaping, followed by the JSON escaping. The parser
+        // returns the JSON escaped value.
+        Assert.assertEquals("a\\\\\\\"b\\\\\\\\c", requestHeaders.get("X-In"));
+        Assert.assertEquals("-", requestHeaders.get("X-None"));
+
+        Map<String, Object> responseHeaders = getObject(entry, "responseHeaders");
+        Assert.assertEquals("x,y", responseHeaders.get("X-Out"));
+
+        Map<String, Object> cookies = getObject(entry, "cookies");
+        Assert.assertEquals("v1", cookies.get("c1"));
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getObject(Map<String, Object> entry, String name) {
+        return (Map<String, Object>) entry.get(name);
+    }
+
+
+    private Map<String, Object> doTest(String pattern) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+        Tomcat.addServlet(ctx, "test", new TestServlet());
+        ctx.addServletMappingDecoded("/", "test");
+
+        CapturingJsonAccessLogValve valve = new CapturingJsonAccessLogValve();
+        valve.setPattern(pattern);
+        ctx.getPipeline().addValve(valve);
+
+        tomcat.start();
+
+        Map<String, List<String>> reqHead = new HashMap<>();
+        reqHead.put("X-In", Collections.singletonList("a\"b\\c"));
+        reqHead.put("Cookie", Collections.singletonList("c1=v1"));
+        int rc = getUrl("http://localhost:" + getPort() + "/test?a=1", new ByteChunk(), reqHead, null);
+        Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+
+        // The entry is logged after the response has been sent
+        String line = valve.messages.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(line);
+
+        LinkedHashMap<String, Object> entry = new JSONParser(line).parseObject();
+        return entry;
+    }
+
+
+    private static class TestServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.addHeader("X-Out", "x");
+            resp.addHeader("X-Out", "y");
+            resp.getWriter().print("OK");
+        }
+    }
+
+
+    private static class CapturingJsonAccessLogValve extends JsonAccessLogValve {
+
+        private final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+
+        @Override
+        public void log(CharArrayWriter message) {
+            messages.add(message.toString());
+        }
+    }
+}
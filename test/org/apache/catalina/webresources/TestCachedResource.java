@@ -20,15 +20,21 @@ import java.io.File;
 import java.io.InputStream;
 import java.net.JarURLConnection;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import org.apache.catalina.Context;
+import org.apache.catalina.WebResource;
 import org.apache.catalina.WebResourceRoot;
 import org.apache.catalina.core.StandardHost;
+import org.apache.catalina.servlets.DefaultServlet;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.buf.ByteChunk;
 
 public class TestCachedResource extends TomcatBaseTest {
 
@@ -131,4 +137,70 @@ public class TestCachedResource extends TomcatBaseTest {
             Assert.assertNotNull(is);
         }
     }
+
+
+    @Test
+    public void testContentOffHeap() throws Exception {
+
+        Tomcat tomcat = getTomcatInstance();
+        File docBase = new File("test/webapp");
+        Context ctx = tomcat.addContext("/test", docBase.getAbsolutePath());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+        tomcat.start();
+
+        WebResourceRoot root = ctx.getResources();
+        root.setCacheContentOffHeap(true);
+        Assert.assertTrue(root.isCacheContentOffHeap());
+
+        byte[] expected = Files.readAllBytes(new File("test/webapp/index.html").toPath());
+
+        WebResource resource = root.getResource("/index.html");
+        Assert.assertTrue(resource instanceof CachedResource);
+
+        ByteBuffer content = ((CachedResource) resource).getContentBuffer();
+        Assert.assertNotNull(content);
+        Assert.assertTrue(content.isDirect());
+        Assert.assertEquals(expected.length, content.remaining());
+
+        Assert.assertArrayEquals(expected, resource.getContent());
+        try (InputStream is = resource.getInputStream()) {
+            byte[] buf = new byte[expected.length];
+            int read = 0;
+            int len;
+            while (read < buf.length && (len = is.read(buf, read, buf.length - read)) > 0) {
+                read += len;
+            }
+            Assert.assertEquals(-1, is.read());
+            Assert.assertArrayEquals(expected, buf);
+        }
+
+        // Served by the Default servlet directly from the buffer
+        ByteChunk body = getUrl("http://localhost:" + getPort() + "/test/index.html");
+        Assert.assertArrayEquals(expected, Arrays.copyOfRange(body.getBuffer(), body.getStart(), body.getEnd()));
+    }
+
+
+    @Test
+    public void testFrequentlyUsedResourceRetained() throws Exception {
+
+        Tomcat tomcat = getTomcatInstance();
+        File docBase = new File("test/webresources/dir1");
+        Context ctx = tomcat.addWebapp("/test", docBase.getAbsolutePath());
+        tomcat.start();
+
+        WebResourceRoot root = ctx.getResources();
+        // Room for roughly 100 entries
+        root.setCacheMaxSize(64);
+
+        WebResource frequent = root.getResource("/f1.txt");
+        for (int i = 0; i < 2000; i++) {
+            if (i % 10 == 0) {
+                Assert.assertSame(frequent, root.getResource("/f1.txt"));
+            }
+            // Resources that are only requested once
+            root.getResource("/missing-" + i);
+        }
+        Assert.assertSame(frequent, root.getResource("/f1.txt"));
+    }
 }
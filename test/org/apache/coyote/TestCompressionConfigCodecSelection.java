@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCompressionConfigCodecSelection {
+
+    @Test
+    public void testDefault() {
+        doTestSelection("gzip", "gzip, deflate, br", "gzip");
+    }
+
+
+    @Test
+    public void testNotAccepted() {
+        doTestSelection("gzip", "deflate, br", null);
+    }
+
+
+    @Test
+    public void testServerPreference() {
+        doTestSelection(TesterCompressionCodec.class.getName() + ",gzip", "gzip, x-tester", "x-tester");
+        doTestSelection("gzip," + TesterCompressionCodec.class.getName(), "gzip, x-tester", "gzip");
+    }
+
+
+    @Test
+    public void testClientPreference() {
+        doTestSelection(TesterCompressionCodec.class.getName() + ",gzip", "gzip, x-tester;q=0.5", "gzip");
+        doTestSelection("gzip," + TesterCompressionCodec.class.getName(), "gzip;q=0.1, x-tester;q=0.2", "x-tester");
+    }
+
+
+    @Test
+    public void testQualityZero() {
+        doTestSelection(TesterCompressionCodec.class.getName() + ",gzip", "gzip, x-tester;q=0", "gzip");
+    }
+
+
+    @Test
+    public void testInvalidCodec() {
+        doTestSelection("org.apache.coyote.NoSuchCodec,gzip", "gzip", "gzip");
+    }
+
+
+    @Test
+    public void testAlreadyEncoded() {
+        CompressionConfig compressionConfig = new CompressionConfig();
+        compressionConfig.setCompression("force");
+        compressionConfig.setCompressionCodecs(TesterCompressionCodec.class.getName());
+
+        Request request = new Request();
+        Response response = new Response();
+        request.getMimeHeaders().addValue("accept-encoding").setString("x-tester");
+        response.getMimeHeaders().addValue("Content-Encoding").setString("x-tester");
+
+        Assert.assertNull(compressionConfig.getCompressionCodec(request, response));
+    }
+
+
+    @Test
+    public void testCodecConfiguration() {
+        CompressionConfig compressionConfig = new CompressionConfig();
+        compressionConfig.setCompressionCodecs(TesterCompressionCodec.class.getName());
+        compressionConfig.setCompressionCodecLevel(3);
+        compressionConfig.setCompressionCodecWindowBits(20);
+
+        CompressionCodec[] codecs = compressionConfig.getCompressionCodecsInternal();
+        Assert.assertEquals(1, codecs.length);
+        Assert.assertEquals(3, ((TesterCompressionCodec) codecs[0]).level);
+        Assert.assertEquals(20, ((TesterCompressionCodec) codecs[0]).windowBits);
+    }
+
+
+    private void doTestSelection(String codecs, String acceptEncoding, String expected) {
+        CompressionConfig compressionConfig = new CompressionConfig();
+        // Skip length and MIME type checks
+        compressionConfig.setCompression("force");
+        compressionConfig.setCompressionCodecs(codecs);
+
+        Request request = new Request();
+        Response response = new Response();
+        request.getMimeHeaders().addValue("accept-encoding").setString(acceptEncoding);
+
+        CompressionCodec codec = compressionConfig.getCompressionCodec(request, response);
+        if (expected == null) {
+            Assert.assertNull(codec);
+            Assert.assertNull(response.getMimeHeaders().getHeader("Content-Encoding"));
+        } else {
+            Assert.assertNotNull(codec);
+            Assert.assertEquals(expected, codec.getEncoding());
+            Assert.assertEquals(expected, response.getMimeHeaders().getHeader("Content-Encoding"));
+        }
+    }
+
+
+    public static class TesterCompressionCodec implements CompressionCodec {
+
+        private int level;
+        private int windowBits;
+
+        @Override
+        public String getEncoding() {
+            return "x-tester";
+        }
+
+        @Override
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        @Override
+        public void setWindowBits(int windowBits) {
+            this.windowBits = windowBits;
+        }
+
+        @Override
+        public OutputStream createCompressionStream(OutputStream out) throws IOException {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                }
+            };
+        }
+    }
+}
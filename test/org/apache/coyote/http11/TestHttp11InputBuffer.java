@@ -219,6 +219,32 @@ public class TestHttp11InputBuffer extends TomcatBaseTest {
     }
 
 
+    @Test
+    public void testBug51557CtlInLongValue() throws Exception {
+        // Exercise the detection of invalid characters at every offset within
+        // the blocks of a value long enough to be processed in blocks
+        String value = "0123456789abcdef0123456789abcdef";
+        for (int i = 0; i < 24; i++) {
+            doTestBug51557InvalidValue(value.substring(0, i) + (char) 1 + value.substring(i));
+            tearDown();
+            setUp();
+        }
+        doTestBug51557InvalidValue(value.substring(0, 9) + (char) 127 + value.substring(9));
+    }
+
+
+    @Test
+    public void testBug51557LongValueTrailingWhitespace() {
+        String value = "0123456789abcdef 0123456789abcdef\u00e9";
+        Bug51557Client client = new Bug51557Client("X-Bug51557-Valid", value + "  \t    \t        ");
+
+        client.doRequest();
+        Assert.assertTrue(client.isResponse200());
+        Assert.assertEquals(value + "abcd", client.getResponseBody());
+        Assert.assertTrue(client.isResponseBodyOK());
+    }
+
+
     @Test
     public void testBug51557Continuation() {
 
@@ -280,6 +306,16 @@ public class TestHttp11InputBuffer extends TomcatBaseTest {
     }
 
 
+    private void doTestBug51557InvalidValue(String value) {
+        Bug51557Client client = new Bug51557Client("X-Bug51557-Invalid", value);
+
+        client.doRequest();
+        Assert.assertTrue("Testing [" + value + "]", client.isResponse200());
+        Assert.assertEquals("Testing [" + value + "]", "abcd", client.getResponseBody());
+        Assert.assertTrue(client.isResponseBodyOK());
+    }
+
+
     private void doTestBug51557ValidCharInValue(char s) {
         Bug51557Client client =
             new Bug51557Client("X-Bug51557-Valid", "valid" + s + "valid");
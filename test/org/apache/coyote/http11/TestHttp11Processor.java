@@ -36,6 +36,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import jakarta.servlet.AsyncContext;
 import jakarta.servlet.DispatcherType;
@@ -400,6 +401,156 @@ public class TestHttp11Processor extends TomcatBaseTest {
     }
 
 
+    @Test
+    public void testPipeliningDeferredFlush() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty("maxPipelinedFlushDelay", "5000"));
+
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+
+        Tomcat.addServlet(ctx, "TesterServlet", new TesterServlet());
+        ctx.addServletMappingDecoded("/foo", "TesterServlet");
+
+        tomcat.start();
+
+        String request =
+                "GET /foo HTTP/1.1" + SimpleHttpClient.CRLF +
+                "Host: any" + SimpleHttpClient.CRLF +
+                SimpleHttpClient.CRLF;
+
+        Client client = new Client(tomcat.getConnector().getLocalPort());
+        client.setRequest(new String[] {request + request + request});
+        client.setUseContentLength(true);
+        client.connect();
+        client.sendRequest();
+
+        for (int i = 0; i < 3; i++) {
+            client.readResponse(true);
+            Assert.assertFalse(client.isResponse50x());
+            Assert.assertTrue(client.isResponse200());
+            Assert.assertEquals("OK", client.getResponseBody());
+        }
+    }
+
+
+    @Test
+    public void testPipeliningDeferredFlushIncompleteRequest() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty("maxPipelinedFlushDelay", "5000"));
+
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+
+        Tomcat.addServlet(ctx, "TesterServlet", new TesterServlet());
+        ctx.addServletMappingDecoded("/foo", "TesterServlet");
+
+        tomcat.start();
+
+        String requestPart1 =
+                "GET /foo HTTP/1.1" + SimpleHttpClient.CRLF;
+        String requestPart2 =
+                "Host: any" + SimpleHttpClient.CRLF +
+                SimpleHttpClient.CRLF;
+
+        Client client = new Client(tomcat.getConnector().getLocalPort());
+        // Only send the first part of the second request
+        client.setRequest(new String[] {requestPart1 + requestPart2 + requestPart1});
+        client.setUseContentLength(true);
+        client.connect(10000, 10000);
+        client.sendRequest();
+
+        // The first response must be written even though the second request
+        // has started to arrive
+        client.readResponse(true);
+        Assert.assertFalse(client.isResponse50x());
+        Assert.assertTrue(client.isResponse200());
+        Assert.assertEquals("OK", client.getResponseBody());
+
+        client.setRequest(new String[] {requestPart2});
+        client.sendRequest();
+
+        client.readResponse(true);
+        Assert.assertFalse(client.isResponse50x());
+        Assert.assertTrue(client.isResponse200());
+        Assert.assertEquals("OK", client.getResponseBody());
+    }
+
+
+    @Test
+    public void testPipeliningDeferredFlushSlowRequest() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty("maxPipelinedFlushDelay", "5000"));
+
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+
+        Tomcat.addServlet(ctx, "TesterServlet", new TesterServlet());
+        ctx.addServletMappingDecoded("/foo", "TesterServlet");
+        CountDownLatch latch = new CountDownLatch(1);
+        Tomcat.addServlet(ctx, "LatchServlet", new LatchServlet(latch));
+        ctx.addServletMappingDecoded("/slow", "LatchServlet");
+
+        tomcat.start();
+
+        String request1 =
+                "GET /foo HTTP/1.1" + SimpleHttpClient.CRLF +
+                "Host: any" + SimpleHttpClient.CRLF +
+                SimpleHttpClient.CRLF;
+        String request2 =
+                "GET /slow HTTP/1.1" + SimpleHttpClient.CRLF +
+                "Host: any" + SimpleHttpClient.CRLF +
+                SimpleHttpClient.CRLF;
+
+        Client client = new Client(tomcat.getConnector().getLocalPort());
+        client.setRequest(new String[] {request1 + request2});
+        client.setUseContentLength(true);
+        client.connect(10000, 10000);
+        client.sendRequest();
+
+        // The first response must be written while the second request is
+        // still being processed
+        try {
+            client.readResponse(true);
+        } finally {
+            latch.countDown();
+        }
+        Assert.assertFalse(client.isResponse50x());
+        Assert.assertTrue(client.isResponse200());
+        Assert.assertEquals("OK", client.getResponseBody());
+
+        client.readResponse(true);
+        Assert.assertFalse(client.isResponse50x());
+        Assert.assertTrue(client.isResponse200());
+        Assert.assertEquals("OK", client.getResponseBody());
+    }
+
+
+    private static class LatchServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient CountDownLatch latch;
+
+        LatchServlet(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+                throws ServletException, IOException {
+            try {
+                // Longer than the client read timeout
+                latch.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new ServletException(e);
+            }
+            resp.setContentType("text/plain");
+            resp.getWriter().print("OK");
+        }
+    }
+
+
     @Test
     public void testChunking11NoContentLength() throws Exception {
         Tomcat tomcat = getTomcatInstance();
@@ -19,6 +19,10 @@ package org.apache.coyote.http11.filters;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
@@ -32,6 +36,9 @@ import org.apache.catalina.Context;
 import org.apache.catalina.startup.SimpleHttpClient;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.coyote.InputBuffer;
+import org.apache.coyote.Request;
+import org.apache.tomcat.util.net.ApplicationBufferHandler;
 
 public class TestChunkedInputFilter extends TomcatBaseTest {
 
@@ -428,6 +435,111 @@ public class TestChunkedInputFilter extends TomcatBaseTest {
         }
     }
 
+    @Test
+    public void testIncrementalParsing() throws Exception {
+        // Every chunk header, line terminator and trailer field is split
+        // across reads as would happen with non-blocking IO
+        String chunked = "3" + SimpleHttpClient.CRLF +
+                "a=0" + SimpleHttpClient.CRLF +
+                "4;ext=1" + SimpleHttpClient.CRLF +
+                "&b=1" + SimpleHttpClient.CRLF +
+                "0" + SimpleHttpClient.CRLF +
+                "X-Trailer1: Test" + SimpleHttpClient.CRLF +
+                " Value1 " + SimpleHttpClient.CRLF +
+                "x-trailer2: TestValue2" + LF +
+                "x-trailer3: NotAllowed" + SimpleHttpClient.CRLF +
+                SimpleHttpClient.CRLF;
+
+        Set<String> allowedTrailerHeaders = new HashSet<>();
+        allowedTrailerHeaders.add("x-trailer1");
+        allowedTrailerHeaders.add("x-trailer2");
+        ChunkedInputFilter filter = new ChunkedInputFilter(8192, allowedTrailerHeaders, 8192, -1);
+        Request request = new Request();
+        filter.setRequest(request);
+        filter.setBuffer(new TrickleInputBuffer(chunked.getBytes(StandardCharsets.ISO_8859_1)));
+
+        BodyHandler handler = new BodyHandler();
+        StringBuilder body = new StringBuilder();
+        int read;
+        int emptyReads = 0;
+        while ((read = filter.doRead(handler)) >= 0) {
+            if (read == 0) {
+                emptyReads++;
+                Assert.assertFalse(filter.isFinished());
+            } else {
+                ByteBuffer bb = handler.getByteBuffer();
+                Assert.assertEquals(read, bb.remaining());
+                while (bb.hasRemaining()) {
+                    body.append((char) bb.get());
+                }
+            }
+        }
+
+        Assert.assertTrue(emptyReads > 0);
+        Assert.assertTrue(filter.isFinished());
+        Assert.assertEquals("a=0&b=1", body.toString());
+        Assert.assertEquals(2, request.getTrailerFields().size());
+        Assert.assertEquals("Test Value1", request.getTrailerFields().get("x-trailer1"));
+        Assert.assertEquals("TestValue2", request.getTrailerFields().get("x-trailer2"));
+    }
+
+
+    /*
+     * Provides the data one byte at a time, with an empty read (no data
+     * currently available) between each byte.
+     */
+    private static class TrickleInputBuffer implements InputBuffer {
+
+        private final byte[] data;
+        private int pos = 0;
+        private boolean empty = true;
+
+        TrickleInputBuffer(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int doRead(ApplicationBufferHandler handler) throws IOException {
+            if (pos == data.length) {
+                return -1;
+            }
+            empty = !empty;
+            if (empty) {
+                handler.setByteBuffer(ByteBuffer.allocate(0));
+                return 0;
+            }
+            handler.setByteBuffer(ByteBuffer.wrap(data, pos++, 1));
+            return 1;
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+    }
+
+
+    private static class BodyHandler implements ApplicationBufferHandler {
+
+        private ByteBuffer bb = ByteBuffer.allocate(0);
+
+        @Override
+        public void setByteBuffer(ByteBuffer buffer) {
+            bb = buffer;
+        }
+
+        @Override
+        public ByteBuffer getByteBuffer() {
+            return bb;
+        }
+
+        @Override
+        public void expand(int size) {
+            // NO-OP
+        }
+    }
+
+
     private static class EchoHeaderServlet extends HttpServlet {
         private static final long serialVersionUID = 1L;
 
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http11.filters;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.coyote.GzipCompressionCodec;
+import org.apache.coyote.Response;
+
+public class TestCompressionOutputFilter {
+
+    @Test
+    public void testFlushingWithGzip() throws Exception {
+        Response res = new Response();
+        TesterOutputBuffer tob = new TesterOutputBuffer(res, 8 * 1024);
+        res.setOutputBuffer(tob);
+
+        CompressionOutputFilter cf = new CompressionOutputFilter(new GzipCompressionCodec());
+        tob.addFilter(cf);
+        tob.addActiveFilter(cf);
+
+        byte[] d = "Hello there tomcat developers, there is a bug in JDK".getBytes();
+        tob.doWrite(ByteBuffer.wrap(d));
+        tob.flush();
+
+        // Everything written so far should be available to the client
+        byte[] dataFound = tob.toByteArray();
+        Assert.assertArrayEquals(d, decompress(dataFound, d.length));
+    }
+
+
+    @Test
+    public void testGzipRoundTripWithReuse() throws Exception {
+        GzipCompressionCodec codec = new GzipCompressionCodec();
+        CompressionOutputFilter cf = new CompressionOutputFilter(codec);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 4; i++) {
+            // Mix of compressible and incompressible content
+            byte[] d = new byte[100 * 1024];
+            for (int j = 0; j < d.length; j++) {
+                d[j] = (byte) (j % 2 == 0 ? 'a' + (j / 1000) % 26 : random.nextInt());
+            }
+
+            if (i == 2) {
+                codec.setLevel(1);
+            }
+
+            Response res = new Response();
+            TesterOutputBuffer tob = new TesterOutputBuffer(res, 8 * 1024);
+            res.setOutputBuffer(tob);
+            tob.addFilter(cf);
+            tob.addActiveFilter(cf);
+
+            for (int offset = 0; offset < d.length; offset += 10000) {
+                tob.doWrite(ByteBuffer.wrap(d, offset, Math.min(10000, d.length - offset)));
+            }
+            tob.end();
+
+            Assert.assertArrayEquals(d, decompressAll(tob.toByteArray()));
+            cf.recycle();
+        }
+    }
+
+
+    @Test
+    public void testRecycleBeforeEnd() throws Exception {
+        GzipCompressionCodec codec = new GzipCompressionCodec();
+        CompressionOutputFilter cf = new CompressionOutputFilter(codec);
+
+        Response res = new Response();
+        TesterOutputBuffer tob = new TesterOutputBuffer(res, 8 * 1024);
+        res.setOutputBuffer(tob);
+        tob.addFilter(cf);
+        tob.addActiveFilter(cf);
+        tob.doWrite(ByteBuffer.wrap("Incomplete response".getBytes()));
+        int written = tob.toByteArray().length;
+        // Response abandoned
+        cf.recycle();
+        // Nothing is written when the compression state is released
+        Assert.assertEquals(written, tob.toByteArray().length);
+
+        byte[] d = "Complete response".getBytes();
+        res = new Response();
+        tob = new TesterOutputBuffer(res, 8 * 1024);
+        res.setOutputBuffer(tob);
+        tob.addFilter(cf);
+        tob.addActiveFilter(cf);
+        tob.doWrite(ByteBuffer.wrap(d));
+        tob.end();
+        Assert.assertArrayEquals(d, decompressAll(tob.toByteArray()));
+    }
+
+
+    private static byte[] decompress(byte[] compressed, int len) throws IOException {
+        byte[] result = new byte[len];
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            int pos = 0;
+            while (pos < len) {
+                int read = is.read(result, pos, len - pos);
+                Assert.assertTrue(read > 0);
+                pos += read;
+            }
+        }
+        return result;
+    }
+
+
+    private static byte[] decompressAll(byte[] compressed) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buf = new byte[8192];
+            int read;
+            while ((read = is.read(buf)) > 0) {
+                result.write(buf, 0, read);
+            }
+        }
+        return result.toByteArray();
+    }
+}
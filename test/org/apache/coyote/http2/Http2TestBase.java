@@ -62,6 +62,7 @@ import org.apache.tomcat.util.codec.binary.Base64;
 import org.apache.tomcat.util.compat.JrePlatform;
 import org.apache.tomcat.util.http.FastHttpDateFormat;
 import org.apache.tomcat.util.http.MimeHeaders;
+import org.apache.tomcat.util.http.parser.Priority;
 import org.apache.tomcat.util.net.TesterSupport;
 
 /**
@@ -936,6 +937,26 @@ public abstract class Http2TestBase extends TomcatBaseTest {
     }
 
 
+    void sendPriorityUpdate(int streamId, int prioritizedStreamId, String fieldValue) throws IOException {
+        byte[] fieldValueBytes = fieldValue.getBytes(StandardCharsets.US_ASCII);
+        byte[] priorityUpdateFrame = new byte[13 + fieldValueBytes.length];
+        // length
+        ByteUtil.setThreeBytes(priorityUpdateFrame, 0, 4 + fieldValueBytes.length);
+        // type
+        priorityUpdateFrame[3] = FrameType.PRIORITY_UPDATE.getIdByte();
+        // No flags
+        // Stream ID
+        ByteUtil.set31Bits(priorityUpdateFrame, 5, streamId);
+
+        // Payload
+        ByteUtil.set31Bits(priorityUpdateFrame, 9, prioritizedStreamId);
+        System.arraycopy(fieldValueBytes, 0, priorityUpdateFrame, 13, fieldValueBytes.length);
+
+        os.write(priorityUpdateFrame);
+        os.flush();
+    }
+
+
     void sendSettings(int streamId, boolean ack, SettingValue... settings) throws IOException {
         // length
         int settingsCount;
@@ -1127,6 +1148,17 @@ public abstract class Http2TestBase extends TomcatBaseTest {
         }
 
 
+        @Override
+        public void priorityUpdate(int prioritizedStreamID, Priority p) {
+            if (p == null) {
+                trace.append("0-PriorityUpdate-[" + prioritizedStreamID + "]-[Invalid]\n");
+            } else {
+                trace.append("0-PriorityUpdate-[" + prioritizedStreamID + "]-[" + p.getUrgency() + "]-[" +
+                        p.getIncremental() + "]\n");
+            }
+        }
+
+
         @Override
         public void emitHeader(String name, String value) {
             if ("date".equals(name)) {
@@ -1167,8 +1199,11 @@ public abstract class Http2TestBase extends TomcatBaseTest {
 
 
         @Override
-        public void headersEnd(int streamId) {
+        public void headersEnd(int streamId, boolean endOfStream) {
             trace.append(streamId + "-HeadersEnd\n");
+            if (endOfStream) {
+                receivedEndOfStream(streamId);
+            }
         }
 
 
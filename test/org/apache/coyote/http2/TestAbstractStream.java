@@ -21,10 +21,12 @@ import java.nio.ByteBuffer;
 import java.nio.channels.CompletionHandler;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import org.apache.coyote.Request;
 import org.apache.tomcat.util.net.ApplicationBufferHandler;
 import org.apache.tomcat.util.net.NioChannel;
 import org.apache.tomcat.util.net.NioEndpoint;
@@ -306,6 +308,95 @@ public class TestAbstractStream {
     }
 
 
+    @Test
+    public void testTryDecrementWindowSize() throws Exception {
+        Http2UpgradeHandler handler =
+                new Http2UpgradeHandler(new Http2Protocol(), null, null, new TesterSocketWrapper());
+        Stream a = new Stream(Integer.valueOf(1), handler);
+
+        a.setWindowSize(100);
+        Assert.assertEquals(60, a.tryDecrementWindowSize(60));
+        Assert.assertEquals(40, a.tryDecrementWindowSize(60));
+        Assert.assertEquals(0, a.tryDecrementWindowSize(60));
+        Assert.assertEquals(0, a.getWindowSize());
+
+        // Window may go negative after a reduction in the initial window size
+        a.incrementWindowSize(-10);
+        Assert.assertEquals(0, a.tryDecrementWindowSize(60));
+        a.incrementWindowSize(15);
+        Assert.assertEquals(5, a.tryDecrementWindowSize(60));
+        Assert.assertEquals(0, a.getWindowSize());
+    }
+
+
+    @Test
+    public void testTryDecrementWindowSizeConcurrent() throws Exception {
+        Http2UpgradeHandler handler =
+                new Http2UpgradeHandler(new Http2Protocol(), null, null, new TesterSocketWrapper());
+        Stream a = new Stream(Integer.valueOf(1), handler);
+
+        int threadCount = 8;
+        long total = 1000000;
+        a.setWindowSize(total);
+        AtomicLong allocated = new AtomicLong();
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                int allocation;
+                while ((allocation = a.tryDecrementWindowSize(7)) > 0) {
+                    allocated.addAndGet(allocation);
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Every byte of the window allocated exactly once
+        Assert.assertEquals(total, allocated.get());
+        Assert.assertEquals(0, a.getWindowSize());
+    }
+
+
+    @Test
+    public void testReleaseCoyoteRequest() {
+        Http2UpgradeHandler handler =
+                new Http2UpgradeHandler(new Http2Protocol(), null, null, new TesterSocketWrapper());
+        Stream a = new Stream(Integer.valueOf(1), handler);
+        Request request = a.getCoyoteRequest();
+
+        a.releaseCoyoteRequest();
+
+        // The released stream must no longer reference the pooled pair
+        Assert.assertNull(a.getCoyoteRequest());
+        Assert.assertNull(a.getCoyoteResponse());
+
+        Stream b = new Stream(Integer.valueOf(3), handler);
+        Assert.assertSame(request, b.getCoyoteRequest());
+        Assert.assertSame(request.getResponse(), b.getCoyoteResponse());
+    }
+
+
+    @Test
+    public void testReleaseCoyoteRequestWhileAllocationRequested() {
+        Http2UpgradeHandler handler =
+                new Http2UpgradeHandler(new Http2Protocol(), null, null, new TesterSocketWrapper());
+        Stream a = new Stream(Integer.valueOf(1), handler);
+        Request request = a.getCoyoteRequest();
+        a.setConnectionAllocationRequested(100);
+
+        a.releaseCoyoteRequest();
+
+        // The stream may still be notified so the pair must not be re-used
+        Assert.assertSame(request, a.getCoyoteRequest());
+        Stream b = new Stream(Integer.valueOf(3), handler);
+        Assert.assertNotSame(request, b.getCoyoteRequest());
+    }
+
+
     private static class TesterSocketWrapper extends SocketWrapperBase<NioChannel> {
 
         public TesterSocketWrapper() {
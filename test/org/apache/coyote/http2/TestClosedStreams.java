@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestClosedStreams {
+
+    private static final String CONNECTION_ID = "0";
+
+
+    @Test
+    public void testAddInOrder() {
+        ClosedStreams closedStreams = new ClosedStreams();
+        for (int i = 1; i < 100; i += 2) {
+            closedStreams.add(i, closedState(i), i * 10, 1000);
+        }
+        Assert.assertEquals(50, closedStreams.size());
+        for (int i = 1; i < 100; i += 2) {
+            RecycledStream stream = closedStreams.get(CONNECTION_ID, i);
+            Assert.assertNotNull(stream);
+            Assert.assertEquals(i, stream.getIdAsInt());
+            Assert.assertTrue(stream.isClosedFinal());
+            Assert.assertFalse(closedStreams.contains(i + 1));
+        }
+    }
+
+
+    @Test
+    public void testAddOutOfOrder() {
+        ClosedStreams closedStreams = new ClosedStreams();
+        closedStreams.add(5, closedState(5), 0, 10);
+        closedStreams.add(1, closedState(1), 0, 10);
+        closedStreams.add(7, closedState(7), 0, 10);
+        closedStreams.add(3, closedState(3), 0, 10);
+        // Duplicate
+        closedStreams.add(3, closedState(3), 0, 10);
+
+        Assert.assertEquals(4, closedStreams.size());
+        for (int i = 1; i < 9; i += 2) {
+            Assert.assertTrue(closedStreams.contains(i));
+        }
+    }
+
+
+    @Test
+    public void testLimit() {
+        ClosedStreams closedStreams = new ClosedStreams();
+        for (int i = 1; i < 200; i += 2) {
+            closedStreams.add(i, closedState(i), 0, 10);
+        }
+        Assert.assertEquals(10, closedStreams.size());
+        Assert.assertFalse(closedStreams.contains(179));
+        for (int i = 181; i < 200; i += 2) {
+            Assert.assertTrue(closedStreams.contains(i));
+        }
+    }
+
+
+    @Test
+    public void testUpdateAtLimit() {
+        ClosedStreams closedStreams = new ClosedStreams();
+        for (int i = 1; i < 20; i += 2) {
+            closedStreams.add(i, closedState(i), 0, 10);
+        }
+        Assert.assertEquals(10, closedStreams.size());
+
+        // Updating a retained stream must not discard the oldest
+        closedStreams.add(11, closedState(11), 100, 10);
+        closedStreams.add(19, closedState(19), 100, 10);
+        Assert.assertEquals(10, closedStreams.size());
+        for (int i = 1; i < 20; i += 2) {
+            Assert.assertTrue(closedStreams.contains(i));
+        }
+    }
+
+
+    @Test
+    public void testZeroLimit() {
+        ClosedStreams closedStreams = new ClosedStreams();
+        closedStreams.add(1, closedState(1), 0, 0);
+        Assert.assertEquals(0, closedStreams.size());
+        Assert.assertNull(closedStreams.get(CONNECTION_ID, 1));
+    }
+
+
+    @Test
+    public void testFlowControlWindow() throws Exception {
+        ClosedStreams closedStreams = new ClosedStreams();
+        closedStreams.add(1, closedState(1), 100, 10);
+
+        RecycledStream stream = closedStreams.get(CONNECTION_ID, 1);
+        stream.receivedData(60);
+        Assert.assertNull(stream.getInputByteBuffer());
+
+        // A new view should reflect the reduced window
+        stream = closedStreams.get(CONNECTION_ID, 1);
+        stream.receivedData(60);
+        Assert.assertNotNull(stream.getInputByteBuffer());
+    }
+
+
+    @Test
+    public void testStateChangeAfterAdd() {
+        ClosedStreams closedStreams = new ClosedStreams();
+        StreamStateMachine state = new StreamStateMachine(CONNECTION_ID, "1");
+        state.receivedStartOfHeaders();
+        state.receivedEndOfStream();
+        state.sentEndOfStream();
+        closedStreams.add(1, state, 0, 10);
+
+        // WINDOW_UPDATE is not permitted once the stream has been reset
+        Assert.assertTrue(closedStreams.get(CONNECTION_ID, 1).state.isFrameTypePermitted(FrameType.WINDOW_UPDATE));
+
+        // Changes to the original state must be retained
+        state.receivedReset();
+        Assert.assertFalse(closedStreams.get(CONNECTION_ID, 1).state.isFrameTypePermitted(FrameType.WINDOW_UPDATE));
+    }
+
+
+    @Test
+    public void testStateChangeViaView() {
+        ClosedStreams closedStreams = new ClosedStreams();
+        StreamStateMachine state = new StreamStateMachine(CONNECTION_ID, "1");
+        state.receivedStartOfHeaders();
+        state.receivedEndOfStream();
+        state.sentEndOfStream();
+        closedStreams.add(1, state, 0, 10);
+
+        // Changes made via a transient view must be retained
+        closedStreams.get(CONNECTION_ID, 1).state.receivedReset();
+        Assert.assertFalse(closedStreams.get(CONNECTION_ID, 1).state.isFrameTypePermitted(FrameType.WINDOW_UPDATE));
+    }
+
+
+    private static StreamStateMachine closedState(int streamId) {
+        StreamStateMachine state = new StreamStateMachine(CONNECTION_ID, Integer.toString(streamId));
+        state.closeIfIdle();
+        return state;
+    }
+}
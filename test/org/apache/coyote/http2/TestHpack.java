@@ -17,6 +17,9 @@
 package org.apache.coyote.http2;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -128,6 +131,87 @@ public class TestHpack {
     }
 
 
+    @Test
+    public void testDynamicTableEviction() throws Exception {
+        // Small table size so entries are evicted, large enough for the ring
+        // buffer used by the encoder to grow
+        doTestDynamicTable(1024);
+        doTestDynamicTable(4096);
+    }
+
+
+    private void doTestDynamicTable(int tableSize) throws HpackException {
+        HpackEncoder encoder = new HpackEncoder();
+        encoder.setMaxTableSize(tableSize);
+        HpackDecoder decoder = new HpackDecoder();
+        List<String> decoded = new ArrayList<>();
+        CollectingListener listener = new CollectingListener(decoded);
+
+        Random random = new Random(42);
+        ByteBuffer output = ByteBuffer.allocate(8192);
+        MimeHeaders headers = new MimeHeaders();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            headers.recycle();
+            expected.clear();
+            int count = 1 + random.nextInt(20);
+            for (int j = 0; j < count; j++) {
+                String name = "X-Name-" + random.nextInt(50);
+                String value = "value-" + random.nextInt(200);
+                headers.addValue(name).setString(value);
+                expected.add(name.toLowerCase() + "=" + value);
+            }
+            headers.addValue("date").setString("Thu, 01 Jan 1970 00:00:0" + random.nextInt(3) + " GMT");
+            expected.add(headers.getName(count).toString() + "=" + headers.getValue(count).toString());
+
+            output.clear();
+            Assert.assertEquals(HpackEncoder.State.COMPLETE, encoder.encode(headers, output));
+            output.flip();
+            decoded.clear();
+            // Also resets the header count and size limit tracking
+            decoder.setHeaderEmitter(listener);
+            decoder.decode(output);
+            Assert.assertEquals(expected, decoded);
+        }
+    }
+
+
+    @Test
+    public void testNeverIndexedValueReuse() throws Exception {
+        MimeHeaders headers = new MimeHeaders();
+        headers.setValue("date").setString("Thu, 01 Jan 1970 00:00:00 GMT");
+        HpackEncoder encoder = new HpackEncoder();
+        ByteBuffer first = ByteBuffer.allocate(512);
+        encoder.encode(headers, first);
+        first.flip();
+        ByteBuffer second = ByteBuffer.allocate(512);
+        encoder.encode(headers, second);
+        second.flip();
+        // Not indexed so the second encoding has to repeat the value
+        Assert.assertEquals(first, second);
+    }
+
+
+    private static class CollectingListener implements HpackDecoder.HeaderEmitter {
+        private final List<String> headers;
+        CollectingListener(List<String> headers) {
+            this.headers = headers;
+        }
+        @Override
+        public void emitHeader(String name, String value) {
+            headers.add(name + "=" + value);
+        }
+        @Override
+        public void setHeaderException(StreamException streamException) {
+            // NO-OP
+        }
+        @Override
+        public void validateHeaders() throws StreamException {
+            // NO-OP
+        }
+    }
+
+
     private void doTestHeaderValueBug60451(String filename) throws HpackException {
         String headerName = "Content-Disposition";
         String headerValue = "attachment;filename=\"" + filename + "\"";
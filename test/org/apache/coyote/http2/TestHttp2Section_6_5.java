@@ -109,6 +109,17 @@ public class TestHttp2Section_6_5 extends Http2TestBase {
     }
 
 
+    @Test
+    public void testSettingsFrameInvalidNoRfc7540PrioritiesSetting() throws Exception {
+        // HTTP2 upgrade
+        http2Connect();
+
+        sendSettings(0, false, new SettingValue(0x9,0x2));
+
+        handleGoAwayResponse(1);
+    }
+
+
     @Test
     public void testSettingsUnknownSetting() throws Exception {
         // HTTP2 upgrade
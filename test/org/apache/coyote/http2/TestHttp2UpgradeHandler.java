@@ -71,6 +71,38 @@ public class TestHttp2UpgradeHandler extends Http2TestBase {
     }
 
 
+    @Test
+    public void testConcurrentStreams() throws Exception {
+        http2Connect();
+
+        int streamCount = 20;
+        // Enough connection window for every response
+        sendWindowUpdate(0, streamCount * SimpleServlet.CONTENT_LENGTH);
+
+        // Frames from concurrent streams may be combined into a single write
+        for (int i = 0; i < streamCount; i++) {
+            sendSimpleGetRequest(3 + i * 2);
+        }
+
+        int ended = 0;
+        int frames = 0;
+        while (ended < streamCount) {
+            parser.readFrame(true);
+            if (output.getTrace().endsWith("-EndOfStream\n")) {
+                ended++;
+            }
+            Assert.assertTrue(++frames < streamCount * 10);
+        }
+
+        String trace = output.getTrace();
+        for (int i = 0; i < streamCount; i++) {
+            int streamId = 3 + i * 2;
+            Assert.assertTrue(trace, trace.contains(streamId + "-Header-[:status]-[200]\n"));
+            Assert.assertTrue(trace, trace.contains(streamId + "-EndOfStream\n"));
+        }
+    }
+
+
     @Test
     public void testUpgradeWithRequestBodyGet() throws Exception {
         doTestUpgradeWithRequestBody(false, false, false);
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for <a href="https://tools.ietf.org/html/rfc9218">RFC 9218</a>
+ * extensible prioritization.
+ */
+public class TestRfc9218 extends Http2TestBase {
+
+    @Test
+    public void testSettingsNoRfc7540Priorities() throws Exception {
+        http2ConnectRfc9218();
+    }
+
+
+    @Test
+    public void testPriorityUpdateNonZeroStream() throws Exception {
+        http2Connect();
+
+        sendPriorityUpdate(3, 3, "u=1");
+
+        handleGoAwayResponse(1);
+    }
+
+
+    @Test
+    public void testPriorityUpdatePrioritizeStreamZero() throws Exception {
+        http2Connect();
+
+        sendPriorityUpdate(0, 0, "u=1");
+
+        handleGoAwayResponse(1);
+    }
+
+
+    @Test
+    public void testPriorityUpdateIgnored() throws Exception {
+        // RFC 9218 priorities not enabled. The frame should be processed
+        // without error and otherwise ignored.
+        http2Connect();
+
+        sendPriorityUpdate(0, 3, "u=1, i");
+
+        sendSimpleGetRequest(3);
+        readSimpleGetResponse();
+        Assert.assertEquals(getSimpleResponseTrace(3), output.getTrace());
+    }
+
+
+    @Test
+    public void testUrgencyHeader() throws Exception {
+        doTestUrgency(false, false);
+    }
+
+
+    @Test
+    public void testUrgencyPriorityUpdate() throws Exception {
+        doTestUrgency(true, false);
+    }
+
+
+    @Test
+    public void testUrgencyPriorityUpdateWhileQueued() throws Exception {
+        doTestUrgency(true, true);
+    }
+
+
+    private void doTestUrgency(boolean priorityUpdate, boolean whileQueued) throws Exception {
+        http2ConnectRfc9218();
+
+        // This test uses small window updates that will trigger the excessive
+        // overhead protection so disable it.
+        http2Protocol.setOverheadWindowUpdateThreshold(0);
+        http2Protocol.setOverheadDataThreshold(0);
+
+        // Default connection window size is 64k - 1. Initial request will have
+        // used 8k (56k -1). Increase it to 57k
+        sendWindowUpdate(0, 1 + 1024);
+
+        // Use up 56k of the connection window
+        for (int i = 3; i < 17; i += 2) {
+            sendSimpleGetRequest(i);
+            readSimpleGetResponse();
+        }
+
+        // Set the default window size to 1024 bytes
+        sendSettings(0, false, new SettingValue(4, 1024));
+        // Wait for the ack
+        parser.readFrame(true);
+        output.clearTrace();
+
+        // At this point the connection window should be 1k and any new stream
+        // should have a window of 1k as well
+
+        // First, process a request on stream 17. This should consume both
+        // stream 17's window and the connection window.
+        sendSimpleGetRequest(17);
+        // 17-headers, 17-1k-body
+        parser.readFrame(true);
+        parser.readFrame(true);
+        output.clearTrace();
+
+        // Send additional requests. Connection window is empty so only headers
+        // will be returned. Stream 21 is more urgent unless a PRIORITY_UPDATE
+        // frame is used to make stream 19 more urgent.
+        sendPriorityGetRequest(19, "u=5");
+        sendPriorityGetRequest(21, "u=1");
+        if (priorityUpdate && !whileQueued) {
+            sendPriorityUpdate(0, 19, "u=0");
+        }
+
+        // Open up the flow control windows for stream 19 & 21 to more than the
+        // size of a simple request (8k)
+        sendWindowUpdate(19, 16*1024);
+        sendWindowUpdate(21, 16*1024);
+
+        // 19-headers, 21-headers
+        parser.readFrame(true);
+        parser.readFrame(true);
+        output.clearTrace();
+
+        // Need to give both server side threads enough time to request an
+        // allocation from the connection flow control window
+        Thread.sleep(1000);
+
+        if (priorityUpdate && whileQueued) {
+            // Both streams are waiting for an allocation
+            sendPriorityUpdate(0, 19, "u=0");
+        }
+
+        // Both streams want more than 1k. The most urgent stream should receive
+        // all of it.
+        sendWindowUpdate(0, 1024);
+        parser.readFrame(true);
+
+        String expectedStream = priorityUpdate ? "19" : "21";
+        Assert.assertEquals(expectedStream + "-Body-1024\n", output.getTrace());
+    }
+
+
+    private void http2ConnectRfc9218() throws Exception {
+        enableHttp2();
+        http2Protocol.setUseRfc9218Priorities(true);
+        configureAndStartWebApplication();
+        openClientConnection();
+        doHttpUpgrade();
+        sendClientPreface();
+
+        // settings, settings ack, ping, headers, body
+        parser.readFrame(true);
+        parser.readFrame(true);
+        parser.readFrame(true);
+        parser.readFrame(true);
+        parser.readFrame(true);
+
+        String trace = output.getTrace();
+        Assert.assertTrue(trace, trace.contains("0-Settings-[9]-[1]\n"));
+        Assert.assertTrue(trace, trace.endsWith(getSimpleResponseTrace(1)));
+        output.clearTrace();
+    }
+
+
+    private void sendPriorityGetRequest(int streamId, String priority) throws Exception {
+        byte[] frameHeader = new byte[9];
+        ByteBuffer headersPayload = ByteBuffer.allocate(128);
+
+        List<Header> headers = new ArrayList<>(5);
+        headers.add(new Header(":method", "GET"));
+        headers.add(new Header(":scheme", "http"));
+        headers.add(new Header(":path", "/simple"));
+        headers.add(new Header(":authority", "localhost:" + getPort()));
+        headers.add(new Header("priority", priority));
+
+        buildGetRequest(frameHeader, headersPayload, null, headers, streamId);
+        writeFrame(frameHeader, headersPayload);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+
+public class TestSendfile extends Http2TestBase {
+
+    private static final int FILE_SIZE = 1024 * 1024;
+
+    @Test
+    public void testLargeFile() throws Exception {
+        File docBase = new File(getTemporaryDirectory(), "sendfile");
+        Assert.assertTrue(docBase.mkdirs());
+        addDeleteOnTearDown(docBase);
+        try (OutputStream os = new FileOutputStream(new File(docBase, "large.bin"))) {
+            byte[] block = new byte[8192];
+            for (int i = 0; i < block.length; i++) {
+                block[i] = (byte) i;
+            }
+            for (int i = 0; i < FILE_SIZE / block.length; i++) {
+                os.write(block);
+            }
+        }
+
+        enableHttp2();
+
+        Tomcat tomcat = getTomcatInstance();
+
+        Context ctxt = tomcat.addContext("", docBase.getAbsolutePath());
+        Tomcat.addServlet(ctxt, "simple", new SimpleServlet());
+        ctxt.addServletMappingDecoded("/simple", "simple");
+        Tomcat.addServlet(ctxt, "default", new DefaultServlet());
+        ctxt.addServletMappingDecoded("/", "default");
+        tomcat.start();
+
+        openClientConnection();
+        doHttpUpgrade();
+        sendClientPreface();
+        validateHttp2InitialResponse();
+
+        // Reset connection window size after initial response
+        sendWindowUpdate(0, SimpleServlet.CONTENT_LENGTH);
+
+        // Large enough windows that multiple DATA frames may be written at once
+        int windowSize = ConnectionSettingsBase.MAX_WINDOW_SIZE;
+        sendSettings(0, false, new SettingValue(Setting.INITIAL_WINDOW_SIZE.getId(), windowSize));
+        sendWindowUpdate(0, windowSize - ConnectionSettingsBase.DEFAULT_INITIAL_WINDOW_SIZE);
+
+        byte[] frameHeader = new byte[9];
+        ByteBuffer headersPayload = ByteBuffer.allocate(128);
+        buildGetRequest(frameHeader, headersPayload, null, 3, "/large.bin");
+        writeFrame(frameHeader, headersPayload);
+
+        while (!output.getTrace().endsWith("3-EndOfStream\n")) {
+            parser.readFrame(true);
+        }
+
+        Assert.assertEquals(FILE_SIZE, output.getBytesRead());
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestUrgencyBacklog {
+
+    private int nextStreamId = 1;
+
+
+    @Test
+    public void testUrgencyOrder() {
+        UrgencyBacklog backlog = new UrgencyBacklog();
+        AbstractNonZeroStream low = createStream(5, false);
+        AbstractNonZeroStream high = createStream(1, false);
+        backlog.add(low, 1000);
+        backlog.add(high, 1000);
+        Assert.assertEquals(2000, backlog.getSize());
+
+        List<AbstractStream> allocated = new ArrayList<>();
+        Assert.assertEquals(0, backlog.release(600, allocated));
+
+        Assert.assertEquals(1, allocated.size());
+        Assert.assertSame(high, allocated.get(0));
+        Assert.assertEquals(600, high.getConnectionAllocationMade());
+        Assert.assertEquals(0, high.getConnectionAllocationRequested());
+        Assert.assertEquals(0, low.getConnectionAllocationMade());
+        Assert.assertEquals(1000, backlog.getSize());
+    }
+
+
+    @Test
+    public void testSequentialInRequestOrder() {
+        UrgencyBacklog backlog = new UrgencyBacklog();
+        AbstractNonZeroStream first = createStream(3, false);
+        AbstractNonZeroStream second = createStream(3, false);
+        backlog.add(first, 500);
+        backlog.add(second, 500);
+
+        List<AbstractStream> allocated = new ArrayList<>();
+        Assert.assertEquals(0, backlog.release(700, allocated));
+
+        Assert.assertEquals(500, first.getConnectionAllocationMade());
+        Assert.assertEquals(200, second.getConnectionAllocationMade());
+        Assert.assertEquals(0, backlog.getSize());
+    }
+
+
+    @Test
+    public void testIncrementalShared() {
+        UrgencyBacklog backlog = new UrgencyBacklog();
+        AbstractNonZeroStream[] streams = new AbstractNonZeroStream[4];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = createStream(3, true);
+            backlog.add(streams[i], 1000);
+        }
+
+        List<AbstractStream> allocated = new ArrayList<>();
+        Assert.assertEquals(0, backlog.release(400, allocated));
+
+        Assert.assertEquals(4, allocated.size());
+        for (AbstractNonZeroStream stream : streams) {
+            Assert.assertEquals(100, stream.getConnectionAllocationMade());
+        }
+    }
+
+
+    @Test
+    public void testSequentialBeforeIncremental() {
+        UrgencyBacklog backlog = new UrgencyBacklog();
+        AbstractNonZeroStream incremental = createStream(3, true);
+        AbstractNonZeroStream sequential = createStream(3, false);
+        backlog.add(incremental, 1000);
+        backlog.add(sequential, 1000);
+
+        List<AbstractStream> allocated = new ArrayList<>();
+        Assert.assertEquals(0, backlog.release(1200, allocated));
+
+        Assert.assertEquals(1000, sequential.getConnectionAllocationMade());
+        Assert.assertEquals(200, incremental.getConnectionAllocationMade());
+    }
+
+
+    @Test
+    public void testReleaseMoreThanBacklog() {
+        UrgencyBacklog backlog = new UrgencyBacklog();
+        AbstractNonZeroStream a = createStream(0, false);
+        AbstractNonZeroStream b = createStream(7, true);
+        backlog.add(a, 100);
+        backlog.add(b, 200);
+
+        List<AbstractStream> allocated = new ArrayList<>();
+        Assert.assertEquals(700, backlog.release(1000, allocated));
+
+        Assert.assertEquals(2, allocated.size());
+        Assert.assertEquals(100, a.getConnectionAllocationMade());
+        Assert.assertEquals(200, b.getConnectionAllocationMade());
+        Assert.assertEquals(0, backlog.getSize());
+    }
+
+
+    @Test
+    public void testAddTwice() {
+        UrgencyBacklog backlog = new UrgencyBacklog();
+        AbstractNonZeroStream stream = createStream(3, false);
+        backlog.add(stream, 100);
+        backlog.add(stream, 300);
+        Assert.assertEquals(300, backlog.getSize());
+
+        List<AbstractStream> allocated = new ArrayList<>();
+        Assert.assertEquals(700, backlog.release(1000, allocated));
+        Assert.assertEquals(1, allocated.size());
+        Assert.assertEquals(300, stream.getConnectionAllocationMade());
+    }
+
+
+    @Test
+    public void testSetPriorityWhileQueued() {
+        UrgencyBacklog backlog = new UrgencyBacklog();
+        AbstractNonZeroStream first = createStream(1, false);
+        AbstractNonZeroStream second = createStream(5, false);
+        backlog.add(first, 1000);
+        backlog.add(second, 1000);
+
+        // Make the queued second stream more urgent than the first
+        backlog.setPriority(second, 0, true);
+        Assert.assertEquals(0, second.getUrgency());
+        Assert.assertTrue(second.getIncremental());
+        Assert.assertEquals(2000, backlog.getSize());
+
+        List<AbstractStream> allocated = new ArrayList<>();
+        Assert.assertEquals(0, backlog.release(1500, allocated));
+
+        Assert.assertEquals(2, allocated.size());
+        Assert.assertSame(second, allocated.get(0));
+        Assert.assertEquals(1000, second.getConnectionAllocationMade());
+        Assert.assertEquals(500, first.getConnectionAllocationMade());
+
+        // Nothing is left in the old queue
+        allocated.clear();
+        Assert.assertEquals(1000, backlog.release(1000, allocated));
+        Assert.assertTrue(allocated.isEmpty());
+    }
+
+
+    @Test
+    public void testSetPriorityNotQueued() {
+        UrgencyBacklog backlog = new UrgencyBacklog();
+        AbstractNonZeroStream stream = createStream(3, false);
+        backlog.setPriority(stream, 1, true);
+        Assert.assertEquals(1, stream.getUrgency());
+        Assert.assertTrue(stream.getIncremental());
+
+        List<AbstractStream> allocated = new ArrayList<>();
+        Assert.assertEquals(1000, backlog.release(1000, allocated));
+        Assert.assertTrue(allocated.isEmpty());
+    }
+
+
+    private AbstractNonZeroStream createStream(int urgency, boolean incremental) {
+        Integer identifier = Integer.valueOf(nextStreamId);
+        nextStreamId += 2;
+        AbstractNonZeroStream stream = new RecycledStream("0", identifier,
+                new StreamStateMachine("0", identifier.toString()), 0);
+        stream.setUrgency(urgency);
+        stream.setIncremental(incremental);
+        return stream;
+    }
+}
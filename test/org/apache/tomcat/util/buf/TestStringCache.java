@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.buf;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestStringCache {
+
+    private final StringCache stringCache = new StringCache();
+
+
+    @Before
+    public void setUp() {
+        stringCache.setByteEnabled(true);
+        stringCache.setCharEnabled(true);
+        stringCache.setCacheSize(16);
+        stringCache.reset();
+    }
+
+
+    @After
+    public void tearDown() {
+        stringCache.setByteEnabled(false);
+        stringCache.setCharEnabled(false);
+        stringCache.setCacheSize(200);
+        stringCache.reset();
+    }
+
+
+    @Test
+    public void testByteChunkHit() {
+        ByteChunk bc = byteChunk("test", true);
+        String first = StringCache.toString(bc);
+        String second = StringCache.toString(byteChunk("test", true));
+
+        Assert.assertEquals("test", first);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(2, stringCache.getAccessCount());
+        Assert.assertEquals(1, stringCache.getHitCount());
+        Assert.assertEquals(0.5, stringCache.getHitRatio(), 0.0001);
+    }
+
+
+    @Test
+    public void testByteChunkCharset() {
+        ByteChunk bc = byteChunk("test", true);
+        String first = StringCache.toString(bc);
+        bc = byteChunk("test", true);
+        bc.setCharset(StandardCharsets.UTF_8);
+        String second = StringCache.toString(bc);
+
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(0, stringCache.getHitCount());
+    }
+
+
+    @Test
+    public void testCharChunkHit() {
+        String first = StringCache.toString(charChunk("test"));
+        String second = StringCache.toString(charChunk("test"));
+
+        Assert.assertEquals("test", first);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, stringCache.getHitCount());
+    }
+
+
+    @Test
+    public void testDisabled() {
+        stringCache.setByteEnabled(false);
+        String first = StringCache.toString(byteChunk("test", true));
+        String second = StringCache.toString(byteChunk("test", true));
+
+        Assert.assertEquals(first, second);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(0, stringCache.getAccessCount());
+    }
+
+
+    @Test
+    public void testMaxStringSize() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < StringCache.maxStringSize; i++) {
+            sb.append('a');
+        }
+        String value = sb.toString();
+        String first = StringCache.toString(byteChunk(value, true));
+        String second = StringCache.toString(byteChunk(value, true));
+
+        Assert.assertEquals(value, first);
+        Assert.assertNotSame(first, second);
+    }
+
+
+    @Test
+    public void testAdapts() {
+        // Make one set of values popular
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 16; j++) {
+                StringCache.toString(byteChunk("old-" + j, false));
+            }
+        }
+        // Then switch to a different set of values
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < 16; j++) {
+                StringCache.toString(byteChunk("new-" + j, false));
+            }
+        }
+
+        stringCache.reset();
+        for (int j = 0; j < 16; j++) {
+            StringCache.toString(byteChunk("new-" + j, false));
+        }
+        // The cache is set associative so not every value may be cached
+        Assert.assertTrue(stringCache.getHitCount() > 8);
+    }
+
+
+    @Test
+    public void testConcurrent() throws Exception {
+        int threadCount = 4;
+        Thread[] threads = new Thread[threadCount];
+        Throwable[] errors = new Throwable[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int id = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 10000; i++) {
+                        String expected = "value-" + (i % 64);
+                        Assert.assertEquals(expected, StringCache.toString(byteChunk(expected, false)));
+                        Assert.assertEquals(expected, StringCache.toString(charChunk(expected)));
+                    }
+                } catch (Throwable e) {
+                    errors[id] = e;
+                }
+            });
+            threads[t].start();
+        }
+        for (int t = 0; t < threadCount; t++) {
+            threads[t].join();
+            Assert.assertNull(errors[t]);
+        }
+        Assert.assertEquals(2 * threadCount * 10000, stringCache.getAccessCount());
+    }
+
+
+    private static ByteChunk byteChunk(String value, boolean padded) {
+        // Place the value part way into a larger buffer
+        byte[] bytes = ((padded ? "xx" : "") + value + "yy").getBytes(StandardCharsets.ISO_8859_1);
+        ByteChunk bc = new ByteChunk();
+        bc.setBytes(bytes, padded ? 2 : 0, value.length());
+        bc.setCharset(StandardCharsets.ISO_8859_1);
+        return bc;
+    }
+
+
+    private static CharChunk charChunk(String value) {
+        char[] chars = ("x" + value).toCharArray();
+        CharChunk cc = new CharChunk();
+        cc.setChars(chars, 1, value.length());
+        return cc;
+    }
+}
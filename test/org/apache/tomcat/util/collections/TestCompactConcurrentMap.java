@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCompactConcurrentMap {
+
+    @Test
+    public void testPutGetRemove() {
+        CompactConcurrentMap<String,String> map = new CompactConcurrentMap<>();
+        Assert.assertTrue(map.isEmpty());
+
+        Assert.assertNull(map.put("a", "1"));
+        Assert.assertNull(map.put("b", "2"));
+        Assert.assertEquals("1", map.put("a", "3"));
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals("3", map.get("a"));
+        Assert.assertEquals("2", map.get("b"));
+        Assert.assertNull(map.get("c"));
+
+        Assert.assertEquals("3", map.remove("a"));
+        Assert.assertNull(map.remove("a"));
+        Assert.assertEquals(1, map.size());
+        Assert.assertEquals("2", map.remove("b"));
+        Assert.assertTrue(map.isEmpty());
+    }
+
+
+    @Test
+    public void testConcurrentMapMethods() {
+        CompactConcurrentMap<String,String> map = new CompactConcurrentMap<>();
+        Assert.assertNull(map.putIfAbsent("a", "1"));
+        Assert.assertEquals("1", map.putIfAbsent("a", "2"));
+        Assert.assertFalse(map.replace("a", "2", "3"));
+        Assert.assertTrue(map.replace("a", "1", "3"));
+        Assert.assertEquals("3", map.replace("a", "4"));
+        Assert.assertNull(map.replace("b", "4"));
+        Assert.assertFalse(map.remove("a", "3"));
+        Assert.assertTrue(map.remove("a", "4"));
+        Assert.assertTrue(map.isEmpty());
+    }
+
+
+    @Test
+    public void testThreshold() {
+        CompactConcurrentMap<String,Integer> map = new CompactConcurrentMap<>(4);
+        Map<String,Integer> expected = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            map.put("key" + i, Integer.valueOf(i));
+            expected.put("key" + i, Integer.valueOf(i));
+            Assert.assertEquals(expected, map);
+            Assert.assertEquals(expected.keySet(), map.keySet());
+        }
+        map.remove("key3");
+        expected.remove("key3");
+        Assert.assertEquals(expected, map);
+
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        map.put("a", Integer.valueOf(1));
+        Assert.assertEquals(1, map.size());
+        Assert.assertEquals(Integer.valueOf(1), map.get("a"));
+    }
+
+
+    @Test
+    public void testViewsArray() {
+        doTestViews(new CompactConcurrentMap<>());
+    }
+
+
+    @Test
+    public void testViewsMap() {
+        doTestViews(new CompactConcurrentMap<>(1));
+    }
+
+
+    private void doTestViews(CompactConcurrentMap<String,String> map) {
+        map.put("a", "1");
+        map.put("b", "2");
+        Set<String> keys = map.keySet();
+        Set<Map.Entry<String,String>> entries = map.entrySet();
+        map.put("c", "3");
+
+        // Views reflect later changes to the Map
+        Set<String> expected = new HashSet<>();
+        expected.add("a");
+        expected.add("b");
+        expected.add("c");
+        Assert.assertEquals(expected, keys);
+        Assert.assertEquals(3, entries.size());
+        Assert.assertTrue(map.values().contains("3"));
+
+        // Changes made through the views are reflected in the Map
+        Assert.assertTrue(keys.remove("a"));
+        Assert.assertNull(map.get("a"));
+        Assert.assertFalse(entries.remove(new AbstractMap.SimpleEntry<>("b", "3")));
+        Assert.assertTrue(entries.remove(new AbstractMap.SimpleEntry<>("b", "2")));
+        Assert.assertNull(map.get("b"));
+
+        Iterator<Map.Entry<String,String>> iter = entries.iterator();
+        Map.Entry<String,String> entry = iter.next();
+        Assert.assertEquals("c", entry.getKey());
+        entry.setValue("4");
+        Assert.assertEquals("4", map.get("c"));
+        iter.remove();
+        Assert.assertFalse(iter.hasNext());
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertTrue(keys.isEmpty());
+    }
+
+
+    @Test(expected=NullPointerException.class)
+    public void testPutNullKey() {
+        CompactConcurrentMap<String,String> map = new CompactConcurrentMap<>();
+        map.put(null, "1");
+    }
+
+
+    @Test(expected=NullPointerException.class)
+    public void testPutNullValue() {
+        CompactConcurrentMap<String,String> map = new CompactConcurrentMap<>();
+        map.put("a", null);
+    }
+
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        CompactConcurrentMap<String,Integer> map = new CompactConcurrentMap<>(4);
+        AtomicInteger failures = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final String prefix = "thread" + t + "-";
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    String key = prefix + (i % 3);
+                    map.put(key, Integer.valueOf(i));
+                    // Each thread uses its own keys
+                    if (!Integer.valueOf(i).equals(map.get(key))) {
+                        failures.incrementAndGet();
+                    }
+                    if (i % 7 == 0) {
+                        map.remove(key);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(0, failures.get());
+        Assert.assertTrue(map.size() <= 12);
+    }
+}
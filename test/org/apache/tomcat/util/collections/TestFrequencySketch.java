@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestFrequencySketch {
+
+    @Test
+    public void testIncrement() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        int hash = "test".hashCode();
+
+        Assert.assertEquals(0, sketch.frequency(hash));
+        sketch.increment(hash);
+        Assert.assertEquals(1, sketch.frequency(hash));
+        sketch.increment(hash);
+        Assert.assertEquals(2, sketch.frequency(hash));
+    }
+
+
+    @Test
+    public void testSaturation() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        int hash = "test".hashCode();
+
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(hash);
+        }
+        Assert.assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency(hash));
+    }
+
+
+    @Test
+    public void testAging() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        int hot = "hot".hashCode();
+
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(hot);
+        }
+        Assert.assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency(hot));
+
+        // Sample size is ten times the capacity. Aging is checked on a random
+        // sample of increments so allow plenty of increments.
+        for (int i = 0; i < 10000; i++) {
+            sketch.increment(Integer.valueOf(i).hashCode() * 0x9E3779B9);
+        }
+        Assert.assertTrue(sketch.frequency(hot) < FrequencySketch.MAX_FREQUENCY);
+    }
+
+
+    @Test
+    public void testClear() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        int hash = "test".hashCode();
+
+        sketch.increment(hash);
+        sketch.clear();
+        Assert.assertEquals(0, sketch.frequency(hash));
+    }
+
+
+    @Test
+    public void testDistinctKeys() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+
+        for (int i = 0; i < 512; i++) {
+            sketch.increment(("key-" + i).hashCode());
+        }
+        int overestimates = 0;
+        for (int i = 0; i < 512; i++) {
+            if (sketch.frequency(("key-" + i).hashCode()) > 1) {
+                overestimates++;
+            }
+        }
+        // Count-min sketches may overestimate but should rarely do so when
+        // the sketch is not full
+        Assert.assertTrue(overestimates < 16);
+    }
+}
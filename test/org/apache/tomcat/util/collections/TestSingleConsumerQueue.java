@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSingleConsumerQueue {
+
+    @Test
+    public void testPollEmpty() {
+        SingleConsumerQueue<Object> queue = new SingleConsumerQueue<>();
+        Assert.assertNull(queue.poll());
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testOfferPollOrder() {
+        SingleConsumerQueue<Object> queue = new SingleConsumerQueue<>();
+
+        Object o1 = new Object();
+        Object o2 = new Object();
+        Object o3 = new Object();
+        Object o4 = new Object();
+
+        queue.offer(o1);
+        queue.offer(o2);
+        queue.offer(o3);
+        queue.offer(o4);
+
+        Assert.assertEquals(4, queue.size());
+
+        Assert.assertSame(o1, queue.poll());
+        Assert.assertSame(o2, queue.poll());
+        Assert.assertSame(o3, queue.poll());
+        Assert.assertSame(o4, queue.poll());
+
+        Assert.assertNull(queue.poll());
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testMultipleChunks() {
+        SingleConsumerQueue<Object> queue = new SingleConsumerQueue<>(3);
+
+        Object o1 = new Object();
+        Object o2 = new Object();
+        Object o3 = new Object();
+        Object o4 = new Object();
+
+        for (int i = 0; i < 100; i++) {
+            queue.offer(o1);
+            queue.offer(o2);
+            queue.offer(o3);
+            queue.offer(o4);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            Assert.assertSame(o1, queue.poll());
+            Assert.assertSame(o2, queue.poll());
+            Assert.assertSame(o3, queue.poll());
+            Assert.assertSame(o4, queue.poll());
+        }
+
+        for (int i = 0; i < 200; i++) {
+            queue.offer(o1);
+            queue.offer(o2);
+            queue.offer(o3);
+            queue.offer(o4);
+        }
+
+        Assert.assertEquals(1000, queue.size());
+
+        for (int i = 0; i < 250; i++) {
+            Assert.assertSame(o1, queue.poll());
+            Assert.assertSame(o2, queue.poll());
+            Assert.assertSame(o3, queue.poll());
+            Assert.assertSame(o4, queue.poll());
+        }
+
+        Assert.assertNull(queue.poll());
+    }
+
+    @Test
+    public void testClear() {
+        SingleConsumerQueue<Object> queue = new SingleConsumerQueue<>(2);
+
+        for (int i = 0; i < 5; i++) {
+            queue.offer(new Object());
+        }
+        queue.clear();
+
+        Assert.assertNull(queue.poll());
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testMultipleProducers() throws Exception {
+        final int threadCount = 4;
+        final int iterations = 100000;
+        final SingleConsumerQueue<Integer> queue = new SingleConsumerQueue<>(16);
+
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int producer = i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < iterations; j++) {
+                    queue.offer(Integer.valueOf(producer * iterations + j));
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        // Elements from each producer must be received in order
+        int[] next = new int[threadCount];
+        int received = 0;
+        while (received < threadCount * iterations) {
+            Integer value = queue.poll();
+            if (value != null) {
+                int producer = value.intValue() / iterations;
+                Assert.assertEquals(next[producer], value.intValue() % iterations);
+                next[producer]++;
+                received++;
+            }
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSingleConsumerRingBuffer {
+
+    @Test
+    public void testPollEmpty() {
+        SingleConsumerRingBuffer<Object> queue = new SingleConsumerRingBuffer<>();
+        Assert.assertNull(queue.poll());
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testCapacity() {
+        Assert.assertEquals(1, new SingleConsumerRingBuffer<>(1).capacity());
+        Assert.assertEquals(2, new SingleConsumerRingBuffer<>(2).capacity());
+        Assert.assertEquals(4, new SingleConsumerRingBuffer<>(3).capacity());
+        Assert.assertEquals(1024, new SingleConsumerRingBuffer<>(1000).capacity());
+        Assert.assertEquals(1024, new SingleConsumerRingBuffer<>(1024).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new SingleConsumerRingBuffer<>(0);
+    }
+
+    @Test
+    public void testOfferPollOrder() {
+        SingleConsumerRingBuffer<Object> queue = new SingleConsumerRingBuffer<>(4);
+
+        Object o1 = new Object();
+        Object o2 = new Object();
+        Object o3 = new Object();
+        Object o4 = new Object();
+
+        Assert.assertTrue(queue.offer(o1));
+        Assert.assertTrue(queue.offer(o2));
+        Assert.assertTrue(queue.offer(o3));
+        Assert.assertTrue(queue.offer(o4));
+
+        Assert.assertEquals(4, queue.size());
+
+        Assert.assertSame(o1, queue.poll());
+        Assert.assertSame(o2, queue.poll());
+        Assert.assertSame(o3, queue.poll());
+        Assert.assertSame(o4, queue.poll());
+
+        Assert.assertNull(queue.poll());
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testFull() {
+        SingleConsumerRingBuffer<Object> queue = new SingleConsumerRingBuffer<>(2);
+
+        Object o1 = new Object();
+        Object o2 = new Object();
+        Object o3 = new Object();
+
+        Assert.assertTrue(queue.offer(o1));
+        Assert.assertTrue(queue.offer(o2));
+        Assert.assertFalse(queue.offer(o3));
+        Assert.assertEquals(2, queue.size());
+
+        Assert.assertSame(o1, queue.poll());
+        Assert.assertTrue(queue.offer(o3));
+        Assert.assertFalse(queue.offer(o1));
+
+        Assert.assertSame(o2, queue.poll());
+        Assert.assertSame(o3, queue.poll());
+        Assert.assertNull(queue.poll());
+    }
+
+    @Test
+    public void testWrapAround() {
+        SingleConsumerRingBuffer<Object> queue = new SingleConsumerRingBuffer<>(3);
+
+        Object o1 = new Object();
+        Object o2 = new Object();
+        Object o3 = new Object();
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(queue.offer(o1));
+            Assert.assertTrue(queue.offer(o2));
+            Assert.assertTrue(queue.offer(o3));
+            Assert.assertSame(o1, queue.poll());
+            Assert.assertSame(o2, queue.poll());
+            Assert.assertSame(o3, queue.poll());
+        }
+        Assert.assertNull(queue.poll());
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testClear() {
+        SingleConsumerRingBuffer<Object> queue = new SingleConsumerRingBuffer<>(8);
+
+        for (int i = 0; i < 5; i++) {
+            queue.offer(new Object());
+        }
+        queue.clear();
+
+        Assert.assertNull(queue.poll());
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testMultipleProducers() throws Exception {
+        final int threadCount = 4;
+        final int iterations = 100000;
+        final SingleConsumerRingBuffer<Integer> queue = new SingleConsumerRingBuffer<>(16);
+
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int producer = i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < iterations; j++) {
+                    Integer value = Integer.valueOf(producer * iterations + j);
+                    while (!queue.offer(value)) {
+                        Thread.yield();
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        // Elements from each producer must be received in order
+        int[] next = new int[threadCount];
+        int received = 0;
+        while (received < threadCount * iterations) {
+            Integer value = queue.poll();
+            if (value != null) {
+                int producer = value.intValue() / iterations;
+                Assert.assertEquals(next[producer], value.intValue() % iterations);
+                next[producer]++;
+                received++;
+            }
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertNull(queue.poll());
+    }
+}
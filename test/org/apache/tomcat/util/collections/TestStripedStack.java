@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestStripedStack {
+
+    @Test
+    public void testPopEmpty() {
+        StripedStack<Object> stack = new StripedStack<>();
+        Assert.assertNull(stack.pop());
+    }
+
+    @Test
+    public void testPushPopOrder() {
+        StripedStack<Object> stack = new StripedStack<>();
+
+        Object o1 = new Object();
+        Object o2 = new Object();
+        Object o3 = new Object();
+        Object o4 = new Object();
+
+        stack.push(o1);
+        stack.push(o2);
+        stack.push(o3);
+        stack.push(o4);
+
+        // Single threaded access uses a single stripe so order is LIFO
+        Assert.assertSame(o4, stack.pop());
+        Assert.assertSame(o3, stack.pop());
+        Assert.assertSame(o2, stack.pop());
+        Assert.assertSame(o1, stack.pop());
+
+        Assert.assertNull(stack.pop());
+    }
+
+    @Test
+    public void testExpandPushPopOrder() {
+        StripedStack<Object> stack = new StripedStack<>();
+
+        Object o1 = new Object();
+        Object o2 = new Object();
+        Object o3 = new Object();
+        Object o4 = new Object();
+
+        for (int i = 0; i < 300; i++) {
+            stack.push(o1);
+            stack.push(o2);
+            stack.push(o3);
+            stack.push(o4);
+        }
+
+        for (int i = 0; i < 300; i++) {
+            Assert.assertSame(o4, stack.pop());
+            Assert.assertSame(o3, stack.pop());
+            Assert.assertSame(o2, stack.pop());
+            Assert.assertSame(o1, stack.pop());
+        }
+
+        Assert.assertNull(stack.pop());
+    }
+
+    @Test
+    public void testLimit() {
+        doTestLimit(2, 2);
+    }
+
+    @Test
+    public void testLimitExpand() {
+        doTestLimit(1, 3);
+    }
+
+    @Test
+    public void testLimitLarge() {
+        doTestLimit(16, 100);
+    }
+
+    @Test
+    public void testLimitZero() {
+        StripedStack<Object> stack = new StripedStack<>(0, 0);
+        Assert.assertFalse(stack.push(new Object()));
+        Assert.assertNull(stack.pop());
+    }
+
+    private void doTestLimit(int size, int limit) {
+        StripedStack<Object> stack = new StripedStack<>(size, limit);
+
+        Set<Object> pushed = new HashSet<>();
+        for (int i = 0; i < limit; i++) {
+            Object o = new Object();
+            Assert.assertTrue(stack.push(o));
+            pushed.add(o);
+        }
+        Assert.assertFalse(stack.push(new Object()));
+
+        for (int i = 0; i < limit; i++) {
+            Assert.assertTrue(pushed.remove(stack.pop()));
+        }
+
+        Assert.assertNull(stack.pop());
+    }
+
+    @Test
+    public void testClear() {
+        StripedStack<Object> stack = new StripedStack<>(4, 4);
+
+        for (int i = 0; i < 4; i++) {
+            stack.push(new Object());
+        }
+        stack.clear();
+
+        Assert.assertNull(stack.pop());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(stack.push(new Object()));
+        }
+    }
+
+    @Test
+    public void testStripeCount() {
+        Assert.assertEquals(1, StripedStack.stripeCount(1, -1));
+        Assert.assertEquals(8, StripedStack.stripeCount(6, -1));
+        Assert.assertEquals(64, StripedStack.stripeCount(256, -1));
+        Assert.assertEquals(2, StripedStack.stripeCount(8, 3));
+        Assert.assertEquals(1, StripedStack.stripeCount(8, 0));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final int threadCount = 8;
+        final int iterations = 100000;
+        final int limit = 64;
+        final StripedStack<Object> stack = new StripedStack<>(8, limit);
+        final Set<Object> objects = new HashSet<>();
+        for (int i = 0; i < limit; i++) {
+            Object o = new Object();
+            objects.add(o);
+            Assert.assertTrue(stack.push(o));
+        }
+
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < iterations; j++) {
+                    Object o = stack.pop();
+                    if (o != null) {
+                        stack.push(o);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // No object should be present more than once
+        Object o;
+        while ((o = stack.pop()) != null) {
+            Assert.assertTrue(objects.remove(o));
+        }
+    }
+}
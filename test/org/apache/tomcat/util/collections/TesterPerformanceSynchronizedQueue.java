@@ -18,6 +18,8 @@ package org.apache.tomcat.util.collections;
 
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import org.junit.Test;
 
@@ -31,6 +33,12 @@ public class TesterPerformanceSynchronizedQueue {
 
     private static final Queue<Object> QUEUE = new ConcurrentLinkedQueue<>();
 
+    private static final SingleConsumerQueue<Object> SC_QUEUE =
+            new SingleConsumerQueue<>();
+
+    private static final SynchronizedQueue<Object> S_QUEUE_SC =
+            new SynchronizedQueue<>();
+
     @Test
     public void testSynchronizedQueue() throws InterruptedException {
         Thread[] threads = new Thread[THREAD_COUNT];
@@ -104,4 +112,53 @@ public class TesterPerformanceSynchronizedQueue {
             super.run();
         }
     }
+
+    /*
+     * The following tests use multiple producers and a single consumer as
+     * SingleConsumerQueue does not support multiple consumers.
+     */
+    @Test
+    public void testSynchronizedQueueSingleConsumer() throws InterruptedException {
+        doTestSingleConsumer("SynchronizedQueue (single consumer)",
+                S_QUEUE_SC::offer, S_QUEUE_SC::poll);
+    }
+
+    @Test
+    public void testSingleConsumerQueue() throws InterruptedException {
+        doTestSingleConsumer("SingleConsumerQueue", SC_QUEUE::offer, SC_QUEUE::poll);
+    }
+
+    private void doTestSingleConsumer(String name, Consumer<Object> offer, Supplier<Object> poll)
+            throws InterruptedException {
+        Thread[] threads = new Thread[THREAD_COUNT];
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            threads[i] = new Thread(() -> {
+                Object obj = new Object();
+                for (int j = 0; j < ITERATIONS; j++) {
+                    offer.accept(obj);
+                }
+            });
+        }
+
+        long start = System.currentTimeMillis();
+
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            threads[i].start();
+        }
+
+        long remaining = (long) THREAD_COUNT * ITERATIONS;
+        while (remaining > 0) {
+            if (poll.get() != null) {
+                remaining--;
+            }
+        }
+
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            threads[i].join();
+        }
+
+        long end = System.currentTimeMillis();
+
+        System.out.println(name + ": " + (end - start) + "ms");
+    }
 }
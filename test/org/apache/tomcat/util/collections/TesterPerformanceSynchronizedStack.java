@@ -29,6 +29,9 @@ public class TesterPerformanceSynchronizedStack {
     private static final SynchronizedStack<Object> STACK =
             new SynchronizedStack<>();
 
+    private static final StripedStack<Object> STRIPED_STACK =
+            new StripedStack<>();
+
     private static final Queue<Object> QUEUE = new ConcurrentLinkedQueue<>();
 
     @Test
@@ -68,6 +71,43 @@ public class TesterPerformanceSynchronizedStack {
         }
     }
 
+    @Test
+    public void testStripedStack() throws InterruptedException {
+        Thread[] threads = new Thread[THREAD_COUNT];
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            threads[i] = new StripedStackThread();
+        }
+
+        long start = System.currentTimeMillis();
+
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            threads[i].start();
+        }
+
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            threads[i].join();
+        }
+
+        long end = System.currentTimeMillis();
+
+        System.out.println("StripedStack: " + (end - start) + "ms");
+    }
+
+    public static class StripedStackThread extends Thread {
+
+        @Override
+        public void run() {
+            for(int i = 0; i < ITERATIONS; i++) {
+                Object obj = STRIPED_STACK.pop();
+                if (obj == null) {
+                    obj = new Object();
+                }
+                STRIPED_STACK.push(obj);
+            }
+            super.run();
+        }
+    }
+
     @Test
     public void testConcurrentQueue() throws InterruptedException {
         Thread[] threads = new Thread[THREAD_COUNT];
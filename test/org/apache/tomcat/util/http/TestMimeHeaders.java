@@ -16,8 +16,10 @@
  */
 package org.apache.tomcat.util.http;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
 
 import org.junit.Assert;
@@ -107,4 +109,121 @@ public class TestMimeHeaders {
         }
         Assert.assertFalse(names.hasMoreElements());
     }
+
+    @Test
+    public void testKnownHeaderBytesIgnoresCase() {
+        MimeHeaders mh = new MimeHeaders();
+
+        addBytes(mh, "X-Custom", "a");
+        addBytes(mh, "cOnTeNt-LeNgTh", "10");
+        addBytes(mh, "HOST", "localhost");
+
+        Assert.assertEquals("10", mh.getHeader("Content-Length"));
+        Assert.assertEquals("10", mh.getHeader("content-length"));
+        Assert.assertEquals("localhost", mh.getUniqueValue("host").toString());
+        Assert.assertEquals(1, mh.findHeader("Content-Length", 0));
+        Assert.assertEquals(-1, mh.findHeader("Content-Length", 2));
+        Assert.assertNull(mh.getValue("Transfer-Encoding"));
+        Assert.assertNull(mh.getUniqueValue("Transfer-Encoding"));
+        Assert.assertEquals(-1, mh.findHeader("Transfer-Encoding", 0));
+    }
+
+    @Test
+    public void testKnownHeaderMultiple() {
+        MimeHeaders mh = new MimeHeaders();
+
+        addBytes(mh, "Accept", "a");
+        addBytes(mh, "Host", "localhost");
+        addBytes(mh, "accept", "b");
+        mh.addValue("ACCEPT").setString("c");
+
+        Assert.assertEquals("a", mh.getHeader("Accept"));
+        Assert.assertEquals(0, mh.findHeader("Accept", 0));
+        Assert.assertEquals(2, mh.findHeader("Accept", 1));
+        Assert.assertEquals(3, mh.findHeader("Accept", 3));
+        Assert.assertEquals(-1, mh.findHeader("Accept", 4));
+
+        try {
+            mh.getUniqueValue("Accept");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testKnownHeaderRemove() {
+        MimeHeaders mh = new MimeHeaders();
+
+        addBytes(mh, "Accept", "a");
+        addBytes(mh, "Host", "localhost");
+        addBytes(mh, "Accept", "b");
+        addBytes(mh, "Connection", "close");
+
+        mh.removeHeader(0);
+        Assert.assertEquals("b", mh.getHeader("Accept"));
+        Assert.assertEquals("localhost", mh.getUniqueValue("Host").toString());
+        Assert.assertEquals(2, mh.findHeader("Connection", 0));
+
+        mh.removeHeader("host");
+        Assert.assertNull(mh.getValue("Host"));
+        Assert.assertEquals(1, mh.findHeader("Connection", 0));
+        Assert.assertEquals(2, mh.size());
+
+        mh.recycle();
+        Assert.assertNull(mh.getValue("Accept"));
+        Assert.assertNull(mh.getValue("Connection"));
+    }
+
+    @Test
+    public void testKnownHeaderSetValue() {
+        MimeHeaders mh = new MimeHeaders();
+
+        addBytes(mh, "Vary", "a");
+        addBytes(mh, "X-Custom", "x");
+        addBytes(mh, "vary", "b");
+
+        mh.setValue("VARY").setString("c");
+        Assert.assertEquals(2, mh.size());
+        Assert.assertEquals("c", mh.getUniqueValue("Vary").toString());
+        Assert.assertEquals("x", mh.getHeader("X-Custom"));
+
+        mh.setValue("Location").setString("/");
+        Assert.assertEquals(3, mh.size());
+        Assert.assertEquals("/", mh.getHeader("location"));
+    }
+
+    @Test
+    public void testKnownHeaderDuplicate() throws Exception {
+        MimeHeaders source = new MimeHeaders();
+        addBytes(source, "Content-Type", "text/plain");
+
+        MimeHeaders mh = new MimeHeaders();
+        mh.duplicate(source);
+
+        Assert.assertEquals("text/plain", mh.getHeader("content-type"));
+    }
+
+    @Test
+    public void testKnownHeadersIds() {
+        Assert.assertEquals(KnownHeaders.UNKNOWN, KnownHeaders.getId("hosts"));
+        Assert.assertEquals(KnownHeaders.UNKNOWN, KnownHeaders.getId("hos"));
+        Assert.assertEquals(KnownHeaders.UNKNOWN, KnownHeaders.getId("h\u00f6st"));
+        Assert.assertEquals(KnownHeaders.UNKNOWN, KnownHeaders.getId((String) null));
+        for (int id = 0; id < KnownHeaders.COUNT; id++) {
+            String name = KnownHeaders.getName(id);
+            Assert.assertEquals(id, KnownHeaders.getId(name));
+            Assert.assertEquals(id, KnownHeaders.getId(name.toUpperCase(Locale.ENGLISH)));
+            byte[] bytes = name.getBytes(StandardCharsets.ISO_8859_1);
+            Assert.assertEquals(id, KnownHeaders.getId(bytes, 0, bytes.length));
+            char[] chars = name.toCharArray();
+            Assert.assertEquals(id, KnownHeaders.getId(chars, 0, chars.length));
+        }
+    }
+
+
+    private static void addBytes(MimeHeaders mh, String name, String value) {
+        byte[] bytes = (name + value).getBytes(StandardCharsets.ISO_8859_1);
+        mh.addValue(bytes, 0, name.length()).setBytes(bytes, name.length(), value.length());
+    }
 }
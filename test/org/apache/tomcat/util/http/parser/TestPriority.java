@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.http.parser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPriority {
+
+    @Test
+    public void testEmpty() {
+        doTest("", 3, false);
+    }
+
+
+    @Test
+    public void testUrgency() {
+        doTest("u=5", 5, false);
+    }
+
+
+    @Test
+    public void testIncremental() {
+        doTest("i", 3, true);
+    }
+
+
+    @Test
+    public void testIncrementalTrue() {
+        doTest("i=?1", 3, true);
+    }
+
+
+    @Test
+    public void testIncrementalFalse() {
+        doTest("i=?0", 3, false);
+    }
+
+
+    @Test
+    public void testBoth() {
+        doTest("u=0, i", 0, true);
+    }
+
+
+    @Test
+    public void testBothNoSpace() {
+        doTest("i,u=7", 7, true);
+    }
+
+
+    @Test
+    public void testUrgencyOutOfRange() {
+        doTest("u=8", 3, false);
+    }
+
+
+    @Test
+    public void testUrgencyNegative() {
+        doTest("u=-1, i", 3, true);
+    }
+
+
+    @Test
+    public void testUrgencyWrongType() {
+        doTest("u=\"1\"", 3, false);
+    }
+
+
+    @Test
+    public void testIncrementalWrongType() {
+        doTest("i=1", 3, false);
+    }
+
+
+    @Test
+    public void testDuplicateLastWins() {
+        doTest("u=1, u=2", 2, false);
+    }
+
+
+    @Test
+    public void testUnknownKeysIgnored() {
+        doTest("foo=bar, u=2;p=1, baz=(1 \"a\" b), qux=:AAE=:, d=1.5, i", 2, true);
+    }
+
+
+    @Test
+    public void testInvalidKey() {
+        Assert.assertNull(Priority.parsePriority("U=1"));
+    }
+
+
+    @Test
+    public void testInvalidTrailingComma() {
+        Assert.assertNull(Priority.parsePriority("u=1,"));
+    }
+
+
+    @Test
+    public void testInvalidSeparator() {
+        Assert.assertNull(Priority.parsePriority("u=1;i u=2"));
+    }
+
+
+    @Test
+    public void testInvalidValue() {
+        Assert.assertNull(Priority.parsePriority("u=?2"));
+    }
+
+
+    private void doTest(String input, int expectedUrgency, boolean expectedIncremental) {
+        Priority p = Priority.parsePriority(input);
+        Assert.assertNotNull(p);
+        Assert.assertEquals(expectedUrgency, p.getUrgency());
+        Assert.assertEquals(Boolean.valueOf(expectedIncremental), Boolean.valueOf(p.getIncremental()));
+    }
+}
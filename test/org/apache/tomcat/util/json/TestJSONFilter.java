@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.json;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+@RunWith(Parameterized.class)
+public class TestJSONFilter {
+
+    @Parameters(name = "{index}: input[{0}]")
+    public static Collection<Object[]> parameters() {
+        List<Object[]> parameterSets = new ArrayList<>();
+
+        parameterSets.add(new String[] { "", "" });
+        parameterSets.add(new String[] { "abc", "abc" });
+        parameterSets.add(new String[] { "a\"b", "a\\\"b" });
+        parameterSets.add(new String[] { "a\\b", "a\\\\b" });
+        parameterSets.add(new String[] { "a/b", "a/b" });
+        parameterSets.add(new String[] { "\b\f\n\r\t", "\\b\\f\\n\\r\\t" });
+        parameterSets.add(new String[] { "\u0000\u001f", "\\u0000\\u001F" });
+        parameterSets.add(new String[] { "\u007fé€", "\u007fé€" });
+        parameterSets.add(new String[] { "\"", "\\\"" });
+
+        return parameterSets;
+    }
+
+    @Parameter(0)
+    public String input;
+
+    @Parameter(1)
+    public String output;
+
+    @Test
+    public void testStringEscaping() {
+        Assert.assertEquals(output, JSONFilter.escape(input));
+    }
+
+    @Test
+    public void testCharEscaping() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            String sequence = JSONFilter.escape(c);
+            if (sequence == null) {
+                result.append(c);
+            } else {
+                result.append(sequence);
+            }
+        }
+        Assert.assertEquals(output, result.toString());
+    }
+}
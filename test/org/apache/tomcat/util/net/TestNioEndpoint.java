@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.buf.ByteChunk;
+
+public class TestNioEndpoint extends TomcatBaseTest {
+
+    private static final int REQUEST_COUNT = 20;
+
+
+    @Test
+    public void testMultiplePollers() throws Exception {
+        doTest(4, 1);
+    }
+
+
+    @Test
+    public void testMultipleAcceptors() throws Exception {
+        doTest(1, 4);
+    }
+
+
+    @Test
+    public void testMultiplePollersAndAcceptors() throws Exception {
+        doTest(2, 2);
+    }
+
+
+    private void doTest(int pollerThreadCount, int acceptorThreadCount) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector c = tomcat.getConnector();
+        // Only the NIO connector supports these attributes
+        Assume.assumeTrue(c.setProperty("pollerThreadCount", Integer.toString(pollerThreadCount)));
+        Assert.assertTrue(c.setProperty("acceptorThreadCount", Integer.toString(acceptorThreadCount)));
+
+        Context ctx = tomcat.addContext("", null);
+        Tomcat.addServlet(ctx, "hello", new HelloWorldServlet());
+        ctx.addServletMappingDecoded("/", "hello");
+
+        tomcat.start();
+
+        doRequests();
+
+        // Check the connector can be restarted
+        c.stop();
+        c.start();
+
+        doRequests();
+    }
+
+
+    private void doRequests() throws Exception {
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            ByteChunk res = getUrl("http://localhost:" + getPort() + "/");
+            Assert.assertEquals(HelloWorldServlet.RESPONSE_TEXT, res.toString());
+        }
+    }
+}
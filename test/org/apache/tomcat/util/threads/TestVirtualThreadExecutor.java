@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.threads;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestVirtualThreadExecutor {
+
+    private VirtualThreadExecutor executor;
+
+    @Before
+    public void setUp() {
+        try {
+            executor = new VirtualThreadExecutor("test-virt-");
+        } catch (UnsupportedOperationException e) {
+            // JRE does not support virtual threads
+        }
+        Assume.assumeNotNull(executor);
+    }
+
+
+    @Test
+    public void testExecuteAndShutdown() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+        });
+
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, executor.getActiveCount());
+
+        executor.shutdown();
+        Assert.assertTrue(executor.isShutdown());
+        Assert.assertFalse(executor.isTerminated());
+        Assert.assertFalse(executor.awaitTermination(100, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.isTerminated());
+        Assert.assertEquals(0, executor.getActiveCount());
+    }
+
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testRejectAfterShutdown() {
+        executor.shutdown();
+        executor.execute(() -> {});
+    }
+}